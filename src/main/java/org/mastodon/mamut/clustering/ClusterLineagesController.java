@@ -28,30 +28,39 @@
  */
 package org.mastodon.mamut.clustering;
 
+import com.apporiented.algorithm.clustering.Cluster;
 import org.apache.commons.lang3.tuple.Pair;
 import org.mastodon.collection.RefSet;
-import org.mastodon.graph.algorithm.traversal.DepthFirstIterator;
+import org.mastodon.graph.GraphChangeListener;
+import org.mastodon.graph.GraphListener;
 import org.mastodon.mamut.ProjectModel;
 import org.mastodon.mamut.clustering.config.ClusteringMethod;
 import org.mastodon.mamut.clustering.config.SimilarityMeasure;
 import org.mastodon.mamut.clustering.multiproject.ClusterableProject;
 import org.mastodon.mamut.clustering.multiproject.ExternalProjects;
+import org.mastodon.mamut.clustering.util.ClusterNumberEvaluation;
 import org.mastodon.mamut.clustering.util.HierarchicalClusteringResult;
 import org.mastodon.mamut.clustering.config.CropCriteria;
 import org.mastodon.mamut.clustering.ui.DendrogramView;
 import org.mastodon.mamut.clustering.util.HierarchicalClusteringUtils;
+import org.mastodon.mamut.clustering.util.IncrementalClusteringUtils;
+import org.mastodon.mamut.clustering.util.ShardedDistanceMatrix;
+import org.mastodon.mamut.clustering.util.PartitionClusteringUtils;
+import org.mastodon.mamut.clustering.util.TriangularDistanceCache;
 import org.mastodon.mamut.io.ProjectSaver;
 import org.mastodon.mamut.io.project.MamutProject;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
-import org.mastodon.mamut.model.ModelGraph;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.mamut.model.branch.BranchSpot;
 import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
 import org.mastodon.mamut.clustering.treesimilarity.tree.TreeUtils;
+import org.mastodon.mamut.util.BranchSpotLabelIndex;
+import org.mastodon.mamut.util.BulkTagAssignment;
 import org.mastodon.mamut.util.LineageTreeUtils;
+import org.mastodon.model.tag.ObjTagMap;
 import org.mastodon.model.tag.TagSetStructure;
-import org.mastodon.util.TagSetUtils;
+import org.mastodon.util.DepthFirstIteration;
 import org.scijava.Context;
 import org.scijava.prefs.PrefService;
 import org.slf4j.Logger;
@@ -61,8 +70,11 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +82,7 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.StringJoiner;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -82,6 +95,20 @@ public class ClusterLineagesController
 
 	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
 
+	/**
+	 * The default number of lineage trees, from which on clustering methods that produce a flat partition store the distances in a
+	 * {@link TriangularDistanceCache} instead of the full distance matrix. The distance matrix of this number of lineage trees requires
+	 * 800 MB, the cache 200 MB.
+	 */
+	static final int DEFAULT_MIN_TREES_FOR_TRIANGULAR_DISTANCES = 10_000;
+
+	/**
+	 * The name of the tag, with which the lineage trees are tagged that {@link ClusteringMethod#HDBSCAN} classifies as noise.
+	 */
+	public static final String NOISE_TAG_NAME = "Noise";
+
+	private static final int NOISE_TAG_COLOR = 0xff808080;
+
 	private final Model referenceModel;
 
 	private final ProjectModel referenceProjectModel;
@@ -100,8 +127,12 @@ public class ClusterLineagesController
 
 	private int numberOfClusters;
 
+	private int minClusterSize = 2;
+
 	private int minCellDivisions;
 
+	private int numberOfWorkerProcesses = 0;
+
 	private boolean showDendrogram;
 
 	private final ExternalProjects externalProjects;
@@ -110,6 +141,12 @@ public class ClusterLineagesController
 
 	private boolean running = false;
 
+	private int minTreesForTriangularDistances = DEFAULT_MIN_TREES_FOR_TRIANGULAR_DISTANCES;
+
+	private final ModelEditListener modelEditListener = new ModelEditListener();
+
+	private DistanceCache distanceCache;
+
 	/**
 	 * Create a new controller for clustering lineage trees.
 	 * @param referenceProjectModel the reference project model
@@ -131,6 +168,8 @@ public class ClusterLineagesController
 		this.referenceModel = referenceProjectModel.getModel();
 		this.prefs = prefs;
 		this.externalProjects = new ExternalProjects( context );
+		referenceModel.getGraph().addGraphListener( modelEditListener );
+		referenceModel.getGraph().addGraphChangeListener( modelEditListener );
 	}
 
 	/**
@@ -153,49 +192,263 @@ public class ClusterLineagesController
 		}
 	}
 
+	/**
+	 * Evaluates the numbers of clusters between {@code minNumberOfClusters} and {@code maxNumberOfClusters} based on the current settings of the controller.
+	 * <br>
+	 * The distance matrix of the lineage trees and, for hierarchical clustering methods, its dendrogram are computed once and then reused for all
+	 * numbers of clusters. Both are kept, such that a following {@link #createTagSet()} with the same lineage trees and similarity settings
+	 * does not compute them again.
+	 * The largest evaluated number of clusters is limited to the number of lineage trees - 1.
+	 *
+	 * @param minNumberOfClusters the smallest number of clusters to evaluate
+	 * @param maxNumberOfClusters the largest number of clusters to evaluate
+	 * @return the evaluation or {@code null}, if the controller is already running
+	 * @throws IllegalArgumentException if the current settings of the controller are not valid, cf. {@link #isValidParams()}
+	 */
+	public ClusterNumberEvaluation evaluateNumberOfClusters( final int minNumberOfClusters, final int maxNumberOfClusters )
+	{
+		if ( running )
+			return null;
+		if ( !isValidParams() )
+			throw new IllegalArgumentException( "Invalid parameters settings." );
+		try
+		{
+			running = true;
+			referenceProjectModel.getBranchGraphSync().sync();
+			DistanceCache cache;
+			ReentrantReadWriteLock.ReadLock lock = referenceModel.getGraph().getLock().readLock();
+			lock.lock();
+			try
+			{
+				cache = getDistanceCache();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+			int maxClusterNumber = Math.min( maxNumberOfClusters, cache.distances.length - 1 );
+			Cluster dendrogram = clusteringMethod.isHierarchical() ? cache.getDendrogram( clusteringMethod ) : null;
+			return ClusterNumberEvaluation.evaluate( cache.distances, dendrogram, clusteringMethod, minNumberOfClusters, maxClusterNumber );
+		}
+		finally
+		{
+			running = false;
+		}
+	}
+
+	/**
+	 * Adds new or changed lineage trees to the existing clustering represented by the tag set with the given name, based on the current settings of the controller.
+	 * <br>
+	 * A lineage tree is considered as already classified, if all of its spots are tagged with the same tag of the tag set.
+	 * All other lineage trees (e.g. newly tracked lineages or lineages that have been extended by tracking further timepoints) are assigned to the nearest class.
+	 * Only the distances between these lineage trees and the classified lineage trees are computed. The hierarchy of the existing clustering is not changed.
+	 * The distances are computed without holding the read lock of the model, so that the model can still be viewed in the meantime.
+	 * To rebuild the clustering for all lineage trees, use {@link #createTagSet()}.
+	 * <br>
+	 * Lineage trees that {@link ClusteringMethod#HDBSCAN} has classified as noise are tagged with the {@link #NOISE_TAG_NAME noise tag}
+	 * and thus count as classified. For {@link ClusteringMethod#HDBSCAN}, a new lineage tree is assigned to the class of its nearest
+	 * classified lineage tree, which may be the noise tag.
+	 *
+	 * @param tagSetName the name of the tag set that represents the existing clustering
+	 * @return the number of lineage trees that have been assigned to a class or {@code -1}, if the controller is already running
+	 * @throws IllegalArgumentException if the current settings of the controller are not valid, cf. {@link #isValidParams()}, or if the tag
+	 * set does not exist or does not contain any classified lineage tree
+	 * @throws IllegalStateException if the model has been edited, while the distances were computed. No tags are changed then.
+	 */
+	public int addLineagesToClustering( final String tagSetName )
+	{
+		if ( running )
+			return -1;
+		if ( !isValidParams() )
+			throw new IllegalArgumentException( "Invalid parameters settings." );
+		try
+		{
+			running = true;
+			return runIncrementalClustering( tagSetName );
+		}
+		finally
+		{
+			running = false;
+		}
+	}
+
+	private int runIncrementalClustering( final String tagSetName )
+	{
+		TagSetStructure.TagSet tagSet = referenceModel.getTagSetModel().getTagSetStructure().getTagSets().stream()
+				.filter( ts -> ts.getName().equals( tagSetName ) ).findFirst()
+				.orElseThrow( () -> new IllegalArgumentException( "Tag set '" + tagSetName + "' does not exist." ) );
+		List< TagSetStructure.Tag > tags = tagSet.getTags();
+		referenceProjectModel.getBranchGraphSync().sync();
+		ReentrantReadWriteLock.ReadLock lock = referenceModel.getGraph().getLock().readLock();
+		List< BranchSpotTree > newTrees = new ArrayList<>();
+		List< BranchSpotTree > classifiedTrees = new ArrayList<>();
+		List< Integer > classLabels = new ArrayList<>();
+		BulkTagAssignment tagAssignment = new BulkTagAssignment( referenceModel, tags.size() );
+		Spot rootRef = referenceModel.getGraph().vertexRef();
+		try
+		{
+			long modifications;
+			lock.lock();
+			try
+			{
+				modifications = modelEditListener.modifications;
+				ObjTagMap< Spot, TagSetStructure.Tag > spotTags = referenceModel.getTagSetModel().getVertexTags().tags( tagSet );
+				for ( BranchSpotTree tree : getRoots() )
+				{
+					TagSetStructure.Tag tag = getUniformTag( tree, spotTags, rootRef );
+					if ( tag == null )
+						newTrees.add( tree );
+					else
+					{
+						classifiedTrees.add( tree );
+						classLabels.add( tags.indexOf( tag ) );
+					}
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+			if ( classifiedTrees.isEmpty() )
+				throw new IllegalArgumentException( "Tag set '" + tagSetName + "' does not contain any classified lineage." );
+			logger.info( "Found {} classified and {} new or changed lineages.", classifiedTrees.size(), newTrees.size() );
+			if ( newTrees.isEmpty() )
+				return 0;
+			// NB: the lineage trees copy the branch durations, thus their distances are computed without holding the read lock
+			int[] assignment = IncrementalClusteringUtils.assignToNearestClasses( newTrees, classifiedTrees,
+					classLabels.stream().mapToInt( Integer::intValue ).toArray(), tags.size(), similarityMeasure, clusteringMethod );
+			lock.lock();
+			try
+			{
+				if ( modelEditListener.modifications != modifications )
+					throw new IllegalStateException(
+							"The lineages have been edited while they were added to the clustering. Please try again." );
+				for ( int i = 0; i < newTrees.size(); i++ )
+				{
+					int tagIndex = assignment[ i ];
+					BranchSpotTree tree = newTrees.get( i );
+					forEachSpot( referenceModel, tree, tree.getBranchSpot(), rootRef,
+							spot -> tagAssignment.addSpotAndIncomingEdges( tagIndex, spot ) );
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+		finally
+		{
+			referenceModel.getGraph().releaseRef( rootRef );
+		}
+		// NB: the tags are applied after releasing the read lock, since the tag assignment acquires the write lock
+		tagAssignment.apply( tagSet );
+		return newTrees.size();
+	}
+
+	/**
+	 * Gets the tag, with which all spots of the given tree are tagged, or {@code null}, if at least one spot is not tagged or tagged differently.
+	 */
+	private TagSetStructure.Tag getUniformTag( final BranchSpotTree tree, final ObjTagMap< Spot, TagSetStructure.Tag > spotTags,
+			final Spot rootRef )
+	{
+		Spot rootSpot = referenceModel.getBranchGraph().getFirstLinkedVertex( tree.getBranchSpot(), rootRef );
+		if ( rootSpot == null )
+			return null;
+		TagSetStructure.Tag uniformTag = null;
+		for ( DepthFirstIteration.Step< Spot > step : DepthFirstIteration.forRoot( referenceModel.getGraph(), rootSpot ) )
+		{
+			if ( !step.isFirstVisit() )
+				continue;
+			Spot spot = step.node();
+			if ( spot.getTimepoint() >= tree.getEndTimepoint() )
+				step.truncate(); // no spot after the end timepoint belongs to the tree
+			if ( spot.getTimepoint() < tree.getStartTimepoint() || spot.getTimepoint() > tree.getEndTimepoint() )
+				continue;
+			TagSetStructure.Tag tag = spotTags.get( spot );
+			if ( tag == null || ( uniformTag != null && !tag.equals( uniformTag ) ) )
+				return null;
+			uniformTag = tag;
+		}
+		return uniformTag;
+	}
+
+	/**
+	 * Gets the names of all tag sets of the reference project.
+	 *
+	 * @return the names of the tag sets
+	 */
+	public List< String > getTagSetNames()
+	{
+		return referenceModel.getTagSetModel().getTagSetStructure().getTagSets().stream().map( TagSetStructure.TagSet::getName )
+				.collect( Collectors.toList() );
+	}
+
 	private String runClustering()
 	{
 		referenceProjectModel.getBranchGraphSync().sync();
 		ReentrantReadWriteLock.ReadLock lock = referenceModel.getGraph().getLock().readLock();
 		lock.lock();
-		String createdTagSetName;
+		List< ClusterableProject > rootsMatrix;
+		DistanceCache cache = null;
+		HierarchicalClusteringResult< BranchSpotTree > hierarchicalClusteringResult;
+		List< BranchSpotTree > noiseTrees;
+		BulkTagAssignment tagAssignment;
 		try
 		{
-			Pair< List< ClusterableProject >, double[][] > rootsAndDistances = getRootsAndDistanceMatrix();
-			List< ClusterableProject > rootsMatrix = rootsAndDistances.getLeft();
-			double[][] distances = rootsAndDistances.getRight();
-			ClusterableProject referenceProject = rootsMatrix.get( 0 );
-			HierarchicalClusteringResult< BranchSpotTree > hierarchicalClusteringResult =
-					clusterLineageTrees( referenceProject.getTrees(), distances );
-			Function< BranchSpotTree, BranchSpot > branchSpotProvider = BranchSpotTree::getBranchSpot;
-			createdTagSetName = applyTagSet( hierarchicalClusteringResult, referenceModel, branchSpotProvider );
-			if ( addTagSetToExternalProjects && rootsMatrix.size() > 1 )
-				clusterExternalProjects( rootsMatrix, distances );
-			if ( showDendrogram )
-				showDendrogram( hierarchicalClusteringResult );
+			List< BranchSpotTree > roots = getRoots();
+			if ( isTriangularDistances( roots.size() ) )
+			{
+				rootsMatrix = Collections.singletonList( new ClusterableProject( null, referenceProjectModel, roots ) );
+				hierarchicalClusteringResult = clusterLineageTreesWithTriangularDistances( roots );
+			}
+			else
+			{
+				cache = getDistanceCache( roots );
+				rootsMatrix = cache.projects;
+				hierarchicalClusteringResult = clusterLineageTrees( rootsMatrix.get( 0 ).getTrees(), cache );
+			}
+			noiseTrees = getNoiseTrees( hierarchicalClusteringResult, rootsMatrix.get( 0 ).getTrees() );
+			tagAssignment =
+					collectTagAssignment( hierarchicalClusteringResult, noiseTrees, referenceModel, BranchSpotTree::getBranchSpot );
 		}
 		finally
 		{
 			lock.unlock();
 		}
+		// NB: the tags are applied after releasing the read lock, since the tag assignment acquires the write lock
+		String createdTagSetName = applyTagSet( hierarchicalClusteringResult, !noiseTrees.isEmpty(), tagAssignment );
+		if ( addTagSetToExternalProjects && rootsMatrix.size() > 1 )
+			clusterExternalProjects( rootsMatrix, cache );
+		if ( showDendrogram )
+			showDendrogram( hierarchicalClusteringResult );
 		return createdTagSetName;
 	}
 
-	private void clusterExternalProjects( final List< ClusterableProject > rootsMatrix, final double[][] distances )
+	private void clusterExternalProjects( final List< ClusterableProject > rootsMatrix, final DistanceCache cache )
 	{
-		Function< BranchSpotTree, BranchSpot > branchSpotProvider;
 		for ( int i = 1; i < rootsMatrix.size(); i++ ) // NB: start at 1 to skip reference project
 		{
 			ClusterableProject project = rootsMatrix.get( i );
 			HierarchicalClusteringResult< BranchSpotTree > hierarchicalClusteringResult =
-					clusterLineageTrees( project.getTrees(), distances );
+					clusterLineageTrees( project.getTrees(), cache );
 			ProjectModel projectModel = project.getProjectModel();
 			Model model = projectModel.getModel();
 			File file = project.getFile();
-			branchSpotProvider = branchSpotTree -> model.getBranchGraph().vertices().stream()
-					.filter( ( branchSpot -> branchSpot.getFirstLabel().equals( branchSpotTree.getName() ) ) )
-					.findFirst().orElse( null );
-			applyTagSet( hierarchicalClusteringResult, model, branchSpotProvider );
+			BranchSpotLabelIndex labelIndex = new BranchSpotLabelIndex( model );
+			BranchSpot ref = model.getBranchGraph().vertexRef();
+			try
+			{
+				Function< BranchSpotTree, BranchSpot > branchSpotProvider =
+						branchSpotTree -> labelIndex.getBranchSpot( branchSpotTree.getName(), ref );
+				List< BranchSpotTree > noiseTrees = getNoiseTrees( hierarchicalClusteringResult, project.getTrees() );
+				BulkTagAssignment tagAssignment =
+						collectTagAssignment( hierarchicalClusteringResult, noiseTrees, model, branchSpotProvider );
+				applyTagSet( hierarchicalClusteringResult, !noiseTrees.isEmpty(), tagAssignment );
+			}
+			finally
+			{
+				model.getBranchGraph().releaseRef( ref );
+			}
 			try
 			{
 				ProjectSaver.saveProject( file, projectModel );
@@ -208,13 +461,51 @@ public class ClusterLineagesController
 		}
 	}
 
-	private Pair< List< ClusterableProject >, double[][] > getRootsAndDistanceMatrix()
+	/**
+	 * Gets the lineage trees and their distance matrix for the current settings. They are reused from the last call, if the lineage trees and
+	 * the similarity settings are the same and the reference model has not been edited since then. Otherwise, they are computed anew.
+	 * <br>
+	 * Requires the read lock of the reference model graph.
+	 */
+	private DistanceCache getDistanceCache()
+	{
+		return getDistanceCache( getRoots() );
+	}
+
+	private DistanceCache getDistanceCache( final List< BranchSpotTree > roots )
+	{
+		List< Object > key = getDistanceCacheKey( roots );
+		if ( distanceCache != null && distanceCache.key.equals( key ) )
+		{
+			logger.debug( "Reusing the distance matrix of {} lineage trees.", distanceCache.distances.length );
+			return distanceCache;
+		}
+		distanceCache = null;
+		Pair< List< ClusterableProject >, double[][] > rootsAndDistances = getRootsAndDistanceMatrix( roots );
+		distanceCache = new DistanceCache( key, rootsAndDistances.getLeft(), rootsAndDistances.getRight() );
+		return distanceCache;
+	}
+
+	/**
+	 * Gets the key of the distance matrix, i.e. the names of the lineage trees, all settings that affect the lineage trees or their distances
+	 * and the number of edits of the reference model graph so far.
+	 * <br>
+	 * NB: edits require the write lock, thus no edit can happen while the distances are computed under the read lock.
+	 */
+	private List< Object > getDistanceCacheKey( final List< BranchSpotTree > roots )
+	{
+		List< String > rootNames = roots.stream().map( BranchSpotTree::getName ).collect( Collectors.toList() );
+		List< File > externalFiles = externalProjects.getProjects().stream().map( Map.Entry::getKey ).collect( Collectors.toList() );
+		return Arrays.asList( similarityMeasure, cropCriterion, cropStart, cropEnd, minCellDivisions, externalFiles, rootNames,
+				modelEditListener.modifications );
+	}
+
+	private Pair< List< ClusterableProject >, double[][] > getRootsAndDistanceMatrix( final List< BranchSpotTree > roots )
 	{
-		List< BranchSpotTree > roots = getRoots();
 		ClusterableProject referenceProject = new ClusterableProject( null, referenceProjectModel, roots );
 		if ( externalProjects.isEmpty() )
 		{
-			double[][] distances = HierarchicalClusteringUtils.getDistanceMatrix( roots, similarityMeasure );
+			double[][] distances = getDistanceMatrix( roots );
 			return Pair.of( Collections.singletonList( referenceProject ), distances );
 		}
 
@@ -230,7 +521,14 @@ public class ClusterLineagesController
 			projects.add( new ClusterableProject( project.getKey(), project.getValue(), externalRoots ) );
 		}
 		List< List< BranchSpotTree > > treeMatrix = projects.stream().map( ClusterableProject::getTrees ).collect( Collectors.toList() );
-		return Pair.of( projects, HierarchicalClusteringUtils.getAverageDistanceMatrix( treeMatrix, similarityMeasure ) );
+		return Pair.of( projects, HierarchicalClusteringUtils.getAverageDistanceMatrix( treeMatrix, this::getDistanceMatrix ) );
+	}
+
+	private double[][] getDistanceMatrix( final List< BranchSpotTree > trees )
+	{
+		if ( numberOfWorkerProcesses < 1 )
+			return HierarchicalClusteringUtils.getDistanceMatrix( trees, similarityMeasure );
+		return new ShardedDistanceMatrix( numberOfWorkerProcesses ).getDistanceMatrix( trees, similarityMeasure );
 	}
 
 	private List< String > findCommonRootNames()
@@ -274,7 +572,10 @@ public class ClusterLineagesController
 		joiner.add( "Crop criterion: " + cropCriterion.getName() );
 		joiner.add( "Crop start: " + cropStart );
 		joiner.add( "Crop end: " + cropEnd );
-		joiner.add( "Number of clusters: " + numberOfClusters );
+		if ( clusteringMethod.usesNumberOfClusters() )
+			joiner.add( "Number of clusters: " + numberOfClusters );
+		else
+			joiner.add( "Minimum cluster size: " + minClusterSize );
 		joiner.add( "Minimum cell divisions: " + minCellDivisions );
 		joiner.add( "Similarity measure: " + similarityMeasure.getName() );
 		joiner.add( "Clustering method: " + clusteringMethod.getName() );
@@ -291,55 +592,129 @@ public class ClusterLineagesController
 	}
 
 	private HierarchicalClusteringResult< BranchSpotTree > clusterLineageTrees( final List< BranchSpotTree > roots,
-			final double[][] distances )
+			final DistanceCache cache )
 	{
+		double[][] distances = cache.distances;
 		if ( roots.size() != distances.length )
 			throw new IllegalArgumentException(
 					"Number of roots (" + roots.size() + ") and size of distance matrix (" + distances.length + "x"
 							+ distances[ 0 ].length + ") do not match." );
 		BranchSpotTree[] rootBranchSpots = roots.toArray( new BranchSpotTree[ 0 ] );
-		HierarchicalClusteringResult< BranchSpotTree > result =
-				HierarchicalClusteringUtils.getClusteringUsingClusterNumber( rootBranchSpots, distances,
-						clusteringMethod.getLinkageStrategy(), numberOfClusters
-				);
+		HierarchicalClusteringResult< BranchSpotTree > result;
+		if ( clusteringMethod.isHierarchical() )
+			result = HierarchicalClusteringUtils.getClusteringUsingClusterNumber( rootBranchSpots, distances,
+					cache.getDendrogram( clusteringMethod ), numberOfClusters );
+		else
+			result = PartitionClusteringUtils.getClustering( rootBranchSpots, distances, clusteringMethod, numberOfClusters,
+					minClusterSize );
 		logger.debug(
 				"Finished hierarchical clustering. Created {} object classifications.", result.getGroups().size() );
 		return result;
 	}
 
-	private String applyTagSet( final HierarchicalClusteringResult< BranchSpotTree > hierarchicalClusteringResult,
-			final Model model, final Function< BranchSpotTree, BranchSpot > branchSpotProvider )
+	/**
+	 * Checks, if the distances between the given number of lineage trees are stored in a {@link TriangularDistanceCache} instead of the full
+	 * distance matrix. This is the case for clustering methods that produce a flat partition, if there are at least
+	 * {@link #setMinTreesForTriangularDistances(int) the minimum number} of lineage trees, no external projects and no worker processes.
+	 */
+	private boolean isTriangularDistances( final int numberOfTrees )
+	{
+		return !clusteringMethod.isHierarchical() && externalProjects.isEmpty() && numberOfWorkerProcesses < 1
+				&& numberOfTrees >= minTreesForTriangularDistances;
+	}
+
+	/**
+	 * Clusters the given lineage trees without materializing the full distance matrix. The distances are computed once in parallel and
+	 * stored in a {@link TriangularDistanceCache}, since both {@link ClusteringMethod#K_MEDOIDS} and {@link ClusteringMethod#HDBSCAN}
+	 * request each distance several times. The median of all distances is not computed in this case.
+	 */
+	private HierarchicalClusteringResult< BranchSpotTree > clusterLineageTreesWithTriangularDistances( final List< BranchSpotTree > roots )
+	{
+		logger.info( "Clustering {} lineage trees with a triangular distance cache.", roots.size() );
+		BranchSpotTree[] rootBranchSpots = roots.toArray( new BranchSpotTree[ 0 ] );
+		HierarchicalClusteringResult< BranchSpotTree > result = PartitionClusteringUtils.getClustering( rootBranchSpots,
+				TriangularDistanceCache.of( roots, similarityMeasure ), Double.NaN, clusteringMethod, numberOfClusters, minClusterSize );
+		logger.debug( "Finished clustering. Created {} object classifications.", result.getGroups().size() );
+		return result;
+	}
+
+	private String applyTagSet( final HierarchicalClusteringResult< BranchSpotTree > hierarchicalClusteringResult, final boolean hasNoise,
+			final BulkTagAssignment tagAssignment )
 	{
 		String tagSetName = getTagSetName();
-		List< HierarchicalClusteringResult.Group< BranchSpotTree > > groups = hierarchicalClusteringResult.getGroups();
-		List< Pair< String, Integer > > tagsAndColors = groups.stream()
+		List< Pair< String, Integer > > tagsAndColors = hierarchicalClusteringResult.getGroups().stream()
 				.map( group -> Pair.of( group.getName(), group.getColor() ) )
 				.collect( Collectors.toList() );
-		TagSetStructure.TagSet tagSet = TagSetUtils.addNewTagSetToModel( model, tagSetName, tagsAndColors );
-		for ( int i = 0; i < groups.size(); i++ )
-		{
-			HierarchicalClusteringResult.Group< BranchSpotTree > group = groups.get( i );
-			Set< BranchSpotTree > trees = group.getObjects();
-			logger.debug( "Applying tag set for class {}, which has {} trees", i, trees.size() );
-			TagSetStructure.Tag tag = tagSet.getTags().get( i );
-			for ( BranchSpotTree tree : trees )
+		if ( hasNoise )
+			tagsAndColors.add( Pair.of( NOISE_TAG_NAME, NOISE_TAG_COLOR ) );
+		tagAssignment.apply( tagSetName, tagsAndColors );
+		logger.debug( "Applied tag set {} with {} tag assignments.", tagSetName, tagAssignment.size() );
+		return tagSetName;
+	}
+
+	/**
+	 * Collects the tag assignments for the groups of the given result. If there are noise trees, they are assigned to an additional last tag.
+	 */
+	private static BulkTagAssignment collectTagAssignment(
+			final HierarchicalClusteringResult< BranchSpotTree > hierarchicalClusteringResult, final List< BranchSpotTree > noiseTrees,
+			final Model model, final Function< BranchSpotTree, BranchSpot > branchSpotProvider )
+	{
+		List< HierarchicalClusteringResult.Group< BranchSpotTree > > groups = hierarchicalClusteringResult.getGroups();
+		BulkTagAssignment tagAssignment = new BulkTagAssignment( model, noiseTrees.isEmpty() ? groups.size() : groups.size() + 1 );
+		Spot rootRef = model.getGraph().vertexRef();
+		try
+		{
+			for ( int i = 0; i <= groups.size(); i++ )
 			{
-				BranchSpot rootBranchSpot = branchSpotProvider.apply( tree );
-				Spot rootSpot = model.getBranchGraph().getFirstLinkedVertex( rootBranchSpot, model.getGraph().vertexRef() );
-				if ( rootSpot == null )
-					continue;
-				ModelGraph modelGraph = model.getGraph();
-				DepthFirstIterator< Spot, Link > iterator = new DepthFirstIterator<>( rootSpot, modelGraph );
-				iterator.forEachRemaining( spot -> {
-					if ( spot.getTimepoint() < tree.getStartTimepoint() )
-						return;
-					if ( spot.getTimepoint() > tree.getEndTimepoint() )
-						return;
-					TagSetUtils.tagSpotAndIncomingEdges( model, spot, tagSet, tag );
-				} );
+				final int tagIndex = i;
+				Collection< BranchSpotTree > trees = i < groups.size() ? groups.get( i ).getObjects() : noiseTrees;
+				logger.debug( "Collecting tag assignments for class {}, which has {} trees", i, trees.size() );
+				for ( BranchSpotTree tree : trees )
+					forEachSpot( model, tree, branchSpotProvider.apply( tree ), rootRef,
+							spot -> tagAssignment.addSpotAndIncomingEdges( tagIndex, spot ) );
 			}
 		}
-		return tagSetName;
+		finally
+		{
+			model.getGraph().releaseRef( rootRef );
+		}
+		return tagAssignment;
+	}
+
+	/**
+	 * Gets the given lineage trees that are not contained in any group of the given result, i.e. the lineage trees that
+	 * {@link ClusteringMethod#HDBSCAN} classifies as noise.
+	 */
+	private static List< BranchSpotTree > getNoiseTrees( final HierarchicalClusteringResult< BranchSpotTree > hierarchicalClusteringResult,
+			final List< BranchSpotTree > trees )
+	{
+		Set< BranchSpotTree > groupedTrees = new HashSet<>();
+		for ( HierarchicalClusteringResult.Group< BranchSpotTree > group : hierarchicalClusteringResult.getGroups() )
+			groupedTrees.addAll( group.getObjects() );
+		return trees.stream().filter( tree -> !groupedTrees.contains( tree ) ).collect( Collectors.toList() );
+	}
+
+	/**
+	 * Performs the given action for each spot of the given tree between its start and end timepoint.
+	 */
+	private static void forEachSpot( final Model model, final BranchSpotTree tree, final BranchSpot rootBranchSpot, final Spot rootRef,
+			final Consumer< Spot > action )
+	{
+		if ( rootBranchSpot == null )
+			return;
+		Spot rootSpot = model.getBranchGraph().getFirstLinkedVertex( rootBranchSpot, rootRef );
+		if ( rootSpot == null )
+			return;
+		DepthFirstIteration.forRoot( model.getGraph(), rootSpot ).forEach( iterationStep -> {
+			if ( !iterationStep.isFirstVisit() )
+				return;
+			Spot spot = iterationStep.node();
+			if ( spot.getTimepoint() >= tree.getEndTimepoint() )
+				iterationStep.truncate(); // no spot after the end timepoint belongs to the tree
+			if ( spot.getTimepoint() < tree.getStartTimepoint() || spot.getTimepoint() > tree.getEndTimepoint() )
+				return;
+			action.accept( spot );
+		} );
 	}
 
 	private List< BranchSpotTree > getRoots()
@@ -406,6 +781,37 @@ public class ClusterLineagesController
 		this.numberOfClusters = numberOfClusters;
 	}
 
+	/**
+	 * Sets the minimum number of lineage trees in a cluster. Only used by clustering methods, which determine the number of clusters themselves, i.e. {@link ClusteringMethod#HDBSCAN}.
+	 * @param minClusterSize the minimum cluster size
+	 */
+	public void setMinClusterSize( final int minClusterSize )
+	{
+		this.minClusterSize = minClusterSize;
+	}
+
+	/**
+	 * Sets the number of local worker processes, in which the distance matrix is computed. If set to 0, the distance matrix is computed in this JVM.
+	 * @param numberOfWorkerProcesses the number of worker processes
+	 * @see ShardedDistanceMatrix
+	 */
+	public void setNumberOfWorkerProcesses( final int numberOfWorkerProcesses )
+	{
+		this.numberOfWorkerProcesses = numberOfWorkerProcesses;
+	}
+
+	/**
+	 * Sets the number of lineage trees, from which on clustering methods that produce a flat partition, i.e. {@link ClusteringMethod#K_MEDOIDS}
+	 * and {@link ClusteringMethod#HDBSCAN}, store the distances in a {@link TriangularDistanceCache} instead of the full distance matrix.
+	 * This reduces the memory requirement of the distances to a quarter. Distances are always computed as a matrix, if external projects or
+	 * worker processes are used.
+	 * @param minTreesForTriangularDistances the minimum number of lineage trees
+	 */
+	void setMinTreesForTriangularDistances( final int minTreesForTriangularDistances )
+	{
+		this.minTreesForTriangularDistances = minTreesForTriangularDistances;
+	}
+
 	public void setShowDendrogram( final boolean showDendrogram )
 	{
 		this.showDendrogram = showDendrogram;
@@ -416,6 +822,8 @@ public class ClusterLineagesController
 		this.addTagSetToExternalProjects = addTagSetToExternalProjects;
 		MamutProject mamutProject = referenceProjectModel.getProject();
 		externalProjects.setProjects( projects, mamutProject == null ? null : mamutProject.getProjectRoot() );
+		// NB: the cached trees of the external projects may belong to project models that have been reloaded or closed
+		distanceCache = null;
 	}
 
 	public List< String > getFeedback()
@@ -429,13 +837,20 @@ public class ClusterLineagesController
 		}
 
 		int roots = findCommonRootNames().size();
-		if ( numberOfClusters > roots )
+		if ( clusteringMethod.usesNumberOfClusters() && numberOfClusters > roots )
 		{
 			String message =
 					"Number of clusters (" + numberOfClusters + ") must not be greater than the number of valid roots (" + roots + ").";
 			feedback.add( message );
 			logger.debug( message );
 		}
+		if ( !clusteringMethod.usesNumberOfClusters() && ( minClusterSize < 2 || minClusterSize > roots ) )
+		{
+			String message = "Minimum cluster size (" + minClusterSize
+					+ ") must be at least 2 and must not be greater than the number of valid roots (" + roots + ").";
+			feedback.add( message );
+			logger.debug( message );
+		}
 		if ( cropCriterion.equals( CropCriteria.NUMBER_OF_SPOTS ) )
 			feedback.addAll( checkNumberOfSpots() );
 		feedback.addAll( externalProjects.getFailingProjectMessages() );
@@ -450,15 +865,17 @@ public class ClusterLineagesController
 	private String getTagSetName()
 	{
 		String prefix = externalProjects.isEmpty() ? "" : "Average ";
-		return prefix + "Hierarchical clustering of lineages"
+		String clusters = clusteringMethod.usesNumberOfClusters() ? "clusters: " + numberOfClusters : "min. size: " + minClusterSize;
+		String method = clusteringMethod.isHierarchical() ? "Hierarchical clustering" : clusteringMethod.getName() + " clustering";
+		return prefix + method + " of lineages"
 				+ " ("
 				+ cropCriterion.getNameShort()
 				+ ": "
 				+ cropStart
 				+ "-"
 				+ cropEnd
-				+ ", clusters: "
-				+ numberOfClusters
+				+ ", "
+				+ clusters
 				+ ", min. div: "
 				+ minCellDivisions
 				+ ") ";
@@ -507,6 +924,9 @@ public class ClusterLineagesController
 
 	public void close()
 	{
+		referenceModel.getGraph().removeGraphListener( modelEditListener );
+		referenceModel.getGraph().removeGraphChangeListener( modelEditListener );
+		distanceCache = null;
 		externalProjects.close();
 	}
 
@@ -514,4 +934,85 @@ public class ClusterLineagesController
 	{
 		return referenceProjectModel.getProjectName();
 	}
+
+	/**
+	 * The lineage trees of all projects, their distance matrix and the dendrograms computed from it, for the settings described by the key.
+	 */
+	private static class DistanceCache
+	{
+		private final List< Object > key;
+
+		private final List< ClusterableProject > projects;
+
+		private final double[][] distances;
+
+		private final Map< ClusteringMethod, Cluster > dendrograms = new EnumMap<>( ClusteringMethod.class );
+
+		private DistanceCache( final List< Object > key, final List< ClusterableProject > projects, final double[][] distances )
+		{
+			this.key = key;
+			this.projects = projects;
+			this.distances = distances;
+		}
+
+		/**
+		 * Gets the dendrogram of the distance matrix for the linkage strategy of the given hierarchical clustering method. It is computed
+		 * on the first call per linkage strategy. The dendrogram must not be modified.
+		 */
+		private synchronized Cluster getDendrogram( final ClusteringMethod clusteringMethod )
+		{
+			return dendrograms.computeIfAbsent( clusteringMethod,
+					method -> HierarchicalClusteringUtils.performClustering( distances, method.getLinkageStrategy() ) );
+		}
+	}
+
+	/**
+	 * Counts the edits of the reference model graph, since cached lineage trees and distances are not valid anymore after an edit.
+	 */
+	private static class ModelEditListener implements GraphListener< Spot, Link >, GraphChangeListener
+	{
+		private volatile long modifications = 0;
+
+		private void modified()
+		{
+			// NB: graph events are sent by the thread that holds the write lock, thus there is only one writer at a time
+			modifications++;
+		}
+
+		@Override
+		public void graphRebuilt()
+		{
+			modified();
+		}
+
+		@Override
+		public void vertexAdded( final Spot vertex )
+		{
+			modified();
+		}
+
+		@Override
+		public void vertexRemoved( final Spot vertex )
+		{
+			modified();
+		}
+
+		@Override
+		public void edgeAdded( final Link edge )
+		{
+			modified();
+		}
+
+		@Override
+		public void edgeRemoved( final Link edge )
+		{
+			modified();
+		}
+
+		@Override
+		public void graphChanged()
+		{
+			modified();
+		}
+	}
 }
@@ -39,7 +39,9 @@ public enum ClusteringMethod implements HasName
 {
 	AVERAGE_LINKAGE( "Average linkage", new AverageLinkageUPGMAStrategy() ),
 	SINGLE_LINKAGE( "Single Linkage", new SingleLinkageStrategy() ),
-	COMPLETE_LINKAGE( "Complete Linkage", new CompleteLinkageStrategy() );
+	COMPLETE_LINKAGE( "Complete Linkage", new CompleteLinkageStrategy() ),
+	K_MEDOIDS( "k-medoids (FasterPAM)", null ),
+	HDBSCAN( "HDBSCAN", null );
 
 	private final String name;
 
@@ -64,8 +66,35 @@ public enum ClusteringMethod implements HasName
 		throw new NoSuchElementException();
 	}
 
+	/**
+	 * Gets the linkage strategy of this clustering method.
+	 *
+	 * @return the linkage strategy or {@code null}, if this clustering method is not hierarchical
+	 */
 	public LinkageStrategy getLinkageStrategy()
 	{
 		return linkageStrategy;
 	}
+
+	/**
+	 * Returns whether this clustering method builds a hierarchy by linking clusters.
+	 *
+	 * @return {@code true}, if this method is a hierarchical clustering method, {@code false} otherwise
+	 */
+	public boolean isHierarchical()
+	{
+		return linkageStrategy != null;
+	}
+
+	/**
+	 * Returns whether this clustering method requires the number of clusters to be specified.
+	 * <br>
+	 * {@link #HDBSCAN} determines the number of clusters itself and uses a minimum cluster size instead.
+	 *
+	 * @return {@code true}, if this method requires the number of clusters, {@code false} otherwise
+	 */
+	public boolean usesNumberOfClusters()
+	{
+		return this != HDBSCAN;
+	}
 }
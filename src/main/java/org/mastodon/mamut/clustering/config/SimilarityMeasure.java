@@ -39,19 +39,19 @@ import org.mastodon.mamut.util.ToDoubleTriFunction;
 public enum SimilarityMeasure implements HasName
 {
 	NORMALIZED_ZHANG_DIFFERENCE( "Normalized Zhang Tree Distance", TreeDistances::normalizedDistance,
-			TreeDistances.LOCAL_ABSOLUTE_COST_FUNCTION
+			TreeDistances::normalizedDistanceLowerBound, TreeDistances.LOCAL_ABSOLUTE_COST_FUNCTION
 	),
 	NORMALIZED_ZHANG_DIFFERENCE_WITH_LOCAL_NORMALIZATION( "Normalized Zhang Tree Distance (with additional local normalization)",
-			TreeDistances::normalizedDistance, TreeDistances.LOCAL_NORMALIZED_COST_FUNCTION
+			TreeDistances::normalizedDistance, TreeDistances::normalizedDistanceLowerBound, TreeDistances.LOCAL_NORMALIZED_COST_FUNCTION
 	),
 	PER_BRANCH_ZHANG_DISTANCE( "Per Branch Zhang Tree Distance", TreeDistances::averageDistance,
-			TreeDistances.LOCAL_ABSOLUTE_COST_FUNCTION
+			TreeDistances::averageDistanceLowerBound, TreeDistances.LOCAL_ABSOLUTE_COST_FUNCTION
 	),
 	ZHANG_DISTANCE( "Zhang Tree Distance", ZhangUnorderedTreeEditDistance::distance,
-			TreeDistances.LOCAL_ABSOLUTE_COST_FUNCTION
+			TreeDistances::distanceLowerBound, TreeDistances.LOCAL_ABSOLUTE_COST_FUNCTION
 	),
 	ZHANG_DISTANCE_WITH_LOCAL_NORMALIZATION( "Zhang Tree Distance (with additional local normalization)",
-			ZhangUnorderedTreeEditDistance::distance, TreeDistances.LOCAL_NORMALIZED_COST_FUNCTION
+			ZhangUnorderedTreeEditDistance::distance, TreeDistances::distanceLowerBound, TreeDistances.LOCAL_NORMALIZED_COST_FUNCTION
 	);
 
 	private final String name;
@@ -59,14 +59,20 @@ public enum SimilarityMeasure implements HasName
 	private final ToDoubleQuadFunction< Tree< Double >, Tree< Double >, ToDoubleTriFunction< Double, Double, Double >,
 			Double > distanceFunction;
 
+	private final ToDoubleQuadFunction< Tree< Double >, Tree< Double >, ToDoubleTriFunction< Double, Double, Double >,
+			Double > lowerBoundFunction;
+
 	private final ToDoubleTriFunction< Double, Double, Double > costFunctionWithScale;
 
 	SimilarityMeasure( final String name, final ToDoubleQuadFunction< Tree< Double >, Tree< Double >,
 			ToDoubleTriFunction< Double, Double, Double >, Double > distanceFunction,
+			final ToDoubleQuadFunction< Tree< Double >, Tree< Double >, ToDoubleTriFunction< Double, Double, Double >,
+					Double > lowerBoundFunction,
 			final ToDoubleTriFunction< Double, Double, Double > costFunctionWithScale )
 	{
 		this.name = name;
 		this.distanceFunction = distanceFunction;
+		this.lowerBoundFunction = lowerBoundFunction;
 		this.costFunctionWithScale = costFunctionWithScale;
 	}
 
@@ -84,6 +90,15 @@ public enum SimilarityMeasure implements HasName
 		return distanceFunction.applyAsDouble( tree1, tree2, costFunctionWithScale, scale );
 	}
 
+	/**
+	 * Computes a lower bound of {@link #compute(Tree, Tree, Double)} in linear time of the tree sizes. Can be used to skip the computation
+	 * of the distance, if the lower bound already exceeds a distance of interest.
+	 */
+	public double computeLowerBound( final Tree< Double > tree1, final Tree< Double > tree2, final Double scale )
+	{
+		return lowerBoundFunction.applyAsDouble( tree1, tree2, costFunctionWithScale, scale );
+	}
+
 	public String getName()
 	{
 		return name;
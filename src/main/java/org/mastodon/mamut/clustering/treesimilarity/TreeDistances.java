@@ -107,6 +107,105 @@ public class TreeDistances
 		return ZhangUnorderedTreeEditDistance.distance( tree1, tree2, costFunction, scale ) / denominator;
 	}
 
+	/**
+	 * Calculates a lower bound of the Zhang edit distance between two labeled unordered trees in linear time.
+	 * <br>
+	 * In an edit script, each node of {@code tree1} is either deleted or mapped to a node of {@code tree2} and each node of {@code tree2} is
+	 * either inserted or mapped. The lower bound minimizes the resulting costs over all possible totals of mapped attributes without
+	 * considering the structure of the trees:
+	 * <ul>
+	 *     <li>{@link #LOCAL_NORMALIZED_COST_FUNCTION}: each insertion and deletion costs 1, thus the distance is at least the difference
+	 *     of the numbers of nodes.</li>
+	 *     <li>{@link #LOCAL_ABSOLUTE_COST_FUNCTION}: the distance is at least the minimum of
+	 *     {@code |A - scale * B| + (D - A) + (I - B)} over all {@code 0 <= A <= D} and {@code 0 <= B <= I}, where {@code D} and {@code I}
+	 *     are the attribute sums of {@code tree1} and {@code tree2} and {@code A} and {@code B} are the sums of their mapped attributes.
+	 *     The scale factor only applies to the mapped attributes of {@code tree2}, since the Zhang edit distance of two non-empty trees
+	 *     charges the unscaled attribute for deleting or inserting a node. If one of the trees is empty, the distance is
+	 *     {@code scale * D} or {@code scale * I}, which is returned as the exact lower bound.</li>
+	 *     <li>any other cost function: 0.</li>
+	 * </ul>
+	 *
+	 * @param tree1 Tree object representing the first tree.
+	 * @param tree2 Tree object representing the second tree.
+	 * @param costFunction mandatory cost function.
+	 * @param scale scaling factor for the cost function, which is applied to the second tree's attributes.
+	 *
+	 * @return A lower bound of the Zhang edit distance between tree1 and tree2.
+	 */
+	public static double distanceLowerBound( @Nullable final Tree< Double > tree1, final @Nullable Tree< Double > tree2,
+			final ToDoubleTriFunction< Double, Double, Double > costFunction, final Double scale )
+	{
+		if ( costFunction == LOCAL_NORMALIZED_COST_FUNCTION )
+			return Math.abs( TreeUtils.size( tree1 ) - TreeUtils.size( tree2 ) );
+		if ( costFunction != LOCAL_ABSOLUTE_COST_FUNCTION )
+			return 0;
+		double d = attributeSum( tree1 );
+		double i = attributeSum( tree2 );
+		double s = scale;
+		// NB: the distance to an empty tree scales all attributes of the other tree
+		if ( tree1 == null || tree2 == null )
+			return s * ( d + i );
+		// NB: the costs are piecewise linear in A and B, thus the minimum is at a vertex of one of the two pieces,
+		// which are separated by the line A = s * B
+		double lowerBound = Math.min( absoluteCosts( 0, 0, d, i, s ), absoluteCosts( d, 0, d, i, s ) );
+		lowerBound = Math.min( lowerBound, Math.min( absoluteCosts( 0, i, d, i, s ), absoluteCosts( d, i, d, i, s ) ) );
+		if ( s * i <= d )
+			lowerBound = Math.min( lowerBound, absoluteCosts( s * i, i, d, i, s ) );
+		if ( s > 0 && d / s <= i )
+			lowerBound = Math.min( lowerBound, absoluteCosts( d, d / s, d, i, s ) );
+		return Math.max( 0, lowerBound );
+	}
+
+	/**
+	 * Calculates a lower bound of the {@link #normalizedDistance(Tree, Tree, ToDoubleTriFunction, Object) normalized Zhang edit distance}
+	 * in linear time.
+	 *
+	 * @see #distanceLowerBound(Tree, Tree, ToDoubleTriFunction, Double)
+	 */
+	public static double normalizedDistanceLowerBound( @Nullable final Tree< Double > tree1, final @Nullable Tree< Double > tree2,
+			final ToDoubleTriFunction< Double, Double, Double > costFunction, final Double scale )
+	{
+		double denominator = ZhangUnorderedTreeEditDistance.distance( tree1, null, costFunction, scale )
+				+ ZhangUnorderedTreeEditDistance.distance( null, tree2, costFunction, scale );
+		if ( denominator == 0 )
+			return 0;
+		return distanceLowerBound( tree1, tree2, costFunction, scale ) / denominator;
+	}
+
+	/**
+	 * Calculates a lower bound of the {@link #averageDistance(Tree, Tree, ToDoubleTriFunction, Object) average Zhang edit distance}
+	 * in linear time.
+	 *
+	 * @see #distanceLowerBound(Tree, Tree, ToDoubleTriFunction, Double)
+	 */
+	public static double averageDistanceLowerBound( @Nullable final Tree< Double > tree1, final @Nullable Tree< Double > tree2,
+			final ToDoubleTriFunction< Double, Double, Double > costFunction, final Double scale )
+	{
+		double denominator = ( double ) TreeUtils.size( tree1 ) + ( double ) TreeUtils.size( tree2 );
+		if ( denominator == 0 )
+			return 0;
+		return distanceLowerBound( tree1, tree2, costFunction, scale ) / denominator;
+	}
+
+	private static double attributeSum( @Nullable final Tree< Double > tree )
+	{
+		if ( tree == null )
+			return 0;
+		double sum = 0;
+		for ( Tree< Double > subtree : TreeUtils.getAllChildren( tree ) )
+			sum += subtree.getAttribute();
+		return sum;
+	}
+
+	/**
+	 * Costs of mapping nodes with the attribute sums {@code a} and {@code b}, deleting the remaining attribute sum {@code d - a} and
+	 * inserting the remaining attribute sum {@code i - b}.
+	 */
+	private static double absoluteCosts( final double a, final double b, final double d, final double i, final double s )
+	{
+		return Math.abs( a - s * b ) + ( d - a ) + ( i - b );
+	}
+
 	/**
 	 * @see <a href="https://gitlab.inria.fr/mosaic/treex/-/blob/master/test/test_analysis/test_zhang_labeled_trees.py?ref_type=heads#L99">treex library</a>
 	 */
@@ -35,6 +35,7 @@ import org.mastodon.mamut.feature.branch.BranchSpotFeatureUtils;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.mamut.model.branch.BranchLink;
 import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.util.BranchGraphAncestryIndex;
 import org.mastodon.model.tag.TagSetStructure;
 import org.mastodon.util.DepthFirstIteration;
 import org.mastodon.util.TagSetUtils;
@@ -220,6 +221,18 @@ public class BranchSpotTree implements Tree< Double >, HasName
 		return depth.get();
 	}
 
+	/**
+	 * Like {@link #getGraphDepth()}, but looks up the depth in the given {@link BranchGraphAncestryIndex} of the branch graph instead of
+	 * traversing the ancestors of the branch spot.
+	 * @param ancestryIndex the index of the branch graph of the model of this BranchSpotTree
+	 * @return the depth of the branch spot in the branch graph
+	 */
+	public int getGraphDepth( final BranchGraphAncestryIndex ancestryIndex )
+	{
+		// NB: the branch spot itself is counted, i.e. roots have a graph depth of 1
+		return ancestryIndex.getDepth( getBranchSpot() ) + 1;
+	}
+
 	/**
 	 * Gets the duration of this BranchSpotTree.
 	 * It is the number of timepoints that are covered by this branch spot tree (inclusive).
@@ -33,6 +33,7 @@ import org.mastodon.mamut.clustering.config.HasName;
 import org.mastodon.mamut.clustering.config.SimilarityMeasure;
 import org.mastodon.mamut.clustering.ClusterLineagesController;
 import org.mastodon.mamut.clustering.config.CropCriteria;
+import org.mastodon.mamut.clustering.util.ClusterNumberEvaluation;
 import org.scijava.ItemVisibility;
 import org.scijava.command.DynamicCommand;
 import org.scijava.plugin.Parameter;
@@ -43,8 +44,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.StringJoiner;
 import java.util.stream.Collectors;
 
@@ -54,6 +57,12 @@ public class ClusterLineagesCommand extends DynamicCommand
 
 	private static final float WIDTH = 18.5f;
 
+	private static final String NO_EXISTING_CLUSTERING = "None (cluster all lineages)";
+
+	private static final int MIN_SUGGESTED_NUMBER_OF_CLUSTERS = 2;
+
+	private static final int MAX_SUGGESTED_NUMBER_OF_CLUSTERS = 50;
+
 	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
 
 	@SuppressWarnings("unused")
@@ -86,6 +95,14 @@ public class ClusterLineagesCommand extends DynamicCommand
 	@Parameter( label = "Number of clusters", min = "2", callback = "update" )
 	private int numberOfClusters;
 
+	@SuppressWarnings( "unused" )
+	@Parameter( label = "<html><body>Suggest number<br>of clusters</body></html>", description = "Evaluates silhouette score, gap statistic and stability for different numbers of clusters and sets the number of clusters with the highest silhouette score.", callback = "suggestNumberOfClusters" )
+	private Button suggestNumberOfClusters;
+
+	@SuppressWarnings( "unused" )
+	@Parameter( visibility = ItemVisibility.MESSAGE, required = false, persist = false, label = " " )
+	private String numberOfClustersFeedback;
+
 	@SuppressWarnings("unused")
 	@Parameter( label = "<html><body>Minimum number<br>of cell divisions</body></html>", min = "0", description = "Only include lineage trees with at least the number of divisions specified here.", callback = "update" )
 	private int numberOfCellDivisions;
@@ -95,9 +112,21 @@ public class ClusterLineagesCommand extends DynamicCommand
 	public String similarityMeasure = SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE.getName();
 
 	@SuppressWarnings("all")
-	@Parameter( label = "<html><body>Linkage strategy for<br>hierarchical clustering</body></html>", initializer = "initClusteringMethodChoices", callback = "update" )
+	@Parameter( label = "<html><body>Clustering method<br>(linkage strategy for<br>hierarchical clustering)</body></html>", initializer = "initClusteringMethodChoices", callback = "update" )
 	private String clusteringMethod = ClusteringMethod.AVERAGE_LINKAGE.getName();
 
+	@SuppressWarnings("unused")
+	@Parameter( label = "<html><body>Minimum cluster size<br>(HDBSCAN only)</body></html>", min = "2", description = "HDBSCAN determines the number of clusters itself. Lineage trees that do not belong to a cluster of at least this size are not tagged.", callback = "update" )
+	private int minClusterSize = 2;
+
+	@SuppressWarnings( "unused" )
+	@Parameter( label = "<html><body>Worker processes for<br>distance computation</body></html>", min = "0", description = "Computes the distances between the lineage trees in the given number of separate local Java processes, which reduces the memory load of this Fiji instance for very large numbers of lineage trees. If set to 0, the distances are computed within this Fiji instance.", callback = "update" )
+	private int numberOfWorkerProcesses = 0;
+
+	@SuppressWarnings( "all" )
+	@Parameter( label = "<html><body>Add new lineages to<br>existing clustering</body></html>", description = "Assigns lineages, which are not yet completely tagged in the selected tag set, to the nearest class of this tag set instead of clustering all lineages again.", initializer = "initExistingClusteringChoices", callback = "update", persist = false )
+	private String existingClustering = NO_EXISTING_CLUSTERING;
+
 	@Parameter( visibility = ItemVisibility.MESSAGE, required = false, persist = false, label = "<html><body>Current project</body></html>", initializer = "initProjectName" )
 	private String currentProjectName;
 
@@ -132,7 +161,10 @@ public class ClusterLineagesCommand extends DynamicCommand
 	public void run()
 	{
 		// NB: This method is called, when the user presses the "OK" button.
-		createTagSet();
+		if ( NO_EXISTING_CLUSTERING.equals( existingClustering ) )
+			createTagSet();
+		else
+			addLineagesToClustering();
 		controller.close();
 	}
 
@@ -148,6 +180,8 @@ public class ClusterLineagesCommand extends DynamicCommand
 		controller.setInputParams( CropCriteria.getByName( cropCriterion ), start, end, numberOfCellDivisions );
 		controller.setComputeParams(
 				SimilarityMeasure.getByName( similarityMeasure ), ClusteringMethod.getByName( clusteringMethod ), numberOfClusters );
+		controller.setMinClusterSize( minClusterSize );
+		controller.setNumberOfWorkerProcesses( numberOfWorkerProcesses );
 		controller.setShowDendrogram( showDendrogram );
 		controller.setExternalProjects( projects, addTagSetToExternalProjects );
 	}
@@ -162,6 +196,49 @@ public class ClusterLineagesCommand extends DynamicCommand
 		paramFeedback += "</font></body></html>";
 	}
 
+	@SuppressWarnings( "unused" )
+	private void suggestNumberOfClusters()
+	{
+		updateParams();
+		try
+		{
+			ClusterNumberEvaluation evaluation =
+					controller.evaluateNumberOfClusters( MIN_SUGGESTED_NUMBER_OF_CLUSTERS, MAX_SUGGESTED_NUMBER_OF_CLUSTERS );
+			if ( evaluation == null )
+				return;
+			numberOfClusters = evaluation.getRecommendedClusterNumber();
+			numberOfClustersFeedback = getNumberOfClustersFeedback( evaluation );
+			update();
+		}
+		catch ( IllegalArgumentException e )
+		{
+			numberOfClustersFeedback = "<html><body width=" + WIDTH + "cm><font color=red>" + e.getMessage() + "</font></body></html>";
+			logger.debug( "Could not suggest number of clusters: {}", e.getMessage() );
+		}
+	}
+
+	private static String getNumberOfClustersFeedback( final ClusterNumberEvaluation evaluation )
+	{
+		StringBuilder feedback = new StringBuilder( "<html><body width=" + WIDTH + "cm>" );
+		feedback.append( "Suggested number of clusters: " ).append( evaluation.getRecommendedClusterNumber() );
+		feedback.append( " (gap statistic: " ).append( evaluation.getGapClusterNumber() ).append( ")" );
+		feedback.append( "<table><tr><th>Clusters</th><th>Silhouette</th><th>Gap</th><th>Stability</th></tr>" );
+		for ( int k : evaluation.getClusterNumbers() )
+		{
+			feedback.append( "<tr><td>" ).append( k ).append( "</td>" );
+			feedback.append( "<td>" ).append( format( evaluation.getSilhouette( k ) ) ).append( "</td>" );
+			feedback.append( "<td>" ).append( format( evaluation.getGap( k ) ) ).append( "</td>" );
+			feedback.append( "<td>" ).append( format( evaluation.getStability( k ) ) ).append( "</td></tr>" );
+		}
+		feedback.append( "</table></body></html>" );
+		return feedback.toString();
+	}
+
+	private static String format( final double value )
+	{
+		return Double.isNaN( value ) ? "n/a" : String.format( Locale.US, "%.3f", value );
+	}
+
 	@SuppressWarnings("unused")
 	private void createTagSet()
 	{
@@ -189,6 +266,22 @@ public class ClusterLineagesCommand extends DynamicCommand
 
 	}
 
+	private void addLineagesToClustering()
+	{
+		updateParams();
+		try
+		{
+			int addedLineages = controller.addLineagesToClustering( existingClustering );
+			Notification.showSuccess( "Lineages added to clustering",
+					"Assigned " + addedLineages + " new or changed lineage trees to the classes of tag set: " + existingClustering );
+		}
+		catch ( IllegalArgumentException | IllegalStateException e )
+		{
+			Notification.showError( "Error during lineage clustering", e.getMessage() );
+			logger.error( "Error during lineage clustering: {}", e.getMessage() );
+		}
+	}
+
 	@Override
 	public void cancel()
 	{
@@ -213,6 +306,15 @@ public class ClusterLineagesCommand extends DynamicCommand
 		getInfo().getMutableInput( "clusteringMethod", String.class ).setChoices( enumNamesAsList( ClusteringMethod.values() ) );
 	}
 
+	@SuppressWarnings( "unused" )
+	private void initExistingClusteringChoices()
+	{
+		List< String > choices = new ArrayList<>();
+		choices.add( NO_EXISTING_CLUSTERING );
+		choices.addAll( controller.getTagSetNames() );
+		getInfo().getMutableInput( "existingClustering", String.class ).setChoices( choices );
+	}
+
 	@SuppressWarnings( "unused" )
 	private void initProjectName()
 	{
@@ -0,0 +1,466 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import com.apporiented.algorithm.clustering.Cluster;
+import net.imglib2.parallel.Parallelization;
+import org.apache.commons.lang3.time.StopWatch;
+import org.mastodon.mamut.clustering.config.ClusteringMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates a range of cluster numbers for a given distance matrix and recommends the number of clusters.
+ * <br>
+ * The following scores are computed for each number of clusters {@code k}:
+ * <ul>
+ *     <li>Silhouette score: the mean silhouette width of all objects. Higher is better.</li>
+ *     <li>Gap statistic: the difference between the expected log within-cluster dispersion of reference data without cluster structure and the log within-cluster dispersion of the data.
+ *     Since only distances are known, the reference data are random permutations of the pairwise distances. Higher is better.</li>
+ *     <li>Stability: the mean adjusted Rand index between the clustering of all objects and the clusterings of random subsamples of the objects. Higher is better.</li>
+ * </ul>
+ * The recommended number of clusters is the one with the highest silhouette score.
+ * <br>
+ * The hierarchical clustering of each distance matrix (the data, each reference and each subsample) is only computed once and then cut into the different numbers of clusters.
+ * All distance matrices are processed in parallel.
+ */
+public class ClusterNumberEvaluation
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/**
+	 * The default number of reference distance matrices for the gap statistic and of subsamples for the stability.
+	 */
+	public static final int DEFAULT_REPLICATES = 10;
+
+	/**
+	 * The fraction of objects contained in each subsample for the stability.
+	 */
+	public static final double SUBSAMPLE_FRACTION = 0.8;
+
+	private static final long SEED = 42;
+
+	private final int minClusterNumber;
+
+	private final double[] silhouette;
+
+	private final double[] gap;
+
+	private final double[] gapStandardError;
+
+	private final double[] stability;
+
+	private ClusterNumberEvaluation( final int minClusterNumber, final int maxClusterNumber )
+	{
+		int size = maxClusterNumber - minClusterNumber + 1;
+		this.minClusterNumber = minClusterNumber;
+		this.silhouette = new double[ size ];
+		this.gap = new double[ size ];
+		this.gapStandardError = new double[ size ];
+		this.stability = new double[ size ];
+	}
+
+	/**
+	 * Evaluates the numbers of clusters between {@code minClusterNumber} and {@code maxClusterNumber} (both inclusive) using {@link #DEFAULT_REPLICATES} replicates.
+	 *
+	 * @param distances the symmetric distance matrix with zero diagonal
+	 * @param clusteringMethod the clustering method. {@link ClusteringMethod#HDBSCAN} is not supported, since it determines the number of clusters itself.
+	 * @param minClusterNumber the smallest number of clusters to evaluate, at least 2
+	 * @param maxClusterNumber the largest number of clusters to evaluate, at most the number of objects - 1
+	 * @return the evaluation
+	 */
+	public static ClusterNumberEvaluation evaluate( final double[][] distances, final ClusteringMethod clusteringMethod,
+			final int minClusterNumber, final int maxClusterNumber )
+	{
+		return evaluate( distances, clusteringMethod, minClusterNumber, maxClusterNumber, DEFAULT_REPLICATES );
+	}
+
+	/**
+	 * Evaluates the numbers of clusters between {@code minClusterNumber} and {@code maxClusterNumber} (both inclusive).
+	 *
+	 * @param distances the symmetric distance matrix with zero diagonal
+	 * @param clusteringMethod the clustering method. {@link ClusteringMethod#HDBSCAN} is not supported, since it determines the number of clusters itself.
+	 * @param minClusterNumber the smallest number of clusters to evaluate, at least 2
+	 * @param maxClusterNumber the largest number of clusters to evaluate, at most the number of objects - 1
+	 * @param replicates the number of reference distance matrices for the gap statistic and of subsamples for the stability
+	 * @return the evaluation
+	 */
+	public static ClusterNumberEvaluation evaluate( final double[][] distances, final ClusteringMethod clusteringMethod,
+			final int minClusterNumber, final int maxClusterNumber, final int replicates )
+	{
+		return evaluate( distances, null, clusteringMethod, minClusterNumber, maxClusterNumber, replicates );
+	}
+
+	/**
+	 * Evaluates the numbers of clusters between {@code minClusterNumber} and {@code maxClusterNumber} (both inclusive) using {@link #DEFAULT_REPLICATES} replicates.
+	 * <br>
+	 * Like {@link #evaluate(double[][], ClusteringMethod, int, int)}, but cuts the given precomputed dendrogram of the data instead of computing it anew.
+	 *
+	 * @param distances the symmetric distance matrix with zero diagonal
+	 * @param dendrogram the root of the dendrogram of the distance matrix created by {@link HierarchicalClusteringUtils#performClustering(double[][], com.apporiented.algorithm.clustering.LinkageStrategy)}
+	 * using the linkage strategy of the clustering method, or {@code null} to compute it. Ignored, if the clustering method is not hierarchical. The dendrogram is not modified.
+	 * @param clusteringMethod the clustering method. {@link ClusteringMethod#HDBSCAN} is not supported, since it determines the number of clusters itself.
+	 * @param minClusterNumber the smallest number of clusters to evaluate, at least 2
+	 * @param maxClusterNumber the largest number of clusters to evaluate, at most the number of objects - 1
+	 * @return the evaluation
+	 */
+	public static ClusterNumberEvaluation evaluate( final double[][] distances, final Cluster dendrogram,
+			final ClusteringMethod clusteringMethod, final int minClusterNumber, final int maxClusterNumber )
+	{
+		return evaluate( distances, dendrogram, clusteringMethod, minClusterNumber, maxClusterNumber, DEFAULT_REPLICATES );
+	}
+
+	private static ClusterNumberEvaluation evaluate( final double[][] distances, final Cluster dendrogram,
+			final ClusteringMethod clusteringMethod, final int minClusterNumber, final int maxClusterNumber, final int replicates )
+	{
+		if ( !clusteringMethod.usesNumberOfClusters() )
+			throw new IllegalArgumentException(
+					"Clustering method " + clusteringMethod.getName() + " determines the number of clusters itself." );
+		if ( minClusterNumber < 2 )
+			throw new IllegalArgumentException( "minimum number of clusters (" + minClusterNumber + ") must be at least 2." );
+		if ( maxClusterNumber < minClusterNumber || maxClusterNumber >= distances.length )
+			throw new IllegalArgumentException( "maximum number of clusters (" + maxClusterNumber + ") must be between "
+					+ minClusterNumber + " and the number of objects - 1 (" + ( distances.length - 1 ) + ")." );
+
+		StopWatch stopWatch = StopWatch.createStarted();
+		ClusterNumberEvaluation evaluation = new ClusterNumberEvaluation( minClusterNumber, maxClusterNumber );
+		List< Integer > clusterNumbers = IntStream.rangeClosed( minClusterNumber, maxClusterNumber ).boxed().collect( Collectors.toList() );
+		int size = clusterNumbers.size();
+
+		// data
+		IntFunction< int[] > partitions = partitions( distances, dendrogram, clusteringMethod );
+		int[][] labels = new int[ size ][];
+		double[] logDispersion = new double[ size ];
+		Parallelization.getTaskExecutor().forEach( clusterNumbers, k -> {
+			int index = k - minClusterNumber;
+			labels[ index ] = partitions.apply( k );
+			evaluation.silhouette[ index ] = silhouette( distances, labels[ index ], k );
+			logDispersion[ index ] = Math.log( dispersion( distances, labels[ index ], k ) );
+		} );
+
+		// gap statistic
+		double[][] referenceLogDispersion = new double[ replicates ][ size ];
+		// stability
+		double[][] adjustedRandIndex = new double[ replicates ][ size ];
+		List< Integer > replicateIndices = IntStream.range( 0, 2 * replicates ).boxed().collect( Collectors.toList() );
+		Parallelization.getTaskExecutor().forEach( replicateIndices, replicate -> {
+			Random random = new Random( SEED + replicate );
+			if ( replicate < replicates )
+			{
+				double[][] reference = permutedDistances( distances, random );
+				IntFunction< int[] > referencePartitions = partitions( reference, null, clusteringMethod );
+				for ( int index = 0; index < size; index++ )
+				{
+					int k = clusterNumbers.get( index );
+					referenceLogDispersion[ replicate ][ index ] = Math.log( dispersion( reference, referencePartitions.apply( k ), k ) );
+				}
+			}
+			else
+			{
+				int[] subsample = subsample( distances.length, random );
+				double[][] subsampleDistances = subDistances( distances, subsample );
+				IntFunction< int[] > subsamplePartitions = partitions( subsampleDistances, null, clusteringMethod );
+				for ( int index = 0; index < size; index++ )
+				{
+					int k = clusterNumbers.get( index );
+					if ( k >= subsample.length )
+					{
+						adjustedRandIndex[ replicate - replicates ][ index ] = Double.NaN; // too many clusters for the subsample
+						continue;
+					}
+					int[] subsampleLabels = subsamplePartitions.apply( k );
+					int[] dataLabels = new int[ subsample.length ];
+					for ( int i = 0; i < subsample.length; i++ )
+						dataLabels[ i ] = labels[ index ][ subsample[ i ] ];
+					adjustedRandIndex[ replicate - replicates ][ index ] = adjustedRandIndex( dataLabels, subsampleLabels );
+				}
+			}
+		} );
+		for ( int index = 0; index < size; index++ )
+		{
+			double mean = 0;
+			for ( int r = 0; r < replicates; r++ )
+				mean += referenceLogDispersion[ r ][ index ];
+			mean /= replicates;
+			double variance = 0;
+			double meanStability = 0;
+			for ( int r = 0; r < replicates; r++ )
+			{
+				variance += Math.pow( referenceLogDispersion[ r ][ index ] - mean, 2 );
+				meanStability += adjustedRandIndex[ r ][ index ];
+			}
+			variance /= replicates;
+			evaluation.gap[ index ] = mean - logDispersion[ index ];
+			evaluation.gapStandardError[ index ] = Math.sqrt( variance ) * Math.sqrt( 1 + 1d / replicates );
+			evaluation.stability[ index ] = meanStability / replicates;
+		}
+		stopWatch.stop();
+		logger.debug( "Evaluated {} numbers of clusters with {} replicates in {} ms. Recommended number of clusters: {}", size, replicates,
+				stopWatch.getTime(), evaluation.getRecommendedClusterNumber() );
+		return evaluation;
+	}
+
+	/**
+	 * Gets the evaluated numbers of clusters.
+	 *
+	 * @return the numbers of clusters in ascending order
+	 */
+	public int[] getClusterNumbers()
+	{
+		return IntStream.range( 0, silhouette.length ).map( index -> index + minClusterNumber ).toArray();
+	}
+
+	/**
+	 * Gets the silhouette score for the given number of clusters.
+	 *
+	 * @param clusterNumber the number of clusters
+	 * @return the silhouette score, between -1 and 1
+	 */
+	public double getSilhouette( final int clusterNumber )
+	{
+		return silhouette[ clusterNumber - minClusterNumber ];
+	}
+
+	/**
+	 * Gets the gap statistic for the given number of clusters.
+	 *
+	 * @param clusterNumber the number of clusters
+	 * @return the gap statistic
+	 */
+	public double getGap( final int clusterNumber )
+	{
+		return gap[ clusterNumber - minClusterNumber ];
+	}
+
+	/**
+	 * Gets the standard error of the gap statistic for the given number of clusters.
+	 *
+	 * @param clusterNumber the number of clusters
+	 * @return the standard error of the gap statistic
+	 */
+	public double getGapStandardError( final int clusterNumber )
+	{
+		return gapStandardError[ clusterNumber - minClusterNumber ];
+	}
+
+	/**
+	 * Gets the stability for the given number of clusters.
+	 *
+	 * @param clusterNumber the number of clusters
+	 * @return the mean adjusted Rand index, at most 1, or {@link Double#NaN}, if the number of clusters is too large for the subsamples
+	 */
+	public double getStability( final int clusterNumber )
+	{
+		return stability[ clusterNumber - minClusterNumber ];
+	}
+
+	/**
+	 * Gets the recommended number of clusters, i.e. the number of clusters with the highest silhouette score. Ties are resolved in favor of fewer clusters.
+	 *
+	 * @return the recommended number of clusters
+	 */
+	public int getRecommendedClusterNumber()
+	{
+		int best = 0;
+		for ( int index = 1; index < silhouette.length; index++ )
+			if ( silhouette[ index ] > silhouette[ best ] )
+				best = index;
+		return best + minClusterNumber;
+	}
+
+	/**
+	 * Gets the number of clusters recommended by the gap statistic, i.e. the smallest {@code k} with {@code gap(k) >= gap(k+1) - standardError(k+1)}.
+	 *
+	 * @return the number of clusters recommended by the gap statistic
+	 */
+	public int getGapClusterNumber()
+	{
+		for ( int index = 0; index < gap.length - 1; index++ )
+			if ( gap[ index ] >= gap[ index + 1 ] - gapStandardError[ index + 1 ] )
+				return index + minClusterNumber;
+		return gap.length - 1 + minClusterNumber;
+	}
+
+	private static IntFunction< int[] > partitions( final double[][] distances, final Cluster dendrogram,
+			final ClusteringMethod clusteringMethod )
+	{
+		if ( clusteringMethod.isHierarchical() )
+		{
+			// NB: the dendrogram is computed once (unless given) and cut into the different numbers of clusters
+			Cluster root = dendrogram != null ? dendrogram
+					: HierarchicalClusteringUtils.performClustering( distances, clusteringMethod.getLinkageStrategy() );
+			List< Cluster > sortedClusters = HierarchicalClusteringUtils.sortClusters( root );
+			return k -> HierarchicalClusteringUtils.getClusterLabels( root, sortedClusters, k, distances.length );
+		}
+		return k -> new FasterPam( DistanceFunction.of( distances ), distances.length, k ).cluster();
+	}
+
+	/**
+	 * Computes the mean silhouette width. Objects in singleton clusters have a silhouette width of 0.
+	 */
+	static double silhouette( final double[][] distances, final int[] labels, final int k )
+	{
+		int n = labels.length;
+		int[] clusterSizes = clusterSizes( labels, k );
+		double[] sums = new double[ k ];
+		double total = 0;
+		for ( int i = 0; i < n; i++ )
+		{
+			if ( clusterSizes[ labels[ i ] ] == 1 )
+				continue;
+			Arrays.fill( sums, 0 );
+			for ( int j = 0; j < n; j++ )
+				sums[ labels[ j ] ] += distances[ i ][ j ];
+			double a = sums[ labels[ i ] ] / ( clusterSizes[ labels[ i ] ] - 1 );
+			double b = Double.POSITIVE_INFINITY;
+			for ( int c = 0; c < k; c++ )
+				if ( c != labels[ i ] && clusterSizes[ c ] > 0 )
+					b = Math.min( b, sums[ c ] / clusterSizes[ c ] );
+			double max = Math.max( a, b );
+			if ( max > 0 && !Double.isInfinite( b ) )
+				total += ( b - a ) / max;
+		}
+		return total / n;
+	}
+
+	/**
+	 * Computes the within-cluster dispersion, i.e. the sum over all clusters of the sum of pairwise distances divided by twice the cluster size.
+	 */
+	static double dispersion( final double[][] distances, final int[] labels, final int k )
+	{
+		int[] clusterSizes = clusterSizes( labels, k );
+		double[] sums = new double[ k ];
+		for ( int i = 0; i < labels.length; i++ )
+			for ( int j = i + 1; j < labels.length; j++ )
+				if ( labels[ i ] == labels[ j ] )
+					sums[ labels[ i ] ] += distances[ i ][ j ];
+		double dispersion = 0;
+		for ( int c = 0; c < k; c++ )
+			if ( clusterSizes[ c ] > 0 )
+				dispersion += sums[ c ] / clusterSizes[ c ]; // NB: each pair is counted once, i.e. 2 * sum / (2 * size)
+		// NB: avoid log(0) for perfectly separated data
+		return Math.max( dispersion, Double.MIN_NORMAL );
+	}
+
+	/**
+	 * Computes the adjusted Rand index of two partitions of the same objects.
+	 */
+	static double adjustedRandIndex( final int[] labels1, final int[] labels2 )
+	{
+		int n = labels1.length;
+		int k1 = IntStream.of( labels1 ).max().orElse( 0 ) + 1;
+		int k2 = IntStream.of( labels2 ).max().orElse( 0 ) + 1;
+		long[][] contingency = new long[ k1 ][ k2 ];
+		for ( int i = 0; i < n; i++ )
+			contingency[ labels1[ i ] ][ labels2[ i ] ]++;
+		double index = 0;
+		double rows = 0;
+		double columns = 0;
+		long[] columnSums = new long[ k2 ];
+		for ( int a = 0; a < k1; a++ )
+		{
+			long rowSum = 0;
+			for ( int b = 0; b < k2; b++ )
+			{
+				index += pairs( contingency[ a ][ b ] );
+				rowSum += contingency[ a ][ b ];
+				columnSums[ b ] += contingency[ a ][ b ];
+			}
+			rows += pairs( rowSum );
+		}
+		for ( long columnSum : columnSums )
+			columns += pairs( columnSum );
+		double expected = rows * columns / pairs( n );
+		double max = ( rows + columns ) / 2;
+		if ( max == expected )
+			return 1;
+		return ( index - expected ) / ( max - expected );
+	}
+
+	private static double pairs( final long n )
+	{
+		return n * ( n - 1 ) / 2d;
+	}
+
+	private static int[] clusterSizes( final int[] labels, final int k )
+	{
+		int[] sizes = new int[ k ];
+		for ( int label : labels )
+			sizes[ label ]++;
+		return sizes;
+	}
+
+	private static double[][] permutedDistances( final double[][] distances, final Random random )
+	{
+		double[] upperTriangle = HierarchicalClusteringUtils.getUpperTriangle( distances );
+		for ( int i = upperTriangle.length - 1; i > 0; i-- )
+		{
+			int j = random.nextInt( i + 1 );
+			double tmp = upperTriangle[ i ];
+			upperTriangle[ i ] = upperTriangle[ j ];
+			upperTriangle[ j ] = tmp;
+		}
+		int n = distances.length;
+		double[][] reference = new double[ n ][ n ];
+		int index = 0;
+		for ( int i = 0; i < n; i++ )
+			for ( int j = i + 1; j < n; j++ )
+			{
+				reference[ i ][ j ] = upperTriangle[ index++ ];
+				reference[ j ][ i ] = reference[ i ][ j ];
+			}
+		return reference;
+	}
+
+	private static int[] subsample( final int n, final Random random )
+	{
+		List< Integer > indices = IntStream.range( 0, n ).boxed().collect( Collectors.toList() );
+		Collections.shuffle( indices, random );
+		int size = Math.max( 2, ( int ) Math.round( n * SUBSAMPLE_FRACTION ) );
+		return indices.subList( 0, size ).stream().mapToInt( Integer::intValue ).sorted().toArray();
+	}
+
+	private static double[][] subDistances( final double[][] distances, final int[] subsample )
+	{
+		double[][] result = new double[ subsample.length ][ subsample.length ];
+		for ( int i = 0; i < subsample.length; i++ )
+			for ( int j = 0; j < subsample.length; j++ )
+				result[ i ][ j ] = distances[ subsample[ i ] ][ subsample[ j ] ];
+		return result;
+	}
+}
@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import java.util.List;
+
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+
+/**
+ * Provides the distance between two objects, which are identified by their index.
+ * <br>
+ * Implementations may either look up precomputed distances, e.g. from a distance matrix, or compute them on demand.
+ * The latter allows clustering algorithms that only need a subset of all pairwise distances to avoid materializing the full distance matrix.
+ * <br>
+ * Implementations are expected to be symmetric and to return zero for {@code i == j}.
+ */
+@FunctionalInterface
+public interface DistanceFunction
+{
+	/**
+	 * Gets the distance between the objects with the given indices.
+	 *
+	 * @param i the index of the first object
+	 * @param j the index of the second object
+	 * @return the distance
+	 */
+	double getDistance( int i, int j );
+
+	/**
+	 * Creates a {@link DistanceFunction} that looks up the distances in the given symmetric distance matrix.
+	 *
+	 * @param distances the symmetric distance matrix with zero diagonal
+	 * @return the distance function
+	 */
+	static DistanceFunction of( final double[][] distances )
+	{
+		return ( i, j ) -> distances[ i ][ j ];
+	}
+
+	/**
+	 * Creates a {@link DistanceFunction} that computes the distances between the given trees on demand using the given similarity measure.
+	 * <br>
+	 * Distances are not cached, i.e. each call computes the distance anew. {@link FasterPam} and {@link Hdbscan} request each distance several
+	 * times, thus they should rather use a {@link TriangularDistanceCache}, which computes each distance once and in parallel.
+	 *
+	 * @param trees the trees
+	 * @param similarityMeasure the similarity measure
+	 * @return the distance function
+	 * @param <T> the type of the trees
+	 */
+	static < T extends Tree< Double > > DistanceFunction of( final List< T > trees, final SimilarityMeasure similarityMeasure )
+	{
+		return ( i, j ) -> i == j ? 0 : similarityMeasure.compute( trees.get( i ), trees.get( j ), 1d );
+	}
+}
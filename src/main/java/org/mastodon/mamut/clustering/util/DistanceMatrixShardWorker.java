@@ -0,0 +1,209 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import net.imglib2.parallel.Parallelization;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.SimpleTree;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Entry point of a worker process that computes one row-block shard of a distance matrix.
+ * <br>
+ * The worker is launched by {@link ShardedDistanceMatrix} in a separate JVM with the arguments:
+ * <ol>
+ *     <li>the file containing the trees, as written by {@link #writeTrees(List, File)}</li>
+ *     <li>the name of the {@link SimilarityMeasure} enum constant</li>
+ *     <li>the first row of the shard (inclusive)</li>
+ *     <li>the last row of the shard (exclusive)</li>
+ *     <li>the file to which the shard is written</li>
+ * </ol>
+ * Only the upper triangle of the rows of the shard is computed. The progress is reported to standard output with lines starting with
+ * {@value #PROGRESS_PREFIX}, followed by the number of computed and the total number of distances of this shard.
+ * The shard file is only created, if all distances of the shard could be computed.
+ */
+public class DistanceMatrixShardWorker
+{
+
+	static final String PROGRESS_PREFIX = "PROGRESS";
+
+	private DistanceMatrixShardWorker()
+	{
+		// prevent from instantiation
+	}
+
+	public static void main( final String[] args ) throws IOException
+	{
+		if ( args.length != 5 )
+		{
+			System.err.println( "Usage: " + DistanceMatrixShardWorker.class.getName()
+					+ " <trees file> <similarity measure> <from row> <to row> <shard file>" );
+			System.exit( 2 );
+		}
+		List< Tree< Double > > trees = readTrees( new File( args[ 0 ] ) );
+		SimilarityMeasure similarityMeasure = SimilarityMeasure.valueOf( args[ 1 ] );
+		int fromRow = Integer.parseInt( args[ 2 ] );
+		int toRow = Integer.parseInt( args[ 3 ] );
+		double[][] rows = computeRows( trees, similarityMeasure, fromRow, toRow );
+		writeShard( rows, fromRow, trees.size(), new File( args[ 4 ] ) );
+	}
+
+	/**
+	 * Computes the distances of the upper triangle of the given rows, i.e. the distances between tree {@code i} and all trees {@code j > i}.
+	 *
+	 * @return an array with one entry per row, each containing the distances to the trees {@code i + 1, ..., n - 1}
+	 */
+	static double[][] computeRows( final List< Tree< Double > > trees, final SimilarityMeasure similarityMeasure, final int fromRow,
+			final int toRow )
+	{
+		int size = trees.size();
+		long totalPairs = ShardedDistanceMatrix.countPairs( size, fromRow, toRow );
+		AtomicLong computedPairs = new AtomicLong();
+		double[][] rows = new double[ toRow - fromRow ][];
+		List< Integer > rowIndices = IntStream.range( fromRow, toRow ).boxed().collect( Collectors.toList() );
+		Parallelization.getTaskExecutor().forEach( rowIndices, i -> {
+			double[] row = new double[ size - i - 1 ];
+			for ( int j = i + 1; j < size; j++ )
+				row[ j - i - 1 ] = similarityMeasure.compute( trees.get( i ), trees.get( j ), 1d );
+			rows[ i - fromRow ] = row;
+			long computed = computedPairs.addAndGet( row.length );
+			synchronized ( System.out )
+			{
+				System.out.println( PROGRESS_PREFIX + " " + computed + " " + totalPairs );
+				System.out.flush();
+			}
+		} );
+		return rows;
+	}
+
+	/**
+	 * Writes the given rows to the given shard file. The file is first written to a temporary file next to it and then moved,
+	 * such that the shard file never exists in an incomplete state.
+	 */
+	static void writeShard( final double[][] rows, final int fromRow, final int size, final File shardFile ) throws IOException
+	{
+		File temporaryFile = new File( shardFile.getParentFile(), shardFile.getName() + ".tmp" );
+		try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( temporaryFile.toPath() ) ) ))
+		{
+			out.writeInt( size );
+			out.writeInt( fromRow );
+			out.writeInt( fromRow + rows.length );
+			for ( double[] row : rows )
+				for ( double distance : row )
+					out.writeDouble( distance );
+		}
+		Files.move( temporaryFile.toPath(), shardFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+	}
+
+	/**
+	 * Reads the shard file and writes its distances symmetrically into the given distance matrix.
+	 *
+	 * @throws IOException if the file cannot be read or does not match the size of the distance matrix
+	 */
+	static void readShard( final File shardFile, final double[][] distances ) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( shardFile.toPath() ) ) ))
+		{
+			int size = in.readInt();
+			int fromRow = in.readInt();
+			int toRow = in.readInt();
+			if ( size != distances.length || fromRow < 0 || toRow > size || fromRow > toRow )
+				throw new IOException( "Shard file " + shardFile + " does not match a distance matrix of size " + distances.length + "." );
+			for ( int i = fromRow; i < toRow; i++ )
+				for ( int j = i + 1; j < size; j++ )
+				{
+					double distance = in.readDouble();
+					distances[ i ][ j ] = distance;
+					distances[ j ][ i ] = distance;
+				}
+		}
+	}
+
+	/**
+	 * Writes the attributes and the structure of the given trees to the given file, such that a worker process can read them with
+	 * {@link #readTrees(File)}.
+	 */
+	static < T extends Tree< Double > > void writeTrees( final List< T > trees, final File file ) throws IOException
+	{
+		try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( file.toPath() ) ) ))
+		{
+			out.writeInt( trees.size() );
+			for ( T tree : trees )
+				writeTree( tree, out );
+		}
+	}
+
+	/**
+	 * Reads trees written by {@link #writeTrees(List, File)}.
+	 */
+	static List< Tree< Double > > readTrees( final File file ) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file.toPath() ) ) ))
+		{
+			int numberOfTrees = in.readInt();
+			List< Tree< Double > > trees = new ArrayList<>( numberOfTrees );
+			for ( int i = 0; i < numberOfTrees; i++ )
+				trees.add( readTree( in ) );
+			return trees;
+		}
+	}
+
+	private static void writeTree( final Tree< Double > tree, final DataOutputStream out ) throws IOException
+	{
+		Collection< Tree< Double > > children = tree.getChildren();
+		out.writeDouble( tree.getAttribute() );
+		out.writeInt( children.size() );
+		for ( Tree< Double > child : children )
+			writeTree( child, out );
+	}
+
+	private static SimpleTree< Double > readTree( final DataInputStream in ) throws IOException
+	{
+		SimpleTree< Double > tree = new SimpleTree<>( in.readDouble() );
+		int numberOfChildren = in.readInt();
+		for ( int i = 0; i < numberOfChildren; i++ )
+			tree.addChild( readTree( in ) );
+		return tree;
+	}
+}
@@ -0,0 +1,384 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * k-medoids clustering using the FasterPAM algorithm.
+ * <br>
+ * FasterPAM partitions {@code n} objects into {@code k} clusters, such that the sum of distances of each object to the medoid of its cluster is minimized.
+ * The algorithm starts from randomly chosen medoids and eagerly performs the best swap of a medoid with a non-medoid, whenever it decreases the total deviation.
+ * <br>
+ * For each object, only the nearest and the second nearest medoid are cached. Thus, the memory requirement is linear in the number of objects,
+ * and the distances are requested from a {@link DistanceFunction} on demand. The full distance matrix never needs to be materialized.
+ * <br>
+ * See: Erich Schubert, Peter J. Rousseeuw: Fast and eager k-medoids clustering: O(k) runtime improvement of the PAM, CLARA, and CLARANS algorithms. Information Systems 101, 2021.
+ * <br>
+ * Instances are not thread safe and are meant to be used for a single clustering.
+ */
+public class FasterPam
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/**
+	 * The default maximum number of iterations over all objects.
+	 */
+	public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+	/**
+	 * The default seed for the random choice of initial medoids.
+	 */
+	public static final long DEFAULT_SEED = 42;
+
+	private final DistanceFunction distances;
+
+	private final int n;
+
+	private final int k;
+
+	private final int maxIterations;
+
+	private final long seed;
+
+	private final int[] medoids;
+
+	private final int[] nearest;
+
+	private final double[] nearestDistance;
+
+	private final int[] second;
+
+	private final double[] secondDistance;
+
+	private final double[] removalLoss;
+
+	private final double[] swapLoss;
+
+	private double loss;
+
+	private double bestSwapChange;
+
+	private int iterations;
+
+	private int swaps;
+
+	/**
+	 * Creates a new FasterPAM clustering using the default maximum number of iterations and the default seed.
+	 *
+	 * @param distances the distances between the objects
+	 * @param n the number of objects
+	 * @param k the number of clusters
+	 */
+	public FasterPam( final DistanceFunction distances, final int n, final int k )
+	{
+		this( distances, n, k, DEFAULT_MAX_ITERATIONS, DEFAULT_SEED );
+	}
+
+	/**
+	 * Creates a new FasterPAM clustering.
+	 *
+	 * @param distances the distances between the objects
+	 * @param n the number of objects
+	 * @param k the number of clusters
+	 * @param maxIterations the maximum number of iterations over all objects
+	 * @param seed the seed for the random choice of initial medoids
+	 * @throws IllegalArgumentException if {@code k} is less than 1 or greater than {@code n}
+	 */
+	public FasterPam( final DistanceFunction distances, final int n, final int k, final int maxIterations, final long seed )
+	{
+		if ( k < 1 )
+			throw new IllegalArgumentException( "number of clusters (" + k + ") must be greater than zero." );
+		if ( k > n )
+			throw new IllegalArgumentException(
+					"number of clusters (" + k + ") must be less than or equal to the number of objects to be clustered (" + n + ")." );
+		this.distances = distances;
+		this.n = n;
+		this.k = k;
+		this.maxIterations = maxIterations;
+		this.seed = seed;
+		this.medoids = new int[ k ];
+		this.nearest = new int[ n ];
+		this.nearestDistance = new double[ n ];
+		this.second = new int[ n ];
+		this.secondDistance = new double[ n ];
+		this.removalLoss = new double[ k ];
+		this.swapLoss = new double[ k ];
+	}
+
+	/**
+	 * Performs the clustering.
+	 *
+	 * @return an array of length {@code n} that contains for each object the index of its cluster, i.e. a value between {@code 0} and {@code k - 1}
+	 */
+	public int[] cluster()
+	{
+		if ( k == 1 )
+		{
+			medoids[ 0 ] = findSingleMedoid();
+			logger.debug( "Chose medoid {} for a single cluster. Total deviation: {}", medoids[ 0 ], loss );
+			return new int[ n ];
+		}
+		initMedoids();
+		loss = initialAssignment();
+		updateRemovalLoss();
+		int lastSwap = n;
+		iterations = 0;
+		swaps = 0;
+		while ( iterations < maxIterations )
+		{
+			iterations++;
+			int swapsBefore = swaps;
+			double lastLoss = loss;
+			for ( int j = 0; j < n; j++ )
+			{
+				if ( j == lastSwap )
+					break; // no improvement found within a full pass over all objects
+				if ( j == medoids[ nearest[ j ] ] )
+					continue; // j already is a medoid
+				int b = findBestSwap( j );
+				if ( bestSwapChange >= 0 )
+					continue;
+				swaps++;
+				lastSwap = j;
+				loss = doSwap( b, j );
+				updateRemovalLoss();
+			}
+			if ( swaps == swapsBefore || loss >= lastLoss )
+				break;
+		}
+		logger.debug( "FasterPAM finished after {} iterations and {} swaps. Total deviation: {}", iterations, swaps, loss );
+		return nearest.clone();
+	}
+
+	/**
+	 * Gets the indices of the medoids of the clusters. The medoid of cluster {@code i} is at position {@code i}.
+	 *
+	 * @return the indices of the medoids
+	 */
+	public int[] getMedoids()
+	{
+		return medoids.clone();
+	}
+
+	/**
+	 * Gets the total deviation, i.e. the sum of distances of all objects to their nearest medoid.
+	 *
+	 * @return the total deviation
+	 */
+	public double getLoss()
+	{
+		return loss;
+	}
+
+	/**
+	 * Gets the number of iterations over all objects that have been performed.
+	 *
+	 * @return the number of iterations
+	 */
+	public int getIterations()
+	{
+		return iterations;
+	}
+
+	private int findSingleMedoid()
+	{
+		int best = 0;
+		loss = Double.POSITIVE_INFINITY;
+		for ( int i = 0; i < n; i++ )
+		{
+			double sum = 0;
+			for ( int j = 0; j < n && sum < loss; j++ )
+				sum += distance( i, j );
+			if ( sum < loss )
+			{
+				loss = sum;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	private void initMedoids()
+	{
+		// NB: partial Fisher-Yates shuffle to draw k distinct objects
+		int[] indices = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			indices[ i ] = i;
+		Random random = new Random( seed );
+		for ( int i = 0; i < k; i++ )
+		{
+			int j = i + random.nextInt( n - i );
+			int tmp = indices[ i ];
+			indices[ i ] = indices[ j ];
+			indices[ j ] = tmp;
+			medoids[ i ] = indices[ i ];
+		}
+	}
+
+	private double initialAssignment()
+	{
+		double total = 0;
+		for ( int o = 0; o < n; o++ )
+		{
+			nearest[ o ] = 0;
+			nearestDistance[ o ] = distance( medoids[ 0 ], o );
+			second[ o ] = -1;
+			secondDistance[ o ] = Double.POSITIVE_INFINITY;
+			for ( int i = 1; i < k; i++ )
+			{
+				double d = distance( medoids[ i ], o );
+				if ( d < nearestDistance[ o ] || o == medoids[ i ] )
+				{
+					second[ o ] = nearest[ o ];
+					secondDistance[ o ] = nearestDistance[ o ];
+					nearest[ o ] = i;
+					nearestDistance[ o ] = d;
+				}
+				else if ( d < secondDistance[ o ] )
+				{
+					second[ o ] = i;
+					secondDistance[ o ] = d;
+				}
+			}
+			total += nearestDistance[ o ];
+		}
+		return total;
+	}
+
+	private void updateRemovalLoss()
+	{
+		Arrays.fill( removalLoss, 0 );
+		for ( int o = 0; o < n; o++ )
+			removalLoss[ nearest[ o ] ] += secondDistance[ o ] - nearestDistance[ o ];
+	}
+
+	/**
+	 * Finds the medoid, which is best replaced by object {@code j}. The change of the total deviation is stored in {@link #bestSwapChange}.
+	 */
+	private int findBestSwap( final int j )
+	{
+		System.arraycopy( removalLoss, 0, swapLoss, 0, k );
+		double shared = 0;
+		for ( int o = 0; o < n; o++ )
+		{
+			double djo = distance( j, o );
+			if ( djo < nearestDistance[ o ] )
+			{
+				// j becomes the nearest medoid of o
+				shared += djo - nearestDistance[ o ];
+				swapLoss[ nearest[ o ] ] += nearestDistance[ o ] - secondDistance[ o ];
+			}
+			else if ( djo < secondDistance[ o ] )
+				swapLoss[ nearest[ o ] ] += djo - secondDistance[ o ];
+		}
+		int best = 0;
+		for ( int i = 1; i < k; i++ )
+			if ( swapLoss[ i ] < swapLoss[ best ] )
+				best = i;
+		bestSwapChange = swapLoss[ best ] + shared;
+		return best;
+	}
+
+	private double doSwap( final int b, final int j )
+	{
+		medoids[ b ] = j;
+		double total = 0;
+		for ( int o = 0; o < n; o++ )
+		{
+			if ( o == j )
+			{
+				if ( nearest[ o ] != b )
+				{
+					second[ o ] = nearest[ o ];
+					secondDistance[ o ] = nearestDistance[ o ];
+				}
+				nearest[ o ] = b;
+				nearestDistance[ o ] = 0;
+				continue;
+			}
+			double djo = distance( j, o );
+			if ( nearest[ o ] == b )
+			{
+				// the nearest medoid has been replaced
+				if ( djo < secondDistance[ o ] )
+					nearestDistance[ o ] = djo;
+				else
+				{
+					nearest[ o ] = second[ o ];
+					nearestDistance[ o ] = secondDistance[ o ];
+					updateSecondNearest( o, b, djo );
+				}
+			}
+			else if ( djo < nearestDistance[ o ] )
+			{
+				second[ o ] = nearest[ o ];
+				secondDistance[ o ] = nearestDistance[ o ];
+				nearest[ o ] = b;
+				nearestDistance[ o ] = djo;
+			}
+			else if ( djo < secondDistance[ o ] )
+			{
+				second[ o ] = b;
+				secondDistance[ o ] = djo;
+			}
+			else if ( second[ o ] == b )
+				updateSecondNearest( o, b, djo ); // the second nearest medoid has been replaced
+			total += nearestDistance[ o ];
+		}
+		return total;
+	}
+
+	private void updateSecondNearest( final int o, final int b, final double djo )
+	{
+		second[ o ] = b;
+		secondDistance[ o ] = djo;
+		for ( int i = 0; i < k; i++ )
+		{
+			if ( i == nearest[ o ] || i == b )
+				continue;
+			double d = distance( o, medoids[ i ] );
+			if ( d < secondDistance[ o ] )
+			{
+				second[ o ] = i;
+				secondDistance[ o ] = d;
+			}
+		}
+	}
+
+	private double distance( final int i, final int j )
+	{
+		return i == j ? 0 : distances.getDistance( i, j );
+	}
+}
@@ -0,0 +1,453 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Density based clustering using the HDBSCAN algorithm.
+ * <br>
+ * HDBSCAN builds a minimum spanning tree over the mutual reachability distances of all objects, derives a single linkage hierarchy from it and condenses this hierarchy using the minimum cluster size.
+ * The resulting flat clustering consists of the clusters of the condensed hierarchy with the highest stability (excess of mass).
+ * Objects that do not belong to any of these clusters are considered noise.
+ * <br>
+ * The number of clusters is determined by the algorithm. The root of the hierarchy is never selected as a cluster. Thus, if the data contains no density separated clusters, all objects are considered noise.
+ * <br>
+ * Distances are requested from a {@link DistanceFunction} on demand. The memory requirement is linear in the number of objects. Each distance
+ * is requested up to three times, twice for the core distances and once for the minimum spanning tree. Expensive distances should therefore
+ * be cached, e.g. in a {@link TriangularDistanceCache}.
+ * <br>
+ * See: Ricardo J. G. B. Campello, Davoud Moulavi, Joerg Sander: Density-Based Clustering Based on Hierarchical Density Estimates. PAKDD 2013.
+ */
+public class Hdbscan
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/**
+	 * The label of objects that do not belong to any cluster.
+	 */
+	public static final int NOISE = -1;
+
+	/**
+	 * Upper bound for lambda values (i.e. inverse distances) to avoid infinite stabilities for objects with zero distance.
+	 */
+	private static final double MAX_LAMBDA = 1e12;
+
+	private final DistanceFunction distances;
+
+	private final int n;
+
+	private final int minClusterSize;
+
+	private final int minSamples;
+
+	private double[] coreDistances;
+
+	/**
+	 * Creates a new HDBSCAN clustering, where the number of samples used for the core distance equals the minimum cluster size.
+	 *
+	 * @param distances the distances between the objects
+	 * @param n the number of objects
+	 * @param minClusterSize the minimum number of objects in a cluster
+	 */
+	public Hdbscan( final DistanceFunction distances, final int n, final int minClusterSize )
+	{
+		this( distances, n, minClusterSize, minClusterSize );
+	}
+
+	/**
+	 * Creates a new HDBSCAN clustering.
+	 *
+	 * @param distances the distances between the objects
+	 * @param n the number of objects
+	 * @param minClusterSize the minimum number of objects in a cluster
+	 * @param minSamples the number of objects (including the object itself) in the neighborhood of an object that is used to compute its core distance
+	 * @throws IllegalArgumentException if {@code minClusterSize} is less than 2 or {@code minSamples} is less than 1
+	 */
+	public Hdbscan( final DistanceFunction distances, final int n, final int minClusterSize, final int minSamples )
+	{
+		if ( minClusterSize < 2 )
+			throw new IllegalArgumentException( "minimum cluster size (" + minClusterSize + ") must be at least 2." );
+		if ( minSamples < 1 )
+			throw new IllegalArgumentException( "minimum samples (" + minSamples + ") must be at least 1." );
+		this.distances = distances;
+		this.n = n;
+		this.minClusterSize = minClusterSize;
+		this.minSamples = minSamples;
+	}
+
+	/**
+	 * Performs the clustering.
+	 *
+	 * @return an array of length {@code n} that contains for each object the index of its cluster, starting from {@code 0}, or {@link #NOISE}
+	 */
+	public int[] cluster()
+	{
+		int[] labels = new int[ n ];
+		Arrays.fill( labels, NOISE );
+		coreDistances = new double[ n ];
+		if ( n < minClusterSize )
+			return labels;
+
+		coreDistances = computeCoreDistances();
+		SingleLinkage hierarchy = getSingleLinkage( coreDistances );
+		CondensedTree condensedTree = condense( hierarchy );
+		boolean[] selected = selectClusters( condensedTree );
+
+		// NB: selected clusters are numbered in the order of their labels in the condensed tree
+		int[] clusterIndex = new int[ condensedTree.numberOfLabels ];
+		int numberOfClusters = 0;
+		for ( int label = 0; label < condensedTree.numberOfLabels; label++ )
+			clusterIndex[ label ] = selected[ label ] ? numberOfClusters++ : NOISE;
+		for ( int o = 0; o < n; o++ )
+		{
+			int label = condensedTree.pointParent[ o ];
+			while ( label != NOISE && !selected[ label ] )
+				label = condensedTree.clusterParent[ label ];
+			labels[ o ] = label == NOISE ? NOISE : clusterIndex[ label ];
+		}
+		if ( logger.isDebugEnabled() )
+			logger.debug( "HDBSCAN found {} clusters and {} noise objects.", numberOfClusters,
+					Arrays.stream( labels ).filter( label -> label == NOISE ).count() );
+		return labels;
+	}
+
+	/**
+	 * Gets the core distances computed by the last call of {@link #cluster()}, i.e. the distance of each object to its {@code minSamples}-th
+	 * nearest neighbor, where the object itself counts as its first neighbor. Objects with a small core distance lie in dense regions.
+	 *
+	 * @return the core distances or {@code null}, if {@link #cluster()} has not been called yet. All values are {@code 0}, if there were
+	 * fewer objects than the minimum cluster size.
+	 */
+	public double[] getCoreDistances()
+	{
+		return coreDistances == null ? null : coreDistances.clone();
+	}
+
+	/**
+	 * Computes the distance of each object to its {@code minSamples}-th nearest neighbor, where the object itself counts as its first neighbor.
+	 */
+	private double[] computeCoreDistances()
+	{
+		double[] coreDistances = new double[ n ];
+		if ( minSamples == 1 )
+			return coreDistances;
+		int neighbors = Math.min( minSamples, n ) - 1; // NB: the object itself has distance 0
+		PriorityQueue< Double > nearestNeighbors = new PriorityQueue<>( neighbors, Comparator.reverseOrder() );
+		for ( int i = 0; i < n; i++ )
+		{
+			nearestNeighbors.clear();
+			for ( int j = 0; j < n; j++ )
+			{
+				if ( i == j )
+					continue;
+				double d = distances.getDistance( i, j );
+				if ( nearestNeighbors.size() < neighbors )
+					nearestNeighbors.add( d );
+				else if ( d < nearestNeighbors.peek() )
+				{
+					nearestNeighbors.poll();
+					nearestNeighbors.add( d );
+				}
+			}
+			coreDistances[ i ] = nearestNeighbors.isEmpty() ? 0 : nearestNeighbors.peek();
+		}
+		return coreDistances;
+	}
+
+	/**
+	 * Computes the minimum spanning tree of the mutual reachability graph using Prim's algorithm and converts it into a single linkage hierarchy.
+	 */
+	private SingleLinkage getSingleLinkage( final double[] coreDistances )
+	{
+		int[] edgeFrom = new int[ n - 1 ];
+		int[] edgeTo = new int[ n - 1 ];
+		double[] edgeWeight = new double[ n - 1 ];
+		boolean[] inTree = new boolean[ n ];
+		double[] bestWeight = new double[ n ];
+		int[] bestFrom = new int[ n ];
+		Arrays.fill( bestWeight, Double.POSITIVE_INFINITY );
+		int current = 0;
+		inTree[ current ] = true;
+		for ( int e = 0; e < n - 1; e++ )
+		{
+			int next = -1;
+			for ( int o = 0; o < n; o++ )
+			{
+				if ( inTree[ o ] )
+					continue;
+				double mutualReachability = Math.max( distances.getDistance( current, o ),
+						Math.max( coreDistances[ current ], coreDistances[ o ] ) );
+				if ( mutualReachability < bestWeight[ o ] )
+				{
+					bestWeight[ o ] = mutualReachability;
+					bestFrom[ o ] = current;
+				}
+				if ( next == -1 || bestWeight[ o ] < bestWeight[ next ] )
+					next = o;
+			}
+			edgeFrom[ e ] = bestFrom[ next ];
+			edgeTo[ e ] = next;
+			edgeWeight[ e ] = bestWeight[ next ];
+			inTree[ next ] = true;
+			current = next;
+		}
+
+		int[] order = IntStream.range( 0, n - 1 ).boxed().sorted( Comparator.comparingDouble( e -> edgeWeight[ e ] ) )
+				.mapToInt( Integer::intValue ).toArray();
+		SingleLinkage hierarchy = new SingleLinkage( n );
+		int[] unionParent = new int[ 2 * n - 1 ];
+		for ( int i = 0; i < unionParent.length; i++ )
+			unionParent[ i ] = i;
+		for ( int m = 0; m < n - 1; m++ )
+		{
+			int e = order[ m ];
+			int a = find( unionParent, edgeFrom[ e ] );
+			int b = find( unionParent, edgeTo[ e ] );
+			int node = n + m;
+			hierarchy.left[ m ] = a;
+			hierarchy.right[ m ] = b;
+			hierarchy.distance[ m ] = edgeWeight[ e ];
+			hierarchy.size[ m ] = hierarchy.sizeOf( a ) + hierarchy.sizeOf( b );
+			unionParent[ a ] = node;
+			unionParent[ b ] = node;
+		}
+		return hierarchy;
+	}
+
+	private static int find( final int[] unionParent, final int node )
+	{
+		int root = node;
+		while ( unionParent[ root ] != root )
+			root = unionParent[ root ];
+		// path compression
+		int current = node;
+		while ( unionParent[ current ] != root )
+		{
+			int next = unionParent[ current ];
+			unionParent[ current ] = root;
+			current = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Condenses the single linkage hierarchy. Splits, in which one side has fewer than {@code minClusterSize} objects, are considered as objects falling out of the cluster rather than as new clusters.
+	 */
+	private CondensedTree condense( final SingleLinkage hierarchy )
+	{
+		CondensedTree tree = new CondensedTree( n );
+		int root = 2 * n - 2;
+		int[] relabel = new int[ 2 * n - 1 ];
+		relabel[ root ] = tree.addCluster( NOISE, 0 );
+		Deque< Integer > queue = new ArrayDeque<>();
+		queue.add( root );
+		while ( !queue.isEmpty() )
+		{
+			int node = queue.poll();
+			if ( node < n )
+				continue;
+			int m = node - n;
+			int left = hierarchy.left[ m ];
+			int right = hierarchy.right[ m ];
+			double lambda = lambda( hierarchy.distance[ m ] );
+			int parentLabel = relabel[ node ];
+			boolean leftIsCluster = hierarchy.sizeOf( left ) >= minClusterSize;
+			boolean rightIsCluster = hierarchy.sizeOf( right ) >= minClusterSize;
+			if ( leftIsCluster && rightIsCluster )
+			{
+				relabel[ left ] = tree.addCluster( parentLabel, lambda );
+				relabel[ right ] = tree.addCluster( parentLabel, lambda );
+				tree.stability[ parentLabel ] += ( lambda - tree.birth[ parentLabel ] ) * hierarchy.size[ m ];
+				queue.add( left );
+				queue.add( right );
+				continue;
+			}
+			if ( leftIsCluster )
+			{
+				relabel[ left ] = parentLabel;
+				queue.add( left );
+			}
+			else
+				hierarchy.forEachLeaf( left, point -> tree.addPoint( point, parentLabel, lambda ) );
+			if ( rightIsCluster )
+			{
+				relabel[ right ] = parentLabel;
+				queue.add( right );
+			}
+			else
+				hierarchy.forEachLeaf( right, point -> tree.addPoint( point, parentLabel, lambda ) );
+		}
+		return tree;
+	}
+
+	/**
+	 * Selects the clusters with the highest stability (excess of mass). The root cluster is never selected.
+	 */
+	private static boolean[] selectClusters( final CondensedTree tree )
+	{
+		int numberOfLabels = tree.numberOfLabels;
+		boolean[] selected = new boolean[ numberOfLabels ];
+		double[] subtreeStability = new double[ numberOfLabels ];
+		// NB: child clusters always have larger labels than their parents. Thus, iterating in descending order processes children first.
+		for ( int label = numberOfLabels - 1; label > 0; label-- )
+		{
+			double childStability = subtreeStability[ label ];
+			boolean hasChildren = tree.hasChildren[ label ];
+			if ( hasChildren && childStability > tree.stability[ label ] )
+				tree.stability[ label ] = childStability;
+			else
+			{
+				selected[ label ] = true;
+				deselectDescendants( tree, selected, label );
+			}
+			subtreeStability[ tree.clusterParent[ label ] ] += tree.stability[ label ];
+		}
+		return selected;
+	}
+
+	private static void deselectDescendants( final CondensedTree tree, final boolean[] selected, final int label )
+	{
+		for ( int other = label + 1; other < tree.numberOfLabels; other++ )
+		{
+			int ancestor = tree.clusterParent[ other ];
+			while ( ancestor > label )
+				ancestor = tree.clusterParent[ ancestor ];
+			if ( ancestor == label )
+				selected[ other ] = false;
+		}
+	}
+
+	private double lambda( final double distance )
+	{
+		return distance > 1 / MAX_LAMBDA ? 1 / distance : MAX_LAMBDA;
+	}
+
+	/**
+	 * Single linkage hierarchy with {@code n - 1} merges. Merge {@code m} creates the node {@code n + m}. Nodes smaller than {@code n} are objects.
+	 */
+	private static class SingleLinkage
+	{
+		private final int n;
+
+		private final int[] left;
+
+		private final int[] right;
+
+		private final double[] distance;
+
+		private final int[] size;
+
+		private SingleLinkage( final int n )
+		{
+			this.n = n;
+			this.left = new int[ n - 1 ];
+			this.right = new int[ n - 1 ];
+			this.distance = new double[ n - 1 ];
+			this.size = new int[ n - 1 ];
+		}
+
+		private int sizeOf( final int node )
+		{
+			return node < n ? 1 : size[ node - n ];
+		}
+
+		private void forEachLeaf( final int node, final IntConsumer action )
+		{
+			Deque< Integer > stack = new ArrayDeque<>();
+			stack.push( node );
+			while ( !stack.isEmpty() )
+			{
+				int current = stack.pop();
+				if ( current < n )
+					action.accept( current );
+				else
+				{
+					stack.push( left[ current - n ] );
+					stack.push( right[ current - n ] );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Condensed cluster hierarchy. Clusters are labeled starting from {@code 0} (the root). Each object is assigned to the cluster it falls out of.
+	 */
+	private static class CondensedTree
+	{
+		private final int[] pointParent;
+
+		private final int[] clusterParent;
+
+		private final double[] birth;
+
+		private final double[] stability;
+
+		private final boolean[] hasChildren;
+
+		private int numberOfLabels;
+
+		private CondensedTree( final int n )
+		{
+			this.pointParent = new int[ n ];
+			// NB: a binary tree with at most n / 2 leaf clusters has less than n clusters
+			this.clusterParent = new int[ n ];
+			this.birth = new double[ n ];
+			this.stability = new double[ n ];
+			this.hasChildren = new boolean[ n ];
+			Arrays.fill( pointParent, NOISE );
+		}
+
+		private int addCluster( final int parent, final double lambda )
+		{
+			int label = numberOfLabels++;
+			clusterParent[ label ] = parent;
+			birth[ label ] = lambda;
+			if ( parent != NOISE )
+				hasChildren[ parent ] = true;
+			return label;
+		}
+
+		private void addPoint( final int point, final int parent, final double lambda )
+		{
+			pointParent[ point ] = parent;
+			stability[ parent ] += lambda - birth[ parent ];
+		}
+	}
+}
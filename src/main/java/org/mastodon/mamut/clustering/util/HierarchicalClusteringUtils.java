@@ -31,6 +31,7 @@ package org.mastodon.mamut.clustering.util;
 import com.apporiented.algorithm.clustering.Cluster;
 import com.apporiented.algorithm.clustering.ClusteringAlgorithm;
 import com.apporiented.algorithm.clustering.DefaultClusteringAlgorithm;
+import com.apporiented.algorithm.clustering.Distance;
 import com.apporiented.algorithm.clustering.LinkageStrategy;
 import net.imglib2.parallel.Parallelization;
 import net.imglib2.util.LinAlgHelpers;
@@ -45,9 +46,11 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -56,6 +59,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class HierarchicalClusteringUtils
@@ -132,6 +136,21 @@ public class HierarchicalClusteringUtils
 	 */
 	public static < T extends Tree< Double > > double[][] getAverageDistanceMatrix( final List< List< T > > treeMatrix,
 			final SimilarityMeasure similarityMeasure )
+	{
+		return getAverageDistanceMatrix( treeMatrix, trees -> getDistanceMatrix( trees, similarityMeasure ) );
+	}
+
+	/**
+	 * Computes a symmetric quadratic distance matrix for the given trees by averaging the distance matrices computed by the given function
+	 * for each row of trees.
+	 *
+	 * @param treeMatrix a two-dimensional array of trees
+	 * @param distanceMatrixFunction a function computing the distance matrix for one row of trees
+	 * @return a symmetric quadratic distance matrix
+	 * @see #getAverageDistanceMatrix(List, SimilarityMeasure)
+	 */
+	public static < T extends Tree< Double > > double[][] getAverageDistanceMatrix( final List< List< T > > treeMatrix,
+			final Function< List< T >, double[][] > distanceMatrixFunction )
 	{
 		if ( treeMatrix.isEmpty() )
 			return new double[ 0 ][ 0 ];
@@ -141,7 +160,7 @@ public class HierarchicalClusteringUtils
 		double[][] result = new double[ numberOfTrees ][ numberOfTrees ];
 		for ( List< T > trees : treeMatrix )
 		{
-			double[][] temp = getDistanceMatrix( trees, similarityMeasure );
+			double[][] temp = distanceMatrixFunction.apply( trees );
 			LinAlgHelpers.add( result, temp, result );
 		}
 		LinAlgHelpers.scale( result, 1d / treeMatrix.size(), result );
@@ -310,6 +329,68 @@ public class HierarchicalClusteringUtils
 				objects, distances, linkageStrategy, threshold, objectMapping, algorithmResult, sortedClusters );
 	}
 
+	/**
+	 * Gets a {@link HierarchicalClusteringResult} like {@link #getClusteringUsingClusterNumber(Object[], double[][], LinkageStrategy, int)},
+	 * but cuts the given precomputed dendrogram instead of performing the clustering anew.
+	 * <br>
+	 * The dendrogram is copied, since the result renames its leaves. Thus, the given dendrogram can be reused for further results.
+	 *
+	 * @param objects the objects to be clustered
+	 * @param distances the symmetric distance matrix with zero diagonal, from which the dendrogram has been computed
+	 * @param dendrogram the root of a dendrogram created by {@link #performClustering(double[][], LinkageStrategy)}
+	 * @param clusterNumber the number of clusters to be built
+	 * @return a mapping from cluster id objects
+	 */
+	public static < T > HierarchicalClusteringResult< T > getClusteringUsingClusterNumber( final T[] objects, final double[][] distances,
+			final Cluster dendrogram, final int clusterNumber )
+	{
+		if ( clusterNumber < 1 )
+			throw new IllegalArgumentException( "number of clusters (" + clusterNumber + ") must be greater than zero." );
+		else if ( clusterNumber > objects.length )
+			throw new IllegalArgumentException(
+					"number of clusters (" + clusterNumber + ") must be less than or equal to the number of objects to be clustered ("
+							+ objects.length + ")." );
+
+		Map< String, T > objectMapping = objectMapping( objects );
+		Cluster algorithmResult = copy( dendrogram );
+		List< Cluster > sortedClusters = sortClusters( algorithmResult );
+		double threshold = getThreshold( sortedClusters, clusterNumber );
+
+		return getClusteringUsingThreshold( objects, distances, null, threshold, objectMapping, algorithmResult, sortedClusters );
+	}
+
+	/**
+	 * Copies the given dendrogram (names, distances, leaf names and children). The copy is iterative, since dendrograms may be deep.
+	 */
+	private static Cluster copy( final Cluster root )
+	{
+		Cluster rootCopy = copyNode( root );
+		Deque< Pair< Cluster, Cluster > > stack = new ArrayDeque<>();
+		stack.push( Pair.of( root, rootCopy ) );
+		while ( !stack.isEmpty() )
+		{
+			Pair< Cluster, Cluster > originalAndCopy = stack.pop();
+			for ( Cluster child : originalAndCopy.getLeft().getChildren() )
+			{
+				Cluster childCopy = copyNode( child );
+				childCopy.setParent( originalAndCopy.getRight() );
+				originalAndCopy.getRight().addChild( childCopy );
+				stack.push( Pair.of( child, childCopy ) );
+			}
+		}
+		return rootCopy;
+	}
+
+	private static Cluster copyNode( final Cluster cluster )
+	{
+		Cluster copy = new Cluster( cluster.getName() );
+		Distance distance = cluster.getDistance();
+		if ( distance != null )
+			copy.setDistance( new Distance( distance.getDistance(), distance.getWeight() ) );
+		copy.appendLeafNames( cluster.getLeafNames() );
+		return copy;
+	}
+
 	/**
 	 * Gets a list of color values from the {@link ColorUtils#GLASBEY} palette.<br>
 	 * Skips the first five colors of the palette, since the 4th color is close to black and thus difficult to see.
@@ -333,7 +414,7 @@ public class HierarchicalClusteringUtils
 		return ColorUtils.GLASBEY[ index ].getRGB();
 	}
 
-	private static double getThreshold( final List< Cluster > sortedClusters, int clusterNumber )
+	static double getThreshold( final List< Cluster > sortedClusters, int clusterNumber )
 	{
 		if ( clusterNumber == 1 )
 			return Double.MAX_VALUE;
@@ -353,7 +434,7 @@ public class HierarchicalClusteringUtils
 		return algorithm.performClustering( distances, uniqueNames, linkageStrategy );
 	}
 
-	private static List< Cluster > sortClusters( Cluster algorithmResult )
+	static List< Cluster > sortClusters( Cluster algorithmResult )
 	{
 		List< Cluster > clusters = allClusters( algorithmResult );
 		clusters.sort( Comparator.comparingDouble( Cluster::getDistanceValue ) );
@@ -361,6 +442,54 @@ public class HierarchicalClusteringUtils
 		return clusters;
 	}
 
+	/**
+	 * Performs hierarchical clustering on the given distance matrix. The leaves of the resulting dendrogram are named by the index of the object they represent.
+	 * <br>
+	 * This method is thread safe.
+	 *
+	 * @param distances the symmetric distance matrix with zero diagonal
+	 * @param linkageStrategy the linkage strategy
+	 * @return the root of the dendrogram
+	 */
+	public static Cluster performClustering( final double[][] distances, final LinkageStrategy linkageStrategy )
+	{
+		String[] names = new String[ distances.length ];
+		for ( int i = 0; i < names.length; i++ )
+			names[ i ] = String.valueOf( i );
+		return new DefaultClusteringAlgorithm().performClustering( distances, names, linkageStrategy );
+	}
+
+	/**
+	 * Cuts the given dendrogram into the given number of clusters using the same threshold as {@link #getClusteringUsingClusterNumber(Object[], double[][], LinkageStrategy, int)}.
+	 *
+	 * @param root the root of a dendrogram created by {@link #performClustering(double[][], LinkageStrategy)}
+	 * @param sortedClusters all clusters of the dendrogram sorted by {@link #sortClusters(Cluster)}
+	 * @param clusterNumber the number of clusters
+	 * @param n the number of clustered objects
+	 * @return the index of the cluster of each object
+	 */
+	static int[] getClusterLabels( final Cluster root, final List< Cluster > sortedClusters, final int clusterNumber, final int n )
+	{
+		double threshold = getThreshold( sortedClusters, clusterNumber );
+		int[] labels = new int[ n ];
+		int label = 0;
+		Deque< Cluster > stack = new ArrayDeque<>();
+		stack.push( root );
+		while ( !stack.isEmpty() )
+		{
+			Cluster cluster = stack.pop();
+			if ( !cluster.isLeaf() && cluster.getDistanceValue() > threshold )
+				cluster.getChildren().forEach( stack::push );
+			else
+			{
+				for ( String leafName : leaveNames( cluster ) )
+					labels[ Integer.parseInt( leafName ) ] = label;
+				label++;
+			}
+		}
+		return labels;
+	}
+
 	private static < T > Map< String, T > objectMapping( T[] objects )
 	{
 		Map< String, T > objectNames = new LinkedHashMap<>();
@@ -0,0 +1,160 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import net.imglib2.parallel.Parallelization;
+import org.apache.commons.lang3.time.StopWatch;
+import org.mastodon.mamut.clustering.config.ClusteringMethod;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Utility methods to add new objects to an existing clustering without clustering all objects again.
+ * <br>
+ * Only the distances between the new objects and the already classified objects are computed. Each new object is then assigned to the class with the smallest linkage distance.
+ */
+public class IncrementalClusteringUtils
+{
+
+	private IncrementalClusteringUtils()
+	{
+		// prevent from instantiation
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/**
+	 * Value that indicates that an object could not be assigned to any class.
+	 */
+	public static final int NO_CLASS = -1;
+
+	/**
+	 * Assigns each of the given new trees to the nearest class of the already classified trees.
+	 * <br>
+	 * The distance between a new tree and a class is determined in the same way as the given clustering method links clusters:
+	 * <ul>
+	 *     <li>{@link ClusteringMethod#SINGLE_LINKAGE} and {@link ClusteringMethod#HDBSCAN}: the smallest distance to a tree of the class,
+	 *     i.e. the new tree is assigned to the class of its nearest classified tree. For {@link ClusteringMethod#HDBSCAN}, this may be the noise class.</li>
+	 *     <li>{@link ClusteringMethod#COMPLETE_LINKAGE}: the largest distance to a tree of the class</li>
+	 *     <li>all other methods: the average distance to the trees of the class</li>
+	 * </ul>
+	 * The distances are computed in parallel.
+	 *
+	 * @param newTrees the trees to be assigned
+	 * @param classifiedTrees the already classified trees
+	 * @param classLabels the class of each classified tree, between {@code 0} and {@code numberOfClasses - 1}
+	 * @param numberOfClasses the number of classes
+	 * @param similarityMeasure the similarity measure to compute the distances between trees
+	 * @param clusteringMethod the clustering method that determines the distance between a tree and a class
+	 * @return the class of each new tree or {@link #NO_CLASS}, if no class contains any tree
+	 * @param <T> the type of the trees
+	 */
+	public static < T extends Tree< Double > > int[] assignToNearestClasses( final List< T > newTrees, final List< T > classifiedTrees,
+			final int[] classLabels, final int numberOfClasses, final SimilarityMeasure similarityMeasure,
+			final ClusteringMethod clusteringMethod )
+	{
+		if ( classifiedTrees.size() != classLabels.length )
+			throw new IllegalArgumentException( "Number of classified trees (" + classifiedTrees.size()
+					+ ") does not match the number of class labels (" + classLabels.length + ")." );
+		StopWatch stopWatch = StopWatch.createStarted();
+		int[] assignment = new int[ newTrees.size() ];
+		List< Integer > indices = IntStream.range( 0, newTrees.size() ).boxed().collect( Collectors.toList() );
+		Parallelization.getTaskExecutor().forEach( indices, i -> {
+			double[] distances = new double[ classifiedTrees.size() ];
+			for ( int j = 0; j < classifiedTrees.size(); j++ )
+				distances[ j ] = similarityMeasure.compute( newTrees.get( i ), classifiedTrees.get( j ), 1d );
+			assignment[ i ] = getNearestClass( distances, classLabels, numberOfClasses, clusteringMethod );
+		} );
+		stopWatch.stop();
+		logger.debug( "Assigned {} new trees to {} classes of {} trees in {} ms.", newTrees.size(), numberOfClasses,
+				classifiedTrees.size(), stopWatch.getTime() );
+		return assignment;
+	}
+
+	/**
+	 * Gets the nearest class for an object with the given distances to the classified objects.
+	 *
+	 * @param distances the distances of the object to each classified object
+	 * @param classLabels the class of each classified object
+	 * @param numberOfClasses the number of classes
+	 * @param clusteringMethod the clustering method that determines the distance between an object and a class
+	 * @return the nearest class or {@link #NO_CLASS}, if no class contains any object
+	 */
+	static int getNearestClass( final double[] distances, final int[] classLabels, final int numberOfClasses,
+			final ClusteringMethod clusteringMethod )
+	{
+		double[] classDistances = new double[ numberOfClasses ];
+		int[] classSizes = new int[ numberOfClasses ];
+		for ( int j = 0; j < distances.length; j++ )
+		{
+			int label = classLabels[ j ];
+			double distance = distances[ j ];
+			if ( classSizes[ label ] == 0 )
+				classDistances[ label ] = distance;
+			else if ( isNearestNeighbor( clusteringMethod ) )
+				classDistances[ label ] = Math.min( classDistances[ label ], distance );
+			else if ( clusteringMethod == ClusteringMethod.COMPLETE_LINKAGE )
+				classDistances[ label ] = Math.max( classDistances[ label ], distance );
+			else
+				classDistances[ label ] += distance;
+			classSizes[ label ]++;
+		}
+		boolean average = !isNearestNeighbor( clusteringMethod ) && clusteringMethod != ClusteringMethod.COMPLETE_LINKAGE;
+		int nearest = NO_CLASS;
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		for ( int c = 0; c < numberOfClasses; c++ )
+		{
+			if ( classSizes[ c ] == 0 )
+				continue;
+			double distance = average ? classDistances[ c ] / classSizes[ c ] : classDistances[ c ];
+			if ( distance < nearestDistance )
+			{
+				nearest = c;
+				nearestDistance = distance;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Checks, if the given clustering method assigns an object to the class of its nearest neighbor. This is the case for
+	 * {@link ClusteringMethod#HDBSCAN}, since it links clusters by single linkage of the mutual reachability distances.
+	 */
+	private static boolean isNearestNeighbor( final ClusteringMethod clusteringMethod )
+	{
+		return clusteringMethod == ClusteringMethod.SINGLE_LINKAGE || clusteringMethod == ClusteringMethod.HDBSCAN;
+	}
+}
@@ -0,0 +1,261 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import com.apporiented.algorithm.clustering.Cluster;
+import com.apporiented.algorithm.clustering.Distance;
+import net.imglib2.util.Util;
+import org.apache.commons.lang3.tuple.Pair;
+import org.mastodon.mamut.clustering.config.ClusteringMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Utility methods for clustering methods that produce a flat partition of the objects instead of a full hierarchy, i.e. {@link ClusteringMethod#K_MEDOIDS} and {@link ClusteringMethod#HDBSCAN}.
+ * <br>
+ * The partitions are converted into a {@link HierarchicalClusteringResult}, such that they can be used like the results of hierarchical clustering, e.g. to create tag sets or to show a dendrogram.
+ * The dendrogram of such a result has three levels: the root, one node per group and the objects. Each group has a representative object, i.e. its medoid for k-medoids or its object with
+ * the smallest core distance for HDBSCAN. The height of a group node is the largest distance of its objects to the representative. Thus, only a linear number of distances is
+ * required to build the result.
+ */
+public class PartitionClusteringUtils
+{
+
+	private PartitionClusteringUtils()
+	{
+		// prevent from instantiation
+	}
+
+	/**
+	 * Partitions the given objects into the given number of clusters using k-medoids clustering (FasterPAM).
+	 *
+	 * @param objects the objects to be clustered
+	 * @param distances the distances between the objects, either precomputed or computed on demand
+	 * @param median the median of all pairwise distances, if known, or {@link Double#NaN}
+	 * @param clusterNumber the number of clusters to be built
+	 * @return the clustering result
+	 * @param <T> the type of the objects
+	 */
+	public static < T > HierarchicalClusteringResult< T > getKMedoidsClustering( final T[] objects, final DistanceFunction distances,
+			final double median, final int clusterNumber )
+	{
+		FasterPam fasterPam = new FasterPam( distances, objects.length, clusterNumber );
+		int[] labels = fasterPam.cluster();
+		return toClusteringResult( objects, labels, fasterPam.getMedoids(), distances, median );
+	}
+
+	/**
+	 * Clusters the given objects using HDBSCAN. The number of clusters is determined by the algorithm.
+	 * <br>
+	 * Objects that are considered as noise are not contained in any group of the result.
+	 *
+	 * @param objects the objects to be clustered
+	 * @param distances the distances between the objects, either precomputed or computed on demand
+	 * @param median the median of all pairwise distances, if known, or {@link Double#NaN}
+	 * @param minClusterSize the minimum number of objects in a cluster
+	 * @return the clustering result
+	 * @param <T> the type of the objects
+	 */
+	public static < T > HierarchicalClusteringResult< T > getHdbscanClustering( final T[] objects, final DistanceFunction distances,
+			final double median, final int minClusterSize )
+	{
+		Hdbscan hdbscan = new Hdbscan( distances, objects.length, minClusterSize );
+		int[] labels = hdbscan.cluster();
+		double[] coreDistances = hdbscan.getCoreDistances();
+		int numberOfClusters = 0;
+		for ( int label : labels )
+			numberOfClusters = Math.max( numberOfClusters, label + 1 );
+		// NB: the representative of each cluster is its object in the densest region, i.e. with the smallest core distance
+		int[] representatives = new int[ numberOfClusters ];
+		Arrays.fill( representatives, -1 );
+		for ( int o = 0; o < labels.length; o++ )
+		{
+			int label = labels[ o ];
+			if ( label >= 0 && ( representatives[ label ] < 0 || coreDistances[ o ] < coreDistances[ representatives[ label ] ] ) )
+				representatives[ label ] = o;
+		}
+		return toClusteringResult( objects, labels, representatives, distances, median );
+	}
+
+	/**
+	 * Gets the clustering result for the given objects using the given non-hierarchical clustering method and a precomputed distance matrix.
+	 *
+	 * @param objects the objects to be clustered
+	 * @param distances the symmetric distance matrix with zero diagonal
+	 * @param clusteringMethod the clustering method. Must not be hierarchical.
+	 * @param clusterNumber the number of clusters to be built. Only used by methods, which require a number of clusters.
+	 * @param minClusterSize the minimum size of a cluster. Only used by methods, which require a minimum cluster size.
+	 * @return the clustering result
+	 * @param <T> the type of the objects
+	 */
+	public static < T > HierarchicalClusteringResult< T > getClustering( final T[] objects, final double[][] distances,
+			final ClusteringMethod clusteringMethod, final int clusterNumber, final int minClusterSize )
+	{
+		double[] upperTriangle = HierarchicalClusteringUtils.getUpperTriangle( distances );
+		double median = upperTriangle.length == 0 ? Double.NaN : Util.median( upperTriangle );
+		return getClustering( objects, DistanceFunction.of( distances ), median, clusteringMethod, clusterNumber, minClusterSize );
+	}
+
+	/**
+	 * Gets the clustering result for the given objects using the given non-hierarchical clustering method and distances, which may be computed on demand,
+	 * cf. {@link DistanceFunction#of(List, org.mastodon.mamut.clustering.config.SimilarityMeasure)}.
+	 *
+	 * @param objects the objects to be clustered
+	 * @param distances the distances between the objects, either precomputed or computed on demand
+	 * @param median the median of all pairwise distances, if known, or {@link Double#NaN}
+	 * @param clusteringMethod the clustering method. Must not be hierarchical.
+	 * @param clusterNumber the number of clusters to be built. Only used by methods, which require a number of clusters.
+	 * @param minClusterSize the minimum size of a cluster. Only used by methods, which require a minimum cluster size.
+	 * @return the clustering result
+	 * @param <T> the type of the objects
+	 */
+	public static < T > HierarchicalClusteringResult< T > getClustering( final T[] objects, final DistanceFunction distances, final double median,
+			final ClusteringMethod clusteringMethod, final int clusterNumber, final int minClusterSize )
+	{
+		switch ( clusteringMethod )
+		{
+		case K_MEDOIDS:
+			return getKMedoidsClustering( objects, distances, median, clusterNumber );
+		case HDBSCAN:
+			return getHdbscanClustering( objects, distances, median, minClusterSize );
+		default:
+			throw new IllegalArgumentException( "Clustering method " + clusteringMethod.getName() + " is hierarchical." );
+		}
+	}
+
+	/**
+	 * Converts a partition of the given objects into a {@link HierarchicalClusteringResult}.
+	 * <br>
+	 * The height of each group is the largest distance of its objects to its representative. The height of the root is the largest distance
+	 * between two representatives of groups or between an object without group and a representative of a group (or the first object without
+	 * group, if there are no groups). Thus, only {@code O(n * k + k^2)} distances are requested, where {@code k} is the number of groups.
+	 *
+	 * @param objects the objects
+	 * @param labels the index of the group of each object or a negative value, if the object is not assigned to any group
+	 * @param representatives the index of the representative object of each group. The number of groups is the length of this array.
+	 * @param distances the distances between the objects
+	 * @param median the median of all pairwise distances
+	 * @return the clustering result
+	 */
+	static < T > HierarchicalClusteringResult< T > toClusteringResult( final T[] objects, final int[] labels, final int[] representatives,
+			final DistanceFunction distances, final double median )
+	{
+		int numberOfGroups = representatives.length;
+		List< List< Integer > > members = new ArrayList<>();
+		for ( int i = 0; i < numberOfGroups; i++ )
+			members.add( new ArrayList<>() );
+		List< Integer > noise = new ArrayList<>();
+		for ( int o = 0; o < labels.length; o++ )
+		{
+			if ( labels[ o ] >= 0 )
+				members.get( labels[ o ] ).add( o );
+			else
+				noise.add( o );
+		}
+
+		Cluster root = new Cluster( "root" );
+		Map< Cluster, T > clusterNodesToObjects = new HashMap<>();
+		List< Pair< Set< T >, Cluster > > groups = new ArrayList<>();
+		List< Integer > groupRepresentatives = new ArrayList<>();
+		double maxGroupHeight = 0;
+		for ( int i = 0; i < numberOfGroups; i++ )
+		{
+			List< Integer > groupMembers = members.get( i );
+			if ( groupMembers.isEmpty() )
+				continue;
+			Set< T > groupObjects = new HashSet<>();
+			Cluster groupCluster;
+			if ( groupMembers.size() == 1 )
+				groupCluster = leaf( groupMembers.get( 0 ), objects, clusterNodesToObjects );
+			else
+			{
+				groupCluster = new Cluster( "group#" + i );
+				for ( int member : groupMembers )
+					add( groupCluster, leaf( member, objects, clusterNodesToObjects ) );
+			}
+			groupMembers.forEach( member -> groupObjects.add( objects[ member ] ) );
+			double height = setGroupHeight( groupCluster, groupMembers, representatives[ i ], distances );
+			groupRepresentatives.add( representatives[ i ] );
+			maxGroupHeight = Math.max( maxGroupHeight, height );
+			add( root, groupCluster );
+			groups.add( Pair.of( groupObjects, groupCluster ) );
+		}
+		// NB: objects without a group (noise) are directly attached to the root
+		for ( int o : noise )
+			add( root, leaf( o, objects, clusterNodesToObjects ) );
+		double rootHeight = maxGroupHeight;
+		for ( int i = 0; i < groupRepresentatives.size(); i++ )
+			for ( int j = i + 1; j < groupRepresentatives.size(); j++ )
+				rootHeight = Math.max( rootHeight, distances.getDistance( groupRepresentatives.get( i ), groupRepresentatives.get( j ) ) );
+		List< Integer > anchors = groupRepresentatives.isEmpty() && !noise.isEmpty() ? noise.subList( 0, 1 ) : groupRepresentatives;
+		for ( int o : noise )
+			for ( int anchor : anchors )
+				rootHeight = Math.max( rootHeight, distances.getDistance( o, anchor ) );
+		root.setDistance( new Distance( rootHeight ) );
+		double cutoff = ( maxGroupHeight + rootHeight ) / 2d;
+		return new HierarchicalClusteringResult<>( groups, root, cutoff, median, clusterNodesToObjects );
+	}
+
+	/**
+	 * Sets the height of the given group cluster to the largest distance of its members to the given representative.
+	 */
+	private static double setGroupHeight( final Cluster groupCluster, final List< Integer > groupMembers, final int representative,
+			final DistanceFunction distances )
+	{
+		double height = 0;
+		for ( int member : groupMembers )
+			if ( member != representative )
+				height = Math.max( height, distances.getDistance( member, representative ) );
+		groupCluster.setDistance( new Distance( height ) );
+		return height;
+	}
+
+	private static < T > Cluster leaf( final int index, final T[] objects, final Map< Cluster, T > clusterNodesToObjects )
+	{
+		// NB: leaves are named by the index of the object, equivalent to the results of hierarchical clustering
+		Cluster leaf = new Cluster( String.valueOf( index ) );
+		leaf.setDistance( new Distance( 0d ) );
+		leaf.addLeafName( leaf.getName() );
+		clusterNodesToObjects.put( leaf, objects[ index ] );
+		return leaf;
+	}
+
+	private static void add( final Cluster parent, final Cluster child )
+	{
+		parent.addChild( child );
+		child.setParent( parent );
+		parent.appendLeafNames( child.getLeafNames() );
+	}
+}
@@ -0,0 +1,494 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Computes a symmetric quadratic distance matrix for a list of trees in separate local worker processes.
+ * <br>
+ * The pairs of the upper triangle of the distance matrix are split into row blocks (shards) with approximately the same number of pairs.
+ * Each shard is computed by a {@link DistanceMatrixShardWorker} running in its own JVM, which is launched from the same class path as the
+ * calling JVM. The workers read the trees from a file in a shared working directory and write their results to one file per shard into
+ * the same directory. The calling process merges these files into the distance matrix.
+ * <br>
+ * This reduces the heap size and the garbage collection load of the calling JVM for very large numbers of trees.
+ * A shard, whose worker fails, is computed again up to a configurable number of attempts.
+ * <br>
+ * The worker processes are destroyed and the working directory is deleted, when the computation ends, fails or is interrupted.
+ * A shutdown hook does the same, if the calling JVM exits during the computation.
+ */
+public class ShardedDistanceMatrix
+{
+
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+	private static final String ACTIVE_PROCESSOR_COUNT = "-XX:ActiveProcessorCount=";
+
+	private static final long DESTROY_TIMEOUT_SECONDS = 10;
+
+	private final int numberOfShards;
+
+	private final int maxAttempts;
+
+	private final List< String > jvmArguments;
+
+	private String classPath = getDefaultClassPath();
+
+	/**
+	 * Creates a new sharded distance matrix computation with {@link #DEFAULT_MAX_ATTEMPTS} attempts per shard and without additional JVM arguments.
+	 *
+	 * @param numberOfShards the number of shards, i.e. the number of worker processes running in parallel
+	 */
+	public ShardedDistanceMatrix( final int numberOfShards )
+	{
+		this( numberOfShards, DEFAULT_MAX_ATTEMPTS, Collections.emptyList() );
+	}
+
+	/**
+	 * Creates a new sharded distance matrix computation.
+	 *
+	 * @param numberOfShards the number of shards, i.e. the number of worker processes running in parallel
+	 * @param maxAttempts the maximum number of times a worker process is started for a shard
+	 * @param jvmArguments additional arguments for the worker JVMs, e.g. {@code -Xmx4g}
+	 */
+	public ShardedDistanceMatrix( final int numberOfShards, final int maxAttempts, final List< String > jvmArguments )
+	{
+		if ( numberOfShards < 1 )
+			throw new IllegalArgumentException( "The number of shards must be at least 1, but is " + numberOfShards + "." );
+		if ( maxAttempts < 1 )
+			throw new IllegalArgumentException( "The number of attempts must be at least 1, but is " + maxAttempts + "." );
+		this.numberOfShards = numberOfShards;
+		this.maxAttempts = maxAttempts;
+		this.jvmArguments = new ArrayList<>( jvmArguments );
+	}
+
+	/**
+	 * Sets the class path of the worker processes. By default, the class path of the calling JVM is used.
+	 *
+	 * @param classPath the class path
+	 */
+	public void setClassPath( final String classPath )
+	{
+		this.classPath = classPath;
+	}
+
+	/**
+	 * Computes a symmetric quadratic distance matrix for the given trees using the given similarity measure in worker processes.
+	 * The diagonals are set to zero.
+	 * <br>
+	 * The result equals the result of {@link HierarchicalClusteringUtils#getDistanceMatrix(List, SimilarityMeasure)}.
+	 *
+	 * @param trees a list of trees
+	 * @param similarityMeasure the similarity measure to be used
+	 * @return a symmetric quadratic distance matrix
+	 * @throws IllegalStateException if a shard could not be computed within the maximum number of attempts or the computation was interrupted
+	 * @throws UncheckedIOException if the working directory could not be written or read
+	 */
+	public < T extends Tree< Double > > double[][] getDistanceMatrix( final List< T > trees, final SimilarityMeasure similarityMeasure )
+	{
+		int size = trees.size();
+		double[][] distances = new double[ size ][ size ];
+		int[] boundaries = getShardBoundaries( size, numberOfShards );
+		int shards = boundaries.length - 1;
+		if ( shards == 0 )
+			return distances;
+		logger.debug( "Start computing similarity matrix for {} lineage trees in {} worker processes.", size, shards );
+		StopWatch stopWatch = StopWatch.createStarted();
+		File workingDirectory = null;
+		Thread shutdownHook = null;
+		WorkerProcesses workers = new WorkerProcesses();
+		ExecutorService executor = Executors.newFixedThreadPool( shards );
+		try
+		{
+			workingDirectory = Files.createTempDirectory( "mastodon-distance-matrix" ).toFile();
+			File directory = workingDirectory;
+			shutdownHook = new Thread( () -> cleanUp( workers, directory ) );
+			Runtime.getRuntime().addShutdownHook( shutdownHook );
+			File treesFile = new File( workingDirectory, "trees.bin" );
+			DistanceMatrixShardWorker.writeTrees( trees, treesFile );
+
+			ShardProgress progress = new ShardProgress( size, boundaries );
+			List< Future< File > > shardFiles = new ArrayList<>();
+			for ( int shard = 0; shard < shards; shard++ )
+			{
+				int shardIndex = shard;
+				File shardFile = new File( workingDirectory, "shard-" + shard + ".bin" );
+				shardFiles.add( executor.submit(
+						() -> computeShard( shardIndex, boundaries, treesFile, similarityMeasure, shardFile, progress, workers ) ) );
+			}
+			for ( Future< File > shardFile : shardFiles )
+				DistanceMatrixShardWorker.readShard( shardFile.get(), distances );
+		}
+		catch ( IOException e )
+		{
+			throw new UncheckedIOException( "Could not compute the distance matrix in worker processes.", e );
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException( "Computation of the distance matrix was interrupted.", e );
+		}
+		catch ( ExecutionException e )
+		{
+			throw new IllegalStateException( e.getCause().getMessage(), e.getCause() );
+		}
+		finally
+		{
+			// NB: interrupting the executor threads does not stop the workers, since the threads are blocked reading the worker output
+			executor.shutdownNow();
+			cleanUp( workers, workingDirectory );
+			removeShutdownHook( shutdownHook );
+		}
+		stopWatch.stop();
+		logger.debug( "Computed all distances in {} s.", stopWatch.getDuration().getSeconds() );
+		return distances;
+	}
+
+	private File computeShard( final int shard, final int[] boundaries, final File treesFile, final SimilarityMeasure similarityMeasure,
+			final File shardFile, final ShardProgress progress, final WorkerProcesses workers ) throws InterruptedException
+	{
+		List< String > command = new ArrayList<>();
+		command.add( Paths.get( System.getProperty( "java.home" ), "bin", "java" ).toString() );
+		// NB: the worker processes run in parallel, thus each of them should only use its share of the available processors
+		if ( jvmArguments.stream().noneMatch( argument -> argument.startsWith( ACTIVE_PROCESSOR_COUNT ) ) )
+			command.add( ACTIVE_PROCESSOR_COUNT + Math.max( 1, Runtime.getRuntime().availableProcessors() / ( boundaries.length - 1 ) ) );
+		command.addAll( jvmArguments );
+		command.add( "-cp" );
+		command.add( classPath );
+		command.add( DistanceMatrixShardWorker.class.getName() );
+		command.add( treesFile.getAbsolutePath() );
+		command.add( similarityMeasure.name() );
+		command.add( String.valueOf( boundaries[ shard ] ) );
+		command.add( String.valueOf( boundaries[ shard + 1 ] ) );
+		command.add( shardFile.getAbsolutePath() );
+
+		for ( int attempt = 1; attempt <= maxAttempts; attempt++ )
+		{
+			progress.reset( shard );
+			Process process = null;
+			try
+			{
+				process = workers.start( new ProcessBuilder( command ).redirectErrorStream( true ) );
+				try (BufferedReader reader =
+						new BufferedReader( new InputStreamReader( process.getInputStream(), StandardCharsets.UTF_8 ) ))
+				{
+					String line;
+					while ( ( line = reader.readLine() ) != null )
+						handleOutput( shard, line, progress );
+				}
+				int exitCode = process.waitFor();
+				if ( exitCode == 0 && shardFile.isFile() )
+					return shardFile;
+				logger.warn( "Worker process for shard {} failed with exit code {} (attempt {} of {}).", shard, exitCode, attempt,
+						maxAttempts );
+			}
+			catch ( IOException e )
+			{
+				logger.warn( "Worker process for shard {} failed (attempt {} of {}). Message: {}", shard, attempt, maxAttempts,
+						e.getMessage() );
+			}
+			finally
+			{
+				if ( process != null )
+				{
+					if ( process.isAlive() )
+						process.destroyForcibly();
+					workers.remove( process );
+				}
+			}
+		}
+		throw new IllegalStateException( "Could not compute shard " + shard + " of the distance matrix in " + maxAttempts + " attempts." );
+	}
+
+	private static void handleOutput( final int shard, final String line, final ShardProgress progress )
+	{
+		if ( !line.startsWith( DistanceMatrixShardWorker.PROGRESS_PREFIX ) )
+		{
+			logger.debug( "Shard {}: {}", shard, line );
+			return;
+		}
+		String[] tokens = line.split( " " );
+		if ( tokens.length == 3 )
+			progress.update( shard, Long.parseLong( tokens[ 1 ] ) );
+	}
+
+	/**
+	 * Splits the rows of the upper triangle of a distance matrix of the given size into row blocks with approximately the same number of pairs.
+	 * <br>
+	 * Since the number of pairs per row decreases with the row index, the first shards contain fewer rows than the last ones.
+	 * Empty shards are omitted, i.e. the number of shards may be smaller than requested, if there are only few trees.
+	 *
+	 * @param size the number of rows of the distance matrix
+	 * @param numberOfShards the requested number of shards
+	 * @return the boundaries of the shards, i.e. shard {@code s} contains the rows from {@code boundaries[s]} (inclusive) to
+	 * {@code boundaries[s + 1]} (exclusive)
+	 */
+	static int[] getShardBoundaries( final int size, final int numberOfShards )
+	{
+		long totalPairs = countPairs( size, 0, size );
+		List< Integer > boundaries = new ArrayList<>();
+		boundaries.add( 0 );
+		long pairs = 0;
+		int shard = 1;
+		for ( int row = 0; row < size - 1; row++ )
+		{
+			pairs += size - row - 1;
+			if ( pairs * numberOfShards >= totalPairs * shard )
+			{
+				boundaries.add( row + 1 );
+				while ( pairs * numberOfShards >= totalPairs * shard )
+					shard++;
+			}
+		}
+		// NB: the last row has no pairs, but is added to the last shard to cover all rows
+		if ( boundaries.size() > 1 )
+			boundaries.set( boundaries.size() - 1, size );
+		return boundaries.stream().mapToInt( Integer::intValue ).toArray();
+	}
+
+	/**
+	 * Counts the pairs of the upper triangle of a distance matrix of the given size in the given rows.
+	 */
+	static long countPairs( final int size, final int fromRow, final int toRow )
+	{
+		long pairs = 0;
+		for ( int row = fromRow; row < toRow; row++ )
+			pairs += size - row - 1;
+		return pairs;
+	}
+
+	/**
+	 * Gets the class path of the calling JVM. If the classes of this plugin have been loaded by a {@link URLClassLoader},
+	 * e.g. in Fiji, the URLs of this class loader are added to the class path.
+	 */
+	static String getDefaultClassPath()
+	{
+		Set< String > entries = new LinkedHashSet<>();
+		String classPath = System.getProperty( "java.class.path" );
+		if ( classPath != null && !classPath.isEmpty() )
+			Collections.addAll( entries, classPath.split( File.pathSeparator ) );
+		ClassLoader classLoader = ShardedDistanceMatrix.class.getClassLoader();
+		while ( classLoader != null )
+		{
+			if ( classLoader instanceof URLClassLoader )
+				for ( URL url : ( ( URLClassLoader ) classLoader ).getURLs() )
+				{
+					try
+					{
+						entries.add( Paths.get( url.toURI() ).toString() );
+					}
+					catch ( URISyntaxException | IllegalArgumentException e )
+					{
+						logger.debug( "Skipping class path entry {}. Message: {}", url, e.getMessage() );
+					}
+				}
+			classLoader = classLoader.getParent();
+		}
+		return String.join( File.pathSeparator, entries );
+	}
+
+	private static void cleanUp( final WorkerProcesses workers, final File workingDirectory )
+	{
+		// NB: the workers are destroyed first, since they may still write into the working directory
+		workers.destroyAll();
+		deleteRecursively( workingDirectory );
+	}
+
+	private static void removeShutdownHook( final Thread shutdownHook )
+	{
+		if ( shutdownHook == null )
+			return;
+		try
+		{
+			Runtime.getRuntime().removeShutdownHook( shutdownHook );
+		}
+		catch ( IllegalStateException e )
+		{
+			// NB: the JVM is already shutting down, the hook cleans up anyway
+			logger.debug( "Could not remove shutdown hook. Message: {}", e.getMessage() );
+		}
+	}
+
+	private static void deleteRecursively( final File directory )
+	{
+		if ( directory == null )
+			return;
+		try (Stream< Path > paths = Files.walk( directory.toPath() ))
+		{
+			paths.sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+		}
+		catch ( IOException e )
+		{
+			logger.warn( "Could not delete working directory {}. Message: {}", directory, e.getMessage() );
+		}
+	}
+
+	/**
+	 * Keeps track of the live worker processes, such that they can be destroyed, if the computation ends, fails or is interrupted.
+	 * <br>
+	 * After {@link #destroyAll()} has been called, no further worker processes can be started.
+	 */
+	static class WorkerProcesses
+	{
+		private final Set< Process > processes = new HashSet<>();
+
+		private boolean destroyed = false;
+
+		/**
+		 * Starts a worker process and keeps track of it.
+		 *
+		 * @param processBuilder the process builder to start the worker process
+		 * @return the started process
+		 * @throws IOException if the process could not be started
+		 * @throws IllegalStateException if the worker processes have already been destroyed
+		 */
+		synchronized Process start( final ProcessBuilder processBuilder ) throws IOException
+		{
+			if ( destroyed )
+				throw new IllegalStateException( "The worker processes have already been destroyed." );
+			Process process = processBuilder.start();
+			processes.add( process );
+			return process;
+		}
+
+		synchronized void remove( final Process process )
+		{
+			processes.remove( process );
+		}
+
+		synchronized int size()
+		{
+			return processes.size();
+		}
+
+		/**
+		 * Forcibly destroys all live worker processes and waits for them to terminate.
+		 */
+		void destroyAll()
+		{
+			List< Process > live;
+			synchronized ( this )
+			{
+				destroyed = true;
+				live = new ArrayList<>( processes );
+				processes.clear();
+			}
+			for ( Process process : live )
+				process.destroyForcibly();
+			try
+			{
+				for ( Process process : live )
+					if ( !process.waitFor( DESTROY_TIMEOUT_SECONDS, TimeUnit.SECONDS ) )
+						logger.warn( "Worker process {} did not terminate within {} s.", process, DESTROY_TIMEOUT_SECONDS );
+			}
+			catch ( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Keeps track of the number of computed distances per shard and logs the progress per shard and in total.
+	 */
+	private static class ShardProgress
+	{
+		private final long[] totalPairsPerShard;
+
+		private final long totalPairs;
+
+		private final AtomicLongArray computedPairsPerShard;
+
+		private final AtomicLong loggedPercent = new AtomicLong( -1 );
+
+		private ShardProgress( final int size, final int[] boundaries )
+		{
+			int shards = boundaries.length - 1;
+			this.totalPairsPerShard = new long[ shards ];
+			for ( int shard = 0; shard < shards; shard++ )
+				totalPairsPerShard[ shard ] = countPairs( size, boundaries[ shard ], boundaries[ shard + 1 ] );
+			this.totalPairs = countPairs( size, 0, size );
+			this.computedPairsPerShard = new AtomicLongArray( shards );
+		}
+
+		private void reset( final int shard )
+		{
+			computedPairsPerShard.set( shard, 0 );
+		}
+
+		private void update( final int shard, final long computedPairs )
+		{
+			computedPairsPerShard.set( shard, computedPairs );
+			logger.trace( "Shard {}: computed {} of {} distances.", shard, computedPairs, totalPairsPerShard[ shard ] );
+			long computed = 0;
+			for ( int i = 0; i < computedPairsPerShard.length(); i++ )
+				computed += computedPairsPerShard.get( i );
+			long percent = ( computed * 100 ) / totalPairs;
+			long previous = loggedPercent.get();
+			if ( percent / 10 > previous / 10 && loggedPercent.compareAndSet( previous, percent ) )
+				logger.debug( "Computed {} of {} distances ({}%).", computed, totalPairs, percent );
+		}
+	}
+}
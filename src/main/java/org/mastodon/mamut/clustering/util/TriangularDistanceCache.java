@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import net.imglib2.parallel.Parallelization;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DistanceFunction} that computes the distances between all pairs of {@code n} objects once and stores them as {@code float}s in a
+ * lower triangular array.
+ * <br>
+ * The distances are computed in parallel using the task executor of {@link Parallelization}, one task per row of the triangle. Each pair
+ * is computed exactly once. The memory requirement is a quarter of the memory requirement of a full {@code double[n][n]} distance matrix,
+ * at the cost of single precision. Clustering methods that request the same distance repeatedly, e.g. {@link FasterPam} once per swap pass
+ * or {@link Hdbscan} for the core distances and again for the minimum spanning tree, only look up the cached distances.
+ */
+public class TriangularDistanceCache implements DistanceFunction
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	// NB: rows[ i ][ j ] is the distance between the objects i and j for j < i
+	private final float[][] rows;
+
+	/**
+	 * Computes the distances between all pairs of {@code n} objects using the given distance function.
+	 *
+	 * @param n the number of objects
+	 * @param distances the distance function, which is called once per pair of different objects. It must be thread safe.
+	 */
+	public TriangularDistanceCache( final int n, final DistanceFunction distances )
+	{
+		logger.debug( "Start computing {} distances between {} objects.", ( long ) n * ( n - 1 ) / 2, n );
+		StopWatch stopWatch = StopWatch.createStarted();
+		rows = new float[ n ][];
+		List< Integer > rowIndices = IntStream.range( 0, n ).boxed().collect( Collectors.toList() );
+		Parallelization.getTaskExecutor().forEach( rowIndices, i -> {
+			float[] row = new float[ i ];
+			for ( int j = 0; j < i; j++ )
+				row[ j ] = ( float ) distances.getDistance( i, j );
+			rows[ i ] = row;
+		} );
+		stopWatch.stop();
+		logger.debug( "Computed all distances in {} s.", stopWatch.getDuration().getSeconds() );
+	}
+
+	/**
+	 * Computes the distances between all pairs of the given trees using the given similarity measure.
+	 *
+	 * @param trees the trees
+	 * @param similarityMeasure the similarity measure
+	 * @return the cached distances
+	 * @param <T> the type of the trees
+	 */
+	public static < T extends Tree< Double > > TriangularDistanceCache of( final List< T > trees, final SimilarityMeasure similarityMeasure )
+	{
+		return new TriangularDistanceCache( trees.size(), DistanceFunction.of( trees, similarityMeasure ) );
+	}
+
+	@Override
+	public double getDistance( final int i, final int j )
+	{
+		if ( i == j )
+			return 0;
+		return i > j ? rows[ i ][ j ] : rows[ j ][ i ];
+	}
+
+	/**
+	 * Gets the number of objects.
+	 *
+	 * @return the number of objects
+	 */
+	public int size()
+	{
+		return rows.length;
+	}
+}
@@ -36,7 +36,7 @@ import org.scijava.Cancelable;
  */
 public class CancelableImpl implements Cancelable
 {
-	private String cancelReason;
+	private volatile String cancelReason;
 
 	protected void deleteCancelReason()
 	{
@@ -29,6 +29,8 @@
 package org.mastodon.mamut.feature.branch;
 
 import net.imglib2.util.LinAlgHelpers;
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefStack;
 import org.mastodon.graph.Graph;
 import org.mastodon.graph.Vertex;
 import org.mastodon.graph.algorithm.traversal.DepthFirstIterator;
@@ -262,6 +264,60 @@ public class BranchSpotFeatureUtils
 		return totalDuration;
 	}
 
+	/**
+	 * Returns the histogram of the division times in the subtree of the given branch spot relative to the division of the branch spot
+	 * itself.
+	 * <p>
+	 * The division of a descendant branch spot (i.e. its last timepoint, if it has children) is counted in bin {@code (offset - 1) / binWidth},
+	 * where {@code offset} is the number of timepoints between the last timepoint of the given branch spot and the last timepoint of the
+	 * descendant. Divisions beyond the horizon of {@code numberOfBins * binWidth} timepoints are not counted. The division of the given branch
+	 * spot itself is not counted.
+	 * </p>
+	 * Example with a bin width of 5 and 2 bins:
+	 * <pre>
+	 *                  branchSpotA (timepoints 0-9)
+	 * 	       ┌──────────────┴─────────────┐
+	 * 	       │                            │
+	 * 	 branchSpotB (10-12)          branchSpotC (10-16)
+	 * 	 ┌─────┴──────┐              ┌──────┴───────┐
+	 * 	 │            │              │              │
+	 * 	 D (13-20)    E (13-20)      F (17-20)      G (17-20)
+	 * </pre>
+	 * In this example, the histogram of branchSpotA is [1, 1] (divisions of branchSpotB at offset 3 and branchSpotC at offset 7).
+	 *
+	 * @param branchGraph the model branch graph, which contains the branch spot
+	 * @param branchSpot the branch spot
+	 * @param binWidth the number of timepoints per bin
+	 * @param numberOfBins the number of bins
+	 * @return the number of divisions per bin
+	 */
+	public static int[] divisionHistogram( final ModelBranchGraph branchGraph, final BranchSpot branchSpot, final int binWidth,
+			final int numberOfBins )
+	{
+		int[] histogram = new int[ numberOfBins ];
+		int horizon = binWidth * numberOfBins;
+		int divisionTimepoint = branchSpot.getTimepoint();
+		BranchSpot ref = branchGraph.vertexRef();
+		BranchSpot childRef = branchGraph.vertexRef();
+		RefStack< BranchSpot > stack = RefCollections.createRefStack( branchGraph.vertices() );
+		for ( BranchLink link : branchSpot.outgoingEdges() )
+			stack.push( link.getTarget( childRef ) );
+		while ( !stack.isEmpty() )
+		{
+			BranchSpot node = stack.pop( ref );
+			int offset = node.getTimepoint() - divisionTimepoint;
+			// NB: the divisions of the descendants of this node are even later
+			if ( offset > horizon || node.outgoingEdges().isEmpty() )
+				continue;
+			histogram[ ( offset - 1 ) / binWidth ]++;
+			for ( BranchLink link : node.outgoingEdges() )
+				stack.push( link.getTarget( childRef ) );
+		}
+		branchGraph.releaseRef( ref );
+		branchGraph.releaseRef( childRef );
+		return histogram;
+	}
+
 	/**
 	 * Returns the duration of the given branch spot.
 	 * <p>
@@ -64,6 +64,7 @@ public abstract class BranchOutputSerializerTools
 			final DoublePropertyMapSerializer< Spot > propertyMapSerializer = new DoublePropertyMapSerializer<>( spotMap );
 			propertyMapSerializer.writePropertyMap( idmap, oos );
 		}
+		oos.writeObject( feature.getResultKey() );
 	}
 
 	public static < T extends AbstractOutputFeature< BranchSpot > > T deserialize( final FileIdToObjectMap< Spot > idmap,
@@ -81,6 +82,8 @@ public abstract class BranchOutputSerializerTools
 			DoublePropertyMap< BranchSpot > output = BranchFeatureSerializer.mapToBranchSpotMap( spotMap, branchGraph );
 			outputMaps.add( output );
 		}
-		return featureCreator.apply( outputMaps );
+		T feature = featureCreator.apply( outputMaps );
+		feature.setResultKey( AbstractOutputFeature.readResultKey( ois ) );
+		return feature;
 	}
 }
@@ -73,4 +73,10 @@ public class BranchUmapFeatureComputer extends AbstractUmapFeatureComputer< Bran
 	{
 		return model.getBranchGraph().vertices();
 	}
+
+	@Override
+	protected int getTimepoint( final BranchSpot branchSpot )
+	{
+		return branchSpot.getTimepoint();
+	}
 }
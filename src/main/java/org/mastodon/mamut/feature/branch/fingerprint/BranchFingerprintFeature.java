@@ -0,0 +1,239 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.branch.fingerprint;
+
+import org.mastodon.feature.Dimension;
+import org.mastodon.feature.Feature;
+import org.mastodon.feature.FeatureProjection;
+import org.mastodon.feature.FeatureProjectionKey;
+import org.mastodon.feature.FeatureProjectionSpec;
+import org.mastodon.feature.FeatureProjections;
+import org.mastodon.feature.FeatureSpec;
+import org.mastodon.feature.Multiplicity;
+import org.mastodon.mamut.feature.ValueIsSetEvaluator;
+import org.mastodon.mamut.feature.branch.BranchSpotFeatureUtils;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.properties.IntPropertyMap;
+import org.scijava.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mastodon.feature.FeatureProjectionKey.key;
+
+/**
+ * Represents a compact fingerprint of the whole track subtree of a branch spot, which allows comparing lineages without comparing their
+ * trees.
+ * <br>
+ * The fingerprint consists of:
+ * <ul>
+ * <li>the depth of the subtree, i.e. the number of branch spots on the longest path from the branch spot to a leaf (a leaf has depth 1)</li>
+ * <li>the number of leaves in the subtree</li>
+ * <li>the total duration of all branch spots in the subtree, cf. {@link BranchSpotFeatureUtils#totalBranchDurations}</li>
+ * <li>a histogram of the division times in the subtree relative to the division of the branch spot over a fixed horizon of
+ * {@value #NUMBER_OF_BINS} bins of {@value #BIN_WIDTH} timepoints, cf. {@link BranchSpotFeatureUtils#divisionHistogram}</li>
+ * </ul>
+ * In the following example the depth, the number of leaves and the total duration would equal to following branchSpots as follows:
+ *
+ * <pre>
+ *                  branchSpot0 (duration=3)
+ * 	       ┌──────────────┴─────────────┐
+ * 	       │                            │
+ * 	 branchSpot1 (duration=2)     branchSpot2 (duration=1)
+ * 	                             ┌──────┴───────────────────┐
+ * 	                             │                          │
+ * 	                       branchSpot3 (duration=2)   branchSpot4 (duration=3)
+ * </pre>
+ *
+ * <ul>
+ * <li>{@code branchSpot0 = 3, 3, 11}</li>
+ * <li>{@code branchSpot1 = 1, 1, 2}</li>
+ * <li>{@code branchSpot2 = 2, 2, 6}</li>
+ * <li>{@code branchSpot3 = 1, 1, 2}</li>
+ * <li>{@code branchSpot4 = 1, 1, 3}</li>
+ * </ul>
+ */
+public class BranchFingerprintFeature implements Feature< BranchSpot >, ValueIsSetEvaluator< BranchSpot >
+{
+	public static final String KEY = "Branch fingerprint";
+
+	private static final String HELP_STRING =
+			"Computes depth, number of leaves, total duration and a division time histogram of the sub-tree of this branch spot.";
+
+	/**
+	 * The number of timepoints per bin of the division time histogram.
+	 */
+	public static final int BIN_WIDTH = 10;
+
+	/**
+	 * The number of bins of the division time histogram.
+	 */
+	public static final int NUMBER_OF_BINS = 10;
+
+	public static final FeatureProjectionSpec DEPTH_PROJECTION_SPEC = new FeatureProjectionSpec( "Subtree depth", Dimension.NONE );
+
+	public static final FeatureProjectionSpec LEAVES_PROJECTION_SPEC = new FeatureProjectionSpec( "Subtree leaves", Dimension.NONE );
+
+	public static final FeatureProjectionSpec DURATION_PROJECTION_SPEC = new FeatureProjectionSpec( "Subtree duration", Dimension.NONE );
+
+	public static final List< FeatureProjectionSpec > DIVISIONS_PROJECTION_SPECS = createDivisionsProjectionSpecs();
+
+	public final IntPropertyMap< BranchSpot > depth;
+
+	public final IntPropertyMap< BranchSpot > leaves;
+
+	public final IntPropertyMap< BranchSpot > duration;
+
+	public final List< IntPropertyMap< BranchSpot > > divisions;
+
+	private final Map< FeatureProjectionKey, FeatureProjection< BranchSpot > > projectionMap;
+
+	public static final Spec BRANCH_FINGERPRINT_FEATURE_SPEC = new Spec();
+
+	@Plugin( type = FeatureSpec.class )
+	public static class Spec extends FeatureSpec< BranchFingerprintFeature, BranchSpot >
+	{
+		public Spec()
+		{
+			super(
+					KEY,
+					HELP_STRING,
+					BranchFingerprintFeature.class,
+					BranchSpot.class,
+					Multiplicity.SINGLE,
+					getProjectionSpecs() );
+		}
+	}
+
+	/**
+	 * Creates a new {@link BranchFingerprintFeature}.
+	 *
+	 * @param depth the depths of the subtrees
+	 * @param leaves the numbers of leaves of the subtrees
+	 * @param duration the total durations of the subtrees
+	 * @param divisions the number of divisions per bin of the division time histogram. Must contain {@value #NUMBER_OF_BINS} maps.
+	 */
+	public BranchFingerprintFeature( final IntPropertyMap< BranchSpot > depth, final IntPropertyMap< BranchSpot > leaves,
+			final IntPropertyMap< BranchSpot > duration, final List< IntPropertyMap< BranchSpot > > divisions )
+	{
+		if ( divisions.size() != NUMBER_OF_BINS )
+			throw new IllegalArgumentException( "Expected " + NUMBER_OF_BINS + " division maps, but got " + divisions.size() + "." );
+		this.depth = depth;
+		this.leaves = leaves;
+		this.duration = duration;
+		this.divisions = Collections.unmodifiableList( new ArrayList<>( divisions ) );
+		projectionMap = new LinkedHashMap<>( 3 + NUMBER_OF_BINS );
+		putProjection( DEPTH_PROJECTION_SPEC, depth );
+		putProjection( LEAVES_PROJECTION_SPEC, leaves );
+		putProjection( DURATION_PROJECTION_SPEC, duration );
+		for ( int i = 0; i < NUMBER_OF_BINS; i++ )
+			putProjection( DIVISIONS_PROJECTION_SPECS.get( i ), divisions.get( i ) );
+	}
+
+	private void putProjection( final FeatureProjectionSpec spec, final IntPropertyMap< BranchSpot > map )
+	{
+		FeatureProjectionKey key = key( spec );
+		projectionMap.put( key, FeatureProjections.project( key, map, Dimension.NONE_UNITS ) );
+	}
+
+	/**
+	 * Gets the division time histogram of the given branch spot.
+	 *
+	 * @param branchSpot the branch spot
+	 * @return the number of divisions per bin, or {@code null}, if the fingerprint of the branch spot is not set
+	 */
+	public int[] getDivisionHistogram( final BranchSpot branchSpot )
+	{
+		if ( !valueIsSet( branchSpot ) )
+			return null;
+		int[] histogram = new int[ NUMBER_OF_BINS ];
+		for ( int i = 0; i < NUMBER_OF_BINS; i++ )
+			histogram[ i ] = divisions.get( i ).get( branchSpot );
+		return histogram;
+	}
+
+	@Override
+	public FeatureProjection< BranchSpot > project( final FeatureProjectionKey key )
+	{
+		return projectionMap.get( key );
+	}
+
+	@Override
+	public Set< FeatureProjection< BranchSpot > > projections()
+	{
+		return new LinkedHashSet<>( projectionMap.values() );
+	}
+
+	@Override
+	public FeatureSpec< ? extends Feature< BranchSpot >, BranchSpot > getSpec()
+	{
+		return BRANCH_FINGERPRINT_FEATURE_SPEC;
+	}
+
+	@Override
+	public void invalidate( final BranchSpot branchSpot )
+	{
+		depth.remove( branchSpot );
+		leaves.remove( branchSpot );
+		duration.remove( branchSpot );
+		divisions.forEach( map -> map.remove( branchSpot ) );
+	}
+
+	@Override
+	public boolean valueIsSet( final BranchSpot vertex )
+	{
+		if ( !depth.isSet( vertex ) || !leaves.isSet( vertex ) || !duration.isSet( vertex ) )
+			return false;
+		return divisions.stream().allMatch( map -> map.isSet( vertex ) );
+	}
+
+	private static List< FeatureProjectionSpec > createDivisionsProjectionSpecs()
+	{
+		List< FeatureProjectionSpec > specs = new ArrayList<>( NUMBER_OF_BINS );
+		for ( int i = 0; i < NUMBER_OF_BINS; i++ )
+			specs.add( new FeatureProjectionSpec(
+					"Divisions after " + ( i * BIN_WIDTH + 1 ) + "-" + ( ( i + 1 ) * BIN_WIDTH ) + " timepoints", Dimension.NONE ) );
+		return Collections.unmodifiableList( specs );
+	}
+
+	private static FeatureProjectionSpec[] getProjectionSpecs()
+	{
+		List< FeatureProjectionSpec > specs = new ArrayList<>();
+		specs.add( DEPTH_PROJECTION_SPEC );
+		specs.add( LEAVES_PROJECTION_SPEC );
+		specs.add( DURATION_PROJECTION_SPEC );
+		specs.addAll( DIVISIONS_PROJECTION_SPECS );
+		return specs.toArray( new FeatureProjectionSpec[ 0 ] );
+	}
+}
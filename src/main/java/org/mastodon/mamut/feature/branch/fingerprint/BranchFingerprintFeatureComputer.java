@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.branch.fingerprint;
+
+import org.mastodon.mamut.feature.AbstractResettableFeatureComputer;
+import org.mastodon.mamut.feature.MamutFeatureComputer;
+import org.mastodon.mamut.feature.branch.BranchSpotFeatureUtils;
+import org.mastodon.mamut.model.branch.BranchLink;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+import org.mastodon.mamut.util.LineageTreeUtils;
+import org.mastodon.properties.IntPropertyMap;
+import org.scijava.ItemIO;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes {@link BranchFingerprintFeature}
+ * <br>
+ * Depth, number of leaves and total duration are computed bottom-up from the values of the children. The division time histogram only
+ * visits the descendants within the horizon of the histogram.
+ */
+@Plugin( type = MamutFeatureComputer.class )
+public class BranchFingerprintFeatureComputer extends AbstractResettableFeatureComputer
+{
+	@Parameter
+	protected ModelBranchGraph branchGraph;
+
+	@Parameter( type = ItemIO.OUTPUT )
+	private BranchFingerprintFeature output;
+
+	@Override
+	public void createOutput()
+	{
+		if ( null == output )
+		{
+			List< IntPropertyMap< BranchSpot > > divisions = new ArrayList<>( BranchFingerprintFeature.NUMBER_OF_BINS );
+			for ( int i = 0; i < BranchFingerprintFeature.NUMBER_OF_BINS; i++ )
+				divisions.add( new IntPropertyMap<>( branchGraph.vertices().getRefPool(), -1 ) );
+			output = new BranchFingerprintFeature( new IntPropertyMap<>( branchGraph.vertices().getRefPool(), -1 ),
+					new IntPropertyMap<>( branchGraph.vertices().getRefPool(), -1 ),
+					new IntPropertyMap<>( branchGraph.vertices().getRefPool(), -1 ), divisions );
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		super.run();
+		LineageTreeUtils.callDepthFirst( branchGraph, this::computeFingerprint, this::isCanceled );
+	}
+
+	@Override
+	protected void reset()
+	{
+		output.depth.beforeClearPool();
+		output.leaves.beforeClearPool();
+		output.duration.beforeClearPool();
+		output.divisions.forEach( IntPropertyMap::beforeClearPool );
+	}
+
+	private void computeFingerprint( @Nonnull BranchSpot vertex )
+	{
+		if ( output.valueIsSet( vertex ) && !forceComputeAll.get() )
+			return;
+		int depth = 0;
+		int leaves = 0;
+		int duration = BranchSpotFeatureUtils.branchDuration( vertex );
+		boolean isLeaf = vertex.outgoingEdges().isEmpty();
+		if ( isLeaf )
+			leaves = 1;
+		else
+		{
+			BranchSpot ref = branchGraph.vertexRef();
+			for ( BranchLink link : vertex.outgoingEdges() )
+			{
+				BranchSpot child = link.getTarget( ref );
+				depth = Math.max( depth, output.depth.get( child ) );
+				leaves += output.leaves.get( child );
+				duration += output.duration.get( child );
+			}
+			branchGraph.releaseRef( ref );
+		}
+		output.depth.set( vertex, depth + 1 );
+		output.leaves.set( vertex, leaves );
+		output.duration.set( vertex, duration );
+		int[] histogram = BranchSpotFeatureUtils.divisionHistogram( branchGraph, vertex, BranchFingerprintFeature.BIN_WIDTH,
+				BranchFingerprintFeature.NUMBER_OF_BINS );
+		for ( int i = 0; i < histogram.length; i++ )
+			output.divisions.get( i ).set( vertex, histogram[ i ] );
+	}
+}
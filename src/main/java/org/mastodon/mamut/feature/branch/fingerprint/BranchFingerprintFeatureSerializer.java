@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.branch.fingerprint;
+
+import org.mastodon.feature.FeatureSpec;
+import org.mastodon.feature.io.FeatureSerializer;
+import org.mastodon.io.FileIdToObjectMap;
+import org.mastodon.io.ObjectToFileIdMap;
+import org.mastodon.io.properties.IntPropertyMapSerializer;
+import org.mastodon.mamut.feature.branch.BranchFeatureSerializer;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+import org.mastodon.properties.IntPropertyMap;
+import org.scijava.plugin.Plugin;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * De-/serializes the {@link BranchFingerprintFeature}.
+ */
+@Plugin( type = FeatureSerializer.class )
+public class BranchFingerprintFeatureSerializer implements BranchFeatureSerializer< BranchFingerprintFeature, BranchSpot, Spot >
+{
+	@Override
+	public FeatureSpec< BranchFingerprintFeature, BranchSpot > getFeatureSpec()
+	{
+		return BranchFingerprintFeature.BRANCH_FINGERPRINT_FEATURE_SPEC;
+	}
+
+	@Override
+	public BranchFingerprintFeature deserialize( FileIdToObjectMap< Spot > idmap, ObjectInputStream ois, ModelBranchGraph branchGraph,
+			ModelGraph graph ) throws ClassNotFoundException, IOException
+	{
+		IntPropertyMap< BranchSpot > depth = readBranchSpotMap( idmap, ois, branchGraph, graph );
+		IntPropertyMap< BranchSpot > leaves = readBranchSpotMap( idmap, ois, branchGraph, graph );
+		IntPropertyMap< BranchSpot > duration = readBranchSpotMap( idmap, ois, branchGraph, graph );
+		List< IntPropertyMap< BranchSpot > > divisions = new ArrayList<>( BranchFingerprintFeature.NUMBER_OF_BINS );
+		for ( int i = 0; i < BranchFingerprintFeature.NUMBER_OF_BINS; i++ )
+			divisions.add( readBranchSpotMap( idmap, ois, branchGraph, graph ) );
+		return new BranchFingerprintFeature( depth, leaves, duration, divisions );
+	}
+
+	@Override
+	public void serialize( BranchFingerprintFeature feature, ObjectToFileIdMap< Spot > idmap, ObjectOutputStream oos,
+			ModelBranchGraph branchGraph, ModelGraph graph ) throws IOException
+	{
+		writeBranchSpotMap( feature.depth, idmap, oos, branchGraph, graph );
+		writeBranchSpotMap( feature.leaves, idmap, oos, branchGraph, graph );
+		writeBranchSpotMap( feature.duration, idmap, oos, branchGraph, graph );
+		for ( IntPropertyMap< BranchSpot > map : feature.divisions )
+			writeBranchSpotMap( map, idmap, oos, branchGraph, graph );
+	}
+
+	private static IntPropertyMap< BranchSpot > readBranchSpotMap( final FileIdToObjectMap< Spot > idmap, final ObjectInputStream ois,
+			final ModelBranchGraph branchGraph, final ModelGraph graph ) throws ClassNotFoundException, IOException
+	{
+		final IntPropertyMap< Spot > spotMap = new IntPropertyMap<>( graph.vertices(), -1 );
+		final IntPropertyMapSerializer< Spot > propertyMapSerializer = new IntPropertyMapSerializer<>( spotMap );
+		propertyMapSerializer.readPropertyMap( idmap, ois );
+		return BranchFeatureSerializer.mapToBranchSpotMap( spotMap, branchGraph );
+	}
+
+	private static void writeBranchSpotMap( final IntPropertyMap< BranchSpot > branchSpotMap, final ObjectToFileIdMap< Spot > idmap,
+			final ObjectOutputStream oos, final ModelBranchGraph branchGraph, final ModelGraph graph ) throws IOException
+	{
+		final IntPropertyMap< Spot > spotMap = BranchFeatureSerializer.branchSpotMapToMap( branchSpotMap, branchGraph, graph );
+		final IntPropertyMapSerializer< Spot > propertyMapSerializer = new IntPropertyMapSerializer<>( spotMap );
+		propertyMapSerializer.writePropertyMap( idmap, oos );
+	}
+}
@@ -30,6 +30,9 @@ package org.mastodon.mamut.feature.dimensionalityreduction;
 
 import static org.mastodon.feature.FeatureProjectionKey.key;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -57,6 +60,8 @@ public abstract class AbstractOutputFeature< V extends Vertex< ? > > implements
 
 	protected final Map< FeatureProjectionKey, FeatureProjection< V > > projectionMap;
 
+	private String resultKey;
+
 	protected AbstractOutputFeature( final List< DoublePropertyMap< V > > outputMaps )
 	{
 		this.outputMaps = outputMaps;
@@ -81,6 +86,50 @@ public abstract class AbstractOutputFeature< V extends Vertex< ? > > implements
 
 	protected abstract String getProjectionNameTemplate();
 
+	/**
+	 * Gets the key, which identifies the graph type, algorithm, settings, input dimensions and data rows, from which the outputs have been
+	 * computed. The key is saved with the project, such that an identical computation can reuse the outputs instead of computing them
+	 * again, also after reloading the project.
+	 *
+	 * @return the key or {@code null}, if the outputs cannot be reused
+	 */
+	public String getResultKey()
+	{
+		return resultKey;
+	}
+
+	/**
+	 * Sets the key, which identifies the graph type, algorithm, settings, input dimensions and data rows, from which the outputs have been
+	 * computed.
+	 *
+	 * @param resultKey the key or {@code null}, if the outputs cannot be reused
+	 */
+	public void setResultKey( final String resultKey )
+	{
+		this.resultKey = resultKey;
+	}
+
+	/**
+	 * Reads the result key, which serializers write after the output maps. Projects that have been saved by earlier versions do not
+	 * contain the key.
+	 *
+	 * @param ois the stream positioned after the output maps
+	 * @return the key or {@code null}, if the stream does not contain it
+	 * @throws IOException if the stream cannot be read
+	 * @throws ClassNotFoundException if the class of the serialized key cannot be found
+	 */
+	public static String readResultKey( final ObjectInputStream ois ) throws IOException, ClassNotFoundException
+	{
+		try
+		{
+			return ( String ) ois.readObject();
+		}
+		catch ( EOFException e )
+		{
+			return null;
+		}
+	}
+
 	@Override
 	public void invalidate( V vertex )
 	{
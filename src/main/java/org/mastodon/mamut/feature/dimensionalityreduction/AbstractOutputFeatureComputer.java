@@ -30,19 +30,45 @@ package org.mastodon.mamut.feature.dimensionalityreduction;
 
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.util.Cast;
+
 import org.mastodon.RefPool;
 import org.mastodon.collection.RefIntMap;
 import org.mastodon.collection.ref.RefIntHashMap;
+import org.mastodon.feature.Feature;
+import org.mastodon.feature.FeatureModel;
+import org.mastodon.feature.FeatureSpec;
 import org.mastodon.graph.Edge;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.graph.ListenableReadOnlyGraph;
 import org.mastodon.graph.ReadOnlyGraph;
 import org.mastodon.graph.Vertex;
 import org.mastodon.mamut.feature.AbstractSerialFeatureComputer;
 import org.mastodon.mamut.feature.ValueIsSetEvaluator;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.ColumnStatistics;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.DataHash;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.DataMatrix;
 import org.mastodon.mamut.feature.dimensionalityreduction.util.InputDimension;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.LandmarkSampling;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborDescent;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborGraph;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborGraphCache;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborSearch;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.OutOfSampleTransform;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.PrincipalComponents;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.RandomizedPca;
 import org.mastodon.mamut.feature.dimensionalityreduction.util.StandardScaler;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.properties.DoublePropertyMap;
@@ -59,6 +85,16 @@ import org.slf4j.LoggerFactory;
  * <br>
  * This class connects the UMAP library to the Mastodon project by providing the necessary data and settings.
  * It ensures that only valid data rows (i.e. rows where the selected feature projections do not have values, such as {@link Double#NaN} or {@link Double#POSITIVE_INFINITY}) are used for UMAP computations.
+ * <br>
+ * The graph is only locked for short periods, such that it stays editable during the computation: the data rows are read under the read
+ * lock, the algorithm is fitted without any lock, and the outputs are written under the write lock. Vertices, which are removed in
+ * between, do not get outputs. Vertices, which are added in between, get outputs with the next computation. The computation can be
+ * {@link #cancel(String) canceled} until the outputs are written.
+ * <br>
+ * If a {@link #setParametersKey(String) parameters key} is set, the outputs are stored with a key of the parameters and the data rows,
+ * which is saved with the project. A computation with the same key restores the outputs of the declared feature with this key instead of
+ * computing them again, as long as the feature has outputs for all vertices with valid data rows. Changes of the input feature values,
+ * of the valid data rows or of the vertices, which invalidate their outputs, therefore lead to a new computation.
  *
  * @param <V> the type of vertex
  * @param <G> the type of read-only graph
@@ -81,6 +117,39 @@ public abstract class AbstractOutputFeatureComputer< V extends Vertex< E >, E ex
 
 	private static final int NO_ENTRY = -1;
 
+	private static final long LANDMARK_SEED = 42;
+
+	/**
+	 * The number of neighbors per landmark in the nearest neighbor graph, which is used to find the nearest landmarks of the other data rows.
+	 */
+	private static final int LANDMARK_GRAPH_NEIGHBORS = 15;
+
+	/**
+	 * The number of vertices, from which data rows are read in one parallel task.
+	 */
+	private static final int EXTRACTION_BLOCK_SIZE = 4096;
+
+	private int[] rowTimepoints;
+
+	private ColumnStatistics columnStatistics;
+
+	private NearestNeighborGraphCache nearestNeighborGraphCache;
+
+	private FittedEmbedding< V > fittedEmbedding;
+
+	private String parametersKey;
+
+	private double[][] outputValues;
+
+	private OutOfSampleTransform outOfSampleTransform;
+
+	private ExecutorService executor;
+
+	/**
+	 * The interval, in which the thread waiting for the fit checks for cancellation.
+	 */
+	private static final long CANCEL_POLLING_INTERVAL_MS = 100;
+
 	protected AbstractOutputFeatureComputer( final Model model, final Context context )
 	{
 		this.model = model;
@@ -88,16 +157,75 @@ public abstract class AbstractOutputFeatureComputer< V extends Vertex< E >, E ex
 		this.vertexToRowIndexMap = new RefIntHashMap<>( getRefPool(), NO_ENTRY );
 	}
 
+	/**
+	 * Sets the cache, from which {@link #getNearestNeighborGraph(double[][], int)} takes nearest neighbor graphs, such that they can be
+	 * reused across computations.
+	 *
+	 * @param nearestNeighborGraphCache the cache or {@code null}, if graphs should not be cached
+	 */
+	public void setNearestNeighborGraphCache( final NearestNeighborGraphCache nearestNeighborGraphCache )
+	{
+		this.nearestNeighborGraphCache = nearestNeighborGraphCache;
+	}
+
+	/**
+	 * Sets the executor, in which the algorithm is fitted. While the algorithm is fitted, the calling thread waits for the result, but
+	 * stops waiting as soon as the computation is canceled. If no executor is set, the algorithm is fitted in the calling thread and a
+	 * cancellation only takes effect after the fit.
+	 *
+	 * @param executor the executor or {@code null}, if the algorithm should be fitted in the calling thread
+	 */
+	public void setExecutor( final ExecutorService executor )
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets a previously fitted embedding. If set, the next computation does not compute a new embedding, but keeps the coordinates of the
+	 * vertices, whose data rows have not changed since the embedding has been fitted, and embeds all other vertices into the fitted
+	 * embedding.
+	 *
+	 * @param fittedEmbedding the fitted embedding or {@code null}, if a new embedding should be computed
+	 */
+	void setFittedEmbedding( final FittedEmbedding< V > fittedEmbedding )
+	{
+		this.fittedEmbedding = fittedEmbedding;
+	}
+
+	/**
+	 * Sets the key, which identifies the graph type, algorithm, settings and input dimensions of the next computation. Together with a hash
+	 * of the data rows, it identifies the outputs, such that an identical computation can restore them instead of computing them again.
+	 *
+	 * @param parametersKey the key or {@code null}, if the outputs should neither be restored nor be stored for reuse
+	 */
+	void setParametersKey( final String parametersKey )
+	{
+		this.parametersKey = parametersKey;
+	}
+
+	/**
+	 * Gets the embedding, which has been fitted by the last computation, or which has been set by {@link #setFittedEmbedding(FittedEmbedding)}.
+	 *
+	 * @return the fitted embedding
+	 */
+	FittedEmbedding< V > getFittedEmbedding()
+	{
+		return fittedEmbedding;
+	}
+
 	/**
 	 * Computes the feature with the given settings and input dimensions and declares it in the feature model.
 	 * <br>
-	 * During computation, the given graph is locked for reading.
 	 * The feature values are computed for each vertex in the graph, excluding vertices with invalid data rows
 	 * (i.e. rows where the selected feature projections do not have values, such as {@link Double#NaN} or {@link Double#POSITIVE_INFINITY}).
+	 * The graph is locked for reading while the data rows are read and locked for writing while the feature values are written, but not
+	 * while the algorithm is fitted. If the outputs of an identical computation are declared in the feature model, they are restored instead.
 	 *
 	 * @param settings        the UMAP settings
 	 * @param inputDimensions the input dimensions
 	 * @param graph           the read-only graph
+	 * @throws CancellationException if the computation has been canceled before the feature values have been written
+	 * @throws IllegalStateException if the graph has been rebuilt during the computation
 	 */
 	protected void computeFeature( final CommonSettings settings, final List< InputDimension< V > > inputDimensions, final G graph )
 	{
@@ -109,20 +237,179 @@ public abstract class AbstractOutputFeatureComputer< V extends Vertex< E >, E ex
 		this.inputDimensions = inputDimensions;
 		this.forceComputeAll = new AtomicBoolean( true );
 		long start = System.currentTimeMillis();
-		ReentrantReadWriteLock.ReadLock lock = getLock( graph ).readLock();
-		lock.lock();
+		ReentrantReadWriteLock lock = getLock( graph );
+		ListenableReadOnlyGraph< V, E > listenableGraph = graph instanceof ListenableReadOnlyGraph ? Cast.unchecked( graph ) : null;
+		RemovalListener removalListener = new RemovalListener();
+		double[][] dataMatrix;
+		int[] trainingRows = null;
+		AbstractOutputFeature< V > restoredFeature;
+		String resultKey = null;
+		statusService.showStatus( "Reading data for dimensionality reduction" );
+		lock.readLock().lock();
+		try
+		{
+			dataMatrix = extractValidDataRowsAndCacheIndexes();
+			String key = parametersKey == null ? null : parametersKey + ", data=" + new DataHash( dataMatrix );
+			restoredFeature = getRestorableFeature( key );
+			if ( restoredFeature == null )
+			{
+				// NB: outputs embedded into a fitted embedding depend on the fitted embedding, thus they are not stored for reuse
+				if ( fittedEmbedding != null )
+					trainingRows = fittedEmbedding.getTrainingRows( vertexToRowIndexMap, getVertices(), dataMatrix.length );
+				else
+					resultKey = key;
+				if ( listenableGraph != null )
+					listenableGraph.addGraphListener( removalListener );
+			}
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+		logger.info( "Read {} valid data rows in {} ms.", dataMatrix.length, System.currentTimeMillis() - start );
+		if ( restoredFeature != null )
+		{
+			logger.info( "Restored the outputs of an identical computation." );
+			statusService.clearStatus();
+			feature = restoredFeature;
+			return;
+		}
 		try
 		{
-			run();
+			fitInBackground( dataMatrix, trainingRows );
+			checkCanceled();
+			lock.writeLock().lock();
+			try
+			{
+				if ( removalListener.rebuilt )
+				{
+					logger.error( "The graph has been rebuilt during the computation. The results are discarded." );
+					throw new IllegalStateException( "The graph has been rebuilt during the computation. Please compute again." );
+				}
+				if ( removalListener.removed > 0 )
+					logger.info( "{} vertices have been removed during the computation and do not get outputs.", removalListener.removed );
+				run();
+				feature.setResultKey( resultKey );
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
 		}
 		finally
 		{
-			lock.unlock();
+			if ( listenableGraph != null )
+			{
+				// NB: lock, since the listeners must not be modified while they are notified
+				lock.writeLock().lock();
+				try
+				{
+					listenableGraph.removeGraphListener( removalListener );
+				}
+				finally
+				{
+					lock.writeLock().unlock();
+				}
+			}
+			statusService.clearStatus();
 		}
 		logger.info( "Finished computing output in {} ms", System.currentTimeMillis() - start );
 		model.getFeatureModel().declareFeature( feature );
 	}
 
+	/**
+	 * Gets the feature declared in the feature model, whose outputs have been computed with the given key and which has outputs for all
+	 * vertices with valid data rows. Must be called while the graph is locked for reading.
+	 *
+	 * @param resultKey the key of the computation
+	 * @return the feature or {@code null}, if no such feature is declared or the key is {@code null}
+	 */
+	private AbstractOutputFeature< V > getRestorableFeature( final String resultKey )
+	{
+		if ( resultKey == null )
+			return null;
+		FeatureModel featureModel = model.getFeatureModel();
+		for ( FeatureSpec< ?, ? > spec : featureModel.getFeatureSpecs() )
+		{
+			Feature< ? > declaredFeature = featureModel.getFeature( spec );
+			if ( !( declaredFeature instanceof AbstractOutputFeature )
+					|| !resultKey.equals( ( ( AbstractOutputFeature< ? > ) declaredFeature ).getResultKey() ) )
+				continue;
+			// NB: the key contains the graph type, thus the feature is defined on the same vertices
+			AbstractOutputFeature< V > outputFeature = Cast.unchecked( declaredFeature );
+			for ( V vertex : vertexToRowIndexMap.keySet() )
+			{
+				if ( !outputFeature.valueIsSet( vertex ) )
+				{
+					logger.debug( "The outputs of an identical computation are incomplete and are computed again." );
+					return null;
+				}
+			}
+			return outputFeature;
+		}
+		return null;
+	}
+
+	/**
+	 * Fits the algorithm in the executor, if one has been set, and waits for the result until it is available or until the computation is
+	 * canceled.
+	 */
+	private void fitInBackground( final double[][] dataMatrix, final int[] trainingRows )
+	{
+		// NB: the computation may have been canceled before it has been started
+		checkCanceled();
+		if ( executor == null )
+		{
+			fit( dataMatrix, trainingRows );
+			return;
+		}
+		Future< ? > future = executor.submit( () -> fit( dataMatrix, trainingRows ) );
+		try
+		{
+			while ( true )
+			{
+				try
+				{
+					future.get( CANCEL_POLLING_INTERVAL_MS, TimeUnit.MILLISECONDS );
+					return;
+				}
+				catch ( TimeoutException e )
+				{
+					if ( isCanceled() )
+					{
+						// NB: the fit may not respond to the interruption, but its results are discarded
+						future.cancel( true );
+						checkCanceled();
+					}
+				}
+			}
+		}
+		catch ( InterruptedException e )
+		{
+			future.cancel( true );
+			Thread.currentThread().interrupt();
+			throw new CancellationException( "Interrupted while waiting for the dimensionality reduction." );
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new IllegalStateException( cause );
+		}
+	}
+
+	private void checkCanceled()
+	{
+		if ( isCanceled() )
+		{
+			logger.info( "Dimensionality reduction canceled. Reason: {}", getCancelReason() );
+			throw new CancellationException( getCancelReason() );
+		}
+	}
+
 	@Override
 	protected void compute( final V vertex )
 	{
@@ -132,8 +419,7 @@ public abstract class AbstractOutputFeatureComputer< V extends Vertex< E >, E ex
 		for ( int i = 0; i < settings.getNumberOfOutputDimensions(); i++ )
 		{
 			DoublePropertyMap< V > outputMap = feature.getOutputMaps().get( i );
-			double[][] result = getResult();
-			outputMap.set( vertex, result[ rowIndex ][ i ] );
+			outputMap.set( vertex, outputValues[ rowIndex ][ i ] );
 		}
 	}
 
@@ -142,7 +428,6 @@ public abstract class AbstractOutputFeatureComputer< V extends Vertex< E >, E ex
 	{
 		if ( feature == null )
 			feature = initFeature( settings.getNumberOfOutputDimensions() );
-		compute();
 	}
 
 	@Override
@@ -165,53 +450,192 @@ public abstract class AbstractOutputFeatureComputer< V extends Vertex< E >, E ex
 		feature.getOutputMaps().forEach( DoublePropertyMap::beforeClearPool );
 	}
 
-	private void compute()
+	/**
+	 * Computes the output values of the given data rows. This does not access the graph.
+	 */
+	private void fit( final double[][] dataMatrix, final int[] trainingRows )
+	{
+		if ( fittedEmbedding != null )
+		{
+			logger.debug( "Embedding new and changed data rows into the fitted embedding." );
+			statusService.showStatus( "Embedding new and changed data rows" );
+			outputValues = fittedEmbedding.transform( dataMatrix, trainingRows );
+			return;
+		}
+		double[] means = null;
+		double[] standardDeviations = null;
+		if ( settings.isStandardizeFeatures() )
+		{
+			logger.debug( "Standardizing features with {} rows and {} columns.", dataMatrix.length, inputDimensions.size() );
+			means = new double[ inputDimensions.size() ];
+			standardDeviations = new double[ inputDimensions.size() ];
+			StandardScaler.standardizeColumns( dataMatrix, columnStatistics, means, standardDeviations );
+			logger.debug( "Finished standardizing features" );
+		}
+		checkCanceled();
+		PrincipalComponents principalComponents = null;
+		double[][] algorithmInput = dataMatrix;
+		if ( settings.isReduceWithPca() && isPcaReductionSupported() && inputDimensions.size() > settings.getNumberOfPrincipalComponents() )
+		{
+			logger.info( "Reducing {} input dimensions to {} principal components.", inputDimensions.size(),
+					settings.getNumberOfPrincipalComponents() );
+			principalComponents = RandomizedPca.fit( dataMatrix, settings.getNumberOfPrincipalComponents(), RandomizedPca.DEFAULT_SEED );
+			algorithmInput = principalComponents.transform( dataMatrix );
+			logger.debug( "Finished reducing input dimensions." );
+			checkCanceled();
+		}
+		statusService.showStatus( "Fitting dimensionality reduction" );
+		if ( settings.isUseLandmarks() && algorithmInput.length > settings.getNumberOfLandmarks() )
+		{
+			computeOnLandmarks( algorithmInput );
+		}
+		else
+		{
+			computeAlgorithm( algorithmInput );
+			outputValues = getResult();
+			outOfSampleTransform = createOutOfSampleEmbedding( new NearestNeighborSearch( algorithmInput ), outputValues );
+		}
+		fittedEmbedding = new FittedEmbedding<>( dataMatrix, outputValues, means, standardDeviations, vertexToRowIndexMap,
+				principalComponents, outOfSampleTransform );
+	}
+
+	/**
+	 * Computes the algorithm on a subsample of the data rows, which is stratified by timepoint, and interpolates the embedding of all other
+	 * data rows from their nearest landmarks.
+	 */
+	private void computeOnLandmarks( final double[][] dataMatrix )
+	{
+		int[] landmarks = LandmarkSampling.stratifiedSample( rowTimepoints, settings.getNumberOfLandmarks(), LANDMARK_SEED );
+		double[][] landmarkData = new double[ landmarks.length ][];
+		for ( int i = 0; i < landmarks.length; i++ )
+			landmarkData[ i ] = dataMatrix[ landmarks[ i ] ];
+		logger.info( "Fitting on {} landmarks out of {} data rows.", landmarks.length, dataMatrix.length );
+		computeAlgorithm( landmarkData );
+		double[][] landmarkEmbedding = getResult();
+		checkCanceled();
+
+		int numberOfNeighbors = Math.min( LANDMARK_GRAPH_NEIGHBORS, landmarkData.length - 1 );
+		NearestNeighborSearch search = new NearestNeighborSearch( landmarkData, getNearestNeighborGraph( landmarkData, numberOfNeighbors ) );
+		outOfSampleTransform = createOutOfSampleEmbedding( search, landmarkEmbedding );
+
+		outputValues = new double[ dataMatrix.length ][];
+		boolean[] isLandmark = new boolean[ dataMatrix.length ];
+		for ( int i = 0; i < landmarks.length; i++ )
+		{
+			outputValues[ landmarks[ i ] ] = landmarkEmbedding[ i ];
+			isLandmark[ landmarks[ i ] ] = true;
+		}
+		int[] otherRows = new int[ dataMatrix.length - landmarks.length ];
+		double[][] otherData = new double[ otherRows.length ][];
+		for ( int row = 0, i = 0; row < dataMatrix.length; row++ )
+		{
+			if ( isLandmark[ row ] )
+				continue;
+			otherRows[ i ] = row;
+			otherData[ i++ ] = dataMatrix[ row ];
+		}
+		logger.info( "Interpolating the embedding of {} data rows from their nearest landmarks.", otherRows.length );
+		double[][] otherEmbedding = outOfSampleTransform.interpolate( otherData );
+		for ( int i = 0; i < otherRows.length; i++ )
+			outputValues[ otherRows[ i ] ] = otherEmbedding[ i ];
+		logger.info( "Finished interpolating." );
+	}
+
+	/**
+	 * Reads the valid data rows of all vertices and caches the row index of each vertex with a valid data row.
+	 * <br>
+	 * The vertices are read in parallel blocks of fixed size, each with its own vertex reference, which is possible, since the graph is
+	 * locked for reading and {@link InputDimension#getValue(Vertex) the values of the input dimensions} may be read concurrently. While the data rows are read, the statistics of their columns are accumulated, such that the data rows can later be
+	 * standardized without another pass for the statistics. The blocks are concatenated in the order of the vertices, such that the row
+	 * indices and the statistics do not depend on the number of threads.
+	 */
+	private double[][] extractValidDataRowsAndCacheIndexes()
 	{
 		vertexToRowIndexMap.clear();
-		List< double[] > data = extractValidDataRowsAndCacheIndexes();
-		double[][] dataMatrix = data.toArray( new double[ 0 ][ 0 ] );
-		if ( dataMatrix.length == 0 )
+		RefPool< V > refPool = getRefPool();
+		Collection< V > vertices = getVertices();
+		int[] vertexIds = new int[ vertices.size() ];
+		int numberOfVertices = 0;
+		for ( V vertex : vertices )
+			vertexIds[ numberOfVertices++ ] = refPool.getId( vertex );
+		List< int[] > blocks = new ArrayList<>();
+		for ( int from = 0, index = 0; from < numberOfVertices; from += EXTRACTION_BLOCK_SIZE, index++ )
+			blocks.add( new int[] { from, Math.min( numberOfVertices, from + EXTRACTION_BLOCK_SIZE ), index } );
+		ExtractedBlock[] extractedBlocks = new ExtractedBlock[ blocks.size() ];
+		Parallelization.getTaskExecutor().forEach( blocks,
+				block -> extractedBlocks[ block[ 2 ] ] = extractBlock( refPool, vertexIds, block[ 0 ], block[ 1 ] ) );
+
+		int numberOfRows = 0;
+		for ( ExtractedBlock extractedBlock : extractedBlocks )
+			numberOfRows += extractedBlock.data.getNumberOfRows();
+		if ( numberOfRows == 0 )
 		{
 			logger.error(
 					"No valid data rows found, i.e. in each existing data row there is at least one non-finite value, such as Not a Number or Infinity." );
 			throw new IllegalArgumentException(
 					"No valid data rows found, i.e. in each existing data row there is at least one non-finite value, such as Not a Number or Infinity." );
 		}
-		if ( settings.isStandardizeFeatures() )
+		double[][] dataMatrix = new double[ numberOfRows ][];
+		rowTimepoints = new int[ numberOfRows ];
+		columnStatistics = new ColumnStatistics( inputDimensions.size() );
+		V ref = refPool.createRef();
+		try
 		{
-			logger.debug( "Standardizing features with {} rows and {} columns.", dataMatrix.length, inputDimensions.size() );
-			StandardScaler.standardizeColumns( dataMatrix );
-			logger.debug( "Finished standardizing features" );
+			int rowIndex = 0;
+			for ( ExtractedBlock extractedBlock : extractedBlocks )
+			{
+				double[][] rows = extractedBlock.data.getRows();
+				for ( int i = 0; i < rows.length; i++, rowIndex++ )
+				{
+					dataMatrix[ rowIndex ] = rows[ i ];
+					rowTimepoints[ rowIndex ] = extractedBlock.timepoints[ i ];
+					vertexToRowIndexMap.put( refPool.getObject( extractedBlock.vertexIds[ i ], ref ), rowIndex );
+				}
+				columnStatistics.merge( extractedBlock.statistics );
+			}
 		}
-		computeAlgorithm( dataMatrix );
+		finally
+		{
+			refPool.releaseRef( ref );
+		}
+		return dataMatrix;
 	}
 
-	private List< double[] > extractValidDataRowsAndCacheIndexes()
+	private ExtractedBlock extractBlock( final RefPool< V > refPool, final int[] vertexIds, final int from, final int to )
 	{
-		List< double[] > data = new ArrayList<>();
-		int index = 0;
-		for ( V vertex : getVertices() )
+		ExtractedBlock extractedBlock = new ExtractedBlock( to - from, inputDimensions.size() );
+		DataMatrix data = extractedBlock.data;
+		V ref = refPool.createRef();
+		try
 		{
-			double[] row = new double[ inputDimensions.size() ];
-			boolean finiteRow = true;
-			for ( int i = 0; i < inputDimensions.size(); i++ )
+			for ( int i = from; i < to; i++ )
 			{
-				InputDimension< V > inputDimension = inputDimensions.get( i );
-				double value = inputDimension.getValue( vertex );
-				if ( Double.isNaN( value ) )
+				V vertex = refPool.getObject( vertexIds[ i ], ref );
+				double[] row = data.nextRow();
+				boolean finiteRow = true;
+				for ( int j = 0; j < inputDimensions.size(); j++ )
 				{
-					finiteRow = false;
-					break;
+					double value = inputDimensions.get( j ).getValue( vertex );
+					if ( Double.isNaN( value ) )
+					{
+						finiteRow = false;
+						break;
+					}
+					row[ j ] = value;
 				}
-				row[ i ] = value;
+				if ( !finiteRow )
+					continue;
+				int rowIndex = data.commitRow();
+				extractedBlock.vertexIds[ rowIndex ] = vertexIds[ i ];
+				extractedBlock.timepoints[ rowIndex ] = getTimepoint( vertex );
+				extractedBlock.statistics.add( row );
 			}
-			if ( !finiteRow )
-				continue;
-			data.add( row );
-			vertexToRowIndexMap.put( vertex, index );
-			index++;
 		}
-		return data;
+		finally
+		{
+			refPool.releaseRef( ref );
+		}
+		return extractedBlock;
 	}
 
 	private AbstractOutputFeature< V > initFeature( int numOutputDimensions )
@@ -225,10 +649,118 @@ public abstract class AbstractOutputFeatureComputer< V extends Vertex< E >, E ex
 		return createFeatureInstance( umapOutputMaps );
 	}
 
+	/**
+	 * Gets the nearest neighbor graph over the rows of the given data matrix. The graph is taken from the cache set by
+	 * {@link #setNearestNeighborGraphCache(NearestNeighborGraphCache)}, if any, or otherwise built.
+	 *
+	 * @param dataMatrix the data matrix, one point per row
+	 * @param numberOfNeighbors the number of neighbors per point
+	 * @return the nearest neighbor graph
+	 */
+	protected NearestNeighborGraph getNearestNeighborGraph( final double[][] dataMatrix, final int numberOfNeighbors )
+	{
+		if ( nearestNeighborGraphCache == null )
+			return NearestNeighborDescent.build( dataMatrix, numberOfNeighbors, NearestNeighborDescent.DEFAULT_SEED );
+		return nearestNeighborGraphCache.getGraph( dataMatrix, numberOfNeighbors );
+	}
+
 	protected abstract double[][] getResult();
 
 	protected abstract void computeAlgorithm( double[][] dataMatrix );
 
+	/**
+	 * Creates the out-of-sample embedding, by which new data rows are embedded into the result of {@link #computeAlgorithm(double[][])}.
+	 *
+	 * @param trainingData the nearest neighbor search over the data matrix, on which the algorithm has been computed
+	 * @param embedding the result of the algorithm
+	 * @return the out-of-sample embedding
+	 */
+	protected abstract OutOfSampleTransform createOutOfSampleEmbedding( NearestNeighborSearch trainingData, double[][] embedding );
+
+	/**
+	 * Whether the input dimensions may be reduced to their leading principal components before {@link #computeAlgorithm(double[][])}, if
+	 * this is enabled in the {@link CommonSettings}.
+	 *
+	 * @return {@code true}, if the algorithm supports the reduction, {@code false} otherwise
+	 */
+	protected boolean isPcaReductionSupported()
+	{
+		return true;
+	}
+
+	/**
+	 * Gets the timepoint of the given vertex, by which the landmarks are stratified.
+	 *
+	 * @param vertex the vertex
+	 * @return the timepoint
+	 */
+	protected abstract int getTimepoint( V vertex );
+
+	/**
+	 * The valid data rows of a block of vertices together with the vertex ids and timepoints of the rows and the statistics of their columns.
+	 */
+	private static class ExtractedBlock
+	{
+		private final DataMatrix data;
+
+		private final int[] vertexIds;
+
+		private final int[] timepoints;
+
+		private final ColumnStatistics statistics;
+
+		private ExtractedBlock( final int numberOfVertices, final int numberOfColumns )
+		{
+			this.data = new DataMatrix( numberOfVertices, numberOfColumns );
+			this.vertexIds = new int[ numberOfVertices ];
+			this.timepoints = new int[ numberOfVertices ];
+			this.statistics = new ColumnStatistics( numberOfColumns );
+		}
+	}
+
+	/**
+	 * Records vertices, which are removed from the graph during the computation, such that they do not get outputs, since their references
+	 * may point to other vertices, when the outputs are written. Also records, whether the graph has been rebuilt.
+	 */
+	private class RemovalListener implements GraphListener< V, E >
+	{
+		private volatile boolean rebuilt = false;
+
+		private int removed = 0;
+
+		@Override
+		public void graphRebuilt()
+		{
+			rebuilt = true;
+		}
+
+		@Override
+		public void vertexAdded( final V vertex )
+		{
+			// NB: added vertices get outputs with the next computation
+		}
+
+		@Override
+		public void vertexRemoved( final V vertex )
+		{
+			// NB: called while the graph is locked for writing, i.e. not while the outputs are read or written
+			if ( vertexToRowIndexMap.remove( vertex ) != NO_ENTRY )
+				removed++;
+		}
+
+		@Override
+		public void edgeAdded( final E edge )
+		{
+			// NB: edges do not affect the outputs
+		}
+
+		@Override
+		public void edgeRemoved( final E edge )
+		{
+			// NB: edges do not affect the outputs
+		}
+	}
+
 	protected abstract AbstractOutputFeature< V > createFeatureInstance( final List< DoublePropertyMap< V > > umapOutputMaps );
 
 	protected abstract RefPool< V > getRefPool();
@@ -41,6 +41,8 @@ import org.slf4j.LoggerFactory;
  * <ul>
  *     <li>whether to standardize features</li>
  *     <li>the number of output dimensions</li>
+ *     <li>whether to fit the dimensionality reduction on landmarks only, i.e. a stratified subsample of the data, and the number of landmarks</li>
+ *     <li>whether to reduce the input dimensions to their leading principal components before UMAP or t-SNE, and the number of principal components</li>
  * </ul>
  */
 public class CommonSettings
@@ -51,20 +53,56 @@ public class CommonSettings
 
 	public static final boolean DEFAULT_STANDARDIZE_FEATURES = true;
 
+	public static final boolean DEFAULT_USE_LANDMARKS = false;
+
+	public static final int DEFAULT_NUMBER_OF_LANDMARKS = 10_000;
+
+	public static final int MIN_VALUE_NUMBER_OF_LANDMARKS = 100;
+
+	public static final int MAX_VALUE_NUMBER_OF_LANDMARKS = 1_000_000;
+
+	public static final boolean DEFAULT_REDUCE_WITH_PCA = false;
+
+	public static final int DEFAULT_NUMBER_OF_PRINCIPAL_COMPONENTS = 50;
+
+	public static final int MIN_VALUE_NUMBER_OF_PRINCIPAL_COMPONENTS = 2;
+
+	public static final int MAX_VALUE_NUMBER_OF_PRINCIPAL_COMPONENTS = 1000;
+
 	private static final String NUMBER_OF_DIMENSIONS_SETTING = "NumberOfDimensions";
 
 	private static final String STANDARDIZE_FEATURES_SETTING = "StandardizeFeatures";
 
+	private static final String USE_LANDMARKS_SETTING = "UseLandmarks";
+
+	private static final String NUMBER_OF_LANDMARKS_SETTING = "NumberOfLandmarks";
+
+	private static final String REDUCE_WITH_PCA_SETTING = "ReduceWithPca";
+
+	private static final String NUMBER_OF_PRINCIPAL_COMPONENTS_SETTING = "NumberOfPrincipalComponents";
+
 	private int numberOfOutputDimensions;
 
 	private boolean standardizeFeatures;
 
+	private boolean useLandmarks;
+
+	private int numberOfLandmarks;
+
+	private boolean reduceWithPca;
+
+	private int numberOfPrincipalComponents;
+
 	/**
 	 * Constructor with default values.
 	 * Default values are:
 	 * <ul>
 	 *     <li>number of dimensions: {@value DEFAULT_NUMBER_OF_OUTPUT_DIMENSIONS}</li>
 	 *     <li>standardize features: {@value DEFAULT_STANDARDIZE_FEATURES}</li>
+	 *     <li>use landmarks: {@value DEFAULT_USE_LANDMARKS}</li>
+	 *     <li>number of landmarks: {@value DEFAULT_NUMBER_OF_LANDMARKS}</li>
+	 *     <li>reduce with PCA: {@value DEFAULT_REDUCE_WITH_PCA}</li>
+	 *     <li>number of principal components: {@value DEFAULT_NUMBER_OF_PRINCIPAL_COMPONENTS}</li>
 	 * </ul>
 	 */
 	public CommonSettings()
@@ -78,9 +116,44 @@ public class CommonSettings
 	 * @param numberOfOutputDimensions the number of neighbors to consider for relative movement.
 	 */
 	public CommonSettings( final int numberOfOutputDimensions, final boolean standardizeFeatures )
+	{
+		this( numberOfOutputDimensions, standardizeFeatures, DEFAULT_USE_LANDMARKS, DEFAULT_NUMBER_OF_LANDMARKS );
+	}
+
+	/**
+	 * Constructor with the settings for landmarks.
+	 *
+	 * @param numberOfOutputDimensions the number of output dimensions
+	 * @param standardizeFeatures whether to standardize the features
+	 * @param useLandmarks whether to fit the dimensionality reduction on landmarks only and to interpolate the embedding of all other data rows
+	 * @param numberOfLandmarks the maximum number of landmarks
+	 */
+	public CommonSettings( final int numberOfOutputDimensions, final boolean standardizeFeatures, final boolean useLandmarks,
+			final int numberOfLandmarks )
+	{
+		this( numberOfOutputDimensions, standardizeFeatures, useLandmarks, numberOfLandmarks, DEFAULT_REDUCE_WITH_PCA,
+				DEFAULT_NUMBER_OF_PRINCIPAL_COMPONENTS );
+	}
+
+	/**
+	 * Constructor with all settings.
+	 *
+	 * @param numberOfOutputDimensions the number of output dimensions
+	 * @param standardizeFeatures whether to standardize the features
+	 * @param useLandmarks whether to fit the dimensionality reduction on landmarks only and to interpolate the embedding of all other data rows
+	 * @param numberOfLandmarks the maximum number of landmarks
+	 * @param reduceWithPca whether to reduce the input dimensions to their leading principal components before UMAP or t-SNE
+	 * @param numberOfPrincipalComponents the number of principal components, to which the input dimensions are reduced
+	 */
+	public CommonSettings( final int numberOfOutputDimensions, final boolean standardizeFeatures, final boolean useLandmarks,
+			final int numberOfLandmarks, final boolean reduceWithPca, final int numberOfPrincipalComponents )
 	{
 		this.numberOfOutputDimensions = numberOfOutputDimensions;
 		this.standardizeFeatures = standardizeFeatures;
+		this.useLandmarks = useLandmarks;
+		this.numberOfLandmarks = numberOfLandmarks;
+		this.reduceWithPca = reduceWithPca;
+		this.numberOfPrincipalComponents = numberOfPrincipalComponents;
 	}
 
 	public int getNumberOfOutputDimensions()
@@ -93,6 +166,26 @@ public class CommonSettings
 		return standardizeFeatures;
 	}
 
+	public boolean isUseLandmarks()
+	{
+		return useLandmarks;
+	}
+
+	public int getNumberOfLandmarks()
+	{
+		return numberOfLandmarks;
+	}
+
+	public boolean isReduceWithPca()
+	{
+		return reduceWithPca;
+	}
+
+	public int getNumberOfPrincipalComponents()
+	{
+		return numberOfPrincipalComponents;
+	}
+
 	public void setNumberOfOutputDimensions( final int numberOfOutputDimensions )
 	{
 		this.numberOfOutputDimensions = numberOfOutputDimensions;
@@ -103,6 +196,26 @@ public class CommonSettings
 		this.standardizeFeatures = standardizeFeatures;
 	}
 
+	public void setUseLandmarks( final boolean useLandmarks )
+	{
+		this.useLandmarks = useLandmarks;
+	}
+
+	public void setNumberOfLandmarks( final int numberOfLandmarks )
+	{
+		this.numberOfLandmarks = numberOfLandmarks;
+	}
+
+	public void setReduceWithPca( final boolean reduceWithPca )
+	{
+		this.reduceWithPca = reduceWithPca;
+	}
+
+	public void setNumberOfPrincipalComponents( final int numberOfPrincipalComponents )
+	{
+		this.numberOfPrincipalComponents = numberOfPrincipalComponents;
+	}
+
 	static CommonSettings loadSettingsFromPreferences( final PrefService prefs )
 	{
 		boolean standardize = prefs == null || prefs.getBoolean( CommonSettings.class, STANDARDIZE_FEATURES_SETTING,
@@ -110,7 +223,16 @@ public class CommonSettings
 		int dimensions = prefs == null ? CommonSettings.DEFAULT_NUMBER_OF_OUTPUT_DIMENSIONS
 				: prefs.getInt( CommonSettings.class, NUMBER_OF_DIMENSIONS_SETTING,
 						CommonSettings.DEFAULT_NUMBER_OF_OUTPUT_DIMENSIONS );
-		return new CommonSettings( dimensions, standardize );
+		boolean useLandmarks = prefs != null && prefs.getBoolean( CommonSettings.class, USE_LANDMARKS_SETTING,
+				CommonSettings.DEFAULT_USE_LANDMARKS );
+		int numberOfLandmarks = prefs == null ? CommonSettings.DEFAULT_NUMBER_OF_LANDMARKS
+				: prefs.getInt( CommonSettings.class, NUMBER_OF_LANDMARKS_SETTING, CommonSettings.DEFAULT_NUMBER_OF_LANDMARKS );
+		boolean reduceWithPca = prefs != null && prefs.getBoolean( CommonSettings.class, REDUCE_WITH_PCA_SETTING,
+				CommonSettings.DEFAULT_REDUCE_WITH_PCA );
+		int numberOfPrincipalComponents = prefs == null ? CommonSettings.DEFAULT_NUMBER_OF_PRINCIPAL_COMPONENTS
+				: prefs.getInt( CommonSettings.class, NUMBER_OF_PRINCIPAL_COMPONENTS_SETTING,
+						CommonSettings.DEFAULT_NUMBER_OF_PRINCIPAL_COMPONENTS );
+		return new CommonSettings( dimensions, standardize, useLandmarks, numberOfLandmarks, reduceWithPca, numberOfPrincipalComponents );
 	}
 
 	/**
@@ -123,12 +245,17 @@ public class CommonSettings
 			return;
 		prefs.put( CommonSettings.class, STANDARDIZE_FEATURES_SETTING, isStandardizeFeatures() );
 		prefs.put( CommonSettings.class, NUMBER_OF_DIMENSIONS_SETTING, getNumberOfOutputDimensions() );
+		prefs.put( CommonSettings.class, USE_LANDMARKS_SETTING, isUseLandmarks() );
+		prefs.put( CommonSettings.class, NUMBER_OF_LANDMARKS_SETTING, getNumberOfLandmarks() );
+		prefs.put( CommonSettings.class, REDUCE_WITH_PCA_SETTING, isReduceWithPca() );
+		prefs.put( CommonSettings.class, NUMBER_OF_PRINCIPAL_COMPONENTS_SETTING, getNumberOfPrincipalComponents() );
 	}
 
 	@Override
 	public String toString()
 	{
 		return "DimensionalityReductionSettings{" + "numberOfOutputDimensions=" + numberOfOutputDimensions + ", standardizeFeatures="
-				+ standardizeFeatures + '}';
+				+ standardizeFeatures + ", useLandmarks=" + useLandmarks + ", numberOfLandmarks=" + numberOfLandmarks + ", reduceWithPca="
+				+ reduceWithPca + ", numberOfPrincipalComponents=" + numberOfPrincipalComponents + '}';
 	}
 }
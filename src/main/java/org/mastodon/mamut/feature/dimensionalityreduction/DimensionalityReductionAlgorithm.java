@@ -31,7 +31,8 @@ package org.mastodon.mamut.feature.dimensionalityreduction;
 public enum DimensionalityReductionAlgorithm
 {
 	UMAP( "UMAP", "Uniform Manifold Approximation and Projection for Dimension Reduction." ),
-	TSNE( "t-SNE", "t-distributed Stochastic Neighbor Embedding." );
+	TSNE( "t-SNE", "t-distributed Stochastic Neighbor Embedding." ),
+	PCA( "PCA", "Principal Component Analysis." );
 
 	private final String name;
 
@@ -30,6 +30,11 @@ package org.mastodon.mamut.feature.dimensionalityreduction;
 
 import java.lang.invoke.MethodHandles;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 import net.imglib2.util.Cast;
@@ -37,13 +42,17 @@ import net.imglib2.util.Cast;
 import org.mastodon.graph.Edge;
 import org.mastodon.graph.ReadOnlyGraph;
 import org.mastodon.graph.Vertex;
+import org.mastodon.mamut.feature.branch.dimensionalityreduction.pca.BranchPcaFeatureComputer;
 import org.mastodon.mamut.feature.branch.dimensionalityreduction.tsne.BranchTSneFeatureComputer;
 import org.mastodon.mamut.feature.branch.dimensionalityreduction.umap.BranchUmapFeatureComputer;
+import org.mastodon.mamut.feature.dimensionalityreduction.pca.feature.AbstractPcaFeatureComputer;
 import org.mastodon.mamut.feature.dimensionalityreduction.tsne.TSneSettings;
 import org.mastodon.mamut.feature.dimensionalityreduction.tsne.feature.AbstractTSneFeatureComputer;
 import org.mastodon.mamut.feature.dimensionalityreduction.umap.UmapSettings;
 import org.mastodon.mamut.feature.dimensionalityreduction.umap.feature.AbstractUmapFeatureComputer;
 import org.mastodon.mamut.feature.dimensionalityreduction.util.InputDimension;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborGraphCache;
+import org.mastodon.mamut.feature.spot.dimensionalityreduction.pca.SpotPcaFeatureComputer;
 import org.mastodon.mamut.feature.spot.dimensionalityreduction.tsne.SpotTSneFeatureComputer;
 import org.mastodon.mamut.feature.spot.dimensionalityreduction.umap.SpotUmapFeatureComputer;
 import org.mastodon.mamut.model.Link;
@@ -66,7 +75,30 @@ public class DimensionalityReductionController
 {
 	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
 
-	private boolean running;
+	private final AtomicBoolean running = new AtomicBoolean( false );
+
+	/**
+	 * The computer of the running computation. Guarded by this controller together with {@link #canceled}.
+	 */
+	private AbstractOutputFeatureComputer< ?, ?, ? > runningComputer;
+
+	/**
+	 * Whether the running computation has been canceled. Recorded, since the computation may be canceled before its computer is created.
+	 */
+	private boolean canceled;
+
+	/**
+	 * The executor, in which the dimensionality reductions are fitted. Its single thread is a daemon thread and terminates when idle.
+	 * <br>
+	 * NB: a fit may not respond to a cancellation. Since there is only one thread, such a fit delays the fit of the next computation
+	 * instead of running concurrently with it.
+	 */
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor( 1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+			runnable -> {
+				Thread thread = new Thread( runnable, "dimensionality-reduction" );
+				thread.setDaemon( true );
+				return thread;
+			} );
 
 	private final Context context;
 
@@ -84,6 +116,16 @@ public class DimensionalityReductionController
 
 	private final TSneSettings tSneSettings;
 
+	private final NearestNeighborGraphCache nearestNeighborGraphCache = new NearestNeighborGraphCache();
+
+	private boolean transformMode;
+
+	private FittedEmbedding< ? > fittedEmbedding;
+
+	private String fittedEmbeddingKey;
+
+	private static final String CANCEL_REASON = "Canceled by user.";
+
 	private static final String IS_MODEL_GRAPH = "IsModelGraph";
 
 	private static final String DIMENSIONALITY_REDUCTION_ALGORITHM = "DimensionalityReductionAlgorithm";
@@ -96,6 +138,7 @@ public class DimensionalityReductionController
 		this.commonSettings = CommonSettings.loadSettingsFromPreferences( prefs );
 		this.umapSettings = UmapSettings.loadSettingsFromPreferences( prefs );
 		this.tSneSettings = TSneSettings.loadSettingsFromPreferences( prefs );
+		this.executor.allowCoreThreadTimeOut( true );
 		loadSettingsFromPreferences();
 	}
 
@@ -130,29 +173,69 @@ public class DimensionalityReductionController
 	 * Computes the dimensionality reduction with the selected algorithm for the selected input dimensions.
 	 * <br>
 	 * Since the dimensionality reduction computations are computationally expensive, this method prevents multiple executions of itself at the same time.
+	 * <br>
+	 * The graph stays editable during the computation, since it is only locked while the input dimensions are read and while the outputs
+	 * are written. The algorithm is fitted in a background thread. The computation can be canceled by {@link #cancel()} from another thread.
+	 * <br>
+	 * If the declared output feature has been computed with the same graph type, algorithm, settings, input dimensions and data, e.g. before
+	 * switching to the other graph type, or before saving and reloading the project, its outputs are restored instead of computing them again.
+	 *
 	 * @param inputDimensionsSupplier a supplier for the selected input dimensions
+	 * @throws CancellationException if the computation has been canceled
 	 */
 	public < V extends Vertex< E >, E extends Edge< V > > void
 			computeFeature( final Supplier< List< InputDimension< V > > > inputDimensionsSupplier )
 	{
-		if ( running )
+		synchronized ( this )
 		{
-			logger.debug( "Dimensionality computation currently running." );
-			return;
+			if ( !running.compareAndSet( false, true ) )
+			{
+				logger.debug( "Dimensionality computation currently running." );
+				return;
+			}
+			canceled = false;
 		}
 
 		try
 		{
-			running = true;
 			if ( inputDimensionsSupplier != null )
 				updateFeature( inputDimensionsSupplier.get() );
 		}
 		finally
 		{
-			running = false;
+			synchronized ( this )
+			{
+				runningComputer = null;
+				running.set( false );
+			}
 		}
 	}
 
+	/**
+	 * Gets whether a dimensionality reduction is currently computed.
+	 *
+	 * @return {@code true}, if a dimensionality reduction is currently computed, {@code false} otherwise
+	 */
+	public boolean isRunning()
+	{
+		return running.get();
+	}
+
+	/**
+	 * Cancels the currently running dimensionality reduction, if any. The computation stops before its outputs are written, and
+	 * {@link #computeFeature(Supplier)} throws a {@link CancellationException}. This also holds, if the computation is canceled before
+	 * the algorithm has been prepared.
+	 */
+	public synchronized void cancel()
+	{
+		if ( !running.get() )
+			return;
+		logger.info( "Canceling dimensionality reduction." );
+		canceled = true;
+		if ( runningComputer != null )
+			runningComputer.cancel( CANCEL_REASON );
+	}
+
 	/**
 	 * Sets the graph type for the input and output feature.
 	 * @param isModelGraph {@code true} if the dimensionality reduction is to be computed for the model graph, {@code false} for the branch graph
@@ -171,6 +254,32 @@ public class DimensionalityReductionController
 		this.algorithm = algorithm;
 	}
 
+	/**
+	 * Sets whether the next computations should embed new and changed vertices into the last computed embedding instead of computing a new
+	 * embedding.
+	 * <br>
+	 * In transform mode, the vertices, whose data has not changed since the last computed embedding, keep their coordinates. All other
+	 * vertices are embedded by optimizing their coordinates against the fixed coordinates of their nearest neighbors in the last computed
+	 * embedding. If no embedding has been computed yet with the same graph type, algorithm, settings and input dimensions, a new embedding
+	 * is computed.
+	 *
+	 * @param transformMode {@code true}, if new and changed vertices should be embedded into the last computed embedding, {@code false}, if a new embedding should be computed
+	 */
+	public void setTransformMode( final boolean transformMode )
+	{
+		this.transformMode = transformMode;
+	}
+
+	/**
+	 * Gets whether the next computations embed new and changed vertices into the last computed embedding.
+	 *
+	 * @return {@code true}, if new and changed vertices are embedded into the last computed embedding, {@code false}, if a new embedding is computed
+	 */
+	public boolean isTransformMode()
+	{
+		return transformMode;
+	}
+
 	private < V extends Vertex< E >, E extends Edge< V >, G extends ReadOnlyGraph< V, E > > void
 			updateFeature( final List< InputDimension< V > > inputDimensions )
 	{
@@ -188,21 +297,35 @@ public class DimensionalityReductionController
 		}
 
 		G graph = getGraph( isModelGraph );
+		String key = getFittedEmbeddingKey( inputDimensions );
+		FittedEmbedding< V > previousEmbedding = null;
+		if ( transformMode )
+		{
+			if ( key.equals( fittedEmbeddingKey ) )
+				previousEmbedding = Cast.unchecked( fittedEmbedding );
+			else
+				logger.info( "No embedding with the current graph type, algorithm, settings and input dimensions available. "
+						+ "Computing a new embedding." );
+		}
 		switch ( algorithm )
 		{
 		case UMAP:
 			AbstractUmapFeatureComputer< V, E, G > umapFeatureComputer =
 					isModelGraph ? Cast.unchecked( new SpotUmapFeatureComputer( model, context ) )
 							: Cast.unchecked( new BranchUmapFeatureComputer( model, context ) );
+			prepareComputer( umapFeatureComputer, previousEmbedding, key );
 			umapFeatureComputer.computeFeature( commonSettings, umapSettings, inputDimensions, graph );
+			updateFittedEmbedding( umapFeatureComputer, key );
 			break;
 		case TSNE:
 			AbstractTSneFeatureComputer< V, E, G > tSneFeatureComputer =
 					isModelGraph ? Cast.unchecked( new SpotTSneFeatureComputer( model, context ) )
 							: Cast.unchecked( new BranchTSneFeatureComputer( model, context ) );
+			prepareComputer( tSneFeatureComputer, previousEmbedding, key );
 			try
 			{
 				tSneFeatureComputer.computeFeature( commonSettings, tSneSettings, inputDimensions, graph );
+				updateFittedEmbedding( tSneFeatureComputer, key );
 			}
 			catch ( ArrayIndexOutOfBoundsException e )
 			{
@@ -210,11 +333,49 @@ public class DimensionalityReductionController
 				throw new ArrayIndexOutOfBoundsException( "Not enough data for t-SNE computation." );
 			}
 			break;
+		case PCA:
+			AbstractPcaFeatureComputer< V, E, G > pcaFeatureComputer =
+					isModelGraph ? Cast.unchecked( new SpotPcaFeatureComputer( model, context ) )
+							: Cast.unchecked( new BranchPcaFeatureComputer( model, context ) );
+			prepareComputer( pcaFeatureComputer, previousEmbedding, key );
+			pcaFeatureComputer.computeFeature( commonSettings, inputDimensions, graph );
+			updateFittedEmbedding( pcaFeatureComputer, key );
+			break;
 		default:
 			throw new IllegalArgumentException( "Unknown algorithm: " + algorithm );
 		}
 	}
 
+	private < V extends Vertex< E >, E extends Edge< V >, G extends ReadOnlyGraph< V, E > > void
+			prepareComputer( final AbstractOutputFeatureComputer< V, E, G > computer, final FittedEmbedding< V > previousEmbedding,
+					final String key )
+	{
+		computer.setNearestNeighborGraphCache( nearestNeighborGraphCache );
+		computer.setFittedEmbedding( previousEmbedding );
+		computer.setParametersKey( key );
+		computer.setExecutor( executor );
+		synchronized ( this )
+		{
+			runningComputer = computer;
+			// NB: a cancellation before the computer has been created is applied now
+			if ( canceled )
+				computer.cancel( CANCEL_REASON );
+		}
+	}
+
+	/**
+	 * Keeps the embedding fitted by the given computer for the next computation in transform mode. If the computer has restored the outputs
+	 * of an identical computation without fitting an embedding, the embedding fitted with the same key, if any, is kept.
+	 */
+	private void updateFittedEmbedding( final AbstractOutputFeatureComputer< ?, ?, ? > computer, final String key )
+	{
+		FittedEmbedding< ? > computedEmbedding = computer.getFittedEmbedding();
+		if ( computedEmbedding == null && key.equals( fittedEmbeddingKey ) )
+			return;
+		fittedEmbedding = computedEmbedding;
+		fittedEmbeddingKey = key;
+	}
+
 	private < V extends Vertex< E >, E extends Edge< V >, G extends ReadOnlyGraph< V, ? > > G getGraph( boolean isSpotGraph )
 	{
 		if ( isSpotGraph )
@@ -222,6 +383,28 @@ public class DimensionalityReductionController
 		return Cast.unchecked( model.getBranchGraph() );
 	}
 
+	/**
+	 * Gets a key, which identifies the graph type, algorithm, settings and input dimensions of a computation. An embedding can only be
+	 * reused by a computation with the same key. Outputs can only be restored by a computation with the same key and the same data.
+	 */
+	private String getFittedEmbeddingKey( final List< ? > inputDimensions )
+	{
+		Object algorithmSettings;
+		switch ( algorithm )
+		{
+		case UMAP:
+			algorithmSettings = umapSettings;
+			break;
+		case TSNE:
+			algorithmSettings = tSneSettings;
+			break;
+		default:
+			algorithmSettings = null;
+			break;
+		}
+		return isModelGraph + ", " + algorithm + ", " + commonSettings + ", " + algorithmSettings + ", " + inputDimensions;
+	}
+
 	/**
 	 * Gets the vertex and edge type for the dimensionality reduction, i.e. {@link Spot} or {@link BranchSpot}.
 	 * @return the vertex type
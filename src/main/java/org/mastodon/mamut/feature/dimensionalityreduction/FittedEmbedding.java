@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.mastodon.collection.RefIntMap;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.OutOfSampleTransform;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.PrincipalComponents;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.StandardScaler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A dimensionality reduction, which has been fitted to the data rows of a set of vertices, and which can embed the data rows of new or
+ * changed vertices into the same embedding without recomputing it.
+ * <br>
+ * The fitted embedding keeps the (standardized) training data, the parameters of the standardization, the embedding and the training row
+ * of each vertex. Vertices, whose data row is equal to their training row, keep their coordinates. All other vertices are embedded by an
+ * {@link OutOfSampleTransform} against the fixed embedding of the training data. If the embedding has been fitted on landmarks, the
+ * training data comprises all data rows, while the out-of-sample transform only refers to the landmarks. If the input dimensions have been
+ * reduced to their principal components before fitting, new data rows are projected onto the same principal components first.
+ *
+ * @param <V> the type of vertex
+ */
+class FittedEmbedding< V >
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private final double[][] trainingData;
+
+	private final double[][] embedding;
+
+	private final double[] means;
+
+	private final double[] standardDeviations;
+
+	private final RefIntMap< V > vertexToTrainingRowMap;
+
+	private final PrincipalComponents principalComponents;
+
+	private final OutOfSampleTransform outOfSampleTransform;
+
+	/**
+	 * Creates a fitted embedding.
+	 *
+	 * @param trainingData the standardized training data, one row per vertex
+	 * @param embedding the embedding of the training data
+	 * @param means the means, with which the training data has been standardized, or {@code null}, if it has not been standardized
+	 * @param standardDeviations the standard deviations, with which the training data has been standardized, or {@code null}, if it has not been standardized
+	 * @param vertexToTrainingRowMap the map from each vertex to its row in the training data
+	 * @param principalComponents the principal components, onto which the training data has been projected before fitting, or {@code null}, if it has not been projected
+	 * @param outOfSampleTransform the out-of-sample transform for the training data and its embedding
+	 */
+	FittedEmbedding( final double[][] trainingData, final double[][] embedding, final double[] means, final double[] standardDeviations,
+			final RefIntMap< V > vertexToTrainingRowMap, final PrincipalComponents principalComponents,
+			final OutOfSampleTransform outOfSampleTransform )
+	{
+		this.trainingData = trainingData;
+		this.embedding = embedding;
+		this.means = means;
+		this.standardDeviations = standardDeviations;
+		this.vertexToTrainingRowMap = vertexToTrainingRowMap;
+		this.principalComponents = principalComponents;
+		this.outOfSampleTransform = outOfSampleTransform;
+	}
+
+	/**
+	 * Gets the training row of the vertex of each data row, or {@code -1}, if the vertex is not contained in the training data.
+	 * <br>
+	 * This reads the vertices of the graph and should be called while the graph is locked. In contrast,
+	 * {@link #transform(double[][], int[])} does not access the graph.
+	 *
+	 * @param vertexToRowIndexMap the map from each vertex to its row in the data matrix
+	 * @param vertices the vertices
+	 * @param numberOfRows the number of rows of the data matrix
+	 * @return the training row of each data row
+	 */
+	int[] getTrainingRows( final RefIntMap< V > vertexToRowIndexMap, final Collection< V > vertices, final int numberOfRows )
+	{
+		int[] trainingRows = new int[ numberOfRows ];
+		Arrays.fill( trainingRows, -1 );
+		for ( V vertex : vertices )
+		{
+			int row = vertexToRowIndexMap.get( vertex );
+			if ( row == vertexToRowIndexMap.getNoEntryValue() )
+				continue;
+			int trainingRow = vertexToTrainingRowMap.get( vertex );
+			if ( trainingRow != vertexToTrainingRowMap.getNoEntryValue() )
+				trainingRows[ row ] = trainingRow;
+		}
+		return trainingRows;
+	}
+
+	/**
+	 * Embeds the given data rows. The data rows are standardized in place like the training data. Data rows, which are equal to their
+	 * training row, keep the coordinates of their training row.
+	 *
+	 * @param dataMatrix the data rows
+	 * @param trainingRows the training row of each data row, or {@code -1}, as given by {@link #getTrainingRows(RefIntMap, Collection, int)}
+	 * @return the embedding of the data rows
+	 */
+	double[][] transform( final double[][] dataMatrix, final int[] trainingRows )
+	{
+		if ( means != null )
+			StandardScaler.standardizeRows( dataMatrix, means, standardDeviations );
+		double[][] result = new double[ dataMatrix.length ][];
+		int[] rowsToEmbed = new int[ dataMatrix.length ];
+		int numberOfRowsToEmbed = 0;
+		for ( int row = 0; row < dataMatrix.length; row++ )
+		{
+			int trainingRow = trainingRows[ row ];
+			if ( trainingRow >= 0 && Arrays.equals( dataMatrix[ row ], trainingData[ trainingRow ] ) )
+				result[ row ] = embedding[ trainingRow ];
+			else
+				rowsToEmbed[ numberOfRowsToEmbed++ ] = row;
+		}
+		double[][] newRows = new double[ numberOfRowsToEmbed ][];
+		for ( int i = 0; i < numberOfRowsToEmbed; i++ )
+			newRows[ i ] = dataMatrix[ rowsToEmbed[ i ] ];
+		if ( principalComponents != null )
+			newRows = principalComponents.transform( newRows );
+		double[][] newEmbedding = outOfSampleTransform.transform( newRows );
+		for ( int i = 0; i < numberOfRowsToEmbed; i++ )
+			result[ rowsToEmbed[ i ] ] = newEmbedding[ i ];
+		logger.info( "Embedded {} new or changed data rows into the existing embedding. Kept the coordinates of {} data rows.",
+				numberOfRowsToEmbed, dataMatrix.length - numberOfRowsToEmbed );
+		return result;
+	}
+}
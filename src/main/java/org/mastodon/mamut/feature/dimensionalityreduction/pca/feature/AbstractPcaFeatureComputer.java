@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.pca.feature;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.mastodon.RefPool;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.ReadOnlyGraph;
+import org.mastodon.graph.Vertex;
+import org.mastodon.mamut.feature.dimensionalityreduction.AbstractOutputFeatureComputer;
+import org.mastodon.mamut.feature.dimensionalityreduction.CommonSettings;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.InputDimension;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborSearch;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.PrincipalComponents;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.RandomizedPca;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.properties.DoublePropertyMap;
+import org.scijava.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Abstract class for computing PCA features in the Mastodon project.
+ * <br>
+ * This provides the base implementation for computing PCA features on vertices in a read-only graph.
+ * The principal components are computed by {@link RandomizedPca}. The output dimensions are the coordinates of the data rows along the
+ * leading principal components.
+ * <br>
+ * Since PCA is a linear projection, new data rows are projected exactly like the data rows, on which the principal components have been
+ * computed. Thus, embedding new data rows into a fitted PCA, or fitting a PCA on landmarks, gives the same coordinates as a PCA on all
+ * data rows with the same principal components.
+ *
+ * @param <V> the type of vertex
+ * @param <G> the type of read-only graph
+ */
+public abstract class AbstractPcaFeatureComputer< V extends Vertex< E >, E extends Edge< V >, G extends ReadOnlyGraph< V, E > >
+		extends AbstractOutputFeatureComputer< V, E, G >
+{
+
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private PrincipalComponents principalComponents;
+
+	private double[][] pcaResult;
+
+	protected AbstractPcaFeatureComputer( final Model model, final Context context )
+	{
+		super( model, context );
+	}
+
+	public void computeFeature( final CommonSettings commonSettings, final List< InputDimension< V > > inputDimensions, final G graph )
+	{
+		super.computeFeature( commonSettings, inputDimensions, graph );
+	}
+
+	@Override
+	protected void computeAlgorithm( final double[][] dataMatrix )
+	{
+		int columns = dataMatrix[ 0 ].length;
+		int numberOfComponents = settings.getNumberOfOutputDimensions();
+		if ( numberOfComponents > columns )
+		{
+			logger.error( "For PCA, the number of output dimensions ({}) must not be higher than the number of input dimensions ({}).",
+					numberOfComponents, columns );
+			throw new IllegalArgumentException( "For PCA, the number of output dimensions (" + numberOfComponents
+					+ ") must not be higher than the number of input dimensions (" + columns + ")." );
+		}
+		logger.info( "Computing PCA. Data matrix has {} rows x {} columns.", dataMatrix.length, columns );
+		principalComponents = RandomizedPca.fit( dataMatrix, numberOfComponents, RandomizedPca.DEFAULT_SEED );
+		pcaResult = principalComponents.transform( dataMatrix );
+		logger.info( "Finished computing PCA. Results has {} rows x {} columns.", pcaResult.length, numberOfComponents );
+	}
+
+	/**
+	 * Gets the fitted principal components. New data rows are projected onto them, such that the given nearest neighbor search is not
+	 * needed.
+	 */
+	@Override
+	protected PrincipalComponents createOutOfSampleEmbedding( final NearestNeighborSearch trainingData, final double[][] embedding )
+	{
+		return principalComponents;
+	}
+
+	/**
+	 * Reducing the input dimensions by PCA before PCA would not change the result.
+	 */
+	@Override
+	protected boolean isPcaReductionSupported()
+	{
+		return false;
+	}
+
+	@Override
+	protected double[][] getResult()
+	{
+		return pcaResult;
+	}
+
+	protected abstract AbstractPcaFeature< V > createFeatureInstance( final List< DoublePropertyMap< V > > outputMaps );
+
+	protected abstract RefPool< V > getRefPool();
+
+	protected abstract ReentrantReadWriteLock getLock( final G graph );
+}
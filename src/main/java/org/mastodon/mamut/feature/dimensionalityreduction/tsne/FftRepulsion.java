@@ -0,0 +1,500 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.tsne;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.parallel.Parallelization;
+
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+/**
+ * Approximates the repulsive forces of t-SNE by interpolation on an equispaced grid and convolution with the fast Fourier transform, as
+ * described by <a href="https://doi.org/10.1038/s41592-018-0308-4">Linderman et al. (2019)</a> (FIt-SNE).
+ * <br>
+ * The bounding cube of the embedding is divided into boxes and each point is interpolated by Lagrange polynomials from
+ * {@value #INTERPOLATION_POINTS} equispaced nodes per dimension in its box. The nodes of all boxes form an equispaced grid, on which the
+ * sums of the squared Cauchy kernel {@code 1 / (1 + |y_i - y_j|^2)^2} over all points are a discrete convolution, which is computed by the
+ * fast Fourier transform. The sums of the Cauchy kernel itself, i.e. the normalization of t-SNE, follow from the same convolution with the
+ * charges {@code 1}, {@code y_j} and {@code |y_j|^2}. Thus, the cost per iteration is linear in the number of points plus
+ * {@code O(g log g)} for a grid of {@code g} nodes.
+ * <br>
+ * The number of boxes grows with the spread of the embedding, such that boxes are not wider than {@value #MAX_BOX_WIDTH}, but is bounded
+ * per number of dimensions, since the grid size grows exponentially with the number of dimensions.
+ */
+class FftRepulsion
+{
+	static final int INTERPOLATION_POINTS = 3;
+
+	static final double MAX_BOX_WIDTH = 1;
+
+	/**
+	 * The minimum number of boxes per dimension, indexed by the number of dimensions.
+	 */
+	private static final int[] MIN_BOXES = { 0, 10, 10, 5 };
+
+	/**
+	 * The maximum number of boxes per dimension, indexed by the number of dimensions.
+	 */
+	private static final int[] MAX_BOXES = { 0, 1000, 170, 21 };
+
+	private static final double MIN_SPREAD = 1e-6;
+
+	private static final int BLOCK_SIZE = 4096;
+
+	private static final int LINES_PER_COPY = 16;
+
+	private final int numberOfDimensions;
+
+	private final int numberOfTerms;
+
+	/**
+	 * Creates the repulsion for embeddings with the given number of dimensions.
+	 *
+	 * @param numberOfDimensions the number of dimensions of the embedding, between 1 and 3
+	 */
+	FftRepulsion( final int numberOfDimensions )
+	{
+		if ( numberOfDimensions < 1 || numberOfDimensions >= MIN_BOXES.length )
+			throw new IllegalArgumentException(
+					"Number of dimensions must be between 1 and " + ( MIN_BOXES.length - 1 ) + ", but is " + numberOfDimensions + "." );
+		this.numberOfDimensions = numberOfDimensions;
+		// charges: 1, y_1, ..., y_d, |y|^2
+		this.numberOfTerms = numberOfDimensions + 2;
+	}
+
+	/**
+	 * Computes the normalized repulsive force {@code sum_j q_ij^2 Z (y_i - y_j)} on each point, where {@code q_ij Z = 1 / (1 + |y_i - y_j|^2)}
+	 * and {@code Z = sum_{i != j} 1 / (1 + |y_i - y_j|^2)}.
+	 *
+	 * @param embedding the points of the embedding, one point per row
+	 * @param forces the array, into which the repulsive forces are written, one point per row
+	 * @return the normalization {@code Z}
+	 */
+	double computeRepulsiveForces( final double[][] embedding, final double[][] forces )
+	{
+		int numberOfPoints = embedding.length;
+		Grid grid = new Grid( embedding );
+		double[][] potentials = new double[ numberOfTerms ][ numberOfPoints ];
+		double[] kernelTransform = grid.getKernelTransform();
+		for ( int term = 0; term < numberOfTerms; term += 2 )
+		{
+			// NB: two real charges are convolved at once as the real and the imaginary part of one complex grid, since the kernel is real and symmetric
+			int imaginaryTerm = term + 1 < numberOfTerms ? term + 1 : -1;
+			double[][] values = grid.spread( embedding, term, imaginaryTerm );
+			transform( values, grid.fftLength, numberOfDimensions, TransformType.FORWARD, grid.nodesPerDimension );
+			for ( int i = 0; i < kernelTransform.length; i++ )
+			{
+				values[ 0 ][ i ] *= kernelTransform[ i ];
+				values[ 1 ][ i ] *= kernelTransform[ i ];
+			}
+			transform( values, grid.fftLength, numberOfDimensions, TransformType.INVERSE, grid.nodesPerDimension );
+			grid.gather( values[ 0 ], potentials[ term ] );
+			if ( imaginaryTerm >= 0 )
+				grid.gather( values[ 1 ], potentials[ imaginaryTerm ] );
+		}
+
+		double normalization = -numberOfPoints;
+		for ( int i = 0; i < numberOfPoints; i++ )
+		{
+			double[] point = embedding[ i ];
+			double squaredNorm = 0;
+			double dotProduct = 0;
+			for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+			{
+				squaredNorm += point[ dimension ] * point[ dimension ];
+				dotProduct += point[ dimension ] * potentials[ 1 + dimension ][ i ];
+			}
+			normalization += ( 1 + squaredNorm ) * potentials[ 0 ][ i ] - 2 * dotProduct + potentials[ numberOfTerms - 1 ][ i ];
+		}
+		for ( int i = 0; i < numberOfPoints; i++ )
+			for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+				forces[ i ][ dimension ] =
+						( embedding[ i ][ dimension ] * potentials[ 0 ][ i ] - potentials[ 1 + dimension ][ i ] ) / normalization;
+		return normalization;
+	}
+
+	/**
+	 * Computes the same repulsive forces as {@link #computeRepulsiveForces(double[][], double[][])} exactly, i.e. in time quadratic in the
+	 * number of points, which is faster than the interpolation for small embeddings.
+	 *
+	 * @param embedding the points of the embedding, one point per row
+	 * @param forces the array, into which the repulsive forces are written, one point per row
+	 * @return the normalization {@code Z}
+	 */
+	static double computeExactRepulsiveForces( final double[][] embedding, final double[][] forces )
+	{
+		int numberOfPoints = embedding.length;
+		List< int[] > blocks = getBlocks( numberOfPoints );
+		double[] normalizations = new double[ blocks.size() ];
+		Parallelization.getTaskExecutor().forEach( blocks, block -> {
+			double normalization = 0;
+			for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+			{
+				double[] point = embedding[ i ];
+				double[] force = forces[ i ];
+				Arrays.fill( force, 0 );
+				for ( int j = 0; j < numberOfPoints; j++ )
+				{
+					if ( i == j )
+						continue;
+					double[] other = embedding[ j ];
+					double squaredDistance = 0;
+					for ( int dimension = 0; dimension < point.length; dimension++ )
+						squaredDistance += ( point[ dimension ] - other[ dimension ] ) * ( point[ dimension ] - other[ dimension ] );
+					double cauchy = 1 / ( 1 + squaredDistance );
+					normalization += cauchy;
+					for ( int dimension = 0; dimension < point.length; dimension++ )
+						force[ dimension ] += cauchy * cauchy * ( point[ dimension ] - other[ dimension ] );
+				}
+			}
+			normalizations[ block[ 0 ] / BLOCK_SIZE ] = normalization;
+		} );
+		double normalization = 0;
+		for ( double blockNormalization : normalizations )
+			normalization += blockNormalization;
+		for ( double[] force : forces )
+			for ( int dimension = 0; dimension < force.length; dimension++ )
+				force[ dimension ] /= normalization;
+		return normalization;
+	}
+
+	/**
+	 * Gets the charge of the given point for the given term, i.e. {@code 1}, {@code y_1}, ..., {@code y_d} or {@code |y|^2}.
+	 */
+	private double getCharge( final double[] point, final int term )
+	{
+		if ( term == 0 )
+			return 1;
+		if ( term <= numberOfDimensions )
+			return point[ term - 1 ];
+		double squaredNorm = 0;
+		for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+			squaredNorm += point[ dimension ] * point[ dimension ];
+		return squaredNorm;
+	}
+
+	/**
+	 * Computes the discrete Fourier transform of the given complex grid with the given side length and number of dimensions in place, by
+	 * one-dimensional transforms along each axis. The inverse transform is scaled by the number of grid nodes.
+	 * <br>
+	 * Only the nodes with all coordinates below the given bound are relevant: for the forward transform, all other nodes must be zero and
+	 * one-dimensional transforms of lines, which contain only such nodes, are skipped. For the inverse transform, only the relevant nodes are
+	 * correct afterwards.
+	 */
+	static void transform( final double[][] values, final int length, final int numberOfDimensions, final TransformType type,
+			final int bound )
+	{
+		for ( int axis = 0, stride = 1; axis < numberOfDimensions; axis++, stride *= length )
+		{
+			int axisStride = stride;
+			List< int[] > blocks = getLineBlocks( values[ 0 ].length / length, length, axis, numberOfDimensions, type, bound );
+			Parallelization.getTaskExecutor().forEach( blocks, block -> {
+				// NB: neighboring lines are copied together, such that the grid is read contiguously also for strided lines
+				double[][][] lines = new double[ LINES_PER_COPY ][ 2 ][ length ];
+				for ( int from = 0; from < block.length; from += LINES_PER_COPY )
+				{
+					int count = Math.min( LINES_PER_COPY, block.length - from );
+					for ( int k = 0, offset = 0; k < length; k++, offset += axisStride )
+						for ( int line = 0; line < count; line++ )
+						{
+							lines[ line ][ 0 ][ k ] = values[ 0 ][ block[ from + line ] + offset ];
+							lines[ line ][ 1 ][ k ] = values[ 1 ][ block[ from + line ] + offset ];
+						}
+					for ( int line = 0; line < count; line++ )
+						FastFourierTransformer.transformInPlace( lines[ line ], DftNormalization.STANDARD, type );
+					for ( int k = 0, offset = 0; k < length; k++, offset += axisStride )
+						for ( int line = 0; line < count; line++ )
+						{
+							values[ 0 ][ block[ from + line ] + offset ] = lines[ line ][ 0 ][ k ];
+							values[ 1 ][ block[ from + line ] + offset ] = lines[ line ][ 1 ][ k ];
+						}
+				}
+			} );
+		}
+	}
+
+	/**
+	 * Gets the start indices of the lines along the given axis, which need to be transformed, in blocks.
+	 * Before the axis is transformed, the forward transform has only changed the axes below it, such that lines with a coordinate of a higher axis
+	 * out of bound are still zero. The inverse transform only needs lines with the coordinates of the lower axes, which have already been
+	 * transformed, in bound.
+	 */
+	private static List< int[] > getLineBlocks( final int numberOfLines, final int length, final int axis, final int numberOfDimensions,
+			final TransformType type, final int bound )
+	{
+		int stride = 1;
+		for ( int dimension = 0; dimension < axis; dimension++ )
+			stride *= length;
+		int[] starts = new int[ numberOfLines ];
+		int numberOfStarts = 0;
+		for ( int line = 0; line < numberOfLines; line++ )
+		{
+			int lower = line % stride;
+			int higher = line / stride;
+			boolean needed = type == TransformType.FORWARD ? isInBound( higher, length, numberOfDimensions - axis - 1, bound )
+					: isInBound( lower, length, axis, bound );
+			if ( needed )
+				starts[ numberOfStarts++ ] = higher * stride * length + lower;
+		}
+		int linesPerBlock = Math.max( 1, BLOCK_SIZE / length );
+		List< int[] > blocks = new ArrayList<>();
+		for ( int from = 0; from < numberOfStarts; from += linesPerBlock )
+			blocks.add( Arrays.copyOfRange( starts, from, Math.min( numberOfStarts, from + linesPerBlock ) ) );
+		return blocks;
+	}
+
+	/**
+	 * Checks, whether all given number of digits of the given index in base {@code length} are smaller than the given bound.
+	 */
+	private static boolean isInBound( final int index, final int length, final int numberOfDigits, final int bound )
+	{
+		for ( int digit = 0, remainder = index; digit < numberOfDigits; digit++, remainder /= length )
+			if ( remainder % length >= bound )
+				return false;
+		return true;
+	}
+
+	static int getNumberOfBoxes( final double spread, final int numberOfDimensions )
+	{
+		int boxes = ( int ) Math.ceil( spread / MAX_BOX_WIDTH );
+		boxes = Math.max( MIN_BOXES[ numberOfDimensions ], Math.min( MAX_BOXES[ numberOfDimensions ], boxes ) );
+		// use as many boxes as fit into the same power of two length of the fast Fourier transform
+		int fftLength = Integer.highestOneBit( 2 * boxes * INTERPOLATION_POINTS - 1 ) << 1;
+		return Math.min( MAX_BOXES[ numberOfDimensions ], fftLength / ( 2 * INTERPOLATION_POINTS ) );
+	}
+
+	/**
+	 * Lagrange polynomial weights of the given relative position in a box for the equispaced nodes at {@code (k + 0.5) / p}.
+	 */
+	static void getLagrangeWeights( final double position, final double[] weights, final int offset )
+	{
+		for ( int k = 0; k < INTERPOLATION_POINTS; k++ )
+		{
+			double weight = 1;
+			double node = ( k + 0.5 ) / INTERPOLATION_POINTS;
+			for ( int l = 0; l < INTERPOLATION_POINTS; l++ )
+			{
+				if ( l == k )
+					continue;
+				double other = ( l + 0.5 ) / INTERPOLATION_POINTS;
+				weight *= ( position - other ) / ( node - other );
+			}
+			weights[ offset + k ] = weight;
+		}
+	}
+
+	/**
+	 * The interpolation grid over the bounding cube of an embedding and the interpolation weights of the points of the embedding.
+	 */
+	private class Grid
+	{
+		private final int nodesPerDimension;
+
+		private final int fftLength;
+
+		private final int size;
+
+		private final double nodeSpacing;
+
+		/**
+		 * The index of the first node of the box of each point in the grid of the fast Fourier transform.
+		 */
+		private final int[] firstNodes;
+
+		/**
+		 * The weights of the interpolation nodes of each point, {@value #INTERPOLATION_POINTS} per dimension, in one contiguous block per point.
+		 */
+		private final double[] weights;
+
+		private final int weightsPerPoint;
+
+		/**
+		 * The offsets of the nodes in a box relative to its first node and the dimension-wise weight index of each of these nodes.
+		 */
+		private final int[] nodeOffsets;
+
+		private final int[][] nodeWeightIndices;
+
+		private Grid( final double[][] embedding )
+		{
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for ( double[] point : embedding )
+				for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+				{
+					min = Math.min( min, point[ dimension ] );
+					max = Math.max( max, point[ dimension ] );
+				}
+			double spread = Math.max( max - min, MIN_SPREAD );
+			int boxes = getNumberOfBoxes( spread, numberOfDimensions );
+			double boxWidth = spread / boxes;
+			this.nodesPerDimension = boxes * INTERPOLATION_POINTS;
+			this.fftLength = Integer.highestOneBit( 2 * nodesPerDimension - 1 ) << 1;
+			this.nodeSpacing = boxWidth / INTERPOLATION_POINTS;
+			int gridSize = 1;
+			for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+				gridSize *= fftLength;
+			this.size = gridSize;
+
+			int nodesPerBox = 1;
+			for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+				nodesPerBox *= INTERPOLATION_POINTS;
+			this.nodeOffsets = new int[ nodesPerBox ];
+			this.nodeWeightIndices = new int[ nodesPerBox ][ numberOfDimensions ];
+			for ( int node = 0; node < nodesPerBox; node++ )
+			{
+				for ( int dimension = 0, remainder = node, stride = 1; dimension < numberOfDimensions; dimension++, stride *= fftLength )
+				{
+					int k = remainder % INTERPOLATION_POINTS;
+					remainder /= INTERPOLATION_POINTS;
+					nodeOffsets[ node ] += k * stride;
+					nodeWeightIndices[ node ][ dimension ] = dimension * INTERPOLATION_POINTS + k;
+				}
+			}
+
+			int numberOfPoints = embedding.length;
+			this.firstNodes = new int[ numberOfPoints ];
+			this.weightsPerPoint = numberOfDimensions * INTERPOLATION_POINTS;
+			this.weights = new double[ numberOfPoints * weightsPerPoint ];
+			double lowerBound = min;
+			Parallelization.getTaskExecutor().forEach( getBlocks( numberOfPoints ), block -> {
+				for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+				{
+					int firstNode = 0;
+					for ( int dimension = 0, stride = 1; dimension < numberOfDimensions; dimension++, stride *= fftLength )
+					{
+						double position = ( embedding[ i ][ dimension ] - lowerBound ) / boxWidth;
+						int box = Math.min( boxes - 1, ( int ) position );
+						firstNode += box * INTERPOLATION_POINTS * stride;
+						getLagrangeWeights( position - box, weights, i * weightsPerPoint + dimension * INTERPOLATION_POINTS );
+					}
+					firstNodes[ i ] = firstNode;
+				}
+			} );
+		}
+
+		/**
+		 * Gets the discrete Fourier transform of the squared Cauchy kernel on this grid, embedded into a circulant grid of twice the size, such
+		 * that the circular convolution equals the linear convolution on the nodes. Since the kernel is real and symmetric, the transform is
+		 * real.
+		 */
+		private double[] getKernelTransform()
+		{
+			// squared distance of each coordinate to the origin along one axis, or negative, if the kernel is zero at the coordinate
+			double[] squaredOffsets = new double[ fftLength ];
+			for ( int coordinate = 0; coordinate < fftLength; coordinate++ )
+			{
+				int offset = coordinate < nodesPerDimension ? coordinate : fftLength - coordinate;
+				squaredOffsets[ coordinate ] = offset < nodesPerDimension ? offset * offset * nodeSpacing * nodeSpacing : -1;
+			}
+			double[][] kernel = new double[ 2 ][ size ];
+			int lines = size / fftLength;
+			for ( int line = 0; line < lines; line++ )
+			{
+				double squaredDistance = 0;
+				for ( int dimension = 1, remainder = line; dimension < numberOfDimensions; dimension++, remainder /= fftLength )
+				{
+					double squaredOffset = squaredOffsets[ remainder % fftLength ];
+					squaredDistance = squaredOffset < 0 || squaredDistance < 0 ? -1 : squaredDistance + squaredOffset;
+				}
+				if ( squaredDistance < 0 )
+					continue;
+				for ( int coordinate = 0; coordinate < fftLength; coordinate++ )
+				{
+					if ( squaredOffsets[ coordinate ] < 0 )
+						continue;
+					double cauchy = 1 / ( 1 + squaredDistance + squaredOffsets[ coordinate ] );
+					kernel[ 0 ][ line * fftLength + coordinate ] = cauchy * cauchy;
+				}
+			}
+			transform( kernel, fftLength, numberOfDimensions, TransformType.FORWARD, fftLength );
+			return kernel[ 0 ];
+		}
+
+		/**
+		 * Spreads the charges of all points for the given terms onto the nodes of this grid. The charges of the second term, if any, are
+		 * spread onto the imaginary part.
+		 */
+		private double[][] spread( final double[][] embedding, final int realTerm, final int imaginaryTerm )
+		{
+			double[][] values = new double[ 2 ][ size ];
+			for ( int i = 0; i < embedding.length; i++ )
+			{
+				double realCharge = getCharge( embedding[ i ], realTerm );
+				double imaginaryCharge = imaginaryTerm >= 0 ? getCharge( embedding[ i ], imaginaryTerm ) : 0;
+				for ( int node = 0; node < nodeOffsets.length; node++ )
+				{
+					double weight = getWeight( i, node );
+					int index = firstNodes[ i ] + nodeOffsets[ node ];
+					values[ 0 ][ index ] += weight * realCharge;
+					values[ 1 ][ index ] += weight * imaginaryCharge;
+				}
+			}
+			return values;
+		}
+
+		/**
+		 * Interpolates the given values on the nodes of this grid at each point.
+		 */
+		private void gather( final double[] values, final double[] potentials )
+		{
+			Parallelization.getTaskExecutor().forEach( getBlocks( potentials.length ), block -> {
+				for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+				{
+					double potential = 0;
+					for ( int node = 0; node < nodeOffsets.length; node++ )
+						potential += getWeight( i, node ) * values[ firstNodes[ i ] + nodeOffsets[ node ] ];
+					potentials[ i ] = potential;
+				}
+			} );
+		}
+
+		private double getWeight( final int point, final int node )
+		{
+			double weight = 1;
+			int offset = point * weightsPerPoint;
+			for ( int index : nodeWeightIndices[ node ] )
+				weight *= weights[ offset + index ];
+			return weight;
+		}
+	}
+
+	private static List< int[] > getBlocks( final int numberOfPoints )
+	{
+		List< int[] > blocks = new ArrayList<>();
+		for ( int from = 0; from < numberOfPoints; from += BLOCK_SIZE )
+			blocks.add( new int[] { from, Math.min( numberOfPoints, from + BLOCK_SIZE ) } );
+		return blocks;
+	}
+}
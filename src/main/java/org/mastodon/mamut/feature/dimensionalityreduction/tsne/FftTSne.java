@@ -0,0 +1,341 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.tsne;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import net.imglib2.parallel.Parallelization;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * t-SNE with interpolation-based approximation of the repulsive forces by the fast Fourier transform, following
+ * <a href="https://doi.org/10.1038/s41592-018-0308-4">Linderman et al. (2019)</a> (FIt-SNE).
+ * <br>
+ * The input similarities are computed on a k nearest neighbor graph with {@code k = 3 * perplexity}, like in Barnes-Hut t-SNE, such that the
+ * attractive forces are sparse. The repulsive forces are computed by {@link FftRepulsion} in time linear in the number of points. Thus, an
+ * iteration costs {@code O(n k)} instead of {@code O(n log n)} with the large constant of Barnes-Hut t-SNE, which makes embeddings of
+ * millions of points feasible. For at most {@value #EXACT_REPULSION_THRESHOLD} points, the repulsive forces are computed exactly, which is
+ * faster than the interpolation grid. The grid of the interpolation grows exponentially with the number of output dimensions, thus only up to
+ * {@value #MAX_DIMENSIONS} output dimensions are supported.
+ * <br>
+ * The optimization follows the original t-SNE: early exaggeration of the attractive forces for the first
+ * {@value #EARLY_EXAGGERATION_ITERATIONS} iterations, gradient descent with momentum and adaptive gains, and a learning rate of
+ * {@code max(200, n / 12)} as recommended by <a href="https://doi.org/10.1038/s41467-019-13055-y">Belkina et al. (2019)</a> for large data.
+ * <br>
+ * The optimization checks for interruption of the current thread in each iteration and then throws a {@link CancellationException}.
+ */
+public class FftTSne
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	public static final long DEFAULT_SEED = 42;
+
+	public static final int MAX_DIMENSIONS = 3;
+
+	static final double EARLY_EXAGGERATION = 12;
+
+	static final int EARLY_EXAGGERATION_ITERATIONS = 250;
+
+	private static final double INITIAL_MOMENTUM = 0.5;
+
+	private static final double FINAL_MOMENTUM = 0.8;
+
+	private static final double MIN_LEARNING_RATE = 200;
+
+	private static final double MIN_GAIN = 0.01;
+
+	private static final double INITIAL_STANDARD_DEVIATION = 1e-4;
+
+	private static final int PERPLEXITY_SEARCH_STEPS = 200;
+
+	private static final double PERPLEXITY_TOLERANCE = 1e-5;
+
+	private static final int BLOCK_SIZE = 4096;
+
+	private static final int LOG_INTERVAL = 100;
+
+	/**
+	 * The number of points, up to which the repulsive forces are computed exactly, since the interpolation grid costs more for few points.
+	 */
+	static final int EXACT_REPULSION_THRESHOLD = 2048;
+
+	private final NearestNeighborGraph graph;
+
+	private final int numberOfPoints;
+
+	private final int numberOfNeighbors;
+
+	/**
+	 * The conditional probability {@code p_j|i / (2 n)} of each neighbor {@code j} of each point {@code i}, in the order of the graph.
+	 */
+	private final double[] similarities;
+
+	/**
+	 * For each point, the graph entries {@code i * k + rank}, in which the point is the neighbor of another point {@code i}.
+	 */
+	private final int[] reverseEntries;
+
+	private final int[] reverseOffsets;
+
+	private FftTSne( final NearestNeighborGraph graph, final double perplexity )
+	{
+		this.graph = graph;
+		this.numberOfPoints = graph.size();
+		this.numberOfNeighbors = graph.getNumberOfNeighbors();
+		this.similarities = new double[ numberOfPoints * numberOfNeighbors ];
+		this.reverseOffsets = new int[ numberOfPoints + 1 ];
+		this.reverseEntries = new int[ numberOfPoints * numberOfNeighbors ];
+		computeSimilarities( perplexity );
+		computeReverseEntries();
+	}
+
+	/**
+	 * Computes the t-SNE embedding of the points of the given nearest neighbor graph.
+	 * <br>
+	 * The attractive forces are computed on the given graph, thus it should contain about {@code 3 * perplexity} neighbors per point.
+	 *
+	 * @param graph the nearest neighbor graph of the data points
+	 * @param numberOfDimensions the number of dimensions of the embedding, between 1 and {@value #MAX_DIMENSIONS}
+	 * @param perplexity the perplexity, which must be smaller than the number of neighbors in the graph
+	 * @param maxIterations the number of iterations
+	 * @param seed the seed for the random initialization
+	 * @return the embedding, one point per row
+	 * @throws IllegalArgumentException if the number of dimensions is not supported or the perplexity is not smaller than the number of
+	 * neighbors
+	 * @throws CancellationException if the current thread has been interrupted during the optimization
+	 */
+	public static double[][] fit( final NearestNeighborGraph graph, final int numberOfDimensions, final double perplexity,
+			final int maxIterations, final long seed )
+	{
+		if ( numberOfDimensions < 1 || numberOfDimensions > MAX_DIMENSIONS )
+			throw new IllegalArgumentException( "FFT-accelerated t-SNE supports between 1 and " + MAX_DIMENSIONS
+					+ " output dimensions, but " + numberOfDimensions + " are requested." );
+		if ( perplexity >= graph.getNumberOfNeighbors() )
+			throw new IllegalArgumentException( "The perplexity (" + perplexity + ") must be smaller than the number of neighbors ("
+					+ graph.getNumberOfNeighbors() + ")." );
+		StopWatch stopWatch = StopWatch.createStarted();
+		FftTSne tSne = new FftTSne( graph, perplexity );
+		logger.debug( "Computed input similarities of {} points in {} ms.", tSne.numberOfPoints, stopWatch.getTime() );
+		double[][] embedding = tSne.optimize( numberOfDimensions, maxIterations, seed );
+		logger.info( "Computed FFT-accelerated t-SNE of {} points in {} ms.", tSne.numberOfPoints, stopWatch.getTime() );
+		return embedding;
+	}
+
+	/**
+	 * Computes the conditional probabilities {@code p_j|i} with a Gaussian kernel, whose bandwidth is found by binary search such that the
+	 * perplexity of the distribution over the neighbors of each point is the given perplexity.
+	 */
+	private void computeSimilarities( final double perplexity )
+	{
+		double targetEntropy = Math.log( perplexity );
+		double normalization = 2d * numberOfPoints;
+		Parallelization.getTaskExecutor().forEach( getBlocks( numberOfPoints ), block -> {
+			double[] squaredDistances = new double[ numberOfNeighbors ];
+			double[] probabilities = new double[ numberOfNeighbors ];
+			for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+			{
+				for ( int rank = 0; rank < numberOfNeighbors; rank++ )
+				{
+					double distance = graph.getDistance( i, rank );
+					squaredDistances[ rank ] = distance * distance;
+				}
+				// NB: distances relative to the nearest neighbor for numerical stability, which does not change the probabilities
+				double offset = squaredDistances[ 0 ];
+				double beta = 1;
+				double low = 0;
+				double high = Double.POSITIVE_INFINITY;
+				for ( int step = 0; step < PERPLEXITY_SEARCH_STEPS; step++ )
+				{
+					double sum = 0;
+					double weightedSum = 0;
+					for ( int rank = 0; rank < numberOfNeighbors; rank++ )
+					{
+						double relative = squaredDistances[ rank ] - offset;
+						probabilities[ rank ] = Math.exp( -beta * relative );
+						sum += probabilities[ rank ];
+						weightedSum += relative * probabilities[ rank ];
+					}
+					double entropy = Math.log( sum ) + beta * weightedSum / sum;
+					for ( int rank = 0; rank < numberOfNeighbors; rank++ )
+						probabilities[ rank ] /= sum;
+					if ( Math.abs( entropy - targetEntropy ) < PERPLEXITY_TOLERANCE )
+						break;
+					if ( entropy > targetEntropy )
+					{
+						low = beta;
+						beta = high == Double.POSITIVE_INFINITY ? beta * 2 : ( low + high ) / 2;
+					}
+					else
+					{
+						high = beta;
+						beta = ( low + high ) / 2;
+					}
+				}
+				for ( int rank = 0; rank < numberOfNeighbors; rank++ )
+					similarities[ i * numberOfNeighbors + rank ] = probabilities[ rank ] / normalization;
+			}
+		} );
+	}
+
+	/**
+	 * Indexes, for each point, the graph entries, in which it is the neighbor of another point. With these, the symmetric similarity
+	 * {@code p_ij = (p_j|i + p_i|j) / (2 n)} is the sum of the entries of both points, which need not be merged.
+	 */
+	private void computeReverseEntries()
+	{
+		for ( int i = 0; i < numberOfPoints; i++ )
+			for ( int rank = 0; rank < numberOfNeighbors; rank++ )
+				reverseOffsets[ graph.getNeighbor( i, rank ) + 1 ]++;
+		for ( int i = 0; i < numberOfPoints; i++ )
+			reverseOffsets[ i + 1 ] += reverseOffsets[ i ];
+		int[] positions = new int[ numberOfPoints ];
+		for ( int i = 0; i < numberOfPoints; i++ )
+			for ( int rank = 0; rank < numberOfNeighbors; rank++ )
+			{
+				int neighbor = graph.getNeighbor( i, rank );
+				reverseEntries[ reverseOffsets[ neighbor ] + positions[ neighbor ]++ ] = i * numberOfNeighbors + rank;
+			}
+	}
+
+	private double[][] optimize( final int numberOfDimensions, final int maxIterations, final long seed )
+	{
+		double[][] embedding = new double[ numberOfPoints ][ numberOfDimensions ];
+		Random random = new Random( seed );
+		for ( double[] point : embedding )
+			for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+				point[ dimension ] = random.nextGaussian() * INITIAL_STANDARD_DEVIATION;
+		double[][] updates = new double[ numberOfPoints ][ numberOfDimensions ];
+		double[][] gains = new double[ numberOfPoints ][ numberOfDimensions ];
+		for ( double[] pointGains : gains )
+			Arrays.fill( pointGains, 1 );
+		double[][] repulsiveForces = new double[ numberOfPoints ][ numberOfDimensions ];
+		double learningRate = Math.max( MIN_LEARNING_RATE, numberOfPoints / EARLY_EXAGGERATION );
+		FftRepulsion repulsion = new FftRepulsion( numberOfDimensions );
+		List< int[] > blocks = getBlocks( numberOfPoints );
+
+		for ( int iteration = 0; iteration < maxIterations; iteration++ )
+		{
+			if ( Thread.currentThread().isInterrupted() )
+				throw new CancellationException( "t-SNE has been interrupted in iteration " + iteration + "." );
+			boolean earlyExaggeration = iteration < EARLY_EXAGGERATION_ITERATIONS;
+			double exaggeration = earlyExaggeration ? EARLY_EXAGGERATION : 1;
+			double momentum = earlyExaggeration ? INITIAL_MOMENTUM : FINAL_MOMENTUM;
+			if ( numberOfPoints <= EXACT_REPULSION_THRESHOLD )
+				FftRepulsion.computeExactRepulsiveForces( embedding, repulsiveForces );
+			else
+				repulsion.computeRepulsiveForces( embedding, repulsiveForces );
+			double[][] currentEmbedding = embedding;
+			Parallelization.getTaskExecutor().forEach( blocks, block -> {
+				double[] gradient = new double[ numberOfDimensions ];
+				for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+				{
+					computeAttractiveForce( currentEmbedding, i, gradient );
+					for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+					{
+						double value = exaggeration * gradient[ dimension ] - repulsiveForces[ i ][ dimension ];
+						double update = updates[ i ][ dimension ];
+						double gain = Math.signum( value ) != Math.signum( update ) ? gains[ i ][ dimension ] + 0.2
+								: gains[ i ][ dimension ] * 0.8;
+						gains[ i ][ dimension ] = Math.max( MIN_GAIN, gain );
+						updates[ i ][ dimension ] = momentum * update - learningRate * gains[ i ][ dimension ] * value;
+					}
+				}
+			} );
+			for ( int i = 0; i < numberOfPoints; i++ )
+				for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+					embedding[ i ][ dimension ] += updates[ i ][ dimension ];
+			center( embedding );
+			if ( ( iteration + 1 ) % LOG_INTERVAL == 0 )
+				logger.debug( "Finished t-SNE iteration {} of {}.", iteration + 1, maxIterations );
+		}
+		return embedding;
+	}
+
+	/**
+	 * Computes the attractive force {@code sum_j p_ij q_ij Z (y_i - y_j)} on the given point.
+	 */
+	private void computeAttractiveForce( final double[][] embedding, final int point, final double[] force )
+	{
+		Arrays.fill( force, 0 );
+		for ( int rank = 0; rank < numberOfNeighbors; rank++ )
+		{
+			int entry = point * numberOfNeighbors + rank;
+			addAttraction( embedding[ point ], embedding[ graph.getNeighbor( point, rank ) ], similarities[ entry ], force );
+		}
+		for ( int r = reverseOffsets[ point ]; r < reverseOffsets[ point + 1 ]; r++ )
+		{
+			int entry = reverseEntries[ r ];
+			addAttraction( embedding[ point ], embedding[ entry / numberOfNeighbors ], similarities[ entry ], force );
+		}
+	}
+
+	private static void addAttraction( final double[] point, final double[] other, final double similarity, final double[] force )
+	{
+		double squaredDistance = 0;
+		for ( int dimension = 0; dimension < point.length; dimension++ )
+		{
+			double difference = point[ dimension ] - other[ dimension ];
+			squaredDistance += difference * difference;
+		}
+		double coefficient = similarity / ( 1 + squaredDistance );
+		for ( int dimension = 0; dimension < point.length; dimension++ )
+			force[ dimension ] += coefficient * ( point[ dimension ] - other[ dimension ] );
+	}
+
+	private static void center( final double[][] embedding )
+	{
+		int numberOfDimensions = embedding[ 0 ].length;
+		double[] mean = new double[ numberOfDimensions ];
+		for ( double[] point : embedding )
+			for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+				mean[ dimension ] += point[ dimension ];
+		for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+			mean[ dimension ] /= embedding.length;
+		for ( double[] point : embedding )
+			for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+				point[ dimension ] -= mean[ dimension ];
+	}
+
+	private static List< int[] > getBlocks( final int numberOfPoints )
+	{
+		List< int[] > blocks = new ArrayList<>();
+		for ( int from = 0; from < numberOfPoints; from += BLOCK_SIZE )
+			blocks.add( new int[] { from, Math.min( numberOfPoints, from + BLOCK_SIZE ) } );
+		return blocks;
+	}
+}
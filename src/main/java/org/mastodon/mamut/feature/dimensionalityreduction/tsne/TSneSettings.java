@@ -41,6 +41,7 @@ import org.slf4j.LoggerFactory;
  * <ul>
  *     <li>the perplexity to consider in the t-SNE algorithm</li>
  *     <li>the maximum number of iterations</li>
+ *     <li>whether the repulsive forces should be approximated by FFT-accelerated interpolation, which scales to large data sets</li>
  * </ul>
  */
 public class TSneSettings
@@ -65,20 +66,27 @@ public class TSneSettings
 
 	public static final double THETA = 0.5d;
 
+	public static final boolean DEFAULT_USE_FFT = false;
+
 	private int perplexity;
 
 	private int maxIterations;
 
+	private boolean useFft;
+
 	private static final String PERPLEXITY_SETTING = "Perplexity";
 
 	private static final String MAX_ITERATIONS_SETTING = "MaxIterations";
 
+	private static final String USE_FFT_SETTING = "UseFft";
+
 	/**
 	 * Constructor with default values.
 	 * Default values are:
 	 * <ul>
 	 *     <li>perplexity: {@value DEFAULT_PERPLEXITY}</li>
 	 *     <li>maximum iterations: {@value DEFAULT_MAX_ITERATIONS}</li>
+	 *     <li>use FFT: {@value DEFAULT_USE_FFT}</li>
 	 * </ul>
 	 */
 	public TSneSettings()
@@ -87,9 +95,15 @@ public class TSneSettings
 	}
 
 	public TSneSettings( final int perplexity, final int maxIterations )
+	{
+		this( perplexity, maxIterations, DEFAULT_USE_FFT );
+	}
+
+	public TSneSettings( final int perplexity, final int maxIterations, final boolean useFft )
 	{
 		this.perplexity = perplexity;
 		this.maxIterations = maxIterations;
+		this.useFft = useFft;
 	}
 
 	public int getPerplexity()
@@ -102,6 +116,16 @@ public class TSneSettings
 		return maxIterations;
 	}
 
+	/**
+	 * Whether the repulsive forces of t-SNE should be approximated by interpolation on a grid and fast Fourier transforms (FIt-SNE),
+	 * which takes time linear in the number of data points. If {@code false}, the Barnes-Hut approximation is used, which is slower for
+	 * large data sets. FFT acceleration supports up to {@value FftTSne#MAX_DIMENSIONS} output dimensions.
+	 */
+	public boolean isUseFft()
+	{
+		return useFft;
+	}
+
 	public void setPerplexity( final int perplexity )
 	{
 		this.perplexity = perplexity;
@@ -112,13 +136,20 @@ public class TSneSettings
 		this.maxIterations = maxIterations;
 	}
 
+	public void setUseFft( final boolean useFft )
+	{
+		this.useFft = useFft;
+	}
+
 	public static TSneSettings loadSettingsFromPreferences( final PrefService prefs )
 	{
 		int perplexity = prefs == null ? TSneSettings.DEFAULT_PERPLEXITY
 				: prefs.getInt( TSneSettings.class, PERPLEXITY_SETTING, TSneSettings.DEFAULT_PERPLEXITY );
 		int maxIterations = prefs == null ? TSneSettings.DEFAULT_MAX_ITERATIONS
 				: prefs.getInt( TSneSettings.class, MAX_ITERATIONS_SETTING, TSneSettings.DEFAULT_MAX_ITERATIONS );
-		return new TSneSettings( perplexity, maxIterations );
+		boolean useFft = prefs == null ? TSneSettings.DEFAULT_USE_FFT
+				: prefs.getBoolean( TSneSettings.class, USE_FFT_SETTING, TSneSettings.DEFAULT_USE_FFT );
+		return new TSneSettings( perplexity, maxIterations, useFft );
 	}
 
 	/**
@@ -131,6 +162,7 @@ public class TSneSettings
 			return;
 		prefs.put( TSneSettings.class, PERPLEXITY_SETTING, getPerplexity() );
 		prefs.put( TSneSettings.class, MAX_ITERATIONS_SETTING, getMaxIterations() );
+		prefs.put( TSneSettings.class, USE_FFT_SETTING, isUseFft() );
 	}
 
 	/**
@@ -156,6 +188,6 @@ public class TSneSettings
 	@Override
 	public String toString()
 	{
-		return "TSneSettings{numberOfNeighbors=" + perplexity + ", minimumDistance=" + maxIterations + '}';
+		return "TSneSettings{perplexity=" + perplexity + ", maxIterations=" + maxIterations + ", useFft=" + useFft + '}';
 	}
 }
@@ -43,8 +43,12 @@ import org.mastodon.graph.ReadOnlyGraph;
 import org.mastodon.graph.Vertex;
 import org.mastodon.mamut.feature.dimensionalityreduction.AbstractOutputFeatureComputer;
 import org.mastodon.mamut.feature.dimensionalityreduction.CommonSettings;
+import org.mastodon.mamut.feature.dimensionalityreduction.tsne.FftTSne;
 import org.mastodon.mamut.feature.dimensionalityreduction.tsne.TSneSettings;
 import org.mastodon.mamut.feature.dimensionalityreduction.util.InputDimension;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborGraph;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborSearch;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.OutOfSampleEmbedding;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.properties.DoublePropertyMap;
 import org.scijava.Context;
@@ -98,8 +102,19 @@ public abstract class AbstractTSneFeatureComputer< V extends Vertex< E >, E exte
 					+ ") requires the perplexity (" + tSneSettings.getPerplexity() + ") to not be higher than ("
 					+ tSneSettings.getMaxValidPerplexity( rows ) + ")." );
 		}
+		int numberOfOutputDimensions = settings.getNumberOfOutputDimensions();
+		if ( tSneSettings.isUseFft() )
+		{
+			if ( numberOfOutputDimensions <= FftTSne.MAX_DIMENSIONS )
+			{
+				computeFftTSne( dataMatrix );
+				return;
+			}
+			logger.info( "FFT-accelerated t-SNE supports at most {} output dimensions, but {} are requested. Using Barnes-Hut t-SNE instead.",
+					FftTSne.MAX_DIMENSIONS, numberOfOutputDimensions );
+		}
 		TSneConfiguration tSneConfig =
-				TSneUtils.buildConfig( dataMatrix, settings.getNumberOfOutputDimensions(), TSneSettings.INITIAL_DIMENSIONS,
+				TSneUtils.buildConfig( dataMatrix, numberOfOutputDimensions, TSneSettings.INITIAL_DIMENSIONS,
 						tSneSettings.getPerplexity(),
 						tSneSettings.getMaxIterations(), TSneSettings.USE_PCA, TSneSettings.THETA, false, true );
 
@@ -110,6 +125,25 @@ public abstract class AbstractTSneFeatureComputer< V extends Vertex< E >, E exte
 				tSneResult.length > 0 ? tSneResult[ 0 ].length : 0 );
 	}
 
+	private void computeFftTSne( final double[][] dataMatrix )
+	{
+		int perplexity = tSneSettings.getPerplexity();
+		// like the Barnes-Hut implementation, consider three times the perplexity as neighbors, which isValidPerplexity() ensures to exist
+		int numberOfNeighbors = 3 * perplexity;
+		logger.info( "Computing FFT-accelerated t-SNE. Data matrix has {} rows x {} columns.", dataMatrix.length, dataMatrix[ 0 ].length );
+		NearestNeighborGraph graph = getNearestNeighborGraph( dataMatrix, numberOfNeighbors );
+		tSneResult = FftTSne.fit( graph, settings.getNumberOfOutputDimensions(), perplexity, tSneSettings.getMaxIterations(),
+				FftTSne.DEFAULT_SEED );
+		logger.info( "Finished computing FFT-accelerated t-SNE. Results has {} rows x {} columns.", tSneResult.length,
+				tSneResult.length > 0 ? tSneResult[ 0 ].length : 0 );
+	}
+
+	@Override
+	protected OutOfSampleEmbedding createOutOfSampleEmbedding( final NearestNeighborSearch trainingData, final double[][] embedding )
+	{
+		return OutOfSampleEmbedding.forTSne( trainingData, embedding, tSneSettings.getPerplexity() );
+	}
+
 	@Override
 	protected double[][] getResult()
 	{
@@ -36,6 +36,7 @@ import org.mastodon.graph.Vertex;
 import org.mastodon.mamut.feature.dimensionalityreduction.DimensionalityReductionAlgorithm;
 import org.mastodon.mamut.feature.dimensionalityreduction.DimensionalityReductionController;
 import org.mastodon.mamut.feature.dimensionalityreduction.CommonSettings;
+import org.mastodon.mamut.feature.dimensionalityreduction.tsne.FftTSne;
 import org.mastodon.mamut.feature.dimensionalityreduction.tsne.TSneSettings;
 import org.mastodon.mamut.feature.dimensionalityreduction.umap.UmapSettings;
 import org.mastodon.mamut.model.Model;
@@ -63,6 +64,7 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.lang.invoke.MethodHandles;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 
 /**
  * This class represents the user interface for performing dimensionality reduction using different algorithms.
@@ -89,18 +91,36 @@ public class DimensionalityReductionView extends JFrame
 
 	private final JRadioButton tsneRadioButton;
 
+	private final JRadioButton pcaRadioButton;
+
 	private final JCheckBox standardizeFeaturesCheckBox;
 
+	private final JCheckBox transformModeCheckBox;
+
+	private final JCheckBox useLandmarksCheckBox;
+
+	private final JSpinner numberOfLandmarksInput;
+
 	private final JSpinner numberOfDimensionsInput;
 
+	private final JCheckBox reduceWithPcaCheckBox;
+
+	private final JSpinner numberOfPrincipalComponentsInput;
+
 	private final JSpinner numberOfNeighborsInput;
 
 	private final JSpinner minimumDistanceInput;
 
+	private final JCheckBox reproducibleCheckBox;
+
 	private final JSpinner perplexityInput;
 
 	private final JSpinner maxIterationsInput;
 
+	private final JCheckBox useFftCheckBox;
+
+	private final JLabel neighborGraphNoteLabel;
+
 	private final JPanel algorithmSpecificSettingsPanel;
 
 	private InputDimensionsPanel< ?, ? > inputDimensionsPanel;
@@ -109,6 +129,8 @@ public class DimensionalityReductionView extends JFrame
 
 	private final JButton computeButton;
 
+	private final JButton cancelButton;
+
 	private final ImageIcon loadingIcon;
 
 	private final FeatureModel featureModel;
@@ -135,22 +157,35 @@ public class DimensionalityReductionView extends JFrame
 
 		umapRadioButton = new JRadioButton( "UMAP" );
 		tsneRadioButton = new JRadioButton( "t-SNE" );
+		pcaRadioButton = new JRadioButton( "PCA" );
 
 		// Common settings
 		standardizeFeaturesCheckBox = new JCheckBox( "Standardize features" );
+		transformModeCheckBox = new JCheckBox( "Only embed new and changed spots" );
+		useLandmarksCheckBox = new JCheckBox( "Fit on landmarks" );
+		numberOfLandmarksInput = new JSpinner();
 		numberOfDimensionsInput = new JSpinner();
+		// PCA before UMAP or t-SNE
+		reduceWithPcaCheckBox = new JCheckBox( "Reduce to principal components first" );
+		numberOfPrincipalComponentsInput = new JSpinner();
 		// UMAP settings
 		numberOfNeighborsInput = new JSpinner();
 		minimumDistanceInput = new JSpinner();
+		reproducibleCheckBox = new JCheckBox( "Reproducible results" );
 		// t-SNE settings
 		perplexityInput = new JSpinner();
 		maxIterationsInput = new JSpinner();
+		useFftCheckBox = new JCheckBox( "FFT-accelerated (for large datasets)" );
+		neighborGraphNoteLabel = new JLabel();
+		neighborGraphNoteLabel.setForeground( Color.GRAY );
 
 		algorithmSpecificSettingsPanel = new JPanel( new MigLayout( "insets 0 0 0 0, fill", "", "" ) );
 		addAlgorithmSpecificSettings( controller.getAlgorithm() );
 		inputDimensionsPanel = createInputDimensionsPanel();
 		feedbackLabel = new JLabel();
 		computeButton = new JButton( "Compute" );
+		cancelButton = new JButton( "Cancel" );
+		cancelButton.setEnabled( false );
 		loadingIcon = new ImageIcon( Objects.requireNonNull( getClass().getResource( "loading.gif" ) ) );
 
 		initSettings();
@@ -168,19 +203,31 @@ public class DimensionalityReductionView extends JFrame
 		DimensionalityReductionAlgorithm algorithm = controller.getAlgorithm();
 		umapRadioButton.setSelected( algorithm == DimensionalityReductionAlgorithm.UMAP );
 		tsneRadioButton.setSelected( algorithm == DimensionalityReductionAlgorithm.TSNE );
+		pcaRadioButton.setSelected( algorithm == DimensionalityReductionAlgorithm.PCA );
 		CommonSettings settings = controller.getCommonSettings();
 		UmapSettings umapSettings = controller.getUmapSettings();
 		TSneSettings tSneSettings = controller.getTSneSettings();
 		standardizeFeaturesCheckBox.setSelected( settings.isStandardizeFeatures() );
+		transformModeCheckBox.setSelected( controller.isTransformMode() );
+		useLandmarksCheckBox.setSelected( settings.isUseLandmarks() );
+		numberOfLandmarksInput.setModel( new SpinnerNumberModel( settings.getNumberOfLandmarks(), CommonSettings.MIN_VALUE_NUMBER_OF_LANDMARKS,
+				CommonSettings.MAX_VALUE_NUMBER_OF_LANDMARKS, 1000 ) );
+		numberOfLandmarksInput.setEnabled( settings.isUseLandmarks() );
 		numberOfDimensionsInput.setModel( getNumberOfDimensionsSpinnerModel() );
+		reduceWithPcaCheckBox.setSelected( settings.isReduceWithPca() );
+		numberOfPrincipalComponentsInput.setModel( new SpinnerNumberModel( settings.getNumberOfPrincipalComponents(),
+				CommonSettings.MIN_VALUE_NUMBER_OF_PRINCIPAL_COMPONENTS, CommonSettings.MAX_VALUE_NUMBER_OF_PRINCIPAL_COMPONENTS, 1 ) );
+		numberOfPrincipalComponentsInput.setEnabled( settings.isReduceWithPca() );
 		numberOfNeighborsInput.setModel( new SpinnerNumberModel( controller.getUmapSettings().getNumberOfNeighbors(),
 				UmapSettings.MIN_VALUE_NUMBER_OF_NEIGHBORS, UmapSettings.MAX_VALUE_NUMBER_OF_NEIGHBORS, 1 ) );
 		minimumDistanceInput.setModel( new SpinnerNumberModel( umapSettings.getMinimumDistance(), UmapSettings.MIN_VALUE_MINIMUM_DISTANCE,
 				UmapSettings.MAX_VALUE_MINIMUM_DISTANCE, 0.1d ) );
+		reproducibleCheckBox.setSelected( umapSettings.isReproducible() );
 		perplexityInput.setModel( new SpinnerNumberModel( tSneSettings.getPerplexity(), TSneSettings.MIN_VALUE_PERPLEXITY,
 				TSneSettings.MAX_VALUE_PERPLEXITY, 1 ) );
 		maxIterationsInput.setModel( new SpinnerNumberModel( tSneSettings.getMaxIterations(), TSneSettings.MIN_VALUE_MAX_ITERATIONS,
 				TSneSettings.MAX_VALUE_MAX_ITERATIONS, 1 ) );
+		useFftCheckBox.setSelected( tSneSettings.isUseFft() );
 	}
 
 	private void initBehavior()
@@ -194,23 +241,45 @@ public class DimensionalityReductionView extends JFrame
 
 		umapRadioButton.addActionListener( e -> updateAlgorithmSettings() );
 		tsneRadioButton.addActionListener( e -> updateAlgorithmSettings() );
+		pcaRadioButton.addActionListener( e -> updateAlgorithmSettings() );
 
 		ButtonGroup algorithmGroup = new ButtonGroup();
 		algorithmGroup.add( umapRadioButton );
 		algorithmGroup.add( tsneRadioButton );
+		algorithmGroup.add( pcaRadioButton );
 
 		CommonSettings commonSettings = controller.getCommonSettings();
 		UmapSettings umapSettings = controller.getUmapSettings();
 		TSneSettings tsneSettings = controller.getTSneSettings();
 		standardizeFeaturesCheckBox
 				.addActionListener( e -> commonSettings.setStandardizeFeatures( standardizeFeaturesCheckBox.isSelected() ) );
-		numberOfDimensionsInput
-				.addChangeListener( e -> commonSettings.setNumberOfOutputDimensions( ( int ) numberOfDimensionsInput.getValue() ) );
+		transformModeCheckBox.addActionListener( e -> controller.setTransformMode( transformModeCheckBox.isSelected() ) );
+		useLandmarksCheckBox.addActionListener( e -> {
+			commonSettings.setUseLandmarks( useLandmarksCheckBox.isSelected() );
+			numberOfLandmarksInput.setEnabled( useLandmarksCheckBox.isSelected() );
+		} );
+		numberOfLandmarksInput.addChangeListener( e -> commonSettings.setNumberOfLandmarks( ( int ) numberOfLandmarksInput.getValue() ) );
+		numberOfDimensionsInput.addChangeListener( e -> {
+			commonSettings.setNumberOfOutputDimensions( ( int ) numberOfDimensionsInput.getValue() );
+			updateNeighborGraphNote( controller.getAlgorithm() );
+		} );
+		reduceWithPcaCheckBox.addActionListener( e -> {
+			commonSettings.setReduceWithPca( reduceWithPcaCheckBox.isSelected() );
+			numberOfPrincipalComponentsInput.setEnabled( reduceWithPcaCheckBox.isSelected() );
+		} );
+		numberOfPrincipalComponentsInput.addChangeListener(
+				e -> commonSettings.setNumberOfPrincipalComponents( ( int ) numberOfPrincipalComponentsInput.getValue() ) );
 		numberOfNeighborsInput.addChangeListener( e -> umapSettings.setNumberOfNeighbors( ( int ) numberOfNeighborsInput.getValue() ) );
 		minimumDistanceInput.addChangeListener( e -> umapSettings.setMinimumDistance( ( double ) minimumDistanceInput.getValue() ) );
+		reproducibleCheckBox.addActionListener( e -> umapSettings.setReproducible( reproducibleCheckBox.isSelected() ) );
 		perplexityInput.addChangeListener( e -> tsneSettings.setPerplexity( ( int ) perplexityInput.getValue() ) );
 		maxIterationsInput.addChangeListener( e -> tsneSettings.setMaxIterations( ( int ) maxIterationsInput.getValue() ) );
+		useFftCheckBox.addActionListener( e -> {
+			tsneSettings.setUseFft( useFftCheckBox.isSelected() );
+			updateNeighborGraphNote( controller.getAlgorithm() );
+		} );
 		computeButton.addActionListener( e -> SwingUtilities.invokeLater( this::run ) );
+		cancelButton.addActionListener( e -> controller.cancel() );
 
 		addWindowListener( new WindowAdapter()
 		{
@@ -229,14 +298,19 @@ public class DimensionalityReductionView extends JFrame
 		canvas.add( new JLabel( "Graph type:" ), "split 3" );
 		canvas.add( modelGraphRadioButton );
 		canvas.add( branchGraphRadioButton, "wrap" );
-		canvas.add( new JLabel( "Algorithm:" ), SPLIT_2 );
-		canvas.add( umapRadioButton, "wrap" );
-		//canvas.add( tsneRadioButton, "wrap" );
+		canvas.add( new JLabel( "Algorithm:" ), "split 3" );
+		canvas.add( umapRadioButton );
+		//canvas.add( tsneRadioButton );
+		canvas.add( pcaRadioButton, "wrap" );
 		canvas.add( standardizeFeaturesCheckBox, "wrap" );
+		canvas.add( transformModeCheckBox, "wrap" );
+		canvas.add( useLandmarksCheckBox, SPLIT_2 );
+		canvas.add( numberOfLandmarksInput, "wmin 70, wrap" );
 		canvas.add( new JLabel( "Number of dimensions:" ), SPLIT_2 );
 		canvas.add( numberOfDimensionsInput, WMIN_35_WRAP );
 		canvas.add( algorithmSpecificSettingsPanel, "wrap" );
 		canvas.add( inputDimensionsPanel, PANEL_CONSTRAINTS );
+		canvas.add( cancelButton, "dock south, gapleft 10, gapbottom 10, wmax 150, wrap" );
 		canvas.add( computeButton, "dock south, gapleft 10, gapbottom 10, wmax 150, wrap" );
 		canvas.add( feedbackLabel, "dock south, gapleft 10, gapbottom 10, wrap" );
 	}
@@ -246,8 +320,23 @@ public class DimensionalityReductionView extends JFrame
 		standardizeFeaturesCheckBox.setToolTipText(
 				"<html>Whether to standardize the data before reducing the dimensionality."
 						+ "<br>Standardization is recommended when the data has different scales / units.</html>" );
+		transformModeCheckBox.setToolTipText(
+				"<html>Whether to keep the last computed embedding and only embed spots that have been added or whose features have changed since."
+						+ "<br>The coordinates of all other spots stay the same. This is much faster than a new computation after small edits."
+						+ "<br>A new embedding is computed, if the graph type, the algorithm, the settings or the selected features differ from the last computation.</html>" );
+		useLandmarksCheckBox.setToolTipText(
+				"<html>Whether to compute the embedding only for a subsample of the spots (landmarks), which is stratified by timepoint."
+						+ "<br>All other spots are placed into the embedding of their nearest landmarks."
+						+ "<br>This bounds runtime and memory for very large datasets.</html>" );
+		numberOfLandmarksInput.setToolTipText( "<html>The maximum number of landmarks, on which the embedding is computed.</html>" );
+		cancelButton.setToolTipText( "<html>Cancels the running computation. The graph stays unchanged.</html>" );
 		numberOfDimensionsInput
 				.setToolTipText( "<html>The number of reduced dimensions to use.<br>The default is 2, but 3 is also common.</html>" );
+		reduceWithPcaCheckBox.setToolTipText(
+				"<html>Whether to reduce the input features to their leading principal components before computing the embedding."
+						+ "<br>This speeds up the computation and reduces noise, if many features are selected."
+						+ "<br>It has no effect, if not more features than principal components are selected.</html>" );
+		numberOfPrincipalComponentsInput.setToolTipText( "<html>The number of principal components, to which the input features are reduced.</html>" );
 		numberOfNeighborsInput.setToolTipText(
 				"<html>The size of the local neighborhood (in terms of number of neighboring sample points) used for manifold approximation."
 						+ "<br>Larger values result in more global views of the manifold, while smaller values result in more local data being preserved."
@@ -255,6 +344,10 @@ public class DimensionalityReductionView extends JFrame
 		minimumDistanceInput.setToolTipText(
 				"<html>The minimum distance that points are allowed to be apart from each other in the low dimensional representation."
 						+ "<br>This parameter controls how tightly UMAP is allowed to pack points together.</html>" );
+		reproducibleCheckBox.setToolTipText(
+				"<html>Whether repeated computations on the same data should give identical results."
+						+ "<br>If checked, UMAP runs on a single core. If unchecked, UMAP uses all available cores, which is considerably faster"
+						+ "<br>for large data sets, but the results may differ slightly between runs.</html>" );
 		perplexityInput.setToolTipText(
 				"<html>The perplexity is related to the number of nearest neighbors that is used in other manifold learning algorithms. Larger datasets usually require a larger perplexity.<br>"
 						+ "Consider selecting a value between 5 and 50. Different values can result in significantly different results.<br>"
@@ -262,6 +355,10 @@ public class DimensionalityReductionView extends JFrame
 		maxIterationsInput.setToolTipText( "<html>The maximum number of iterations for the optimization.<br>"
 				+ "The optimization algorithm will stop when the maximum number of iterations is reached.<br>"
 				+ "Should be at least 250. More iterations will give more accurate results, but will also take longer to compute</html>" );
+		useFftCheckBox.setToolTipText(
+				"<html>Whether to approximate the repulsive forces by interpolation on a grid and fast Fourier transforms (FIt-SNE)."
+						+ "<br>This takes time linear in the number of spots and is considerably faster for large datasets."
+						+ "<br>Supports up to " + FftTSne.MAX_DIMENSIONS + " output dimensions. Otherwise, Barnes-Hut t-SNE is used.</html>" );
 	}
 
 	private void updateInputDimensionsPanel()
@@ -282,8 +379,10 @@ public class DimensionalityReductionView extends JFrame
 		DimensionalityReductionAlgorithm algorithm;
 		if ( umapRadioButton.isSelected() )
 			algorithm = DimensionalityReductionAlgorithm.UMAP;
-		else
+		else if ( tsneRadioButton.isSelected() )
 			algorithm = DimensionalityReductionAlgorithm.TSNE;
+		else
+			algorithm = DimensionalityReductionAlgorithm.PCA;
 		controller.setAlgorithm( algorithm );
 		addAlgorithmSpecificSettings( algorithm );
 		revalidate();
@@ -300,18 +399,57 @@ public class DimensionalityReductionView extends JFrame
 			algorithmSpecificSettingsPanel.add( numberOfNeighborsInput, WMIN_35_WRAP );
 			algorithmSpecificSettingsPanel.add( new JLabel( "Minimum distance:" ), SPLIT_2 );
 			algorithmSpecificSettingsPanel.add( minimumDistanceInput, "wmin 40, wrap" );
+			algorithmSpecificSettingsPanel.add( reproducibleCheckBox, "wrap" );
+			addPcaReductionSettings();
+			addNeighborGraphNote( algorithm );
 			break;
 		case TSNE:
 			algorithmSpecificSettingsPanel.add( new JLabel( "Perplexity:" ), SPLIT_2 );
 			algorithmSpecificSettingsPanel.add( perplexityInput, WMIN_35_WRAP );
 			algorithmSpecificSettingsPanel.add( new JLabel( "Maximum number of iterations:" ), SPLIT_2 );
 			algorithmSpecificSettingsPanel.add( maxIterationsInput, WMIN_35_WRAP );
+			algorithmSpecificSettingsPanel.add( useFftCheckBox, "wrap" );
+			addPcaReductionSettings();
+			addNeighborGraphNote( algorithm );
 			break;
 		default:
 			break;
 		}
 	}
 
+	private void addPcaReductionSettings()
+	{
+		algorithmSpecificSettingsPanel.add( reduceWithPcaCheckBox, SPLIT_2 );
+		algorithmSpecificSettingsPanel.add( numberOfPrincipalComponentsInput, WMIN_35_WRAP );
+	}
+
+	private void addNeighborGraphNote( final DimensionalityReductionAlgorithm algorithm )
+	{
+		algorithmSpecificSettingsPanel.add( neighborGraphNoteLabel, "span, wrap" );
+		updateNeighborGraphNote( algorithm );
+	}
+
+	/**
+	 * Tells the user, whether a repeated computation on the same data, e.g. with other algorithm settings, reuses the nearest neighbor graph.
+	 * <br>
+	 * NB: only FFT-accelerated t-SNE takes the cached graph. The UMAP library and the Barnes-Hut t-SNE library build their graphs internally.
+	 */
+	private void updateNeighborGraphNote( final DimensionalityReductionAlgorithm algorithm )
+	{
+		String text;
+		if ( algorithm == DimensionalityReductionAlgorithm.UMAP )
+			text = "<html>Note: UMAP builds its nearest neighbor graph anew for each computation,"
+					+ "<br>also if only the number of neighbors or the minimum distance have changed.</html>";
+		else if ( controller.getTSneSettings().isUseFft()
+				&& controller.getCommonSettings().getNumberOfOutputDimensions() <= FftTSne.MAX_DIMENSIONS )
+			text = "<html>Note: the nearest neighbor graph is reused, if the same data is embedded again"
+					+ "<br>with a perplexity not larger than before.</html>";
+		else
+			text = "<html>Note: Barnes-Hut t-SNE builds its nearest neighbor graph anew for each computation,"
+					+ "<br>also if only the perplexity or the number of dimensions have changed.</html>";
+		neighborGraphNoteLabel.setText( text );
+	}
+
 	private < V extends Vertex< E >, E extends Edge< V > > InputDimensionsPanel< V, E > createInputDimensionsPanel()
 	{
 		return new InputDimensionsPanel<>( Cast.unchecked( controller.getVertexType() ),
@@ -331,6 +469,7 @@ public class DimensionalityReductionView extends JFrame
 	{
 		// Perform any cleanup or actions needed before closing the window
 		logger.debug( "View is closing." );
+		controller.cancel();
 		controller.saveSettingsToPreferences();
 		// Dispose the window
 		dispose();
@@ -345,6 +484,7 @@ public class DimensionalityReductionView extends JFrame
 	private void beforeRun()
 	{
 		computeButton.setEnabled( false );
+		cancelButton.setEnabled( true );
 		computeButton.setIcon( loadingIcon );
 		feedbackLabel.setText( "Computing ..." );
 		feedbackLabel.setForeground( Color.BLACK );
@@ -372,6 +512,11 @@ public class DimensionalityReductionView extends JFrame
 				}
 				catch ( Exception e )
 				{
+					if ( e.getCause() instanceof CancellationException )
+					{
+						executionCompleted( "Computation canceled.", Color.BLACK );
+						return;
+					}
 					String message = e.getCause().getMessage();
 					logger.error( "Running dimensionality reduction failed. {}", message, e.getCause() );
 					executionCompleted( message, Color.RED );
@@ -380,6 +525,7 @@ public class DimensionalityReductionView extends JFrame
 				finally
 				{
 					computeButton.setEnabled( true );
+					cancelButton.setEnabled( false );
 				}
 			}
 		};
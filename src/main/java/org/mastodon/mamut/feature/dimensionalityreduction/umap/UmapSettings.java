@@ -41,6 +41,7 @@ import org.slf4j.LoggerFactory;
  * <ul>
  *     <li>the number of neighbors to consider in the umap algorithm</li>
  *     <li>the minimum distance between points</li>
+ *     <li>whether the results should be reproducible, i.e. computed single-threaded, or computed faster using all available cores</li>
  * </ul>
  */
 public class UmapSettings
@@ -59,20 +60,27 @@ public class UmapSettings
 
 	public static final double MAX_VALUE_MINIMUM_DISTANCE = 1d;
 
+	public static final boolean DEFAULT_REPRODUCIBLE = true;
+
 	private int numberOfNeighbors;
 
 	private double minimumDistance;
 
+	private boolean reproducible;
+
 	private static final String NUMBER_OF_NEIGHBORS_SETTING = "NumberOfNeighbors";
 
 	private static final String MINIMUM_DISTANCE_SETTING = "MinimumDistance";
 
+	private static final String REPRODUCIBLE_SETTING = "Reproducible";
+
 	/**
 	 * Constructor with default values.
 	 * Default values are:
 	 * <ul>
 	 *     <li>number of neighbors: {@value DEFAULT_NUMBER_OF_NEIGHBORS}</li>
 	 *     <li>minimum distance: {@value DEFAULT_MINIMUM_DISTANCE}</li>
+	 *     <li>reproducible: {@value DEFAULT_REPRODUCIBLE}</li>
 	 * </ul>
 	 */
 	public UmapSettings()
@@ -81,9 +89,15 @@ public class UmapSettings
 	}
 
 	public UmapSettings( final int numberOfNeighbors, final double minimumDistance )
+	{
+		this( numberOfNeighbors, minimumDistance, DEFAULT_REPRODUCIBLE );
+	}
+
+	public UmapSettings( final int numberOfNeighbors, final double minimumDistance, final boolean reproducible )
 	{
 		this.numberOfNeighbors = numberOfNeighbors;
 		this.minimumDistance = minimumDistance;
+		this.reproducible = reproducible;
 	}
 
 	public int getNumberOfNeighbors()
@@ -96,6 +110,16 @@ public class UmapSettings
 		return minimumDistance;
 	}
 
+	/**
+	 * Whether the UMAP computation should give the same results for the same input, when run repeatedly. If {@code true}, UMAP is computed
+	 * single-threaded. Otherwise, UMAP uses all available cores, which is considerably faster for large data sets, but the results may
+	 * differ slightly between runs.
+	 */
+	public boolean isReproducible()
+	{
+		return reproducible;
+	}
+
 	public void setNumberOfNeighbors( final int numberOfNeighbors )
 	{
 		this.numberOfNeighbors = numberOfNeighbors;
@@ -106,13 +130,20 @@ public class UmapSettings
 		this.minimumDistance = minimumDistance;
 	}
 
+	public void setReproducible( final boolean reproducible )
+	{
+		this.reproducible = reproducible;
+	}
+
 	public static UmapSettings loadSettingsFromPreferences( final PrefService prefs )
 	{
 		int numberOfNeighbours = prefs == null ? UmapSettings.DEFAULT_NUMBER_OF_NEIGHBORS
 				: prefs.getInt( UmapSettings.class, NUMBER_OF_NEIGHBORS_SETTING, UmapSettings.DEFAULT_NUMBER_OF_NEIGHBORS );
 		double minimumDistance = prefs == null ? UmapSettings.DEFAULT_MINIMUM_DISTANCE
 				: prefs.getDouble( UmapSettings.class, MINIMUM_DISTANCE_SETTING, UmapSettings.DEFAULT_MINIMUM_DISTANCE );
-		return new UmapSettings( numberOfNeighbours, minimumDistance );
+		boolean reproducible = prefs == null ? UmapSettings.DEFAULT_REPRODUCIBLE
+				: prefs.getBoolean( UmapSettings.class, REPRODUCIBLE_SETTING, UmapSettings.DEFAULT_REPRODUCIBLE );
+		return new UmapSettings( numberOfNeighbours, minimumDistance, reproducible );
 	}
 
 	/**
@@ -125,11 +156,12 @@ public class UmapSettings
 			return;
 		prefs.put( UmapSettings.class, NUMBER_OF_NEIGHBORS_SETTING, getNumberOfNeighbors() );
 		prefs.put( UmapSettings.class, MINIMUM_DISTANCE_SETTING, getMinimumDistance() );
+		prefs.put( UmapSettings.class, REPRODUCIBLE_SETTING, isReproducible() );
 	}
 
 	@Override
 	public String toString()
 	{
-		return "UmapSettings{numberOfNeighbors=" + numberOfNeighbors + ", minimumDistance=" + minimumDistance + '}';
+		return "UmapSettings{numberOfNeighbors=" + numberOfNeighbors + ", minimumDistance=" + minimumDistance + ", reproducible=" + reproducible + '}';
 	}
 }
@@ -40,6 +40,8 @@ import org.mastodon.mamut.feature.dimensionalityreduction.AbstractOutputFeatureC
 import org.mastodon.mamut.feature.dimensionalityreduction.CommonSettings;
 import org.mastodon.mamut.feature.dimensionalityreduction.umap.UmapSettings;
 import org.mastodon.mamut.feature.dimensionalityreduction.util.InputDimension;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborSearch;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.OutOfSampleEmbedding;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.properties.DoublePropertyMap;
 import org.scijava.Context;
@@ -82,6 +84,13 @@ public abstract class AbstractUmapFeatureComputer< V extends Vertex< E >, E exte
 		super.computeFeature( commonSettings, inputDimensions, graph );
 	}
 
+	/**
+	 * Fits UMAP on the given data matrix.
+	 * <br>
+	 * NB: the UMAP library builds its nearest neighbor graph internally and cannot take a precomputed one. Thus, the graph is not taken from
+	 * the {@link #setNearestNeighborGraphCache(org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborGraphCache) cache}
+	 * and repeated fits of the same data with different UMAP settings build the graph again.
+	 */
 	@Override
 	protected void computeAlgorithm( double[][] dataMatrix )
 	{
@@ -89,14 +98,23 @@ public abstract class AbstractUmapFeatureComputer< V extends Vertex< E >, E exte
 		umap.setNumberComponents( settings.getNumberOfOutputDimensions() );
 		umap.setNumberNearestNeighbours( umapSettings.getNumberOfNeighbors() );
 		umap.setMinDist( ( float ) umapSettings.getMinimumDistance() );
-		umap.setThreads( 1 );
+		// NB: the multithreaded nearest neighbor search and optimization of the UMAP library do not give reproducible results
+		int numberOfThreads = umapSettings.isReproducible() ? 1 : Runtime.getRuntime().availableProcessors();
+		umap.setThreads( numberOfThreads );
 		umap.setSeed( 42 );
-		logger.info( "Fitting umap. Data matrix has {} rows x {} columns.", dataMatrix.length, dataMatrix[ 0 ].length );
+		logger.info( "Fitting umap with {} thread(s). Data matrix has {} rows x {} columns.", numberOfThreads, dataMatrix.length,
+				dataMatrix[ 0 ].length );
 		umapResult = umap.fitTransform( dataMatrix );
 		logger.info( "Finished fitting umap. Results has {} rows x {} columns.", umapResult.length,
 				umapResult.length > 0 ? umapResult[ 0 ].length : 0 );
 	}
 
+	@Override
+	protected OutOfSampleEmbedding createOutOfSampleEmbedding( final NearestNeighborSearch trainingData, final double[][] embedding )
+	{
+		return OutOfSampleEmbedding.forUmap( trainingData, embedding, umapSettings.getNumberOfNeighbors(), umapSettings.getMinimumDistance() );
+	}
+
 	@Override
 	protected double[][] getResult()
 	{
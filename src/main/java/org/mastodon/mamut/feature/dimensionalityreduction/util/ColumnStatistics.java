@@ -0,0 +1,165 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.parallel.Parallelization;
+
+/**
+ * Mean and (bias corrected) variance of each column of a data matrix, which are accumulated row by row in a single pass.
+ * <br>
+ * Rows are added with <a href="https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Welford's_online_algorithm">Welford's
+ * algorithm</a>, which is numerically stable without a second pass over the data. Statistics of disjoint sets of rows, e.g. of blocks of rows
+ * processed in parallel, are combined by {@link #merge(ColumnStatistics)} with the pairwise update of Chan et al.
+ */
+public class ColumnStatistics
+{
+	private static final int BLOCK_SIZE = 4096;
+
+	private final double[] means;
+
+	private final double[] squaredDeviations;
+
+	private long count;
+
+	/**
+	 * Creates empty statistics for the given number of columns.
+	 *
+	 * @param numberOfColumns the number of columns
+	 */
+	public ColumnStatistics( final int numberOfColumns )
+	{
+		this.means = new double[ numberOfColumns ];
+		this.squaredDeviations = new double[ numberOfColumns ];
+		this.count = 0;
+	}
+
+	/**
+	 * Computes the statistics of the columns of the given data matrix in a single parallel pass over its rows.
+	 * <br>
+	 * The rows are processed in blocks of fixed size, which are merged in a fixed order, such that the result does not depend on the number of
+	 * threads.
+	 *
+	 * @param rows the rows of the data matrix, which must not be empty
+	 * @return the statistics of the columns
+	 */
+	public static ColumnStatistics of( final double[][] rows )
+	{
+		int numberOfColumns = rows[ 0 ].length;
+		List< int[] > blocks = new ArrayList<>();
+		for ( int from = 0, index = 0; from < rows.length; from += BLOCK_SIZE, index++ )
+			blocks.add( new int[] { from, Math.min( rows.length, from + BLOCK_SIZE ), index } );
+		ColumnStatistics[] blockStatistics = new ColumnStatistics[ blocks.size() ];
+		Parallelization.getTaskExecutor().forEach( blocks, block -> {
+			ColumnStatistics statistics = new ColumnStatistics( numberOfColumns );
+			for ( int row = block[ 0 ]; row < block[ 1 ]; row++ )
+				statistics.add( rows[ row ] );
+			blockStatistics[ block[ 2 ] ] = statistics;
+		} );
+		ColumnStatistics statistics = new ColumnStatistics( numberOfColumns );
+		for ( ColumnStatistics block : blockStatistics )
+			statistics.merge( block );
+		return statistics;
+	}
+
+	/**
+	 * Adds the given row to these statistics.
+	 *
+	 * @param row the row, whose length must be the number of columns
+	 */
+	public void add( final double[] row )
+	{
+		count++;
+		for ( int column = 0; column < means.length; column++ )
+		{
+			double deviation = row[ column ] - means[ column ];
+			means[ column ] += deviation / count;
+			squaredDeviations[ column ] += deviation * ( row[ column ] - means[ column ] );
+		}
+	}
+
+	/**
+	 * Adds the rows of the given statistics to these statistics.
+	 *
+	 * @param other the statistics of other rows with the same number of columns
+	 */
+	public void merge( final ColumnStatistics other )
+	{
+		if ( other.count == 0 )
+			return;
+		if ( count == 0 )
+		{
+			System.arraycopy( other.means, 0, means, 0, means.length );
+			System.arraycopy( other.squaredDeviations, 0, squaredDeviations, 0, squaredDeviations.length );
+			count = other.count;
+			return;
+		}
+		double total = ( double ) count + other.count;
+		double weight = other.count / total;
+		for ( int column = 0; column < means.length; column++ )
+		{
+			double deviation = other.means[ column ] - means[ column ];
+			means[ column ] += deviation * weight;
+			squaredDeviations[ column ] += other.squaredDeviations[ column ] + deviation * deviation * count * weight;
+		}
+		count += other.count;
+	}
+
+	/**
+	 * @return the number of rows added to these statistics
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the mean of each column
+	 */
+	public double[] getMeans()
+	{
+		return means.clone();
+	}
+
+	/**
+	 * Gets the bias corrected standard deviation of each column. The standard deviation is 0, if less than two rows have been added.
+	 *
+	 * @return the standard deviation of each column
+	 */
+	public double[] getStandardDeviations()
+	{
+		double[] standardDeviations = new double[ means.length ];
+		if ( count > 1 )
+			for ( int column = 0; column < means.length; column++ )
+				standardDeviations[ column ] = Math.sqrt( squaredDeviations[ column ] / ( count - 1d ) );
+		return standardDeviations;
+	}
+}
@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.util.Objects;
+
+/**
+ * Identifies a data matrix by its dimensions and two independent 64-bit hashes of its values, such that equal data matrices can be
+ * recognized without keeping them.
+ * <br>
+ * The hashes only depend on the values and their order, but not on the session, in which they are computed. Thus, they may be stored,
+ * e.g. via {@link #toString()}, and compared with the hashes of a later session.
+ */
+public final class DataHash
+{
+	private final int rows;
+
+	private final int columns;
+
+	private final long hash1;
+
+	private final long hash2;
+
+	/**
+	 * Computes the hash of the given data matrix.
+	 *
+	 * @param data the data matrix, one point per row
+	 */
+	public DataHash( final double[][] data )
+	{
+		this.rows = data.length;
+		this.columns = data.length == 0 ? 0 : data[ 0 ].length;
+		long h1 = 1125899906842597L;
+		long h2 = 0x9E3779B97F4A7C15L;
+		for ( double[] row : data )
+		{
+			for ( double value : row )
+			{
+				long bits = Double.doubleToLongBits( value );
+				h1 = 31 * h1 + bits;
+				h2 = Long.rotateLeft( h2 ^ ( bits * 0xBF58476D1CE4E5B9L ), 31 ) * 0x94D049BB133111EBL;
+			}
+		}
+		this.hash1 = h1;
+		this.hash2 = h2;
+	}
+
+	@Override
+	public boolean equals( final Object o )
+	{
+		if ( this == o )
+			return true;
+		if ( !( o instanceof DataHash ) )
+			return false;
+		DataHash dataHash = ( DataHash ) o;
+		return rows == dataHash.rows && columns == dataHash.columns && hash1 == dataHash.hash1 && hash2 == dataHash.hash2;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash( rows, columns, hash1, hash2 );
+	}
+
+	/**
+	 * Gets the dimensions and the hashes of the data matrix as a string, which is equal for equal data matrices.
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format( "%dx%d-%016x%016x", rows, columns, hash1, hash2 );
+	}
+}
@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.util.Arrays;
+
+/**
+ * Row-major input matrix for dimensionality reduction with a fixed number of columns and a maximum number of rows known in advance.
+ * <br>
+ * Rows are filled in place: {@link #nextRow()} returns the array of the next row, which is only kept, if {@link #commitRow()} is called
+ * afterwards. Otherwise, the array is reused for the next row. Thus, rows rejected during filling (e.g. because of non-finite values) do not
+ * create garbage and no intermediate collection of rows is needed.
+ * <br>
+ * {@link #getRows()} returns the filled rows without copying their values, such that they can be standardized in place (cf.
+ * {@link StandardScaler}) and passed to the dimensionality reduction algorithm directly.
+ */
+public class DataMatrix
+{
+	private final double[][] rows;
+
+	private final int numberOfColumns;
+
+	private int numberOfRows;
+
+	/**
+	 * Creates a new empty data matrix.
+	 *
+	 * @param maximumNumberOfRows the maximum number of rows, e.g. the number of vertices to extract data from
+	 * @param numberOfColumns the number of columns, i.e. the number of input dimensions
+	 */
+	public DataMatrix( final int maximumNumberOfRows, final int numberOfColumns )
+	{
+		this.rows = new double[ maximumNumberOfRows ][];
+		this.numberOfColumns = numberOfColumns;
+		this.numberOfRows = 0;
+	}
+
+	/**
+	 * Gets the array of the next row to be filled. The row is only added to this matrix by a subsequent call of {@link #commitRow()}.
+	 *
+	 * @return the array of the next row
+	 * @throws IllegalStateException if the maximum number of rows has been reached
+	 */
+	public double[] nextRow()
+	{
+		if ( numberOfRows == rows.length )
+			throw new IllegalStateException( "The maximum number of rows (" + rows.length + ") has been reached." );
+		if ( rows[ numberOfRows ] == null )
+			rows[ numberOfRows ] = new double[ numberOfColumns ];
+		return rows[ numberOfRows ];
+	}
+
+	/**
+	 * Adds the row returned by the last call of {@link #nextRow()} to this matrix.
+	 *
+	 * @return the index of the added row
+	 */
+	public int commitRow()
+	{
+		return numberOfRows++;
+	}
+
+	public int getNumberOfRows()
+	{
+		return numberOfRows;
+	}
+
+	public int getNumberOfColumns()
+	{
+		return numberOfColumns;
+	}
+
+	/**
+	 * Gets the rows of this matrix. The row arrays are not copied, i.e. changes of their values are reflected in this matrix.
+	 *
+	 * @return the rows of this matrix
+	 */
+	public double[][] getRows()
+	{
+		return numberOfRows == rows.length ? rows : Arrays.copyOf( rows, numberOfRows );
+	}
+}
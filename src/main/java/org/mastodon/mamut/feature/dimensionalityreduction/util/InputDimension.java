@@ -29,7 +29,6 @@
 package org.mastodon.mamut.feature.dimensionalityreduction.util;
 
 import net.imglib2.util.Cast;
-import net.imglib2.util.Util;
 import org.mastodon.feature.Feature;
 import org.mastodon.feature.FeatureModel;
 import org.mastodon.feature.FeatureProjection;
@@ -88,6 +87,7 @@ public class InputDimension< V extends Vertex< ? > >
 	 * Creates a new input dimension for the given edge feature and projection.
 	 * <br>
 	 * The vertex value function is set to the average of the edge feature projection values for the incoming edges of a given vertex.
+	 * The values are summed up without collecting them, since the function is evaluated for each vertex of the graph.
 	 * @param edgeFeature the edge feature
 	 * @param edgeProjection the projection of the edge feature
 	 * @return a new input dimension
@@ -129,6 +129,11 @@ public class InputDimension< V extends Vertex< ? > >
 	 * Returns the value of the input dimension for the given vertex.
 	 * <br>
 	 * The value is determined by the given vertex value function.
+	 * <br>
+	 * NB: this method is called concurrently from several threads, while the graph is locked for reading, each thread with its own vertex
+	 * reference. The edges of the vertex are iterated via the given vertex reference, thus with an edge reference per call. The feature
+	 * projections are assumed to only read the feature values (e.g. from property maps) or the vertex and edge data without modifying any
+	 * shared state, as all projections of the features of Mastodon and of this plugin do.
 	 * @param vertex the vertex
 	 * @return the value of the input dimension
 	 */
@@ -203,9 +208,10 @@ public class InputDimension< V extends Vertex< ? > >
 				return Double.NaN;
 			else if ( incomingEdges.size() == 1 )
 				return edgeProjection.value( incomingEdges.iterator().next() );
-			List< Double > edgeValues = new ArrayList<>( incomingEdges.size() );
-			incomingEdges.iterator().forEachRemaining( edge -> edgeValues.add( edgeProjection.value( edge ) ) );
-			return Util.average( edgeValues.stream().mapToDouble( Double::doubleValue ).toArray() );
+			double sum = 0;
+			for ( E edge : incomingEdges )
+				sum += edgeProjection.value( edge );
+			return sum / incomingEdges.size();
 		};
 	}
 }
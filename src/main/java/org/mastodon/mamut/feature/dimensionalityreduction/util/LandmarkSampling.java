@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Selects landmarks, i.e. a subsample of the data rows, on which a dimensionality reduction is fitted, before the remaining data rows are
+ * placed into the embedding of the landmarks.
+ */
+public class LandmarkSampling
+{
+	private LandmarkSampling()
+	{
+		// prevent instantiation
+	}
+
+	/**
+	 * Selects a stratified random sample of the given size from the rows with the given strata, e.g. the timepoints of the rows.
+	 * <br>
+	 * Each stratum is represented in the sample proportionally to its size, i.e. the number of rows selected from a stratum differs by less
+	 * than one from the size of the stratum times the sampling fraction. Within each stratum, the rows are selected at random.
+	 *
+	 * @param strata the stratum of each row
+	 * @param sampleSize the number of rows to select
+	 * @param seed the seed for the random selection
+	 * @return the indices of the selected rows in increasing order, or the indices of all rows, if the sample size is not smaller than the number of rows
+	 * @throws IllegalArgumentException if the sample size is not positive
+	 */
+	public static int[] stratifiedSample( final int[] strata, final int sampleSize, final long seed )
+	{
+		if ( sampleSize < 1 )
+			throw new IllegalArgumentException( "Sample size must be positive, but is " + sampleSize + "." );
+		int numberOfRows = strata.length;
+		int[] sample = new int[ Math.min( sampleSize, numberOfRows ) ];
+		if ( sampleSize >= numberOfRows )
+		{
+			Arrays.setAll( sample, i -> i );
+			return sample;
+		}
+		// NB: order the rows by stratum and randomly within each stratum, then select rows at equal steps (systematic sampling)
+		SplittableRandom random = new SplittableRandom( seed );
+		long[] keys = new long[ numberOfRows ];
+		for ( int row = 0; row < numberOfRows; row++ )
+		{
+			// NB: the upper 32 bits hold the stratum in an unsigned order preserving way, the lower 32 bits hold a random number
+			long stratum = ( strata[ row ] ^ Integer.MIN_VALUE ) & 0xFFFFFFFFL;
+			keys[ row ] = ( stratum << 32 ) | ( random.nextInt() & 0xFFFFFFFFL );
+		}
+		Integer[] order = new Integer[ numberOfRows ];
+		Arrays.setAll( order, i -> i );
+		Arrays.sort( order, ( a, b ) -> {
+			int comparison = Long.compareUnsigned( keys[ a ], keys[ b ] );
+			return comparison != 0 ? comparison : Integer.compare( a, b );
+		} );
+		double step = ( double ) numberOfRows / sampleSize;
+		double offset = random.nextDouble() * step;
+		for ( int i = 0; i < sampleSize; i++ )
+			sample[ i ] = order[ Math.min( numberOfRows - 1, ( int ) ( offset + i * step ) ) ];
+		Arrays.sort( sample );
+		return sample;
+	}
+}
@@ -0,0 +1,431 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds a {@link NearestNeighborGraph} over the rows of a data matrix using the Euclidean distance.
+ * <br>
+ * For small data sets, the exact graph is computed by comparing all pairs of points. For larger data sets, the approximate graph is computed by
+ * nearest neighbor descent (cf. <a href="https://doi.org/10.1145/1963405.1963487">Dong et al., 2011</a>), which starts from random neighbors
+ * and iteratively improves them by comparing the neighbors of neighbors. In each iteration, only a random sample of {@link #SAMPLING_RATE}
+ * times the number of neighbors is taken as new and as old candidates of each point, which reduces the number of distance computations
+ * per iteration. New neighbors that have not been sampled stay new for the next iteration.
+ * <br>
+ * The computation is parallelized on the {@link Parallelization} executor. The result only depends on the data, the number of neighbors and
+ * the seed, but not on the number of threads: the candidates of each iteration are sampled from a snapshot of the graph by random
+ * priorities, which only depend on the seed, the iteration and the point, and the neighbor list of each point keeps the nearest candidates
+ * by distance (ties broken by the index of the candidate), which does not depend on the order, in which the candidates are offered.
+ */
+public class NearestNeighborDescent
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/**
+	 * The default seed for the random initialization of nearest neighbor descent.
+	 */
+	public static final long DEFAULT_SEED = 42;
+
+	/**
+	 * Up to this number of points, the exact graph is computed.
+	 */
+	static final int BRUTE_FORCE_THRESHOLD = 2048;
+
+	static final int MAX_ITERATIONS = 16;
+
+	/**
+	 * Nearest neighbor descent stops, if less than this fraction of all neighbor entries has changed within an iteration.
+	 */
+	static final double CONVERGENCE_THRESHOLD = 0.001;
+
+	/**
+	 * The fraction of the number of neighbors, which is sampled as new and as old candidates of each point per iteration (&rho; in Dong et al.).
+	 */
+	static final double SAMPLING_RATE = 0.5;
+
+	private static final int NUMBER_OF_LOCKS = 1024;
+
+	private final double[][] data;
+
+	private final int numberOfPoints;
+
+	private final int numberOfNeighbors;
+
+	// NB: the neighbors of each point are stored as a max-heap by distance in a contiguous block of numberOfNeighbors entries
+	private final int[] heapIndices;
+
+	// NB: squared Euclidean distances
+	private final double[] heapDistances;
+
+	private final boolean[] heapIsNew;
+
+	// NB: the iteration, in which each neighbor has been added
+	private final int[] heapIterations;
+
+	private int iteration = -1;
+
+	private final Object[] locks;
+
+	private NearestNeighborDescent( final double[][] data, final int numberOfNeighbors )
+	{
+		this.data = data;
+		this.numberOfPoints = data.length;
+		this.numberOfNeighbors = numberOfNeighbors;
+		this.heapIndices = new int[ numberOfPoints * numberOfNeighbors ];
+		this.heapDistances = new double[ numberOfPoints * numberOfNeighbors ];
+		this.heapIsNew = new boolean[ numberOfPoints * numberOfNeighbors ];
+		this.heapIterations = new int[ numberOfPoints * numberOfNeighbors ];
+		Arrays.fill( heapIndices, -1 );
+		Arrays.fill( heapDistances, Double.POSITIVE_INFINITY );
+		this.locks = new Object[ NUMBER_OF_LOCKS ];
+		for ( int i = 0; i < NUMBER_OF_LOCKS; i++ )
+			locks[ i ] = new Object();
+	}
+
+	/**
+	 * Builds the nearest neighbor graph over the rows of the given data matrix.
+	 *
+	 * @param data the data matrix, one point per row
+	 * @param numberOfNeighbors the number of neighbors per point
+	 * @param seed the seed for the random initialization of nearest neighbor descent
+	 * @return the nearest neighbor graph
+	 * @throws IllegalArgumentException if {@code numberOfNeighbors} is not positive or not smaller than the number of points
+	 */
+	public static NearestNeighborGraph build( final double[][] data, final int numberOfNeighbors, final long seed )
+	{
+		if ( numberOfNeighbors < 1 || numberOfNeighbors >= data.length )
+			throw new IllegalArgumentException( "Number of neighbors must be between 1 and " + ( data.length - 1 ) + ", but is "
+					+ numberOfNeighbors + "." );
+		StopWatch stopWatch = StopWatch.createStarted();
+		NearestNeighborDescent descent = new NearestNeighborDescent( data, numberOfNeighbors );
+		if ( data.length <= BRUTE_FORCE_THRESHOLD )
+			descent.computeExact();
+		else
+			descent.descend( seed );
+		NearestNeighborGraph graph = descent.toGraph();
+		logger.debug( "Built nearest neighbor graph with {} points and {} neighbors per point in {} ms.", data.length, numberOfNeighbors,
+				stopWatch.getTime() );
+		return graph;
+	}
+
+	private void computeExact()
+	{
+		forEachBlock( block -> {
+			for ( int point = block[ 0 ]; point < block[ 1 ]; point++ )
+				for ( int other = 0; other < numberOfPoints; other++ )
+					if ( other != point )
+						offer( point, other, squaredDistance( point, other ) );
+		} );
+	}
+
+	private void descend( final long seed )
+	{
+		forEachBlock( block -> {
+			for ( int point = block[ 0 ]; point < block[ 1 ]; point++ )
+			{
+				SplittableRandom random = new SplittableRandom( seed ^ ( point * 0x9E3779B97F4A7C15L ) );
+				int base = point * numberOfNeighbors;
+				while ( heapIndices[ base ] < 0 )
+				{
+					int other = random.nextInt( numberOfPoints );
+					if ( other != point )
+						offer( point, other, squaredDistance( point, other ) );
+				}
+			}
+		} );
+		int sampleSize = Math.max( 1, ( int ) Math.ceil( SAMPLING_RATE * numberOfNeighbors ) );
+		for ( iteration = 0; iteration < MAX_ITERATIONS; iteration++ )
+		{
+			forEachBlock( block -> {
+				for ( int point = block[ 0 ]; point < block[ 1 ]; point++ )
+					sortNeighbors( point, false );
+			} );
+			Candidates newCandidates = new Candidates( numberOfPoints, sampleSize );
+			Candidates oldCandidates = new Candidates( numberOfPoints, sampleSize );
+			collectCandidates( newCandidates, oldCandidates, seed ^ ( ( iteration + 1L ) * 0xC2B2AE3D27D4EB4FL ) );
+			forEachBlock( block -> {
+				for ( int point = block[ 0 ]; point < block[ 1 ]; point++ )
+					joinCandidates( point, newCandidates, oldCandidates );
+			} );
+			// NB: the neighbors added in this iteration do not depend on the order, in which the candidates have been offered
+			int updates = 0;
+			for ( int entryIteration : heapIterations )
+				if ( entryIteration == iteration )
+					updates++;
+			logger.debug( "Nearest neighbor descent iteration {}: {} updates.", iteration, updates );
+			if ( updates < CONVERGENCE_THRESHOLD * numberOfPoints * numberOfNeighbors )
+				break;
+		}
+	}
+
+	/**
+	 * Samples the new and old candidates of each point from its neighbors and the points, of which it is a neighbor. Each neighbor entry
+	 * gets a random priority and the candidate lists keep the candidates with the smallest priorities. Afterwards, the new neighbors that
+	 * have been sampled as new candidates of their point are marked as old.
+	 */
+	private void collectCandidates( final Candidates newCandidates, final Candidates oldCandidates, final long seed )
+	{
+		for ( int point = 0; point < numberOfPoints; point++ )
+		{
+			SplittableRandom random = new SplittableRandom( seed ^ ( point * 0x9E3779B97F4A7C15L ) );
+			for ( int entry = point * numberOfNeighbors; entry < ( point + 1 ) * numberOfNeighbors; entry++ )
+			{
+				double priority = random.nextDouble();
+				Candidates candidates = heapIsNew[ entry ] ? newCandidates : oldCandidates;
+				candidates.add( point, heapIndices[ entry ], priority );
+				candidates.add( heapIndices[ entry ], point, priority );
+			}
+		}
+		for ( int point = 0; point < numberOfPoints; point++ )
+			for ( int entry = point * numberOfNeighbors; entry < ( point + 1 ) * numberOfNeighbors; entry++ )
+				if ( heapIsNew[ entry ] && newCandidates.contains( point, heapIndices[ entry ] ) )
+					heapIsNew[ entry ] = false;
+	}
+
+	/**
+	 * Offers each pair of new candidates and each pair of a new and an old candidate of the given point to each other as neighbors.
+	 */
+	private void joinCandidates( final int point, final Candidates newCandidates, final Candidates oldCandidates )
+	{
+		int newBase = point * newCandidates.capacity;
+		int newCount = newCandidates.counts[ point ];
+		int oldBase = point * oldCandidates.capacity;
+		int oldCount = oldCandidates.counts[ point ];
+		for ( int i = 0; i < newCount; i++ )
+		{
+			int a = newCandidates.values[ newBase + i ];
+			for ( int j = i + 1; j < newCount; j++ )
+				offerPair( a, newCandidates.values[ newBase + j ] );
+			for ( int j = 0; j < oldCount; j++ )
+			{
+				int b = oldCandidates.values[ oldBase + j ];
+				if ( a != b )
+					offerPair( a, b );
+			}
+		}
+	}
+
+	private void offerPair( final int a, final int b )
+	{
+		double distance = squaredDistance( a, b );
+		offerSynchronized( a, b, distance );
+		offerSynchronized( b, a, distance );
+	}
+
+	private void offerSynchronized( final int point, final int other, final double distance )
+	{
+		// NB: the distance of the farthest neighbor only decreases, thus a candidate farther than a possibly outdated value can be skipped
+		if ( distance > heapDistances[ point * numberOfNeighbors ] )
+			return;
+		synchronized ( locks[ point % NUMBER_OF_LOCKS ] )
+		{
+			offer( point, other, distance );
+		}
+	}
+
+	/**
+	 * Adds the given point to the neighbors of the given point, if it is nearer than the farthest neighbor and not yet a neighbor. The
+	 * farthest neighbor is removed in this case.
+	 */
+	private void offer( final int point, final int other, final double distance )
+	{
+		int base = point * numberOfNeighbors;
+		if ( !isLess( distance, other, heapDistances[ base ], heapIndices[ base ] ) )
+			return;
+		for ( int entry = base; entry < base + numberOfNeighbors; entry++ )
+			if ( heapIndices[ entry ] == other )
+				return;
+		heapIndices[ base ] = other;
+		heapDistances[ base ] = distance;
+		heapIsNew[ base ] = true;
+		heapIterations[ base ] = iteration;
+		int position = 0;
+		while ( true )
+		{
+			int left = 2 * position + 1;
+			if ( left >= numberOfNeighbors )
+				break;
+			int largest = left;
+			int right = left + 1;
+			if ( right < numberOfNeighbors && isLess( base + left, base + right ) )
+				largest = right;
+			if ( !isLess( base + position, base + largest ) )
+				break;
+			swap( base + position, base + largest );
+			position = largest;
+		}
+	}
+
+	/**
+	 * Sorts the neighbors of the given point by distance. Sorting in descending order gives a valid max-heap in a canonical order.
+	 */
+	private void sortNeighbors( final int point, final boolean ascending )
+	{
+		int base = point * numberOfNeighbors;
+		for ( int i = base + 1; i < base + numberOfNeighbors; i++ )
+			for ( int j = i; j > base && isLess( j - 1, j ) != ascending; j-- )
+				swap( j - 1, j );
+	}
+
+	private NearestNeighborGraph toGraph()
+	{
+		forEachBlock( block -> {
+			for ( int point = block[ 0 ]; point < block[ 1 ]; point++ )
+				sortNeighbors( point, true );
+		} );
+		double[] distances = new double[ heapDistances.length ];
+		for ( int entry = 0; entry < distances.length; entry++ )
+			distances[ entry ] = Math.sqrt( heapDistances[ entry ] );
+		return new NearestNeighborGraph( numberOfPoints, numberOfNeighbors, heapIndices, distances );
+	}
+
+	private boolean isLess( final int entry1, final int entry2 )
+	{
+		return isLess( heapDistances[ entry1 ], heapIndices[ entry1 ], heapDistances[ entry2 ], heapIndices[ entry2 ] );
+	}
+
+	private static boolean isLess( final double distance1, final int index1, final double distance2, final int index2 )
+	{
+		return distance1 < distance2 || ( distance1 == distance2 && index1 < index2 );
+	}
+
+	private void swap( final int entry1, final int entry2 )
+	{
+		int index = heapIndices[ entry1 ];
+		heapIndices[ entry1 ] = heapIndices[ entry2 ];
+		heapIndices[ entry2 ] = index;
+		double distance = heapDistances[ entry1 ];
+		heapDistances[ entry1 ] = heapDistances[ entry2 ];
+		heapDistances[ entry2 ] = distance;
+		boolean isNew = heapIsNew[ entry1 ];
+		heapIsNew[ entry1 ] = heapIsNew[ entry2 ];
+		heapIsNew[ entry2 ] = isNew;
+		int entryIteration = heapIterations[ entry1 ];
+		heapIterations[ entry1 ] = heapIterations[ entry2 ];
+		heapIterations[ entry2 ] = entryIteration;
+	}
+
+	private double squaredDistance( final int point1, final int point2 )
+	{
+		double[] row1 = data[ point1 ];
+		double[] row2 = data[ point2 ];
+		double sum = 0;
+		for ( int i = 0; i < row1.length; i++ )
+		{
+			double difference = row1[ i ] - row2[ i ];
+			sum += difference * difference;
+		}
+		return sum;
+	}
+
+	private void forEachBlock( final Consumer< int[] > blockConsumer )
+	{
+		TaskExecutor taskExecutor = Parallelization.getTaskExecutor();
+		int numberOfTasks = Math.min( numberOfPoints, taskExecutor.suggestNumberOfTasks() * 4 );
+		List< int[] > blocks = new ArrayList<>();
+		for ( int task = 0; task < numberOfTasks; task++ )
+			blocks.add( new int[] { ( int ) ( ( long ) numberOfPoints * task / numberOfTasks ),
+					( int ) ( ( long ) numberOfPoints * ( task + 1 ) / numberOfTasks ) } );
+		taskExecutor.forEach( blocks, blockConsumer );
+	}
+
+	/**
+	 * Candidate lists of a fixed capacity per point without duplicates. If a list is full, it keeps the candidates with the smallest
+	 * priorities (ties broken by the candidate index). A candidate added several times keeps its smallest priority. Thus, the content of
+	 * the lists does not depend on the order, in which the candidates are added.
+	 */
+	private static class Candidates
+	{
+		private final int capacity;
+
+		private final int[] values;
+
+		private final double[] priorities;
+
+		private final int[] counts;
+
+		private Candidates( final int numberOfPoints, final int capacity )
+		{
+			this.capacity = capacity;
+			this.values = new int[ numberOfPoints * capacity ];
+			this.priorities = new double[ numberOfPoints * capacity ];
+			this.counts = new int[ numberOfPoints ];
+		}
+
+		private void add( final int point, final int candidate, final double priority )
+		{
+			int count = counts[ point ];
+			int base = point * capacity;
+			int largest = -1;
+			for ( int i = base; i < base + count; i++ )
+			{
+				if ( values[ i ] == candidate )
+				{
+					priorities[ i ] = Math.min( priorities[ i ], priority );
+					return;
+				}
+				if ( largest < 0 || isLess( priorities[ largest ], values[ largest ], priorities[ i ], values[ i ] ) )
+					largest = i;
+			}
+			if ( count < capacity )
+			{
+				values[ base + count ] = candidate;
+				priorities[ base + count ] = priority;
+				counts[ point ] = count + 1;
+			}
+			else if ( isLess( priority, candidate, priorities[ largest ], values[ largest ] ) )
+			{
+				values[ largest ] = candidate;
+				priorities[ largest ] = priority;
+			}
+		}
+
+		private boolean contains( final int point, final int candidate )
+		{
+			int base = point * capacity;
+			for ( int i = base; i < base + counts[ point ]; i++ )
+				if ( values[ i ] == candidate )
+					return true;
+			return false;
+		}
+	}
+}
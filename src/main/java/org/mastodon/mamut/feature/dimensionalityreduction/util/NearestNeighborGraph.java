@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+/**
+ * An immutable k nearest neighbor graph over the rows of a data matrix.
+ * <br>
+ * For each point, i.e. each row of the data matrix, the graph contains the indices of its {@link #getNumberOfNeighbors()} nearest
+ * neighbors and their Euclidean distances, sorted by increasing distance. A point is not its own neighbor.
+ * <br>
+ * Cf. {@link NearestNeighborDescent} for building the graph and {@link NearestNeighborGraphCache} for reusing it.
+ */
+public class NearestNeighborGraph
+{
+	private final int numberOfPoints;
+
+	private final int numberOfNeighbors;
+
+	private final int[] neighbors;
+
+	private final double[] distances;
+
+	NearestNeighborGraph( final int numberOfPoints, final int numberOfNeighbors, final int[] neighbors, final double[] distances )
+	{
+		this.numberOfPoints = numberOfPoints;
+		this.numberOfNeighbors = numberOfNeighbors;
+		this.neighbors = neighbors;
+		this.distances = distances;
+	}
+
+	/**
+	 * Gets the number of points in this graph.
+	 *
+	 * @return the number of points
+	 */
+	public int size()
+	{
+		return numberOfPoints;
+	}
+
+	/**
+	 * Gets the number of neighbors per point.
+	 *
+	 * @return the number of neighbors
+	 */
+	public int getNumberOfNeighbors()
+	{
+		return numberOfNeighbors;
+	}
+
+	/**
+	 * Gets the index of the neighbor of the given point with the given rank.
+	 *
+	 * @param point the index of the point
+	 * @param rank the rank of the neighbor, {@code 0} being the nearest neighbor
+	 * @return the index of the neighbor
+	 */
+	public int getNeighbor( final int point, final int rank )
+	{
+		return neighbors[ point * numberOfNeighbors + rank ];
+	}
+
+	/**
+	 * Gets the Euclidean distance of the given point to its neighbor with the given rank.
+	 *
+	 * @param point the index of the point
+	 * @param rank the rank of the neighbor, {@code 0} being the nearest neighbor
+	 * @return the distance to the neighbor
+	 */
+	public double getDistance( final int point, final int rank )
+	{
+		return distances[ point * numberOfNeighbors + rank ];
+	}
+
+	/**
+	 * Gets a graph with the given number of nearest neighbors per point, which must not be larger than the number of neighbors of this graph.
+	 *
+	 * @param numberOfNeighbors the number of neighbors
+	 * @return this graph, if the number of neighbors is equal, otherwise a graph containing the given number of nearest neighbors of this
+	 * graph
+	 * @throws IllegalArgumentException if {@code numberOfNeighbors} is not positive or larger than the number of neighbors of this graph
+	 */
+	public NearestNeighborGraph withNumberOfNeighbors( final int numberOfNeighbors )
+	{
+		if ( numberOfNeighbors < 1 || numberOfNeighbors > this.numberOfNeighbors )
+			throw new IllegalArgumentException( "Number of neighbors must be between 1 and " + this.numberOfNeighbors + ", but is "
+					+ numberOfNeighbors + "." );
+		if ( numberOfNeighbors == this.numberOfNeighbors )
+			return this;
+		int[] truncatedNeighbors = new int[ numberOfPoints * numberOfNeighbors ];
+		double[] truncatedDistances = new double[ numberOfPoints * numberOfNeighbors ];
+		for ( int point = 0; point < numberOfPoints; point++ )
+		{
+			System.arraycopy( neighbors, point * this.numberOfNeighbors, truncatedNeighbors, point * numberOfNeighbors, numberOfNeighbors );
+			System.arraycopy( distances, point * this.numberOfNeighbors, truncatedDistances, point * numberOfNeighbors, numberOfNeighbors );
+		}
+		return new NearestNeighborGraph( numberOfPoints, numberOfNeighbors, truncatedNeighbors, truncatedDistances );
+	}
+}
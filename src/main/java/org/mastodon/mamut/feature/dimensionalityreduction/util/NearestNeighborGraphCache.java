@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches {@link NearestNeighborGraph}s, such that repeated dimensionality reductions of the same data, e.g. with different algorithm
+ * parameters, do not need to rebuild the graph.
+ * <br>
+ * A graph is cached by the content of the data matrix it has been built from. Thus, a different selection of input dimensions,
+ * a different scaling or a change of the underlying feature values or graph, which all change the data matrix, lead to a new graph.
+ * A cached graph with more neighbors than requested is reused by only keeping the nearest neighbors.
+ * <br>
+ * The cache keeps the graphs of the {@value #MAX_ENTRIES} most recently used data matrices.
+ * <br>
+ * NB: the graphs are used by FFT-accelerated t-SNE and by the out-of-sample embedding of landmark computations. The UMAP library and the
+ * Barnes-Hut t-SNE library build their neighbor graphs internally and cannot take a precomputed graph. Thus, parameter sweeps with these
+ * algorithms on all data rows are not sped up by this cache.
+ */
+public class NearestNeighborGraphCache
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	static final int MAX_ENTRIES = 2;
+
+	private final Map< DataHash, NearestNeighborGraph > graphs =
+			new LinkedHashMap< DataHash, NearestNeighborGraph >( MAX_ENTRIES + 1, 1f, true )
+			{
+				@Override
+				protected boolean removeEldestEntry( final Map.Entry< DataHash, NearestNeighborGraph > eldest )
+				{
+					return size() > MAX_ENTRIES;
+				}
+			};
+
+	/**
+	 * Gets the nearest neighbor graph with the given number of neighbors over the rows of the given data matrix. The graph is taken from
+	 * the cache, if a graph with at least this number of neighbors has been built for equal data before. Otherwise, it is built and cached.
+	 *
+	 * @param data the data matrix, one point per row
+	 * @param numberOfNeighbors the number of neighbors per point
+	 * @return the nearest neighbor graph
+	 * @throws IllegalArgumentException if {@code numberOfNeighbors} is not positive or not smaller than the number of points
+	 */
+	public synchronized NearestNeighborGraph getGraph( final double[][] data, final int numberOfNeighbors )
+	{
+		DataHash key = new DataHash( data );
+		NearestNeighborGraph graph = graphs.get( key );
+		if ( graph != null && graph.getNumberOfNeighbors() >= numberOfNeighbors )
+		{
+			logger.debug( "Reusing cached nearest neighbor graph with {} neighbors for {} neighbors.", graph.getNumberOfNeighbors(),
+					numberOfNeighbors );
+			return graph.withNumberOfNeighbors( numberOfNeighbors );
+		}
+		graph = NearestNeighborDescent.build( data, numberOfNeighbors, NearestNeighborDescent.DEFAULT_SEED );
+		graphs.put( key, graph );
+		return graph;
+	}
+
+	/**
+	 * Removes all graphs from this cache.
+	 */
+	public synchronized void clear()
+	{
+		graphs.clear();
+	}
+}
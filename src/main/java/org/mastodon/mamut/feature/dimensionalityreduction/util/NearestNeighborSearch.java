@@ -0,0 +1,247 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.util.Arrays;
+
+/**
+ * Finds the nearest points of a fixed data matrix to query points by Euclidean distance.
+ * <br>
+ * Without a {@link NearestNeighborGraph}, each query is compared to all points, which gives the exact nearest neighbors. With a nearest
+ * neighbor graph over the data, the search greedily walks the graph starting from the nearest of a set of evenly spread entry points, which
+ * gives approximate nearest neighbors, but only compares each query to a small fraction of the data.
+ * <br>
+ * Searches are thread safe.
+ */
+public class NearestNeighborSearch
+{
+	/**
+	 * The minimum number of candidates kept during a graph search. More candidates give more accurate results, but require more distance computations.
+	 */
+	static final int MIN_NUMBER_OF_CANDIDATES = 32;
+
+	static final int MIN_NUMBER_OF_ENTRY_POINTS = 16;
+
+	private final double[][] data;
+
+	private final NearestNeighborGraph graph;
+
+	private final int[] entryPoints;
+
+	private final ThreadLocal< VisitedPoints > visitedPoints;
+
+	/**
+	 * Creates an exact nearest neighbor search over the rows of the given data matrix.
+	 *
+	 * @param data the data matrix, one point per row
+	 */
+	public NearestNeighborSearch( final double[][] data )
+	{
+		this( data, null );
+	}
+
+	/**
+	 * Creates a nearest neighbor search over the rows of the given data matrix, which walks the given nearest neighbor graph.
+	 *
+	 * @param data the data matrix, one point per row
+	 * @param graph the nearest neighbor graph over the data matrix or {@code null} for an exact search
+	 * @throws IllegalArgumentException if the graph does not have one point per row of the data matrix
+	 */
+	public NearestNeighborSearch( final double[][] data, final NearestNeighborGraph graph )
+	{
+		if ( graph != null && graph.size() != data.length )
+			throw new IllegalArgumentException( "The graph has " + graph.size() + " points, but the data has " + data.length + " rows." );
+		this.data = data;
+		this.graph = graph;
+		int numberOfEntryPoints = Math.min( data.length, Math.max( MIN_NUMBER_OF_ENTRY_POINTS, ( int ) Math.sqrt( data.length ) ) );
+		this.entryPoints = new int[ numberOfEntryPoints ];
+		for ( int i = 0; i < numberOfEntryPoints; i++ )
+			entryPoints[ i ] = ( int ) ( ( long ) data.length * i / numberOfEntryPoints );
+		this.visitedPoints = ThreadLocal.withInitial( () -> new VisitedPoints( data.length ) );
+	}
+
+	/**
+	 * Gets the number of points, i.e. rows of the data matrix.
+	 *
+	 * @return the number of points
+	 */
+	public int size()
+	{
+		return data.length;
+	}
+
+	/**
+	 * Finds the nearest points to the given query point. The number of points to find is given by the length of the given arrays.
+	 *
+	 * @param query the query point
+	 * @param neighbors the array, into which the indices of the nearest points are written, sorted by increasing distance
+	 * @param distances the array, into which the Euclidean distances of the nearest points are written
+	 * @throws IllegalArgumentException if more points than available are requested
+	 */
+	public void search( final double[] query, final int[] neighbors, final double[] distances )
+	{
+		if ( neighbors.length > data.length )
+			throw new IllegalArgumentException( "Cannot find " + neighbors.length + " neighbors among " + data.length + " points." );
+		if ( graph == null )
+			searchExact( query, neighbors, distances );
+		else
+			searchGraph( query, neighbors, distances );
+		for ( int j = 0; j < distances.length; j++ )
+			distances[ j ] = Math.sqrt( distances[ j ] );
+	}
+
+	private void searchExact( final double[] query, final int[] neighbors, final double[] distances )
+	{
+		Arrays.fill( distances, Double.POSITIVE_INFINITY );
+		for ( int point = 0; point < data.length; point++ )
+			insert( point, squaredDistance( query, data[ point ] ), neighbors, distances, null, neighbors.length );
+	}
+
+	/**
+	 * Keeps a list of the nearest candidates found so far and repeatedly expands the nearest candidate, which has not been expanded yet, by
+	 * comparing the query to its neighbors in the graph, until all candidates have been expanded.
+	 */
+	private void searchGraph( final double[] query, final int[] neighbors, final double[] distances )
+	{
+		int capacity = Math.max( neighbors.length, MIN_NUMBER_OF_CANDIDATES );
+		int[] candidates = new int[ capacity ];
+		double[] candidateDistances = new double[ capacity ];
+		boolean[] expanded = new boolean[ capacity ];
+		Arrays.fill( candidateDistances, Double.POSITIVE_INFINITY );
+		VisitedPoints visited = visitedPoints.get();
+		visited.clear();
+		for ( int entryPoint : entryPoints )
+		{
+			visited.visit( entryPoint );
+			insert( entryPoint, squaredDistance( query, data[ entryPoint ] ), candidates, candidateDistances, expanded, capacity );
+		}
+		while ( true )
+		{
+			int next = -1;
+			for ( int i = 0; i < capacity && candidateDistances[ i ] < Double.POSITIVE_INFINITY; i++ )
+			{
+				if ( !expanded[ i ] )
+				{
+					next = i;
+					break;
+				}
+			}
+			if ( next < 0 )
+				break;
+			expanded[ next ] = true;
+			int point = candidates[ next ];
+			for ( int rank = 0; rank < graph.getNumberOfNeighbors(); rank++ )
+			{
+				int neighbor = graph.getNeighbor( point, rank );
+				if ( visited.visit( neighbor ) )
+					insert( neighbor, squaredDistance( query, data[ neighbor ] ), candidates, candidateDistances, expanded, capacity );
+			}
+		}
+		if ( candidateDistances[ neighbors.length - 1 ] == Double.POSITIVE_INFINITY )
+		{
+			// NB: not enough points reachable from the entry points
+			searchExact( query, neighbors, distances );
+			return;
+		}
+		System.arraycopy( candidates, 0, neighbors, 0, neighbors.length );
+		System.arraycopy( candidateDistances, 0, distances, 0, distances.length );
+	}
+
+	/**
+	 * Inserts the given point into the given list sorted by distance, if it is nearer than the last point of the list.
+	 */
+	private static void insert( final int point, final double distance, final int[] points, final double[] distances,
+			final boolean[] expanded, final int length )
+	{
+		if ( distance >= distances[ length - 1 ] )
+			return;
+		int position = length - 1;
+		while ( position > 0 && distances[ position - 1 ] > distance )
+		{
+			points[ position ] = points[ position - 1 ];
+			distances[ position ] = distances[ position - 1 ];
+			if ( expanded != null )
+				expanded[ position ] = expanded[ position - 1 ];
+			position--;
+		}
+		points[ position ] = point;
+		distances[ position ] = distance;
+		if ( expanded != null )
+			expanded[ position ] = false;
+	}
+
+	private static double squaredDistance( final double[] a, final double[] b )
+	{
+		double sum = 0;
+		for ( int i = 0; i < a.length; i++ )
+		{
+			double difference = a[ i ] - b[ i ];
+			sum += difference * difference;
+		}
+		return sum;
+	}
+
+	/**
+	 * Marks points as visited by storing the number of the current search, such that clearing does not require touching all points.
+	 */
+	private static class VisitedPoints
+	{
+		private final int[] marks;
+
+		private int search;
+
+		private VisitedPoints( final int size )
+		{
+			this.marks = new int[ size ];
+		}
+
+		private void clear()
+		{
+			search++;
+			if ( search == 0 )
+			{
+				Arrays.fill( marks, 0 );
+				search = 1;
+			}
+		}
+
+		/**
+		 * Marks the given point as visited.
+		 *
+		 * @return {@code true}, if the point has not been visited before in the current search
+		 */
+		private boolean visit( final int point )
+		{
+			if ( marks[ point ] == search )
+				return false;
+			marks[ point ] = search;
+			return true;
+		}
+	}
+}
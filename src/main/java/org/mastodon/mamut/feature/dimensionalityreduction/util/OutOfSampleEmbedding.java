@@ -0,0 +1,432 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.UnaryOperator;
+
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+
+/**
+ * Embeds new points into a fixed, previously computed embedding of training points without recomputing the embedding.
+ * <br>
+ * Like the transform of <a href="https://umap-learn.readthedocs.io/en/latest/transform.html">UMAP</a>, each new point is initialized at the
+ * weighted mean of the embedded positions of its nearest training points and then optimized against the fixed embedding: it is attracted
+ * by its nearest training points and repelled from randomly sampled training points. The similarity of two points in the embedding is
+ * modelled by {@code 1 / (1 + a * d^(2b))}, where {@code d} is their distance in the embedding.
+ * <br>
+ * Alternatively, new points can be {@link #interpolate(double[][]) interpolated}, i.e. only be placed at the weighted mean without
+ * optimization, which is faster, e.g. for placing a large number of points into an embedding of a subsample.
+ * <br>
+ * The position of a new point only depends on its own values and the training data, i.e. not on other new points. Thus, embedding the same
+ * point again gives the same position.
+ */
+public class OutOfSampleEmbedding implements OutOfSampleTransform
+{
+	static final int NUMBER_OF_EPOCHS = 100;
+
+	static final int NEGATIVE_SAMPLE_RATE = 5;
+
+	private static final double GRADIENT_CLIP = 4d;
+
+	private final NearestNeighborSearch nearestNeighborSearch;
+
+	private final double[][] embedding;
+
+	private final int numberOfNeighbors;
+
+	private final double a;
+
+	private final double b;
+
+	/**
+	 * Creates an out-of-sample embedding for the given training data and its embedding.
+	 *
+	 * @param trainingData the training data, one point per row
+	 * @param embedding the embedding of the training data, one point per row
+	 * @param numberOfNeighbors the number of nearest training points, by which a new point is attracted
+	 * @param a the parameter {@code a} of the similarity in the embedding
+	 * @param b the parameter {@code b} of the similarity in the embedding
+	 * @throws IllegalArgumentException if the number of rows of the training data and the embedding differ or if the number of neighbors
+	 * is not between {@code 1} and the number of training points
+	 */
+	public OutOfSampleEmbedding( final double[][] trainingData, final double[][] embedding, final int numberOfNeighbors, final double a,
+			final double b )
+	{
+		this( new NearestNeighborSearch( trainingData ), embedding, numberOfNeighbors, a, b );
+	}
+
+	/**
+	 * Creates an out-of-sample embedding for the training data of the given nearest neighbor search and its embedding.
+	 *
+	 * @param nearestNeighborSearch the nearest neighbor search over the training data
+	 * @param embedding the embedding of the training data, one point per row
+	 * @param numberOfNeighbors the number of nearest training points, by which a new point is attracted
+	 * @param a the parameter {@code a} of the similarity in the embedding
+	 * @param b the parameter {@code b} of the similarity in the embedding
+	 * @throws IllegalArgumentException if the number of rows of the training data and the embedding differ or if the number of neighbors
+	 * is not between {@code 1} and the number of training points
+	 */
+	public OutOfSampleEmbedding( final NearestNeighborSearch nearestNeighborSearch, final double[][] embedding, final int numberOfNeighbors,
+			final double a, final double b )
+	{
+		int numberOfTrainingPoints = nearestNeighborSearch.size();
+		if ( numberOfTrainingPoints != embedding.length )
+			throw new IllegalArgumentException( "Training data (" + numberOfTrainingPoints + " rows) and embedding (" + embedding.length
+					+ " rows) must have the same number of rows." );
+		if ( numberOfNeighbors < 1 || numberOfNeighbors > numberOfTrainingPoints )
+			throw new IllegalArgumentException( "Number of neighbors must be between 1 and " + numberOfTrainingPoints + ", but is "
+					+ numberOfNeighbors + "." );
+		this.nearestNeighborSearch = nearestNeighborSearch;
+		this.embedding = embedding;
+		this.numberOfNeighbors = numberOfNeighbors;
+		this.a = a;
+		this.b = b;
+	}
+
+	/**
+	 * Creates an out-of-sample embedding for a UMAP embedding with the given parameters.
+	 *
+	 * @param trainingData the training data, one point per row
+	 * @param embedding the UMAP embedding of the training data, one point per row
+	 * @param numberOfNeighbors the number of neighbors, with which the embedding has been computed
+	 * @param minimumDistance the minimum distance, with which the embedding has been computed
+	 * @return the out-of-sample embedding
+	 */
+	public static OutOfSampleEmbedding forUmap( final double[][] trainingData, final double[][] embedding, final int numberOfNeighbors,
+			final double minimumDistance )
+	{
+		return forUmap( new NearestNeighborSearch( trainingData ), embedding, numberOfNeighbors, minimumDistance );
+	}
+
+	/**
+	 * Creates an out-of-sample embedding for a UMAP embedding with the given parameters.
+	 *
+	 * @param nearestNeighborSearch the nearest neighbor search over the training data
+	 * @param embedding the UMAP embedding of the training data, one point per row
+	 * @param numberOfNeighbors the number of neighbors, with which the embedding has been computed
+	 * @param minimumDistance the minimum distance, with which the embedding has been computed
+	 * @return the out-of-sample embedding
+	 */
+	public static OutOfSampleEmbedding forUmap( final NearestNeighborSearch nearestNeighborSearch, final double[][] embedding,
+			final int numberOfNeighbors, final double minimumDistance )
+	{
+		double[] curveParameters = fitCurveParameters( minimumDistance, 1d );
+		return new OutOfSampleEmbedding( nearestNeighborSearch, embedding, Math.min( numberOfNeighbors, nearestNeighborSearch.size() ),
+				curveParameters[ 0 ], curveParameters[ 1 ] );
+	}
+
+	/**
+	 * Creates an out-of-sample embedding for a t-SNE embedding with the given perplexity. As in t-SNE, the similarity in the embedding is
+	 * modelled by the Student t-distribution, i.e. {@code a = b = 1}, and the number of neighbors is three times the perplexity.
+	 *
+	 * @param trainingData the training data, one point per row
+	 * @param embedding the t-SNE embedding of the training data, one point per row
+	 * @param perplexity the perplexity, with which the embedding has been computed
+	 * @return the out-of-sample embedding
+	 */
+	public static OutOfSampleEmbedding forTSne( final double[][] trainingData, final double[][] embedding, final double perplexity )
+	{
+		return forTSne( new NearestNeighborSearch( trainingData ), embedding, perplexity );
+	}
+
+	/**
+	 * Creates an out-of-sample embedding for a t-SNE embedding with the given perplexity.
+	 *
+	 * @param nearestNeighborSearch the nearest neighbor search over the training data
+	 * @param embedding the t-SNE embedding of the training data, one point per row
+	 * @param perplexity the perplexity, with which the embedding has been computed
+	 * @return the out-of-sample embedding
+	 * @see #forTSne(double[][], double[][], double)
+	 */
+	public static OutOfSampleEmbedding forTSne( final NearestNeighborSearch nearestNeighborSearch, final double[][] embedding,
+			final double perplexity )
+	{
+		int numberOfNeighbors = ( int ) Math.min( Math.ceil( 3 * perplexity ), nearestNeighborSearch.size() );
+		return new OutOfSampleEmbedding( nearestNeighborSearch, embedding, Math.max( 1, numberOfNeighbors ), 1d, 1d );
+	}
+
+	/**
+	 * Embeds the given points. The points are embedded in parallel.
+	 *
+	 * @param rows the points, one point per row
+	 * @return the embedded points, one point per row
+	 */
+	@Override
+	public double[][] transform( final double[][] rows )
+	{
+		return forEachRow( rows, this::transform );
+	}
+
+	/**
+	 * Interpolates the embedding at the given points, i.e. places each point at the weighted mean of the embedded positions of its
+	 * nearest training points. The points are interpolated in parallel.
+	 *
+	 * @param rows the points, one point per row
+	 * @return the interpolated points, one point per row
+	 */
+	@Override
+	public double[][] interpolate( final double[][] rows )
+	{
+		return forEachRow( rows, this::interpolate );
+	}
+
+	/**
+	 * Interpolates the embedding at the given point.
+	 *
+	 * @param row the point
+	 * @return the interpolated point
+	 * @see #interpolate(double[][])
+	 */
+	public double[] interpolate( final double[] row )
+	{
+		int[] neighbors = new int[ numberOfNeighbors ];
+		double[] distances = new double[ numberOfNeighbors ];
+		nearestNeighborSearch.search( row, neighbors, distances );
+		return getWeightedMean( neighbors, getWeights( distances ) );
+	}
+
+	private static double[][] forEachRow( final double[][] rows, final UnaryOperator< double[] > operator )
+	{
+		double[][] result = new double[ rows.length ][];
+		if ( rows.length == 0 )
+			return result;
+		TaskExecutor taskExecutor = Parallelization.getTaskExecutor();
+		int numberOfTasks = Math.min( rows.length, taskExecutor.suggestNumberOfTasks() * 4 );
+		List< int[] > blocks = new ArrayList<>();
+		for ( int task = 0; task < numberOfTasks; task++ )
+			blocks.add( new int[] { ( int ) ( ( long ) rows.length * task / numberOfTasks ),
+					( int ) ( ( long ) rows.length * ( task + 1 ) / numberOfTasks ) } );
+		taskExecutor.forEach( blocks, block -> {
+			for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+				result[ i ] = operator.apply( rows[ i ] );
+		} );
+		return result;
+	}
+
+	/**
+	 * Embeds the given point.
+	 *
+	 * @param row the point
+	 * @return the embedded point
+	 */
+	public double[] transform( final double[] row )
+	{
+		int[] neighbors = new int[ numberOfNeighbors ];
+		double[] distances = new double[ numberOfNeighbors ];
+		nearestNeighborSearch.search( row, neighbors, distances );
+		double[] weights = getWeights( distances );
+		double[] position = getWeightedMean( neighbors, weights );
+
+		SplittableRandom random = new SplittableRandom( Arrays.hashCode( row ) );
+		for ( int epoch = 0; epoch < NUMBER_OF_EPOCHS; epoch++ )
+		{
+			double learningRate = 1d - ( double ) epoch / NUMBER_OF_EPOCHS;
+			for ( int j = 0; j < numberOfNeighbors; j++ )
+			{
+				// NB: the edge to each neighbor is sampled with a probability proportional to its weight, the nearest neighbor has weight 1
+				if ( random.nextDouble() > weights[ j ] )
+					continue;
+				double[] neighbor = embedding[ neighbors[ j ] ];
+				double squaredDistance = squaredDistance( position, neighbor );
+				if ( squaredDistance > 0 )
+				{
+					double attraction = -2 * a * b * Math.pow( squaredDistance, b - 1 ) / ( 1 + a * Math.pow( squaredDistance, b ) );
+					move( position, neighbor, attraction, learningRate );
+				}
+				for ( int sample = 0; sample < NEGATIVE_SAMPLE_RATE; sample++ )
+				{
+					double[] other = embedding[ random.nextInt( embedding.length ) ];
+					squaredDistance = squaredDistance( position, other );
+					if ( squaredDistance > 0 )
+					{
+						double repulsion = 2 * b / ( ( 0.001 + squaredDistance ) * ( 1 + a * Math.pow( squaredDistance, b ) ) );
+						move( position, other, repulsion, learningRate );
+					}
+				}
+			}
+		}
+		return position;
+	}
+
+	private double[] getWeightedMean( final int[] neighbors, final double[] weights )
+	{
+		int numberOfDimensions = embedding[ 0 ].length;
+		double[] position = new double[ numberOfDimensions ];
+		double weightSum = 0;
+		for ( int j = 0; j < neighbors.length; j++ )
+		{
+			weightSum += weights[ j ];
+			for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+				position[ dimension ] += weights[ j ] * embedding[ neighbors[ j ] ][ dimension ];
+		}
+		for ( int dimension = 0; dimension < numberOfDimensions; dimension++ )
+			position[ dimension ] /= weightSum;
+		return position;
+	}
+
+	/**
+	 * Computes the weights of the given sorted neighbor distances like UMAP: the nearest neighbor has weight {@code 1} and the weights
+	 * decay exponentially with the distance beyond the nearest neighbor, such that they sum up to {@code log2(k)}.
+	 */
+	static double[] getWeights( final double[] distances )
+	{
+		int k = distances.length;
+		double[] weights = new double[ k ];
+		double nearest = distances[ 0 ];
+		double target = Math.log( k ) / Math.log( 2 );
+		double low = 0;
+		double high = Double.POSITIVE_INFINITY;
+		double sigma = 1;
+		for ( int iteration = 0; iteration < 64; iteration++ )
+		{
+			double sum = 0;
+			for ( int j = 1; j < k; j++ )
+				sum += Math.exp( -( distances[ j ] - nearest ) / sigma );
+			if ( Math.abs( 1 + sum - target ) < 1e-5 )
+				break;
+			if ( 1 + sum > target )
+			{
+				high = sigma;
+				sigma = ( low + high ) / 2;
+			}
+			else
+			{
+				low = sigma;
+				sigma = high == Double.POSITIVE_INFINITY ? sigma * 2 : ( low + high ) / 2;
+			}
+		}
+		weights[ 0 ] = 1;
+		for ( int j = 1; j < k; j++ )
+			weights[ j ] = sigma > 0 ? Math.exp( -( distances[ j ] - nearest ) / sigma ) : 0d;
+		return weights;
+	}
+
+	/**
+	 * Fits the parameters {@code a} and {@code b} of the similarity {@code 1 / (1 + a * d^(2b))} to the similarity, which is {@code 1}
+	 * up to the given minimum distance and decays exponentially with the given spread beyond, like UMAP does.
+	 * The fit uses the Levenberg-Marquardt algorithm.
+	 *
+	 * @param minimumDistance the minimum distance
+	 * @param spread the spread
+	 * @return the parameters {@code a} and {@code b}
+	 */
+	static double[] fitCurveParameters( final double minimumDistance, final double spread )
+	{
+		int numberOfSamples = 300;
+		double[] x = new double[ numberOfSamples ];
+		double[] y = new double[ numberOfSamples ];
+		for ( int i = 0; i < numberOfSamples; i++ )
+		{
+			x[ i ] = 3 * spread * i / ( numberOfSamples - 1 );
+			y[ i ] = x[ i ] < minimumDistance ? 1d : Math.exp( -( x[ i ] - minimumDistance ) / spread );
+		}
+		double a = 1;
+		double b = 1;
+		double lambda = 1e-3;
+		double error = curveError( x, y, a, b );
+		for ( int iteration = 0; iteration < 200; iteration++ )
+		{
+			// NB: normal equations of the linearized least squares problem
+			double jaa = 0;
+			double jab = 0;
+			double jbb = 0;
+			double ga = 0;
+			double gb = 0;
+			for ( int i = 1; i < numberOfSamples; i++ )
+			{
+				double u = Math.pow( x[ i ], 2 * b );
+				double denominator = ( 1 + a * u ) * ( 1 + a * u );
+				double da = -u / denominator;
+				double db = -2 * a * u * Math.log( x[ i ] ) / denominator;
+				double residual = y[ i ] - 1 / ( 1 + a * u );
+				jaa += da * da;
+				jab += da * db;
+				jbb += db * db;
+				ga += da * residual;
+				gb += db * residual;
+			}
+			double maa = jaa * ( 1 + lambda );
+			double mbb = jbb * ( 1 + lambda );
+			double determinant = maa * mbb - jab * jab;
+			double stepA = ( mbb * ga - jab * gb ) / determinant;
+			double stepB = ( maa * gb - jab * ga ) / determinant;
+			double newError = curveError( x, y, a + stepA, b + stepB );
+			if ( a + stepA > 0 && b + stepB > 0 && newError < error )
+			{
+				boolean converged = error - newError < 1e-12;
+				a += stepA;
+				b += stepB;
+				error = newError;
+				lambda /= 10;
+				if ( converged )
+					break;
+			}
+			else
+				lambda *= 10;
+		}
+		return new double[] { a, b };
+	}
+
+	private static double curveError( final double[] x, final double[] y, final double a, final double b )
+	{
+		double error = 0;
+		for ( int i = 0; i < x.length; i++ )
+		{
+			double residual = y[ i ] - 1 / ( 1 + a * Math.pow( x[ i ], 2 * b ) );
+			error += residual * residual;
+		}
+		return error;
+	}
+
+	private static void move( final double[] position, final double[] other, final double coefficient, final double learningRate )
+	{
+		for ( int dimension = 0; dimension < position.length; dimension++ )
+		{
+			double gradient = coefficient * ( position[ dimension ] - other[ dimension ] );
+			gradient = Math.max( -GRADIENT_CLIP, Math.min( GRADIENT_CLIP, gradient ) );
+			position[ dimension ] += learningRate * gradient;
+		}
+	}
+
+	private static double squaredDistance( final double[] a, final double[] b )
+	{
+		double sum = 0;
+		for ( int i = 0; i < a.length; i++ )
+		{
+			double difference = a[ i ] - b[ i ];
+			sum += difference * difference;
+		}
+		return sum;
+	}
+}
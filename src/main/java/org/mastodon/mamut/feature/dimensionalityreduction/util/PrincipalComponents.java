@@ -0,0 +1,142 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+
+/**
+ * The leading principal components of a data matrix, as computed by {@link RandomizedPca}.
+ * <br>
+ * Data rows are projected onto the principal components after subtracting the column means of the data matrix, on which the principal
+ * components have been computed. Since the projection is linear, new data rows are projected exactly like the data rows, on which the
+ * principal components have been computed.
+ */
+public class PrincipalComponents implements OutOfSampleTransform
+{
+	private final double[] means;
+
+	private final double[][] components;
+
+	private final double[] explainedVariances;
+
+	/**
+	 * Creates principal components.
+	 *
+	 * @param means the column means of the data matrix
+	 * @param components the principal components, one unit vector per row, sorted by decreasing explained variance
+	 * @param explainedVariances the variance of the data along each principal component
+	 */
+	PrincipalComponents( final double[] means, final double[][] components, final double[] explainedVariances )
+	{
+		this.means = means;
+		this.components = components;
+		this.explainedVariances = explainedVariances;
+	}
+
+	/**
+	 * Gets the number of principal components, i.e. the number of dimensions of the projection.
+	 *
+	 * @return the number of principal components
+	 */
+	public int getNumberOfComponents()
+	{
+		return components.length;
+	}
+
+	/**
+	 * Gets the principal component with the given index.
+	 *
+	 * @param index the index of the principal component, where {@code 0} is the component with the largest explained variance
+	 * @return a copy of the principal component, a unit vector in the space of the data rows
+	 */
+	public double[] getComponent( final int index )
+	{
+		return components[ index ].clone();
+	}
+
+	/**
+	 * Gets the variance of the data along the principal component with the given index.
+	 *
+	 * @param index the index of the principal component
+	 * @return the explained variance
+	 */
+	public double getExplainedVariance( final int index )
+	{
+		return explainedVariances[ index ];
+	}
+
+	/**
+	 * Projects the given data row onto the principal components.
+	 *
+	 * @param row the data row
+	 * @return the coordinates of the data row along the principal components
+	 */
+	public double[] transform( final double[] row )
+	{
+		double[] result = new double[ components.length ];
+		for ( int component = 0; component < components.length; component++ )
+		{
+			double[] vector = components[ component ];
+			double value = 0;
+			for ( int column = 0; column < means.length; column++ )
+				value += ( row[ column ] - means[ column ] ) * vector[ column ];
+			result[ component ] = value;
+		}
+		return result;
+	}
+
+	/**
+	 * Projects the given data rows onto the principal components. The data rows are projected in parallel.
+	 *
+	 * @param rows the data rows, one point per row
+	 * @return the coordinates of the data rows along the principal components, one point per row
+	 */
+	@Override
+	public double[][] transform( final double[][] rows )
+	{
+		double[][] result = new double[ rows.length ][];
+		if ( rows.length == 0 )
+			return result;
+		TaskExecutor taskExecutor = Parallelization.getTaskExecutor();
+		int numberOfTasks = Math.min( rows.length, taskExecutor.suggestNumberOfTasks() * 4 );
+		List< int[] > blocks = new ArrayList<>();
+		for ( int task = 0; task < numberOfTasks; task++ )
+			blocks.add( new int[] { ( int ) ( ( long ) rows.length * task / numberOfTasks ),
+					( int ) ( ( long ) rows.length * ( task + 1 ) / numberOfTasks ) } );
+		taskExecutor.forEach( blocks, block -> {
+			for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+				result[ i ] = transform( rows[ i ] );
+		} );
+		return result;
+	}
+}
@@ -0,0 +1,306 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import net.imglib2.parallel.Parallelization;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+
+/**
+ * Computes the leading principal components of a data matrix by a randomized truncated singular value decomposition.
+ * <br>
+ * Following <a href="https://doi.org/10.1137/090771806">Halko, Martinsson and Tropp (2011)</a>, a random subspace of slightly more
+ * dimensions than the requested number of components is refined by a few power iterations with the scatter matrix of the centered data,
+ * and the principal components are then obtained from the small eigenvalue problem of the scatter matrix restricted to this subspace.
+ * <br>
+ * The scatter matrix is never formed. Each power iteration is a single parallel pass over the data rows, which costs
+ * {@code O(rows * columns * (components + oversampling))} operations and only needs memory proportional to the number of columns. The data
+ * rows are processed in blocks of fixed size, whose partial sums are added in a fixed order, such that the result does not depend on the
+ * number of threads.
+ */
+public class RandomizedPca
+{
+	public static final long DEFAULT_SEED = 42;
+
+	/**
+	 * The number of additional dimensions of the random subspace, which make the leading components more accurate.
+	 */
+	static final int OVERSAMPLING = 10;
+
+	static final int NUMBER_OF_POWER_ITERATIONS = 4;
+
+	private static final int BLOCK_SIZE = 4096;
+
+	/**
+	 * Relative norm, below which a basis vector is considered to be linearly dependent on the previous basis vectors.
+	 */
+	private static final double DEPENDENCE_TOLERANCE = 1e-10;
+
+	private RandomizedPca()
+	{
+		// prevent instantiation
+	}
+
+	/**
+	 * Computes the given number of leading principal components of the given data matrix.
+	 *
+	 * @param data the data matrix, one point per row
+	 * @param numberOfComponents the number of principal components
+	 * @param seed the seed of the random subspace
+	 * @return the principal components
+	 * @throws IllegalArgumentException if the data matrix is empty or if the number of components is not between {@code 1} and the number
+	 * of columns
+	 */
+	public static PrincipalComponents fit( final double[][] data, final int numberOfComponents, final long seed )
+	{
+		if ( data.length == 0 )
+			throw new IllegalArgumentException( "The data matrix must not be empty." );
+		int columns = data[ 0 ].length;
+		if ( numberOfComponents < 1 || numberOfComponents > columns )
+			throw new IllegalArgumentException( "Number of components must be between 1 and " + columns + ", but is "
+					+ numberOfComponents + "." );
+		int subspaceDimensions = Math.min( columns, numberOfComponents + OVERSAMPLING );
+		List< int[] > blocks = getBlocks( data.length );
+		double[] means = getMeans( data, blocks );
+
+		double[][] basis = getGaussianMatrix( columns, subspaceDimensions, seed );
+		orthonormalizeColumns( basis );
+		for ( int i = 0; i < NUMBER_OF_POWER_ITERATIONS; i++ )
+		{
+			basis = multiplyByScatterMatrix( data, means, basis, blocks );
+			orthonormalizeColumns( basis );
+		}
+
+		// Rayleigh-Ritz: eigenvalue problem of the scatter matrix restricted to the subspace
+		double[][] product = multiplyByScatterMatrix( data, means, basis, blocks );
+		double[][] restricted = new double[ subspaceDimensions ][ subspaceDimensions ];
+		for ( int i = 0; i < subspaceDimensions; i++ )
+			for ( int j = 0; j < subspaceDimensions; j++ )
+				for ( int column = 0; column < columns; column++ )
+					restricted[ i ][ j ] += basis[ column ][ i ] * product[ column ][ j ];
+		for ( int i = 0; i < subspaceDimensions; i++ )
+			for ( int j = 0; j < i; j++ )
+				restricted[ i ][ j ] = restricted[ j ][ i ] = ( restricted[ i ][ j ] + restricted[ j ][ i ] ) / 2;
+		EigenDecomposition eigenDecomposition = new EigenDecomposition( new Array2DRowRealMatrix( restricted, false ) );
+		double[] eigenvalues = eigenDecomposition.getRealEigenvalues();
+		Integer[] order = IntStream.range( 0, subspaceDimensions ).boxed().toArray( Integer[]::new );
+		Arrays.sort( order, Comparator.comparingDouble( i -> -eigenvalues[ i ] ) );
+
+		double[][] components = new double[ numberOfComponents ][ columns ];
+		double[] explainedVariances = new double[ numberOfComponents ];
+		for ( int component = 0; component < numberOfComponents; component++ )
+		{
+			double[] eigenvector = eigenDecomposition.getEigenvector( order[ component ] ).toArray();
+			double[] vector = components[ component ];
+			for ( int column = 0; column < columns; column++ )
+				for ( int i = 0; i < subspaceDimensions; i++ )
+					vector[ column ] += basis[ column ][ i ] * eigenvector[ i ];
+			normalizeSign( vector );
+			double variance = Math.max( 0, eigenvalues[ order[ component ] ] );
+			explainedVariances[ component ] = data.length > 1 ? variance / ( data.length - 1 ) : 0;
+		}
+		return new PrincipalComponents( means, components, explainedVariances );
+	}
+
+	private static List< int[] > getBlocks( final int rows )
+	{
+		List< int[] > blocks = new ArrayList<>();
+		for ( int from = 0, index = 0; from < rows; from += BLOCK_SIZE, index++ )
+			blocks.add( new int[] { from, Math.min( rows, from + BLOCK_SIZE ), index } );
+		return blocks;
+	}
+
+	private static double[] getMeans( final double[][] data, final List< int[] > blocks )
+	{
+		int columns = data[ 0 ].length;
+		double[][] partialSums = new double[ blocks.size() ][];
+		Parallelization.getTaskExecutor().forEach( blocks, block -> {
+			double[] sums = new double[ columns ];
+			for ( int row = block[ 0 ]; row < block[ 1 ]; row++ )
+				for ( int column = 0; column < columns; column++ )
+					sums[ column ] += data[ row ][ column ];
+			partialSums[ block[ 2 ] ] = sums;
+		} );
+		double[] means = new double[ columns ];
+		for ( double[] sums : partialSums )
+			for ( int column = 0; column < columns; column++ )
+				means[ column ] += sums[ column ];
+		for ( int column = 0; column < columns; column++ )
+			means[ column ] /= data.length;
+		return means;
+	}
+
+	/**
+	 * Computes {@code X^T X B}, where {@code X} is the centered data matrix and {@code B} is the given basis, in one pass over the data rows.
+	 */
+	private static double[][] multiplyByScatterMatrix( final double[][] data, final double[] means, final double[][] basis,
+			final List< int[] > blocks )
+	{
+		int columns = means.length;
+		int dimensions = basis[ 0 ].length;
+		double[][] partialSums = new double[ blocks.size() ][];
+		Parallelization.getTaskExecutor().forEach( blocks, block -> {
+			double[] sums = new double[ columns * dimensions ];
+			double[] centered = new double[ columns ];
+			double[] projection = new double[ dimensions ];
+			for ( int row = block[ 0 ]; row < block[ 1 ]; row++ )
+			{
+				Arrays.fill( projection, 0 );
+				for ( int column = 0; column < columns; column++ )
+				{
+					double value = data[ row ][ column ] - means[ column ];
+					centered[ column ] = value;
+					double[] basisRow = basis[ column ];
+					for ( int i = 0; i < dimensions; i++ )
+						projection[ i ] += value * basisRow[ i ];
+				}
+				for ( int column = 0; column < columns; column++ )
+				{
+					double value = centered[ column ];
+					int offset = column * dimensions;
+					for ( int i = 0; i < dimensions; i++ )
+						sums[ offset + i ] += value * projection[ i ];
+				}
+			}
+			partialSums[ block[ 2 ] ] = sums;
+		} );
+		double[][] result = new double[ columns ][ dimensions ];
+		for ( double[] sums : partialSums )
+			for ( int column = 0; column < columns; column++ )
+				for ( int i = 0; i < dimensions; i++ )
+					result[ column ][ i ] += sums[ column * dimensions + i ];
+		return result;
+	}
+
+	private static double[][] getGaussianMatrix( final int rows, final int columns, final long seed )
+	{
+		Random random = new Random( seed );
+		double[][] matrix = new double[ rows ][ columns ];
+		for ( double[] row : matrix )
+			for ( int column = 0; column < columns; column++ )
+				row[ column ] = random.nextGaussian();
+		return matrix;
+	}
+
+	/**
+	 * Orthonormalizes the columns of the given matrix in place by the modified Gram-Schmidt process with reorthogonalization. A column, which
+	 * is linearly dependent on the previous columns, is replaced by the unit vector, which is the least dependent on them.
+	 */
+	static void orthonormalizeColumns( final double[][] matrix )
+	{
+		int rows = matrix.length;
+		int columns = matrix[ 0 ].length;
+		for ( int column = 0; column < columns; column++ )
+		{
+			double normBefore = norm( matrix, column );
+			double norm = orthogonalize( matrix, column );
+			if ( norm <= DEPENDENCE_TOLERANCE * normBefore || norm == 0 )
+			{
+				double[] best = null;
+				double bestNorm = 0;
+				for ( int unit = 0; unit < rows; unit++ )
+				{
+					for ( int row = 0; row < rows; row++ )
+						matrix[ row ][ column ] = row == unit ? 1 : 0;
+					double unitNorm = orthogonalize( matrix, column );
+					if ( unitNorm > bestNorm )
+					{
+						bestNorm = unitNorm;
+						best = new double[ rows ];
+						for ( int row = 0; row < rows; row++ )
+							best[ row ] = matrix[ row ][ column ];
+					}
+				}
+				for ( int row = 0; row < rows; row++ )
+					matrix[ row ][ column ] = best == null ? 0 : best[ row ];
+				norm = bestNorm;
+			}
+			if ( norm > 0 )
+				for ( int row = 0; row < rows; row++ )
+					matrix[ row ][ column ] /= norm;
+		}
+	}
+
+	/**
+	 * Subtracts the projections onto all previous columns from the given column twice, and returns the norm of the remainder.
+	 */
+	private static double orthogonalize( final double[][] matrix, final int column )
+	{
+		for ( int pass = 0; pass < 2; pass++ )
+		{
+			for ( int previous = 0; previous < column; previous++ )
+			{
+				double dot = 0;
+				for ( double[] row : matrix )
+					dot += row[ column ] * row[ previous ];
+				for ( double[] row : matrix )
+					row[ column ] -= dot * row[ previous ];
+			}
+		}
+		return norm( matrix, column );
+	}
+
+	private static double norm( final double[][] matrix, final int column )
+	{
+		double sum = 0;
+		for ( double[] row : matrix )
+			sum += row[ column ] * row[ column ];
+		return Math.sqrt( sum );
+	}
+
+	/**
+	 * Normalizes the given vector to unit length and flips its sign, such that its entry with the largest absolute value is positive. This
+	 * makes the principal components unique.
+	 */
+	private static void normalizeSign( final double[] vector )
+	{
+		double sum = 0;
+		int largest = 0;
+		for ( int i = 0; i < vector.length; i++ )
+		{
+			sum += vector[ i ] * vector[ i ];
+			if ( Math.abs( vector[ i ] ) > Math.abs( vector[ largest ] ) )
+				largest = i;
+		}
+		double norm = Math.sqrt( sum );
+		if ( norm == 0 )
+			return;
+		double factor = vector[ largest ] < 0 ? -1 / norm : 1 / norm;
+		for ( int i = 0; i < vector.length; i++ )
+			vector[ i ] *= factor;
+	}
+}
@@ -28,7 +28,10 @@
  */
 package org.mastodon.mamut.feature.dimensionalityreduction.util;
 
-import org.apache.commons.math3.stat.StatUtils;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.parallel.Parallelization;
 
 /**
  * Standardize vectors by removing the mean and scaling to unit variance.
@@ -36,55 +39,30 @@ import org.apache.commons.math3.stat.StatUtils;
  * Re-implemented from scikit-learn's <a href="https://scikit-learn.org/stable/modules/generated/sklearn.preprocessing.StandardScaler.html">StandardScaler</a>.
  * <br>
  * Cf. as well <a href="https://scikit-learn.org/stable/modules/preprocessing.html">Preprocessing data</a>.
+ * <br>
+ * The means and standard deviations are computed in a single pass over the rows (cf. {@link ColumnStatistics}) and the rows are then
+ * standardized in place. Both passes process the rows in parallel blocks.
  */
 public class StandardScaler
 {
+	private static final int BLOCK_SIZE = 4096;
+
 	private StandardScaler()
 	{
 		// prevent instantiation
 	}
 
-	/**
-	 * Standardizes a specific column of the given 2D array (matrix).
-	 * <br>
-	 * This method extracts the specified column from the input matrix, standardizes it by removing the mean and scaling to unit variance,
-	 * and then replaces the original column in the matrix with the standardized values.
-	 * <br>
-	 * This method modifies the input array in place.
-	 * <br>
-	 * Edge cases:
-	 * <ul>
-	 *     <li>If the column has variance=0 (i.e. all values are the same), the method will write 0 values in the column.</li>
-	 *     <li>If the column contains {@link Double#NaN} values, the method will write 0 values in the column.</li>
-	 *     <li>If the input matrix is empty, the method will do nothing.</li>
-	 *     <li>If the input matrix has fewer rows than the specified column index, the method will throw an {@link ArrayIndexOutOfBoundsException}.</li>
-	 * </ul>
-	 *
-	 * @param matrix The 2D array whose column is to be standardized.
-	 * @param columnIndex The index of the column to standardize.
-	 */
-	private static void standardizeColumn( double[][] matrix, int columnIndex )
+	private static double standardize( final double value, final double mean, final double standardDeviation )
 	{
-		int numRows = matrix.length;
-		double[] column = new double[ numRows ];
-
-		for ( int i = 0; i < numRows; i++ )
-		{
-			column[ i ] = matrix[ i ][ columnIndex ];
-		}
-		double[] standardizedColumn = StatUtils.normalize( column );
-
-		for ( int i = 0; i < numRows; i++ )
-		{
-			matrix[ i ][ columnIndex ] = Double.isNaN( standardizedColumn[ i ] ) ? 0d : standardizedColumn[ i ]; // StatUtils.normalize(...) writes NaN if a column has variance=0. This may not be desirable for methods that consume the result of this method (e.g. the UMAP algorithm). Thus, NaN values are replaced by 0.
-		}
+		double standardized = ( value - mean ) / standardDeviation;
+		return Double.isFinite( standardized ) ? standardized : 0d; // The standardization results in NaN (or infinity for values that differ from the mean) if a column has variance=0. This may not be desirable for methods that consume the result of this method (e.g. the UMAP algorithm). Thus, such values are replaced by 0.
 	}
 
 	/**
 	 * Standardizes each column of the given 2D array.
 	 * <br>
-	 * This method iterates over each column of the input array and applies the standardization
-	 * to each column
+	 * This method computes the mean and the (bias corrected) standard deviation of each column of the input array and standardizes each
+	 * value with them.
 	 * <br>
 	 * This method modifies the input array in place.
 	 * <br>
@@ -101,10 +79,65 @@ public class StandardScaler
 		if ( array.length == 0 )
 			return;
 		int numColumns = array[ 0 ].length;
+		standardizeColumns( array, new double[ numColumns ], new double[ numColumns ] );
+	}
 
-		for ( int j = 0; j < numColumns; j++ )
-		{
-			standardizeColumn( array, j );
-		}
+	/**
+	 * Standardizes each column of the given 2D array like {@link #standardizeColumns(double[][])} and writes the mean and the standard
+	 * deviation of each column into the given arrays, such that further rows can be standardized in the same way by
+	 * {@link #standardizeRows(double[][], double[], double[])}.
+	 *
+	 * @param array The 2D array whose columns are to be standardized.
+	 * @param means The array, into which the means of the columns are written. Its length must be the number of columns.
+	 * @param standardDeviations The array, into which the standard deviations of the columns are written. Its length must be the number of columns.
+	 */
+	public static void standardizeColumns( double[][] array, double[] means, double[] standardDeviations )
+	{
+		if ( array.length == 0 )
+			return;
+		standardizeColumns( array, ColumnStatistics.of( array ), means, standardDeviations );
+	}
+
+	/**
+	 * Standardizes each column of the given 2D array like {@link #standardizeColumns(double[][], double[], double[])}, but with the given
+	 * statistics of its columns, e.g. accumulated while the array has been filled, such that only a single further pass over the array is
+	 * needed.
+	 *
+	 * @param array The 2D array whose columns are to be standardized.
+	 * @param statistics The statistics of the columns of the array.
+	 * @param means The array, into which the means of the columns are written. Its length must be the number of columns.
+	 * @param standardDeviations The array, into which the standard deviations of the columns are written. Its length must be the number of columns.
+	 */
+	public static void standardizeColumns( double[][] array, ColumnStatistics statistics, double[] means, double[] standardDeviations )
+	{
+		System.arraycopy( statistics.getMeans(), 0, means, 0, means.length );
+		System.arraycopy( statistics.getStandardDeviations(), 0, standardDeviations, 0, standardDeviations.length );
+		standardizeRows( array, means, standardDeviations );
+	}
+
+	/**
+	 * Standardizes each row of the given 2D array with the given means and standard deviations per column, which have been computed by
+	 * {@link #standardizeColumns(double[][], double[], double[])} on other data.
+	 * <br>
+	 * This method modifies the input array in place. Like for {@link #standardizeColumns(double[][])}, values, for which the standardization
+	 * is undefined, are set to 0.
+	 *
+	 * @param array The 2D array whose rows are to be standardized.
+	 * @param means The means of the columns.
+	 * @param standardDeviations The standard deviations of the columns.
+	 */
+	public static void standardizeRows( double[][] array, double[] means, double[] standardDeviations )
+	{
+		List< int[] > blocks = new ArrayList<>();
+		for ( int from = 0; from < array.length; from += BLOCK_SIZE )
+			blocks.add( new int[] { from, Math.min( array.length, from + BLOCK_SIZE ) } );
+		Parallelization.getTaskExecutor().forEach( blocks, block -> {
+			for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+			{
+				double[] row = array[ i ];
+				for ( int j = 0; j < row.length; j++ )
+					row[ j ] = standardize( row[ j ], means[ j ], standardDeviations[ j ] );
+			}
+		} );
 	}
 }
@@ -59,6 +59,7 @@ public class SpotOutputFeatureSerializerTools
 			final DoublePropertyMapSerializer< Spot > serializer = new DoublePropertyMapSerializer<>( output );
 			serializer.writePropertyMap( idMap, oos );
 		}
+		oos.writeObject( feature.getResultKey() );
 	}
 
 	public static < T extends AbstractOutputFeature< Spot > > T deserialize( final FileIdToObjectMap< Spot > idMap,
@@ -74,6 +75,8 @@ public class SpotOutputFeatureSerializerTools
 			serializer.readPropertyMap( idMap, ois );
 			outputMaps.add( umapOutput );
 		}
-		return featureCreator.apply( outputMaps );
+		T feature = featureCreator.apply( outputMaps );
+		feature.setResultKey( AbstractOutputFeature.readResultKey( ois ) );
+		return feature;
 	}
 }
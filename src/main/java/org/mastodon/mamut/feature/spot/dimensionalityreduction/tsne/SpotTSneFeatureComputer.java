@@ -73,4 +73,10 @@ public class SpotTSneFeatureComputer extends AbstractTSneFeatureComputer< Spot,
 	{
 		return model.getGraph().vertices();
 	}
+
+	@Override
+	protected int getTimepoint( final Spot spot )
+	{
+		return spot.getTimepoint();
+	}
 }
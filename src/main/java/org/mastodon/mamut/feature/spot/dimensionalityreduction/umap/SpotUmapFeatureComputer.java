@@ -73,4 +73,10 @@ public class SpotUmapFeatureComputer extends AbstractUmapFeatureComputer< Spot,
 	{
 		return model.getGraph().vertices();
 	}
+
+	@Override
+	protected int getTimepoint( final Spot spot )
+	{
+		return spot.getTimepoint();
+	}
 }
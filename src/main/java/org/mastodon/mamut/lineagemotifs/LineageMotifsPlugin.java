@@ -38,7 +38,9 @@ import org.mastodon.app.ui.ViewMenuBuilder;
 import org.mastodon.mamut.KeyConfigScopes;
 import org.mastodon.mamut.ProjectModel;
 import org.mastodon.mamut.lineagemotifs.ui.FindLineageMotifsBasedOnImportCommand;
+import org.mastodon.mamut.lineagemotifs.ui.FindLineageMotifsBasedOnLibraryCommand;
 import org.mastodon.mamut.lineagemotifs.ui.FindLineageMotifsBasedOnSelectionCommand;
+import org.mastodon.mamut.lineagemotifs.ui.FindLineageMotifsInOtherProjectsCommand;
 import org.mastodon.mamut.plugin.MamutPlugin;
 import org.mastodon.ui.keymap.KeyConfigContexts;
 import org.scijava.AbstractContextual;
@@ -66,10 +68,22 @@ public class LineageMotifsPlugin extends AbstractContextual implements MamutPlug
 
 	private static final String[] FIND_LINEAGE_MOTIFS_IMPORT_KEYS = { "ctrl shift I" };
 
+	private static final String FIND_LINEAGE_MOTIFS_LIBRARY = "Based on motif library";
+
+	private static final String[] FIND_LINEAGE_MOTIFS_LIBRARY_KEYS = { "not mapped" };
+
+	private static final String FIND_LINEAGE_MOTIFS_OTHER_PROJECTS = "In other projects";
+
+	private static final String[] FIND_LINEAGE_MOTIFS_OTHER_PROJECTS_KEYS = { "not mapped" };
+
 	private final AbstractNamedAction findLineageMotifsSelectionAction;
 
 	private final AbstractNamedAction findLineageMotifsImportAction;
 
+	private final AbstractNamedAction findLineageMotifsLibraryAction;
+
+	private final AbstractNamedAction findLineageMotifsOtherProjectsAction;
+
 	private ProjectModel projectModel;
 
 	@SuppressWarnings( "unused" )
@@ -85,6 +99,9 @@ public class LineageMotifsPlugin extends AbstractContextual implements MamutPlug
 	{
 		findLineageMotifsSelectionAction = new RunnableAction( FIND_LINEAGE_MOTIFS_SELECTION, this::findLineageMotifsSelection );
 		findLineageMotifsImportAction = new RunnableAction( FIND_LINEAGE_MOTIFS_IMPORT, this::findLineageMotifsBasedOnImport );
+		findLineageMotifsLibraryAction = new RunnableAction( FIND_LINEAGE_MOTIFS_LIBRARY, this::findLineageMotifsBasedOnLibrary );
+		findLineageMotifsOtherProjectsAction =
+				new RunnableAction( FIND_LINEAGE_MOTIFS_OTHER_PROJECTS, this::findLineageMotifsInOtherProjects );
 	}
 
 	@Override
@@ -97,7 +114,8 @@ public class LineageMotifsPlugin extends AbstractContextual implements MamutPlug
 	public List< ViewMenuBuilder.MenuItem > getMenuItems()
 	{
 		return Collections.singletonList( menu( "Plugins", menu( "Lineage analysis",
-				menu( FIND_LINEAGE_MOTIFS, item( FIND_LINEAGE_MOTIFS_SELECTION ), item( FIND_LINEAGE_MOTIFS_IMPORT ) ) ) ) );
+				menu( FIND_LINEAGE_MOTIFS, item( FIND_LINEAGE_MOTIFS_SELECTION ), item( FIND_LINEAGE_MOTIFS_IMPORT ),
+						item( FIND_LINEAGE_MOTIFS_LIBRARY ), item( FIND_LINEAGE_MOTIFS_OTHER_PROJECTS ) ) ) ) );
 	}
 
 	@Override
@@ -105,6 +123,8 @@ public class LineageMotifsPlugin extends AbstractContextual implements MamutPlug
 	{
 		actions.namedAction( findLineageMotifsSelectionAction, FIND_LINEAGE_MOTIFS_KEYS );
 		actions.namedAction( findLineageMotifsImportAction, FIND_LINEAGE_MOTIFS_IMPORT_KEYS );
+		actions.namedAction( findLineageMotifsLibraryAction, FIND_LINEAGE_MOTIFS_LIBRARY_KEYS );
+		actions.namedAction( findLineageMotifsOtherProjectsAction, FIND_LINEAGE_MOTIFS_OTHER_PROJECTS_KEYS );
 	}
 
 	private void findLineageMotifsSelection()
@@ -117,6 +137,16 @@ public class LineageMotifsPlugin extends AbstractContextual implements MamutPlug
 		commandService.run( FindLineageMotifsBasedOnImportCommand.class, true, "projectModel", projectModel );
 	}
 
+	private void findLineageMotifsBasedOnLibrary()
+	{
+		commandService.run( FindLineageMotifsBasedOnLibraryCommand.class, true, "projectModel", projectModel );
+	}
+
+	private void findLineageMotifsInOtherProjects()
+	{
+		commandService.run( FindLineageMotifsInOtherProjectsCommand.class, true, "projectModel", projectModel );
+	}
+
 	/*
 	 * Command descriptions for all provided commands
 	 */
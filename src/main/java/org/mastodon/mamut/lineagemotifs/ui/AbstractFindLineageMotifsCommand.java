@@ -35,6 +35,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 import org.mastodon.mamut.ProjectModel;
 import org.mastodon.mamut.clustering.config.HasName;
 import org.mastodon.mamut.clustering.config.SimilarityMeasure;
@@ -43,6 +44,7 @@ import org.mastodon.mamut.clustering.ui.Notification;
 import org.mastodon.mamut.lineagemotifs.util.InvalidLineageMotifException;
 import org.mastodon.mamut.lineagemotifs.util.LineageMotifsUtils;
 import org.scijava.Context;
+import org.scijava.app.StatusService;
 import org.scijava.command.DynamicCommand;
 import org.scijava.plugin.Parameter;
 import org.scijava.thread.ThreadService;
@@ -95,11 +97,21 @@ public abstract class AbstractFindLineageMotifsCommand extends DynamicCommand
 			projectModel.getBranchGraphSync().sync();
 		try
 		{
+			double[] scaleFactors = getScaleFactors();
+			if ( scaleFactors.length > 1 )
+			{
+				List< Triple< BranchSpotTree, Double, Double > > similarMotifs = LineageMotifsUtils.getMostSimilarMotifs( lineageMotif,
+						getNumberOfSimilarLineage(), SimilarityMeasure.getByName( getSimilarityMeasure() ), scaleFactors,
+						!runOnBranchGraph, projectModel.getModel() );
+				LineageMotifsUtils.tagMotifs( projectModel.getModel(), lineageMotif, similarMotifs, getColor1(), getColor2(),
+						scaleFactors, getContext().getService( StatusService.class ), this );
+				return;
+			}
 			List< Pair< BranchSpotTree, Double > > similarMotifs = LineageMotifsUtils.getMostSimilarMotifs( lineageMotif,
 					getNumberOfSimilarLineage(), SimilarityMeasure.getByName( getSimilarityMeasure() ), getScaleFactor(), !runOnBranchGraph,
-					projectModel.getModel() );
+					getMaxDivisionDifference(), projectModel.getModel() );
 			LineageMotifsUtils.tagMotifs( projectModel.getModel(), lineageMotif, similarMotifs, getColor1(), getColor2(),
-					getScaleFactor() );
+					getScaleFactor(), getContext().getService( StatusService.class ), this );
 		}
 		catch ( Exception e )
 		{
@@ -133,6 +145,16 @@ public abstract class AbstractFindLineageMotifsCommand extends DynamicCommand
 	 */
 	protected abstract double getScaleFactor();
 
+	/**
+	 * Override this to search the motif at several scaling factors in a single pass, cf.
+	 * {@link LineageMotifsUtils#getMostSimilarMotifs(BranchSpotTree, int, SimilarityMeasure, double[], boolean, org.mastodon.mamut.model.Model)}.
+	 * The fingerprint prefilter does not apply in this case. By default, only {@link #getScaleFactor()} is used.
+	 */
+	protected double[] getScaleFactors()
+	{
+		return new double[] { getScaleFactor() };
+	}
+
 	/**
 	 * Cleans up resources or operations after the execution of the command.
 	 * This method is designed to be implemented by subclasses to handle any
@@ -150,4 +172,13 @@ public abstract class AbstractFindLineageMotifsCommand extends DynamicCommand
 	protected abstract String getSimilarityMeasure();
 
 	protected abstract boolean isRunOnBranchGraph();
+
+	/**
+	 * Override this to enable the fingerprint prefilter of the branch graph search, cf.
+	 * {@link LineageMotifsUtils#getMostSimilarMotifs(BranchSpotTree, int, SimilarityMeasure, double, boolean, int, org.mastodon.mamut.model.Model)}.
+	 */
+	protected int getMaxDivisionDifference()
+	{
+		return LineageMotifsUtils.NO_FINGERPRINT_FILTER;
+	}
 }
@@ -0,0 +1,198 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.mastodon.mamut.ProjectModel;
+import org.mastodon.mamut.clustering.config.HasName;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.clustering.ui.Notification;
+import org.mastodon.mamut.lineagemotifs.util.GraphMLMotifReader;
+import org.mastodon.mamut.lineagemotifs.util.InvalidLineageMotifException;
+import org.mastodon.mamut.lineagemotifs.util.LineageMotifsUtils;
+import org.mastodon.mamut.model.Model;
+import org.scijava.ItemVisibility;
+import org.scijava.app.StatusService;
+import org.scijava.command.Command;
+import org.scijava.command.DynamicCommand;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
+import org.scijava.util.ColorRGB;
+import org.scijava.widget.FileWidget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Command to find similar lineage motifs for each motif of a library of lineage motifs, i.e. a directory of GraphML files.
+ * <br>
+ * All motifs are read without creating a project, cf. {@link GraphMLMotifReader}, and searched in a single pass over the project, cf.
+ * {@link LineageMotifsUtils#getMostSimilarMotifs(List, int, SimilarityMeasure, double, boolean, Model)}.
+ */
+@Plugin( type = Command.class, name = "Find similar lineage motifs based on a library of motifs" )
+public class FindLineageMotifsBasedOnLibraryCommand extends DynamicCommand
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private static final String GRAPHML_EXTENSION = "graphml";
+
+	private static final String TAG_SET_NAME = "Lineage motif library ";
+
+	@SuppressWarnings( "unused" )
+	@Parameter
+	private ProjectModel projectModel;
+
+	@SuppressWarnings( "all" )
+	@Parameter( visibility = ItemVisibility.MESSAGE, required = false, persist = false )
+	private String documentation = "<html>\n"
+			+ "<body width=" + AbstractFindLineageMotifsCommand.WIDTH + "cm align=left>\n"
+			+ "<h1>Find similar lineage motifs for a motif library</h1>\n"
+			+ "<p>This command finds a specifiable number of lineage motifs that are similar to each lineage motif of a library and assigns tags to them. The library is a directory containing one lineage motif per file in GraphML format.</p>\n"
+			+ "<p>All motifs are searched in a single pass over the project, which is much faster than searching them one by one.</p>\n"
+			+ "</body>\n"
+			+ "</html>\n";
+
+	@SuppressWarnings( "unused" )
+	@Parameter( label = "Motif library directory", style = FileWidget.DIRECTORY_STYLE )
+	private File motifDirectory;
+
+	@Parameter( label = "Scaling of the search motifs", min = "0", description = "Scaling applied to the search motifs. This is useful, if the motifs loaded from the files are known to have a different time scale than the motifs to be searched in this project." )
+	private double scaleFactor = 1d;
+
+	@Parameter( label = "Number of similar lineage motifs per motif", min = "1", max = "1000", stepSize = "1" )
+	private int numberOfSimilarLineage = 10;
+
+	@Parameter( label = "Color of most similar motif / first library motif" )
+	private ColorRGB color1 = ColorRGB.fromHTMLColor( "#1f78b4" ); // blue-ish
+
+	@Parameter( label = "Color of least similar motif / last library motif" )
+	private ColorRGB color2 = ColorRGB.fromHTMLColor( "#ff7f00" ); // orange-ish
+
+	@SuppressWarnings( "unused" )
+	@Parameter( label = "Similarity measure", initializer = "initSimilarityMeasureChoices", callback = "update" )
+	private String similarityMeasure = SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE.getName();
+
+	@Parameter( label = "Run on branch graph", required = false, description = "Running this command on the branch graph (recommended option) will be much faster, but a bit less accurate. Running it on the model graph will be more accurate, but slower." )
+	private boolean runOnBranchGraph = true;
+
+	@Parameter( label = "Single tag set for all motifs", required = false, description = "If checked, a single tag set with one tag per library motif is added. Otherwise, one tag set per library motif is added." )
+	private boolean combinedTagSet = false;
+
+	@Override
+	public void run()
+	{
+		ThreadService threadService = getContext().getService( ThreadService.class );
+		threadService.run( this::findMotifs );
+	}
+
+	private void findMotifs()
+	{
+		File[] files = motifDirectory == null ? null
+				: motifDirectory.listFiles( file -> file.isFile() && GRAPHML_EXTENSION.equalsIgnoreCase( FilenameUtils.getExtension(
+						file.getName() ) ) );
+		if ( files == null || files.length == 0 )
+		{
+			Notification.showError( "No lineage motifs found", "The selected directory does not contain any GraphML files." );
+			return;
+		}
+		Arrays.sort( files );
+		try
+		{
+			List< String > motifNames = new ArrayList<>();
+			List< BranchSpotTree > motifs = readMotifs( files, motifNames );
+			if ( motifs.isEmpty() )
+			{
+				Notification.showError( "No lineage motifs found", "None of the GraphML files contains a single lineage motif." );
+				return;
+			}
+			if ( runOnBranchGraph )
+				projectModel.getBranchGraphSync().sync();
+			double searchScaleFactor = 1d / scaleFactor;
+			List< List< Pair< BranchSpotTree, Double > > > similarMotifs = LineageMotifsUtils.getMostSimilarMotifs( motifs,
+					numberOfSimilarLineage, SimilarityMeasure.getByName( similarityMeasure ), searchScaleFactor, !runOnBranchGraph,
+					projectModel.getModel() );
+			LineageMotifsUtils.tagMotifLibrary( projectModel.getModel(), TAG_SET_NAME + motifDirectory.getName(), motifNames, motifs,
+					similarMotifs, color1, color2, searchScaleFactor, combinedTagSet,
+					getContext().getService( StatusService.class ), this );
+		}
+		catch ( Exception e )
+		{
+			logger.error( "Error while finding similar lineage motifs.", e );
+			Notification.showError( "Error", "An error occurred while finding similar lineage motifs: " + e.getMessage() );
+		}
+	}
+
+	/**
+	 * Reads the lineage motifs from the given files, cf. {@link GraphMLMotifReader}. Files, which do not contain exactly one lineage motif,
+	 * are skipped.
+	 *
+	 * @param files the GraphML files
+	 * @param motifNames the list to add the names of the read motifs to, i.e. the file names without extension
+	 * @return the read motifs. Each motif contains the whole lineage of its file.
+	 */
+	private static List< BranchSpotTree > readMotifs( final File[] files, final List< String > motifNames ) throws IOException
+	{
+		List< BranchSpotTree > motifs = new ArrayList<>();
+		for ( File file : files )
+		{
+			try
+			{
+				motifs.add( GraphMLMotifReader.readMotif( file ) );
+				motifNames.add( FilenameUtils.getBaseName( file.getName() ) );
+			}
+			catch ( InvalidLineageMotifException e )
+			{
+				logger.warn( "Skipping file {}: {}", file.getName(), e.getLogMessage() );
+			}
+		}
+		logger.info( "Read {} of {} lineage motifs.", motifs.size(), files.length );
+		return motifs;
+	}
+
+	@SuppressWarnings( "unused" )
+	private void initSimilarityMeasureChoices()
+	{
+		getInfo().getMutableInput( "similarityMeasure", String.class ).setChoices( enumNamesAsList( SimilarityMeasure.values() ) );
+	}
+
+	private static List< String > enumNamesAsList( final HasName[] values )
+	{
+		return Arrays.stream( values ).map( HasName::getName ).collect( Collectors.toList() );
+	}
+}
@@ -30,6 +30,7 @@ package org.mastodon.mamut.lineagemotifs.ui;
 
 import org.mastodon.mamut.clustering.config.SimilarityMeasure;
 import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.feature.branch.fingerprint.BranchFingerprintFeature;
 import org.mastodon.mamut.lineagemotifs.util.InvalidLineageMotifException;
 import org.mastodon.mamut.lineagemotifs.util.LineageMotifsUtils;
 import org.scijava.ItemVisibility;
@@ -70,6 +71,10 @@ public class FindLineageMotifsBasedOnSelectionCommand extends AbstractFindLineag
 	@Parameter( label = "Run on branch graph", required = false, description = "Running this command on the branch graph (recommended option) will be much faster, but a bit less accurate. Running it on the model graph will be more accurate, but slower." )
 	private boolean runOnBranchGraph = true;
 
+	@Parameter( label = "Max. difference of divisions", min = "-1", stepSize = "1", required = false, description = "Skips candidate motifs, whose number of divisions per time interval differs from the selected motif by more than this number, without computing their similarity. Only applies when running on the branch graph and requires the feature '"
+			+ BranchFingerprintFeature.KEY + "' to be computed. -1 disables this filter." )
+	private int maxDivisionDifference = LineageMotifsUtils.NO_FINGERPRINT_FILTER;
+
 	@Override
 	protected BranchSpotTree getMotif() throws InvalidLineageMotifException
 	{
@@ -111,4 +116,10 @@ public class FindLineageMotifsBasedOnSelectionCommand extends AbstractFindLineag
 	{
 		return runOnBranchGraph;
 	}
+
+	@Override
+	protected int getMaxDivisionDifference()
+	{
+		return maxDivisionDifference;
+	}
 }
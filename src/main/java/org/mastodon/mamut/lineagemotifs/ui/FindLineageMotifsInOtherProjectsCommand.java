@@ -0,0 +1,192 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.swing.SwingUtilities;
+
+import org.mastodon.mamut.ProjectModel;
+import org.mastodon.mamut.clustering.config.HasName;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.clustering.ui.Notification;
+import org.mastodon.mamut.lineagemotifs.util.CrossProjectMotifSearch;
+import org.mastodon.mamut.lineagemotifs.util.GraphMLMotifReader;
+import org.mastodon.mamut.lineagemotifs.util.InvalidLineageMotifException;
+import org.mastodon.mamut.lineagemotifs.util.LineageMotifsUtils;
+import org.mastodon.mamut.lineagemotifs.util.ProjectMotifMatch;
+import org.scijava.ItemVisibility;
+import org.scijava.app.StatusService;
+import org.scijava.command.Command;
+import org.scijava.command.DynamicCommand;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
+import org.scijava.util.ColorRGB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Command to find lineage motifs similar to a given motif across a set of other Mastodon projects.
+ * <br>
+ * Only the model graphs of the other projects are loaded, cf. {@link CrossProjectMotifSearch}.
+ */
+@Plugin( type = Command.class, name = "Find similar lineage motifs in other projects" )
+public class FindLineageMotifsInOtherProjectsCommand extends DynamicCommand
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private static final String SELECTED_MOTIF = "Selected motif in this project";
+
+	private static final String IMPORTED_MOTIF = "Motif from GraphML file";
+
+	@SuppressWarnings( "unused" )
+	@Parameter
+	private ProjectModel projectModel;
+
+	@SuppressWarnings( "all" )
+	@Parameter( visibility = ItemVisibility.MESSAGE, required = false, persist = false )
+	private String documentation = "<html>\n"
+			+ "<body width=" + AbstractFindLineageMotifsCommand.WIDTH + "cm align=left>\n"
+			+ "<h1>Find similar lineage motifs in other projects</h1>\n"
+			+ "<p>This command finds a specifiable number of lineage motifs across a list of other projects that are similar to the currently selected motif or to a motif imported from a file in GraphML format.</p>\n"
+			+ "<p>Only the lineages of the other projects are loaded, no image data. The results are shown in a table ranked across all projects.</p>\n"
+			+ "</body>\n"
+			+ "</html>\n";
+
+	@SuppressWarnings( "unused" )
+	@Parameter( label = "Motif", choices = { SELECTED_MOTIF, IMPORTED_MOTIF } )
+	private String motifSource = SELECTED_MOTIF;
+
+	@SuppressWarnings( "unused" )
+	@Parameter( label = "Load motif from file", required = false, description = "Only used, if the motif is imported from a GraphML file." )
+	private File motifFile;
+
+	@Parameter( label = "Scaling of the search motif", min = "0", description = "Scaling applied to the search motif. This is useful, if the motif is known to have a different time scale than the motifs to be searched in the other projects." )
+	private double scaleFactor = 1d;
+
+	@SuppressWarnings( "unused" )
+	@Parameter( label = "<html><body>List of<br>projects to search<br>(Drag & Drop supported)</body></html>", style = "files,extensions:mastodon", persist = false )
+	private File[] projects = new File[ 0 ];
+
+	@Parameter( label = "Number of similar lineage motifs", min = "1", max = "1000", stepSize = "1" )
+	private int numberOfSimilarLineage = 10;
+
+	@SuppressWarnings( "unused" )
+	@Parameter( label = "Similarity measure", initializer = "initSimilarityMeasureChoices", callback = "update" )
+	private String similarityMeasure = SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE.getName();
+
+	@Parameter( label = "Run on branch graph", required = false, description = "Running this command on the branch graph (recommended option) will be much faster, but a bit less accurate. Running it on the model graph will be more accurate, but slower." )
+	private boolean runOnBranchGraph = true;
+
+	@Parameter( label = "<html><body>Add tags to<br>searched projects<br>(Note: this will <i>write</i> tags<br>to these projects)</body></html>", required = false )
+	private boolean writeTags = false;
+
+	@Parameter( label = "Color of most similar motif" )
+	private ColorRGB color1 = ColorRGB.fromHTMLColor( "#1f78b4" ); // blue-ish
+
+	@Parameter( label = "Color of least similar motif" )
+	private ColorRGB color2 = ColorRGB.fromHTMLColor( "#ff7f00" ); // orange-ish
+
+	@Override
+	public void run()
+	{
+		ThreadService threadService = getContext().getService( ThreadService.class );
+		threadService.run( this::findMotifs );
+	}
+
+	private void findMotifs()
+	{
+		List< File > projectFiles = projects == null ? new ArrayList<>()
+				: Arrays.stream( projects ).distinct().collect( Collectors.toList() );
+		if ( projectFiles.isEmpty() )
+		{
+			Notification.showError( "No projects", "Please select at least one project to search." );
+			return;
+		}
+		BranchSpotTree lineageMotif;
+		try
+		{
+			lineageMotif = IMPORTED_MOTIF.equals( motifSource ) ? GraphMLMotifReader.readMotif( motifFile )
+					: LineageMotifsUtils.getSelectedMotif( projectModel );
+		}
+		catch ( InvalidLineageMotifException e )
+		{
+			logger.warn( e.getLogMessage() );
+			Notification.showError( e.getUiTitle(), e.getUiMessage() );
+			return;
+		}
+		catch ( IOException | RuntimeException e )
+		{
+			logger.warn( e.getMessage(), e );
+			Notification.showError( "Error", "An error occurred while reading the lineage motif: " + e.getMessage() );
+			return;
+		}
+		try
+		{
+			double searchScaleFactor = 1d / scaleFactor;
+			CrossProjectMotifSearch search = new CrossProjectMotifSearch( projectFiles );
+			List< ProjectMotifMatch > matches = search.search( lineageMotif, numberOfSimilarLineage,
+					SimilarityMeasure.getByName( similarityMeasure ), searchScaleFactor, !runOnBranchGraph );
+			String headline = "Lineage motifs similar to " + lineageMotif.getStartSpotName() + " in " + projectFiles.size() + " projects ("
+					+ similarityMeasure + ")";
+			SwingUtilities.invokeLater( () -> new MotifSearchResultsView( headline, matches ).setVisible( true ) );
+			if ( !search.getFailingProjects().isEmpty() )
+				Notification.showWarning( "Some projects could not be searched",
+						search.getFailingProjects().entrySet().stream().map( entry -> entry.getKey().getName() + ": " + entry.getValue() )
+								.collect( Collectors.joining( "<br>" ) ) );
+			if ( writeTags )
+				CrossProjectMotifSearch.writeTags( getContext(), lineageMotif, matches, color1, color2, searchScaleFactor,
+						getContext().getService( StatusService.class ), this );
+		}
+		catch ( Exception e )
+		{
+			logger.error( "Error while finding similar lineage motifs.", e );
+			Notification.showError( "Error", "An error occurred while finding similar lineage motifs: " + e.getMessage() );
+		}
+	}
+
+	@SuppressWarnings( "unused" )
+	private void initSimilarityMeasureChoices()
+	{
+		getInfo().getMutableInput( "similarityMeasure", String.class ).setChoices( enumNamesAsList( SimilarityMeasure.values() ) );
+	}
+
+	private static List< String > enumNamesAsList( final HasName[] values )
+	{
+		return Arrays.stream( values ).map( HasName::getName ).collect( Collectors.toList() );
+	}
+}
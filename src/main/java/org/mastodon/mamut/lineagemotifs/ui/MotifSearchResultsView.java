@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.ui;
+
+import java.util.List;
+
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.WindowConstants;
+import javax.swing.table.AbstractTableModel;
+
+import net.miginfocom.swing.MigLayout;
+
+import org.mastodon.mamut.lineagemotifs.util.ProjectMotifMatch;
+
+/**
+ * A window showing the ranked lineage motifs found across several projects.
+ */
+public class MotifSearchResultsView extends JFrame
+{
+	public MotifSearchResultsView( final String headline, final List< ProjectMotifMatch > matches )
+	{
+		super( "Similar lineage motifs across projects" );
+		setSize( 800, 500 );
+		setLayout( new MigLayout( "insets 10, fill" ) );
+		setDefaultCloseOperation( WindowConstants.DISPOSE_ON_CLOSE );
+		JTable table = new JTable( new MatchesTableModel( matches ) );
+		table.setAutoCreateRowSorter( true );
+		add( new JLabel( headline ), "wrap" );
+		add( new JScrollPane( table ), "grow, push" );
+	}
+
+	private static class MatchesTableModel extends AbstractTableModel
+	{
+		private static final String[] COLUMN_NAMES = { "Rank", "Project", "Start spot", "Start timepoint", "End timepoint", "Distance" };
+
+		private static final Class< ? >[] COLUMN_CLASSES = { Integer.class, String.class, String.class, Integer.class, Integer.class,
+				Double.class };
+
+		private final List< ProjectMotifMatch > matches;
+
+		private MatchesTableModel( final List< ProjectMotifMatch > matches )
+		{
+			this.matches = matches;
+		}
+
+		@Override
+		public int getRowCount()
+		{
+			return matches.size();
+		}
+
+		@Override
+		public int getColumnCount()
+		{
+			return COLUMN_NAMES.length;
+		}
+
+		@Override
+		public String getColumnName( final int column )
+		{
+			return COLUMN_NAMES[ column ];
+		}
+
+		@Override
+		public Class< ? > getColumnClass( final int column )
+		{
+			return COLUMN_CLASSES[ column ];
+		}
+
+		@Override
+		public Object getValueAt( final int row, final int column )
+		{
+			ProjectMotifMatch match = matches.get( row );
+			switch ( column )
+			{
+			case 0:
+				return row + 1;
+			case 1:
+				return match.getProjectFile().getName();
+			case 2:
+				return match.getSpotLabel();
+			case 3:
+				return match.getStartTimepoint();
+			case 4:
+				return match.getEndTimepoint();
+			default:
+				return match.getDistance();
+			}
+		}
+	}
+}
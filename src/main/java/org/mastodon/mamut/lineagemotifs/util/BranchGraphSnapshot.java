@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import java.util.Arrays;
+
+import org.mastodon.RefPool;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+import org.mastodon.mamut.model.branch.BranchLink;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+
+/**
+ * An immutable snapshot of the structure of a {@link ModelBranchGraph}, i.e. the first and the last timepoint as well as the children of
+ * each {@link BranchSpot}, indexed by the ids of the branch spots in the {@link RefPool} of the branch graph.
+ * <br>
+ * The snapshot allows creating cropped subtrees of the branch graph concurrently from multiple threads without accessing the graph and
+ * thus without the need for thread-local refs. The snapshot itself is not modified after its construction.
+ */
+class BranchGraphSnapshot
+{
+	private final int[] firstTimepoints;
+
+	private final int[] lastTimepoints;
+
+	private final int[][] children;
+
+	BranchGraphSnapshot( final ModelBranchGraph branchGraph )
+	{
+		RefPool< BranchSpot > refPool = branchGraph.vertices().getRefPool();
+		int size = 0;
+		for ( BranchSpot branchSpot : branchGraph.vertices() )
+			size = Math.max( size, refPool.getId( branchSpot ) + 1 );
+		firstTimepoints = new int[ size ];
+		lastTimepoints = new int[ size ];
+		children = new int[ size ][];
+
+		BranchSpot ref = branchGraph.vertexRef();
+		try
+		{
+			for ( BranchSpot branchSpot : branchGraph.vertices() )
+			{
+				int id = refPool.getId( branchSpot );
+				firstTimepoints[ id ] = branchSpot.getFirstTimePoint();
+				lastTimepoints[ id ] = branchSpot.getTimepoint();
+				int[] childIds = new int[ branchSpot.outgoingEdges().size() ];
+				int numberOfChildren = 0;
+				for ( BranchLink branchLink : branchSpot.outgoingEdges() )
+				{
+					int childId = refPool.getId( branchLink.getTarget( ref ) );
+					if ( childId != id )
+						childIds[ numberOfChildren++ ] = childId;
+				}
+				children[ id ] = numberOfChildren == childIds.length ? childIds : Arrays.copyOf( childIds, numberOfChildren );
+			}
+		}
+		finally
+		{
+			branchGraph.releaseRef( ref );
+		}
+	}
+
+	int getFirstTimepoint( final int branchSpotId )
+	{
+		return firstTimepoints[ branchSpotId ];
+	}
+
+	int getLastTimepoint( final int branchSpotId )
+	{
+		return lastTimepoints[ branchSpotId ];
+	}
+
+	/**
+	 * Gets the ids of the children of the branch spot with the given id. The returned array must not be modified.
+	 */
+	int[] getChildren( final int branchSpotId )
+	{
+		return children[ branchSpotId ];
+	}
+
+	/**
+	 * Creates the subtree starting at the branch spot with the given id cropped to the given time interval.
+	 * <br>
+	 * The resulting tree has the same structure and attributes as a {@link BranchSpotTree} created with the same parameters.
+	 *
+	 * @param branchSpotId the id of the root branch spot of the subtree
+	 * @param startTimepoint the start timepoint of the subtree (inclusive)
+	 * @param endTimepoint the end timepoint of the subtree (inclusive)
+	 * @return the cropped subtree
+	 * @throws IllegalArgumentException if the branch spot does not overlap with the given time interval
+	 * @see SlidingCroppedTree
+	 */
+	Tree< Double > getCroppedTree( final int branchSpotId, final int startTimepoint, final int endTimepoint )
+	{
+		return new SlidingCroppedTree( this ).moveTo( branchSpotId, startTimepoint, endTimepoint );
+	}
+}
@@ -0,0 +1,147 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mastodon.RefPool;
+import org.mastodon.collection.RefSet;
+import org.mastodon.graph.algorithm.RootFinder;
+import org.mastodon.graph.algorithm.traversal.DepthFirstIterator;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+
+/**
+ * The anchors of the candidate motifs of a search model, i.e. the spots in case of spot iteration or the branch spots in case of branch spot
+ * iteration. The time interval of a candidate motif is given relative to the timepoint of its anchor by a {@link CandidateWindow}.
+ */
+class CandidateAnchors
+{
+	private final Model searchModel;
+
+	private final boolean isSpotIteration;
+
+	private final List< Integer > spotIds = new ArrayList<>();
+
+	private final List< Integer > branchSpotIds = new ArrayList<>();
+
+	private final List< Integer > timepoints = new ArrayList<>();
+
+	private CandidateAnchors( final Model searchModel, final boolean isSpotIteration )
+	{
+		this.searchModel = searchModel;
+		this.isSpotIteration = isSpotIteration;
+	}
+
+	/**
+	 * Collects the anchors of the given search model.
+	 * <br>
+	 * In case of spot iteration, the anchors are the spots of the search model in depth first order per root, such that consecutive spots
+	 * on the same branch share their candidate subtrees. Otherwise, the anchors are the branch spots of the search model anchored at their
+	 * last timepoint, i.e. their division.
+	 *
+	 * @param searchModel the {@link Model} to search for similar lineage motifs
+	 * @param isSpotIteration whether to use spot iteration or branch spot iteration
+	 * @return the anchors
+	 */
+	static CandidateAnchors of( final Model searchModel, final boolean isSpotIteration )
+	{
+		CandidateAnchors anchors = new CandidateAnchors( searchModel, isSpotIteration );
+		RefPool< BranchSpot > branchSpotPool = searchModel.getBranchGraph().vertices().getRefPool();
+		if ( !isSpotIteration )
+		{
+			for ( BranchSpot branchSpot : searchModel.getBranchGraph().vertices() )
+				anchors.add( -1, branchSpotPool.getId( branchSpot ), branchSpot.getTimepoint() );
+			return anchors;
+		}
+		RefPool< Spot > spotPool = searchModel.getGraph().vertices().getRefPool();
+		BranchSpot branchRef = searchModel.getBranchGraph().vertexRef();
+		try
+		{
+			RefSet< Spot > roots = RootFinder.getRoots( searchModel.getGraph() );
+			for ( Spot root : roots )
+			{
+				DepthFirstIterator< Spot, Link > depthFirstIterator = new DepthFirstIterator<>( searchModel.getGraph() );
+				depthFirstIterator.reset( root );
+				depthFirstIterator.forEachRemaining( spot -> {
+					BranchSpot branchSpot = searchModel.getBranchGraph().getBranchVertex( spot, branchRef );
+					anchors.add( spotPool.getId( spot ), branchSpotPool.getId( branchSpot ), spot.getTimepoint() );
+				} );
+			}
+		}
+		finally
+		{
+			searchModel.getBranchGraph().releaseRef( branchRef );
+		}
+		return anchors;
+	}
+
+	private void add( final int spotId, final int branchSpotId, final int timepoint )
+	{
+		spotIds.add( spotId );
+		branchSpotIds.add( branchSpotId );
+		timepoints.add( timepoint );
+	}
+
+	int size()
+	{
+		return branchSpotIds.size();
+	}
+
+	int getBranchSpotId( final int index )
+	{
+		return branchSpotIds.get( index );
+	}
+
+	int getTimepoint( final int index )
+	{
+		return timepoints.get( index );
+	}
+
+	/**
+	 * Gets the id of the spot, at which the candidate motif of the anchor with the given index starts.
+	 *
+	 * @param index the index of the anchor
+	 * @param window the time interval of the candidate motif relative to the anchor
+	 * @param branchRef a reference object of the branch graph of the search model
+	 * @return the id of the spot or -1, if there is no such spot
+	 */
+	int getStartSpotId( final int index, final CandidateWindow window, final BranchSpot branchRef )
+	{
+		if ( isSpotIteration )
+			return spotIds.get( index );
+		BranchSpot branchSpot = searchModel.getBranchGraph().vertices().getRefPool().getObject( branchSpotIds.get( index ), branchRef );
+		Spot spot = LineageMotifsUtils.findCandidateSpotInBranchSpot( branchSpot, timepoints.get( index ) + window.getStartOffset(),
+				searchModel );
+		return spot == null ? -1 : searchModel.getGraph().vertices().getRefPool().getId( spot );
+	}
+}
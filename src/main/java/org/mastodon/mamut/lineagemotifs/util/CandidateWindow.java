@@ -0,0 +1,110 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import java.util.Objects;
+
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+
+/**
+ * The time interval of a candidate motif relative to the timepoint of its anchor, cf. {@link CandidateAnchors}.
+ * <br>
+ * The time interval only depends on the length of the lineage motif, the scale factor and in case of branch spot iteration on the time
+ * until the first division of the lineage motif. Thus, lineage motifs or scale factors with the same window can share the candidate
+ * subtrees.
+ */
+class CandidateWindow
+{
+	private final int startOffset;
+
+	private final int endOffset;
+
+	private final int minTimepointsAfterStart;
+
+	private CandidateWindow( final int startOffset, final int endOffset, final int minTimepointsAfterStart )
+	{
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
+		this.minTimepointsAfterStart = minTimepointsAfterStart;
+	}
+
+	/**
+	 * Gets the window of the candidates of the given lineage motif. The windows are the same as the ones used by
+	 * {@link LineageMotifsUtils#getMostSimilarMotifIdsBySpotIteration} and
+	 * {@link LineageMotifsUtils#getMostSimilarMotifIdsByBranchSpotIteration}, respectively.
+	 *
+	 * @param lineageMotif the lineage motif
+	 * @param scaleFactor a scaling factor (i.e. in time) to apply to the lineage motif
+	 * @param isSpotIteration whether to use spot iteration or branch spot iteration
+	 * @return the window
+	 */
+	static CandidateWindow of( final BranchSpotTree lineageMotif, final double scaleFactor, final boolean isSpotIteration )
+	{
+		int candidateMotifLength = ( int ) ( lineageMotif.getDuration() / scaleFactor );
+		if ( isSpotIteration )
+			return new CandidateWindow( 0, candidateMotifLength + 1, candidateMotifLength - 1 );
+		int firstDivisionTimepoint = lineageMotif.getBranchSpot().getTimepoint();
+		int timepointsUntilFirstDivision = ( int ) ( ( firstDivisionTimepoint - lineageMotif.getStartTimepoint() + 1 ) / scaleFactor );
+		int startOffset = 1 - timepointsUntilFirstDivision;
+		return new CandidateWindow( startOffset, startOffset + candidateMotifLength - 1, candidateMotifLength );
+	}
+
+	int getStartOffset()
+	{
+		return startOffset;
+	}
+
+	int getEndOffset()
+	{
+		return endOffset;
+	}
+
+	/**
+	 * Checks, if the search model contains enough timepoints after the start of the candidate motif at the given anchor timepoint.
+	 */
+	boolean fits( final int anchorTimepoint, final int maxTimepoint )
+	{
+		return maxTimepoint - ( anchorTimepoint + startOffset ) >= minTimepointsAfterStart;
+	}
+
+	@Override
+	public boolean equals( final Object o )
+	{
+		if ( !( o instanceof CandidateWindow ) )
+			return false;
+		CandidateWindow that = ( CandidateWindow ) o;
+		return startOffset == that.startOffset && endOffset == that.endOffset && minTimepointsAfterStart == that.minTimepointsAfterStart;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash( startOffset, endOffset, minTimepointsAfterStart );
+	}
+}
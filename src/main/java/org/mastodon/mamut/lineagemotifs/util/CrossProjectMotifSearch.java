@@ -0,0 +1,411 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+
+import mpicbg.spim.data.SpimDataException;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.apache.commons.lang3.tuple.Pair;
+import org.mastodon.RefPool;
+import org.mastodon.mamut.ProjectModel;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.io.ProjectLoader;
+import org.mastodon.mamut.io.ProjectSaver;
+import org.mastodon.mamut.io.project.MamutProject;
+import org.mastodon.mamut.io.project.MamutProjectIO;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.scijava.Cancelable;
+import org.scijava.Context;
+import org.scijava.app.StatusService;
+import org.scijava.util.ColorRGB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Searches a lineage motif across a set of Mastodon projects.
+ * <br>
+ * Only the model graph of each project is loaded, i.e. no image data and no GUI state. The projects are loaded and searched in parallel on
+ * a dedicated thread pool, but only as many at the same time as fit into the memory budget. The memory needed by a project is estimated from
+ * the uncompressed size of its model and tags. The calling thread admits one project after the other, i.e. it waits until the memory of the
+ * next project is available, before this project is submitted to the thread pool. The threads of the task executor of
+ * {@link Parallelization}, which search within each project, thus never wait for memory.
+ * <br>
+ * After a project has been searched, its model is released and only the found motifs are kept as {@link ProjectMotifMatch}es.
+ */
+public class CrossProjectMotifSearch
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/**
+	 * Estimated number of bytes of memory needed per byte of the uncompressed model and tag data of a project.
+	 * <br>
+	 * The raw model data has about the layout of the spot and link pools, which thus need about as much memory as the data (1x). The labels,
+	 * the maps between objects and ids and the spatio-temporal index together need about as much again (1x). The tag maps need about twice
+	 * the size of the raw tag data, and the branch graph, which is rebuilt after loading, including the candidate motifs of the search, stays
+	 * below another copy of the model data (2x).
+	 */
+	private static final int MEMORY_PER_UNCOMPRESSED_BYTE = 4;
+
+	private static final String MODEL_ENTRY = "model.raw";
+
+	private static final String TAGS_ENTRY = "tags.raw";
+
+	private static final int BYTES_PER_PERMIT = 1 << 20;
+
+	private final List< File > projectFiles;
+
+	private final long memoryBudget;
+
+	private final Map< File, String > failingProjects = Collections.synchronizedMap( new LinkedHashMap<>() );
+
+	/**
+	 * Creates a new search over the given projects, which uses half of the currently available memory as memory budget.
+	 *
+	 * @param projectFiles the project files
+	 */
+	public CrossProjectMotifSearch( final List< File > projectFiles )
+	{
+		this( projectFiles, getAvailableMemory() / 2 );
+	}
+
+	/**
+	 * Creates a new search over the given projects.
+	 *
+	 * @param projectFiles the project files
+	 * @param memoryBudget the maximum number of bytes of the estimated memory of the projects loaded at the same time. A project, which
+	 * exceeds the budget on its own, is loaded, when no other project is loaded.
+	 */
+	public CrossProjectMotifSearch( final List< File > projectFiles, final long memoryBudget )
+	{
+		this.projectFiles = projectFiles;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Finds the motifs most similar to the given lineage motif across all projects.
+	 * <br>
+	 * Projects, which cannot be loaded, are skipped, cf. {@link #getFailingProjects()}.
+	 *
+	 * @param lineageMotif the lineage motif to search for
+	 * @param maxNumberOfMotifs the maximum number of similar motifs to retrieve in total
+	 * @param similarityMeasure the {@link SimilarityMeasure} used to compute the similarity between motifs
+	 * @param scaleFactor a scaling factor (i.e. in time) to apply to the similarity measure
+	 * @param isSpotIteration whether to use spot iteration or branch spot iteration, cf.
+	 * {@link LineageMotifsUtils#getMostSimilarMotifs(BranchSpotTree, int, SimilarityMeasure, double, boolean, Model)}
+	 * @return the found motifs of all projects ranked by their distance to the lineage motif
+	 */
+	public List< ProjectMotifMatch > search( final BranchSpotTree lineageMotif, final int maxNumberOfMotifs,
+			final SimilarityMeasure similarityMeasure, final double scaleFactor, final boolean isSpotIteration )
+	{
+		StopWatch stopWatch = StopWatch.createStarted();
+		failingProjects.clear();
+		int budgetPermits = Math.max( 1, ( int ) Math.min( Integer.MAX_VALUE, memoryBudget / BYTES_PER_PERMIT ) );
+		Semaphore memory = new Semaphore( budgetPermits );
+		List< ProjectMotifMatch > matches = Collections.synchronizedList( new ArrayList<>() );
+		// NB: the search within each project uses the task executor of the calling thread
+		TaskExecutor taskExecutor = Parallelization.getTaskExecutor();
+		int numberOfThreads = Math.max( 1, Math.min( projectFiles.size(), Runtime.getRuntime().availableProcessors() ) );
+		ExecutorService projectExecutor = Executors.newFixedThreadPool( numberOfThreads );
+		List< Future< ? > > futures = new ArrayList<>( projectFiles.size() );
+		try
+		{
+			for ( File projectFile : projectFiles )
+			{
+				int permits = Math.min( budgetPermits, getEstimatedPermits( projectFile ) );
+				memory.acquire( permits );
+				futures.add( projectExecutor.submit( () -> {
+					try
+					{
+						Parallelization.runWithExecutor( taskExecutor, () -> addMatches( projectFile, lineageMotif, maxNumberOfMotifs,
+								similarityMeasure, scaleFactor, isSpotIteration, matches ) );
+					}
+					finally
+					{
+						memory.release( permits );
+					}
+				} ) );
+			}
+			for ( Future< ? > future : futures )
+				future.get();
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			logger.info( "Search across projects has been interrupted. Returning the matches found so far." );
+		}
+		catch ( ExecutionException e )
+		{
+			throw new IllegalStateException( "Could not search projects.", e.getCause() );
+		}
+		finally
+		{
+			projectExecutor.shutdownNow();
+		}
+		List< ProjectMotifMatch > ranked = new ArrayList<>( matches );
+		ranked.sort( Comparator.comparingDouble( ProjectMotifMatch::getDistance )
+				.thenComparing( match -> match.getProjectFile().getAbsolutePath() ).thenComparingInt( ProjectMotifMatch::getSpotId ) );
+		stopWatch.stop();
+		logger.info( "Searched {} projects in {} ms. Found {} similar lineage motifs.", projectFiles.size(), stopWatch.getTime(),
+				Math.min( ranked.size(), maxNumberOfMotifs ) );
+		return new ArrayList<>( ranked.subList( 0, Math.min( ranked.size(), Math.max( 0, maxNumberOfMotifs ) ) ) );
+	}
+
+	/**
+	 * Gets the projects, which could not be searched by the last call of {@link #search}, and the reason why.
+	 */
+	public Map< File, String > getFailingProjects()
+	{
+		return failingProjects;
+	}
+
+	/**
+	 * Writes a tag set with the given matches into each project, in which matches have been found, and saves the project.
+	 * <br>
+	 * The tag set is named like the one of {@link LineageMotifsUtils#tagMotifs(Model, BranchSpotTree, List, ColorRGB, ColorRGB, double, StatusService, Cancelable)}.
+	 * In contrast to the search, the projects are opened completely (with dummy image data, if the image data is not available), since
+	 * saving a project requires its project model.
+	 * <br>
+	 * If {@code cancelable} is canceled, no further projects are tagged and the project, which is being tagged, is not saved.
+	 *
+	 * @param context the {@link Context} to open the projects in
+	 * @param lineageMotif the searched lineage motif
+	 * @param matches the matches, as returned by {@link #search}
+	 * @param color1 the color of the most similar motif
+	 * @param color2 the color of the least similar motif
+	 * @param scaleFactor the scaling factor, which has been applied to the similarity measure
+	 * @param statusService the {@link StatusService} to report the progress of tagging to. May be {@code null}.
+	 * @param cancelable the {@link Cancelable} to check for cancellation. May be {@code null}.
+	 */
+	public static void writeTags( final Context context, final BranchSpotTree lineageMotif, final List< ProjectMotifMatch > matches,
+			final ColorRGB color1, final ColorRGB color2, final double scaleFactor, final StatusService statusService,
+			final Cancelable cancelable )
+	{
+		Map< File, List< ProjectMotifMatch > > matchesPerProject = new LinkedHashMap<>();
+		for ( ProjectMotifMatch match : matches )
+			matchesPerProject.computeIfAbsent( match.getProjectFile(), file -> new ArrayList<>() ).add( match );
+		String tagSetName = LineageMotifsUtils.getTagSetName( lineageMotif.getStartSpotName(), lineageMotif, scaleFactor );
+		for ( Map.Entry< File, List< ProjectMotifMatch > > entry : matchesPerProject.entrySet() )
+		{
+			if ( cancelable != null && cancelable.isCanceled() )
+				return;
+			File file = entry.getKey();
+			try
+			{
+				ProjectModel projectModel = ProjectLoader.open( file.getAbsolutePath(), context, false, true );
+				try
+				{
+					Model model = projectModel.getModel();
+					List< Pair< BranchSpotTree, Double > > motifs = getMotifs( entry.getValue(), model );
+					LineageMotifsUtils.tagLineageMotifs( model, tagSetName, motifs, new Color( color1.getARGB() ),
+							new Color( color2.getARGB() ), statusService, cancelable );
+					if ( cancelable != null && cancelable.isCanceled() )
+					{
+						logger.info( "Writing tags canceled. Project {} has not been saved.", file.getAbsolutePath() );
+						return;
+					}
+					ProjectSaver.saveProject( file, projectModel );
+				}
+				finally
+				{
+					projectModel.close();
+				}
+			}
+			catch ( IOException | SpimDataException | RuntimeException e )
+			{
+				logger.warn( "Could not write tags to project {}. Error: {}", file.getAbsolutePath(), e.getMessage() );
+			}
+		}
+	}
+
+	/**
+	 * Searches the given project and adds the found motifs to the given matches. If the project cannot be searched, it is added to the
+	 * failing projects.
+	 */
+	private void addMatches( final File projectFile, final BranchSpotTree lineageMotif, final int maxNumberOfMotifs,
+			final SimilarityMeasure similarityMeasure, final double scaleFactor, final boolean isSpotIteration,
+			final List< ProjectMotifMatch > matches )
+	{
+		try
+		{
+			matches.addAll( searchProject( projectFile, lineageMotif, maxNumberOfMotifs, similarityMeasure, scaleFactor, isSpotIteration ) );
+		}
+		catch ( IOException | RuntimeException e )
+		{
+			failingProjects.put( projectFile, e.getMessage() );
+			logger.warn( "Could not search project {}. Error: {}", projectFile.getAbsolutePath(), e.getMessage() );
+		}
+	}
+
+	private static List< ProjectMotifMatch > searchProject( final File projectFile, final BranchSpotTree lineageMotif,
+			final int maxNumberOfMotifs, final SimilarityMeasure similarityMeasure, final double scaleFactor, final boolean isSpotIteration )
+			throws IOException
+	{
+		StopWatch stopWatch = StopWatch.createStarted();
+		Model model = loadModel( projectFile );
+		long loadTime = stopWatch.getTime();
+		List< Pair< BranchSpotTree, Double > > similarMotifs =
+				LineageMotifsUtils.getMostSimilarMotifs( lineageMotif, maxNumberOfMotifs, similarityMeasure, scaleFactor, isSpotIteration,
+						model );
+		RefPool< Spot > spotPool = model.getGraph().vertices().getRefPool();
+		List< ProjectMotifMatch > matches = new ArrayList<>( similarMotifs.size() );
+		for ( Pair< BranchSpotTree, Double > similarMotif : similarMotifs )
+		{
+			BranchSpotTree motif = similarMotif.getLeft();
+			Spot rootSpot = motif.getRootSpot();
+			matches.add( new ProjectMotifMatch( projectFile, spotPool.getId( rootSpot ), rootSpot.getLabel(), motif.getStartTimepoint(),
+					motif.getEndTimepoint(), similarMotif.getRight() ) );
+		}
+		stopWatch.stop();
+		logger.debug( "Loaded model of project {} in {} ms and searched it in {} ms.", projectFile.getName(), loadTime,
+				stopWatch.getTime() - loadTime );
+		return matches;
+	}
+
+	/**
+	 * Loads only the model graph (including the tags) of the given project.
+	 */
+	static Model loadModel( final File projectFile ) throws IOException
+	{
+		MamutProject project = MamutProjectIO.load( projectFile.getAbsolutePath() );
+		Model model = new Model( project.getSpaceUnits(), project.getTimeUnits() );
+		try (MamutProject.ProjectReader reader = project.openForReading())
+		{
+			model.loadRaw( reader );
+		}
+		model.getBranchGraph().graphRebuilt();
+		return model;
+	}
+
+	/**
+	 * Recreates the motifs of the given matches in the given model. Since the model graph is loaded in the same order as during the
+	 * search, the spot ids are the same. Matches, whose spot does not match their label and timepoint, are skipped.
+	 */
+	private static List< Pair< BranchSpotTree, Double > > getMotifs( final List< ProjectMotifMatch > matches, final Model model )
+	{
+		List< Pair< BranchSpotTree, Double > > motifs = new ArrayList<>( matches.size() );
+		RefPool< Spot > spotPool = model.getGraph().vertices().getRefPool();
+		Spot spotRef = model.getGraph().vertexRef();
+		try
+		{
+			for ( ProjectMotifMatch match : matches )
+			{
+				Spot spot = match.getSpotId() < model.getGraph().vertices().size() ? spotPool.getObject( match.getSpotId(), spotRef ) : null;
+				if ( spot == null || spot.getTimepoint() != match.getStartTimepoint() || !spot.getLabel().equals( match.getSpotLabel() ) )
+				{
+					logger.warn( "Could not find spot {} of lineage motif {} in project {}.", match.getSpotLabel(), match,
+							match.getProjectFile().getName() );
+					continue;
+				}
+				BranchSpot branchSpot = model.getBranchGraph().getBranchVertex( spot, model.getBranchGraph().vertexRef() );
+				motifs.add( Pair.of( new BranchSpotTree( branchSpot, match.getStartTimepoint(), match.getEndTimepoint(), model ),
+						match.getDistance() ) );
+			}
+		}
+		finally
+		{
+			model.getGraph().releaseRef( spotRef );
+		}
+		return motifs;
+	}
+
+	private static int getEstimatedPermits( final File projectFile )
+	{
+		try
+		{
+			long estimatedMemory = getUncompressedModelSize( projectFile ) * MEMORY_PER_UNCOMPRESSED_BYTE;
+			return ( int ) Math.min( Integer.MAX_VALUE, Math.max( 1, estimatedMemory / BYTES_PER_PERMIT ) );
+		}
+		catch ( IOException e )
+		{
+			// NB: the project will fail to load anyway
+			return 1;
+		}
+	}
+
+	/**
+	 * Gets the uncompressed size of the model and tag data of the given project, which is either a project file or a project folder.
+	 * Entries of unknown uncompressed size are counted with their compressed size.
+	 */
+	static long getUncompressedModelSize( final File projectFile ) throws IOException
+	{
+		if ( projectFile.isDirectory() )
+		{
+			long size = 0;
+			for ( String name : new String[] { MODEL_ENTRY, TAGS_ENTRY } )
+			{
+				File file = new File( projectFile, name );
+				if ( file.isFile() )
+					size += Files.size( file.toPath() );
+			}
+			return size;
+		}
+		try (ZipFile zipFile = new ZipFile( projectFile ))
+		{
+			long size = 0;
+			for ( String name : new String[] { MODEL_ENTRY, TAGS_ENTRY } )
+			{
+				ZipEntry entry = zipFile.getEntry( name );
+				if ( entry != null )
+					size += entry.getSize() < 0 ? entry.getCompressedSize() : entry.getSize();
+			}
+			return size;
+		}
+	}
+
+	private static long getAvailableMemory()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.maxMemory() - ( runtime.totalMemory() - runtime.freeMemory() );
+	}
+}
@@ -0,0 +1,290 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a lineage motif from a GraphML file, as written by {@link org.mastodon.mamut.io.exporter.graphml.GraphMLUtils}, without creating a
+ * project.
+ * <br>
+ * The file is read with a streaming XML parser. Only the frame, the position and the label of the nodes and the edges are read into
+ * compact arrays, from which a bare {@link Model} is built. Unlike importing the file into a temporary project, no image data, no BigDataViewer
+ * data and no selection are created.
+ * <br>
+ * Attributes are read from keys declared for nodes ({@code for="node"}) or for all elements ({@code for="all"}), but only from the data of
+ * node elements.
+ * <br>
+ * The file must contain exactly one lineage, i.e. exactly one node without incoming edges. The lineage motif starts at the root and ends at
+ * the latest frame of the file.
+ */
+public class GraphMLMotifReader
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private static final String FRAME_ATTRIBUTE_NAME = "frame";
+
+	private static final String LABEL_ATTRIBUTE_NAME = "label";
+
+	private static final String[] POSITION_ATTRIBUTE_NAMES = { "x", "y", "z" };
+
+	private static final double RADIUS = 1d;
+
+	private GraphMLMotifReader()
+	{
+		// prevent from instantiation
+	}
+
+	/**
+	 * Reads the lineage motif from the given GraphML file.
+	 *
+	 * @param file the GraphML file
+	 * @return the lineage motif
+	 * @throws IOException if the file cannot be read or is not a valid GraphML file
+	 * @throws InvalidLineageMotifException if the file does not contain exactly one lineage
+	 */
+	public static BranchSpotTree readMotif( final File file ) throws IOException
+	{
+		StopWatch stopWatch = StopWatch.createStarted();
+		Nodes nodes = new Nodes();
+		List< String[] > edges = new ArrayList<>();
+		try (InputStream inputStream = Files.newInputStream( file.toPath() ))
+		{
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+			factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+			XMLStreamReader reader = factory.createXMLStreamReader( inputStream );
+			try
+			{
+				read( reader, nodes, edges );
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		catch ( XMLStreamException | NumberFormatException e )
+		{
+			throw new IOException( "Cannot read lineage motif from file " + file.getName() + ": " + e.getMessage(), e );
+		}
+		BranchSpotTree motif = createMotif( nodes, edges, file.getName() );
+		stopWatch.stop();
+		logger.debug( "Read lineage motif with {} spots from {} in {} ms.", nodes.size(), file.getName(), stopWatch.getTime() );
+		return motif;
+	}
+
+	private static void read( final XMLStreamReader reader, final Nodes nodes, final List< String[] > edges ) throws XMLStreamException
+	{
+		Map< String, String > keyToAttributeName = new HashMap<>();
+		boolean inNode = false;
+		String currentAttributeName = null;
+		StringBuilder text = new StringBuilder();
+		while ( reader.hasNext() )
+		{
+			int event = reader.next();
+			if ( event == XMLStreamConstants.START_ELEMENT )
+			{
+				switch ( reader.getLocalName() )
+				{
+				case "key":
+					if ( isNodeKey( reader.getAttributeValue( null, "for" ) ) )
+						keyToAttributeName.put( reader.getAttributeValue( null, "id" ), reader.getAttributeValue( null, "attr.name" ) );
+					break;
+				case "node":
+					nodes.add( reader.getAttributeValue( null, "id" ) );
+					inNode = true;
+					break;
+				case "data":
+					// NB: keys declared for all elements may also be used by the data of edges and graphs, which are ignored
+					currentAttributeName = inNode ? keyToAttributeName.get( reader.getAttributeValue( null, "key" ) ) : null;
+					text.setLength( 0 );
+					break;
+				case "edge":
+					edges.add( new String[] { reader.getAttributeValue( null, "source" ), reader.getAttributeValue( null, "target" ) } );
+					break;
+				default:
+					break;
+				}
+			}
+			else if ( currentAttributeName != null
+					&& ( event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ) )
+				text.append( reader.getText() );
+			else if ( event == XMLStreamConstants.END_ELEMENT && "data".equals( reader.getLocalName() ) )
+			{
+				if ( currentAttributeName != null && nodes.size() > 0 )
+					nodes.setAttribute( currentAttributeName, text.toString().trim() );
+				currentAttributeName = null;
+			}
+			else if ( event == XMLStreamConstants.END_ELEMENT && "node".equals( reader.getLocalName() ) )
+				inNode = false;
+		}
+	}
+
+	/**
+	 * Returns {@code true}, if a key with the given domain applies to nodes. GraphML keys without a domain apply to all elements.
+	 */
+	private static boolean isNodeKey( final String domain )
+	{
+		return domain == null || "node".equals( domain ) || "all".equals( domain );
+	}
+
+	private static BranchSpotTree createMotif( final Nodes nodes, final List< String[] > edges, final String fileName )
+	{
+		if ( nodes.size() == 0 )
+			throw new InvalidLineageMotifException( "No spots found in file " + fileName + ".", "No lineage motif found",
+					"The file " + fileName + " does not contain any spots." );
+		Model model = new Model();
+		ModelGraph graph = model.getGraph();
+		int[] spotIds = new int[ nodes.size() ];
+		boolean[] hasParent = new boolean[ nodes.size() ];
+		Spot spot = graph.vertexRef();
+		Spot target = graph.vertexRef();
+		try
+		{
+			for ( int i = 0; i < nodes.size(); i++ )
+			{
+				graph.addVertex( spot ).init( nodes.frames[ i ], nodes.positions[ i ], RADIUS );
+				spot.setLabel( nodes.labels[ i ] == null ? nodes.ids.get( i ) : nodes.labels[ i ] );
+				spotIds[ i ] = spot.getInternalPoolIndex();
+			}
+			for ( String[] edge : edges )
+			{
+				Integer source = nodes.indices.get( edge[ 0 ] );
+				Integer targetIndex = nodes.indices.get( edge[ 1 ] );
+				if ( source == null || targetIndex == null )
+					throw new InvalidLineageMotifException( "Edge between unknown spots " + edge[ 0 ] + " and " + edge[ 1 ] + " in file "
+							+ fileName + ".", "Invalid lineage motif", "The file " + fileName + " contains an edge between unknown spots." );
+				hasParent[ targetIndex ] = true;
+				graph.addEdge( graph.vertices().getRefPool().getObject( spotIds[ source ], spot ),
+						graph.vertices().getRefPool().getObject( spotIds[ targetIndex ], target ) );
+			}
+			model.getBranchGraph().graphRebuilt();
+
+			int root = -1;
+			int numberOfRoots = 0;
+			int endTimepoint = Integer.MIN_VALUE;
+			for ( int i = 0; i < nodes.size(); i++ )
+			{
+				endTimepoint = Math.max( endTimepoint, nodes.frames[ i ] );
+				if ( !hasParent[ i ] )
+				{
+					root = i;
+					numberOfRoots++;
+				}
+			}
+			if ( numberOfRoots != 1 )
+				throw new InvalidLineageMotifException(
+						"Multiple lineage motifs (" + numberOfRoots + ") found in file " + fileName + ". Only one is allowed.",
+						"Multiple motifs found",
+						"The file " + fileName + " contains " + numberOfRoots + " lineage motifs. Please provide only one." );
+			Spot rootSpot = graph.vertices().getRefPool().getObject( spotIds[ root ], spot );
+			BranchSpot branchSpot = model.getBranchGraph().getBranchVertex( rootSpot, model.getBranchGraph().vertexRef() );
+			return new BranchSpotTree( branchSpot, rootSpot.getTimepoint(), endTimepoint, model );
+		}
+		finally
+		{
+			graph.releaseRef( spot );
+			graph.releaseRef( target );
+		}
+	}
+
+	/**
+	 * The nodes read from a GraphML file stored in growing arrays.
+	 */
+	private static class Nodes
+	{
+		private final List< String > ids = new ArrayList<>();
+
+		private final Map< String, Integer > indices = new HashMap<>();
+
+		private int[] frames = new int[ 16 ];
+
+		private double[][] positions = new double[ 16 ][];
+
+		private String[] labels = new String[ 16 ];
+
+		private void add( final String id )
+		{
+			int index = ids.size();
+			if ( index == frames.length )
+			{
+				frames = Arrays.copyOf( frames, 2 * index );
+				positions = Arrays.copyOf( positions, 2 * index );
+				labels = Arrays.copyOf( labels, 2 * index );
+			}
+			ids.add( id );
+			indices.put( id, index );
+			positions[ index ] = new double[ 3 ];
+		}
+
+		/**
+		 * Sets the attribute with the given name of the last added node.
+		 */
+		private void setAttribute( final String attributeName, final String value )
+		{
+			int index = ids.size() - 1;
+			if ( FRAME_ATTRIBUTE_NAME.equals( attributeName ) )
+				frames[ index ] = Integer.parseInt( value );
+			else if ( LABEL_ATTRIBUTE_NAME.equals( attributeName ) )
+				labels[ index ] = value;
+			else
+				for ( int d = 0; d < POSITION_ATTRIBUTE_NAMES.length; d++ )
+					if ( POSITION_ATTRIBUTE_NAMES[ d ].equals( attributeName ) )
+						positions[ index ][ d ] = Double.parseDouble( value );
+		}
+
+		private int size()
+		{
+			return ids.size();
+		}
+	}
+}
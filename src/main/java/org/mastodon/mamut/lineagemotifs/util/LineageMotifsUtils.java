@@ -31,6 +31,7 @@ package org.mastodon.mamut.lineagemotifs.util;
 import java.awt.Color;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -38,30 +39,34 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
-import org.mastodon.RefPool;
-import org.mastodon.collection.RefDoubleMap;
+import org.apache.commons.lang3.tuple.Triple;
 import org.mastodon.collection.RefSet;
-import org.mastodon.collection.ref.RefDoubleHashMap;
 import org.mastodon.graph.algorithm.RootFinder;
 import org.mastodon.graph.algorithm.traversal.DepthFirstIterator;
 import org.mastodon.mamut.ProjectModel;
 import org.mastodon.mamut.clustering.config.SimilarityMeasure;
 import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
 import org.mastodon.mamut.clustering.ui.Notification;
+import org.mastodon.mamut.feature.FeatureUtils;
+import org.mastodon.mamut.feature.branch.BranchSpotFeatureUtils;
+import org.mastodon.mamut.feature.branch.fingerprint.BranchFingerprintFeature;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.Spot;
-import org.mastodon.mamut.model.branch.BranchLink;
 import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.util.BranchGraphAncestryIndex;
+import org.mastodon.mamut.util.BulkTagAssignment;
 import org.mastodon.mamut.util.ColorGenerator;
 import org.mastodon.model.SelectionModel;
-import org.mastodon.model.tag.TagSetStructure;
 import org.mastodon.util.DepthFirstIteration;
-import org.mastodon.util.TagSetUtils;
 import org.mastodon.util.TreeUtils;
+import org.scijava.Cancelable;
+import org.scijava.app.StatusService;
 import org.scijava.util.ColorRGB;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -79,6 +84,11 @@ public class LineageMotifsUtils
 
 	private static final String TAG_SET_NAME = "Lineage motifs similar to ";
 
+	/**
+	 * Value of the maximum difference of the division time histograms, which disables the fingerprint prefilter.
+	 */
+	public static final int NO_FINGERPRINT_FILTER = -1;
+
 	/**
 	 * Retrieves the {@link BranchSpotTree} for the selected lineage motif based on the given model and the current selection of the user.
 	 * It ensures a valid selection of exactly one lineage motif and throws an exception if none or multiple are selected.
@@ -134,20 +144,24 @@ public class LineageMotifsUtils
 	}
 
 	/**
-	 * Gets the similarity of the given lineage motif to all other motifs in the model.
+	 * Gets the motifs in the model, which are most similar to the given lineage motif.
 	 * The method iterates over all spots in the graph and constructs a lineage motif for each of these spots with the same length as the given lineage motif.
+	 * Spots within the branch spot of the given lineage motif are skipped.
+	 * The similarities of the candidate motifs are computed in parallel, cf. {@link ParallelMotifSearch}.
 	 *
 	 * @param lineageMotif the {@link BranchSpotTree} representing the given lineage motif
+	 * @param maxNumberOfMotifs the maximum number of similar motifs to retrieve
 	 * @param branchRef a reference to the branch graph
 	 * @param similarityMeasure the {@link SimilarityMeasure} to use for calculating the similarity
 	 * @param scaleFactor a scaling factor (i.e. in time) to apply to the similarity measure
-	 * @return a {@link RefDoubleMap} of {@link Spot}s and their respective similarity to the given lineage motif
+	 * @return a {@link List} of the ids of the {@link Spot}s starting the most similar motifs and their respective distance to the given lineage motif, sorted by distance
 	 */
-	static RefDoubleMap< Spot > getMotifSimilarityBySpotIteration( final BranchSpotTree lineageMotif,
-			final SimilarityMeasure similarityMeasure, final BranchSpot branchRef, final double scaleFactor, final Model searchModel )
+	static List< Pair< Integer, Double > > getMostSimilarMotifIdsBySpotIteration( final BranchSpotTree lineageMotif,
+			final int maxNumberOfMotifs, final SimilarityMeasure similarityMeasure, final BranchSpot branchRef, final double scaleFactor,
+			final Model searchModel )
 	{
 		final int motifLength = ( int ) ( lineageMotif.getDuration() / scaleFactor );
-		RefDoubleMap< Spot > candidates = new RefDoubleHashMap<>( searchModel.getGraph().vertices().getRefPool(), Double.MAX_VALUE );
+		final ParallelMotifSearch search = new ParallelMotifSearch( searchModel );
 		final int maxTimepoint = TreeUtils.getMaxTimepoint( searchModel );
 		RefSet< Spot > roots = RootFinder.getRoots( searchModel.getGraph() );
 		for ( Spot root : roots )
@@ -160,65 +174,124 @@ public class LineageMotifsUtils
 					int startTimepoint = spot.getTimepoint();
 					int endTimepoint = startTimepoint + motifLength + 1;
 					BranchSpot branchSpot = searchModel.getBranchGraph().getBranchVertex( spot, branchRef );
-					BranchSpotTree candidateMotif = new BranchSpotTree( branchSpot, startTimepoint, endTimepoint, searchModel );
-					double distance = similarityMeasure.compute( lineageMotif, candidateMotif, scaleFactor );
-					candidates.put( spot, distance );
+					if ( !lineageMotif.getBranchSpot().equals( branchSpot ) )
+						search.addCandidate( spot, branchSpot, startTimepoint, endTimepoint );
 				}
 			} );
 		}
-		return candidates;
+		return search.findMostSimilar( lineageMotif, similarityMeasure, scaleFactor, maxNumberOfMotifs );
 	}
 
 	/**
-	 * Gets the similarity of the given lineage module to all other modules in the model.
-	 * The method iterates over all spots in the graph and constructs a lineage module for each of these spots with the same length as the given lineage module.
+	 * Gets the modules in the model, which are most similar to the given lineage module.
+	 * The method iterates over all branch spots in the graph and constructs a lineage module for each of these branch spots with the same length as the given lineage module.
+	 * The branch spot of the given lineage module is skipped.
+	 * Candidate branch spots, whose {@link BranchFingerprintFeature division time histogram} differs from the one of the lineage module by
+	 * more than the given number of divisions, are skipped without computing their similarity.
+	 * The similarities of the candidate modules are computed in parallel, cf. {@link ParallelMotifSearch}.
 	 *
 	 * @param lineageMotif the {@link BranchSpotTree} representing the given lineage module
+	 * @param maxNumberOfMotifs the maximum number of similar modules to retrieve
 	 * @param similarityMeasure the {@link SimilarityMeasure} to use for calculating the similarity
 	 * @param scaleFactor a scaling factor (i.e. in time) to apply to the similarity measure
+	 * @param maxDivisionDifference the maximum difference of the division time histograms of the lineage module and a candidate, or
+	 * {@link #NO_FINGERPRINT_FILTER} to disable the prefilter
 	 * @param searchModel the {@link Model} to search for similar lineage modules
-	 * @return a {@link RefDoubleMap} of {@link Spot}s and their respective similarity to the given lineage module
+	 * @return a {@link List} of the ids of the {@link Spot}s starting the most similar modules and their respective distance to the given lineage module, sorted by distance
 	 */
-	static RefDoubleMap< Spot > getMotifSimilarityByBranchSpotIteration( final BranchSpotTree lineageMotif,
-			final SimilarityMeasure similarityMeasure, final double scaleFactor, final Model searchModel )
+	static List< Pair< Integer, Double > > getMostSimilarMotifIdsByBranchSpotIteration( final BranchSpotTree lineageMotif,
+			final int maxNumberOfMotifs, final SimilarityMeasure similarityMeasure, final double scaleFactor, final int maxDivisionDifference,
+			final Model searchModel )
 	{
 		final int motifLength = lineageMotif.getDuration();
 		final int motifStartTimepoint = lineageMotif.getStartTimepoint();
 		final int firstDivisionTimepoint = lineageMotif.getBranchSpot().getTimepoint();
 		final int timepointsUntilFirstDivision = ( int ) ( ( firstDivisionTimepoint - motifStartTimepoint + 1 ) / scaleFactor );
 
-		RefDoubleMap< Spot > candidates = new RefDoubleHashMap<>( searchModel.getGraph().vertices().getRefPool(), Double.MAX_VALUE );
+		final ParallelMotifSearch search = new ParallelMotifSearch( searchModel );
 		final int maxTimepoint = TreeUtils.getMaxTimepoint( searchModel );
-		final MotifContext motifContext =
-				new MotifContext( lineageMotif, similarityMeasure, scaleFactor, motifLength, timepointsUntilFirstDivision );
+		final int candidateMotifLength = ( int ) ( motifLength / scaleFactor );
 
+		final Predicate< BranchSpot > fingerprintFilter = getFingerprintFilter( lineageMotif, maxDivisionDifference, scaleFactor,
+				candidateMotifLength - timepointsUntilFirstDivision, searchModel );
+
+		int skippedByFingerprint = 0;
 		for ( BranchSpot branchSpot : searchModel.getBranchGraph().vertices() )
 		{
-			findBranchSpotCandidates( branchSpot, motifContext, maxTimepoint, searchModel, candidates );
+			if ( lineageMotif.getBranchSpot().equals( branchSpot ) )
+				continue;
+			if ( !fingerprintFilter.test( branchSpot ) )
+			{
+				skippedByFingerprint++;
+				continue;
+			}
+			findBranchSpotCandidate( branchSpot, timepointsUntilFirstDivision, candidateMotifLength, maxTimepoint, searchModel, search );
+		}
+		logger.debug( "Skipped {} branch spots by their fingerprint.", skippedByFingerprint );
+		return search.findMostSimilar( lineageMotif, similarityMeasure, scaleFactor, maxNumberOfMotifs );
+	}
+
+	/**
+	 * Creates a filter, which accepts a candidate branch spot, if its division time histogram (cf. {@link BranchFingerprintFeature}) differs
+	 * from the one of the lineage motif by at most the given number of divisions. Only the bins, which lie completely within the candidate
+	 * motifs, are compared.
+	 * <br>
+	 * The filter accepts all branch spots, if it is disabled, if the scale factor is not 1 (since the bins have a fixed width in
+	 * timepoints) or if the {@link BranchFingerprintFeature} has not been computed for the search model. Branch spots, for which the feature
+	 * is not set, are accepted as well.
+	 *
+	 * @param timepointsAfterFirstDivision the number of timepoints of a candidate motif after the division of its root branch spot
+	 */
+	private static Predicate< BranchSpot > getFingerprintFilter( final BranchSpotTree lineageMotif, final int maxDivisionDifference,
+			final double scaleFactor, final int timepointsAfterFirstDivision, final Model searchModel )
+	{
+		if ( maxDivisionDifference < 0 || scaleFactor != 1 )
+			return branchSpot -> true;
+		final BranchFingerprintFeature feature = FeatureUtils.getFeature( searchModel, BranchFingerprintFeature.Spec.class );
+		if ( feature == null )
+		{
+			logger.info( "The feature '{}' has not been computed. Thus, candidate motifs are not filtered by their fingerprint.",
+					BranchFingerprintFeature.KEY );
+			return branchSpot -> true;
 		}
-		return candidates;
+		// NB: a division at the last timepoint of a candidate motif does not add any children to the candidate
+		final int comparableBins = Math.min( BranchFingerprintFeature.NUMBER_OF_BINS,
+				Math.max( 0, timepointsAfterFirstDivision - 1 ) / BranchFingerprintFeature.BIN_WIDTH );
+		final int[] motifHistogram = BranchSpotFeatureUtils.divisionHistogram( lineageMotif.getModel().getBranchGraph(),
+				lineageMotif.getBranchSpot(), BranchFingerprintFeature.BIN_WIDTH, BranchFingerprintFeature.NUMBER_OF_BINS );
+		return branchSpot -> {
+			int[] candidateHistogram = feature.getDivisionHistogram( branchSpot );
+			return candidateHistogram == null
+					|| getDivisionDifference( motifHistogram, candidateHistogram, comparableBins ) <= maxDivisionDifference;
+		};
 	}
 
-	private static void findBranchSpotCandidates( final BranchSpot branchSpot, final MotifContext motifContext, final int maxTimepoint,
-			final Model searchModel, final RefDoubleMap< Spot > candidates )
+	/**
+	 * Gets the sum of the absolute differences of the first {@code numberOfBins} bins of the given division time histograms.
+	 */
+	static int getDivisionDifference( final int[] histogram1, final int[] histogram2, final int numberOfBins )
+	{
+		int difference = 0;
+		for ( int i = 0; i < numberOfBins; i++ )
+			difference += Math.abs( histogram1[ i ] - histogram2[ i ] );
+		return difference;
+	}
+
+	private static void findBranchSpotCandidate( final BranchSpot branchSpot, final int timepointsUntilFirstDivision,
+			final int candidateMotifLength, final int maxTimepoint, final Model searchModel, final ParallelMotifSearch search )
 	{
-		int startTimepoint = branchSpot.getTimepoint() - motifContext.timepointsUntilFirstDivision + 1;
-		int candidateMotifLength = ( int ) ( motifContext.motifLength / motifContext.scaleFactor );
+		int startTimepoint = branchSpot.getTimepoint() - timepointsUntilFirstDivision + 1;
 
 		if ( maxTimepoint - startTimepoint < candidateMotifLength )
 			return;
 
-		BranchSpotTree candidateMotif =
-				new BranchSpotTree( branchSpot, startTimepoint, startTimepoint + candidateMotifLength - 1, searchModel );
-
-		double distance = motifContext.similarityMeasure.compute( motifContext.lineageMotif, candidateMotif, motifContext.scaleFactor );
 		Spot candidateSpot = findCandidateSpotInBranchSpot( branchSpot, startTimepoint, searchModel );
 
 		if ( candidateSpot != null )
-			candidates.put( candidateSpot, distance );
+			search.addCandidate( candidateSpot, branchSpot, startTimepoint, startTimepoint + candidateMotifLength - 1 );
 	}
 
-	private static Spot findCandidateSpotInBranchSpot( final BranchSpot branchSpot, final int startTimepoint, final Model searchModel )
+	static Spot findCandidateSpotInBranchSpot( final BranchSpot branchSpot, final int startTimepoint, final Model searchModel )
 	{
 		Iterator< Spot > spotIterator = searchModel.getBranchGraph().vertexBranchIterator( branchSpot );
 		while ( spotIterator.hasNext() )
@@ -250,69 +323,195 @@ public class LineageMotifsUtils
 			int maxNumberOfMotifs, final SimilarityMeasure similarityMeasure, final double scaleFactor, final boolean isSpotIteration,
 			final Model searchModel )
 	{
-		Spot spotRef = searchModel.getGraph().vertexRef();
+		return getMostSimilarMotifs( lineageMotif, maxNumberOfMotifs, similarityMeasure, scaleFactor, isSpotIteration,
+				NO_FINGERPRINT_FILTER, searchModel );
+	}
+
+	/**
+	 * Gets the most similar lineage motifs to a given motif based on their similarity scores.
+	 * <br>
+	 * Like {@link #getMostSimilarMotifs(BranchSpotTree, int, SimilarityMeasure, double, boolean, Model)}, but in case of branch spot
+	 * iteration, candidate motifs, whose division time histogram differs from the one of the lineage motif by more than
+	 * {@code maxDivisionDifference} divisions, are skipped before computing their similarity. This requires the
+	 * {@link BranchFingerprintFeature} to be computed for the search model. The prefilter is approximate, i.e. it may skip candidates, which
+	 * would have been among the most similar motifs.
+	 *
+	 * @param maxDivisionDifference the maximum difference of the division time histograms, or {@link #NO_FINGERPRINT_FILTER} to disable
+	 * the prefilter
+	 */
+	public static List< Pair< BranchSpotTree, Double > > getMostSimilarMotifs( final BranchSpotTree lineageMotif,
+			int maxNumberOfMotifs, final SimilarityMeasure similarityMeasure, final double scaleFactor, final boolean isSpotIteration,
+			final int maxDivisionDifference, final Model searchModel )
+	{
 		BranchSpot branchRef = searchModel.getBranchGraph().vertexRef();
 		try
 		{
-			int motifLength = ( int ) ( lineageMotif.getDuration() / scaleFactor );
-			RefDoubleMap< Spot > candidates;
+			// NB: candidates within the branch spot of the motif itself are skipped during the search
+			List< Pair< Integer, Double > > sortedMotifIds;
 			if ( isSpotIteration )
-				candidates = getMotifSimilarityBySpotIteration( lineageMotif, similarityMeasure, branchRef, scaleFactor, searchModel );
+				sortedMotifIds = getMostSimilarMotifIdsBySpotIteration( lineageMotif, maxNumberOfMotifs, similarityMeasure, branchRef,
+						scaleFactor, searchModel );
 			else
-				candidates = getMotifSimilarityByBranchSpotIteration( lineageMotif, similarityMeasure, scaleFactor, searchModel );
+				sortedMotifIds = getMostSimilarMotifIdsByBranchSpotIteration( lineageMotif, maxNumberOfMotifs, similarityMeasure,
+						scaleFactor, maxDivisionDifference, searchModel );
+			return getMotifsSortedByGraphDepth( lineageMotif, sortedMotifIds, scaleFactor, searchModel,
+					new BranchGraphAncestryIndex( searchModel.getBranchGraph() ) );
+		}
+		finally
+		{
+			searchModel.getBranchGraph().releaseRef( branchRef );
+		}
+	}
 
-			RefPool< Spot > refPool = searchModel.getGraph().vertices().getRefPool();
+	/**
+	 * Gets the most similar lineage motifs to each motif of a library of lineage motifs.
+	 * <br>
+	 * The result for each motif is the same as the result of
+	 * {@link #getMostSimilarMotifs(BranchSpotTree, int, SimilarityMeasure, double, boolean, Model)} for this motif, but the candidate
+	 * motifs are collected and created only once for all motifs, cf. {@link MotifLibrarySearch}.
+	 *
+	 * @param lineageMotifs the {@link BranchSpotTree}s representing the lineage motifs to compare
+	 * @param maxNumberOfMotifs the maximum number of similar motifs to retrieve per lineage motif
+	 * @param similarityMeasure the {@link SimilarityMeasure} used to compute the similarity between motifs
+	 * @param scaleFactor a scaling factor (i.e. in time) to apply to the similarity measure
+	 * @param isSpotIteration a boolean indicating whether to use spot iteration or branch spot iteration for similarity calculation.
+	 * @param searchModel the {@link Model} in which to search for similar motifs
+	 * @return a {@link List} with an entry for each lineage motif in the order of the given lineage motifs. Each entry is a {@link List} of
+	 * {@link BranchSpotTree} objects representing the most similar lineage motifs, including their similarity scores.
+	 */
+	public static List< List< Pair< BranchSpotTree, Double > > > getMostSimilarMotifs( final List< BranchSpotTree > lineageMotifs,
+			final int maxNumberOfMotifs, final SimilarityMeasure similarityMeasure, final double scaleFactor, final boolean isSpotIteration,
+			final Model searchModel )
+	{
+		List< List< Pair< Integer, Double > > > sortedMotifIds =
+				new MotifLibrarySearch( lineageMotifs, scaleFactor, isSpotIteration, searchModel )
+						.findMostSimilar( similarityMeasure, maxNumberOfMotifs );
+		List< List< Pair< BranchSpotTree, Double > > > mostSimilarMotifs = new ArrayList<>( lineageMotifs.size() );
+		// NB: one index for all motifs of the library, since they are all searched in the same model
+		BranchGraphAncestryIndex ancestryIndex = new BranchGraphAncestryIndex( searchModel.getBranchGraph() );
+		for ( int i = 0; i < lineageMotifs.size(); i++ )
+			mostSimilarMotifs.add( getMotifsSortedByGraphDepth( lineageMotifs.get( i ), sortedMotifIds.get( i ), scaleFactor, searchModel,
+					ancestryIndex ) );
+		return mostSimilarMotifs;
+	}
+
+	/**
+	 * Gets the most similar lineage motifs to a given motif over a set of scale factors.
+	 * <br>
+	 * Each candidate motif is compared to the lineage motif at all given scale factors and contributes only its smallest distance. All
+	 * scale factors are evaluated in a single pass over the search model, cf. {@link MultiScaleMotifSearch}. For a single scale factor,
+	 * the result is the same as the result of {@link #getMostSimilarMotifs(BranchSpotTree, int, SimilarityMeasure, double, boolean, Model)}.
+	 *
+	 * @param lineageMotif the {@link BranchSpotTree} representing the lineage motif to compare
+	 * @param maxNumberOfMotifs the maximum number of similar motifs to retrieve
+	 * @param similarityMeasure the {@link SimilarityMeasure} used to compute the similarity between motifs
+	 * @param scaleFactors the scaling factors (i.e. in time) to apply to the similarity measure, cf. {@link #getScaleFactors(double, double, double)}
+	 * @param isSpotIteration a boolean indicating whether to use spot iteration or branch spot iteration for similarity calculation.
+	 * @param searchModel the {@link Model} in which to search for similar motifs
+	 * @return a {@link List} of triples, each consisting of a {@link BranchSpotTree} representing a similar lineage motif, its similarity
+	 * score and the scale factor, at which this score has been found
+	 */
+	public static List< Triple< BranchSpotTree, Double, Double > > getMostSimilarMotifs( final BranchSpotTree lineageMotif,
+			final int maxNumberOfMotifs, final SimilarityMeasure similarityMeasure, final double[] scaleFactors,
+			final boolean isSpotIteration, final Model searchModel )
+	{
+		List< Triple< Integer, Double, Double > > sortedMotifIds =
+				new MultiScaleMotifSearch( lineageMotif, scaleFactors, isSpotIteration, searchModel )
+						.findMostSimilar( similarityMeasure, maxNumberOfMotifs );
+		Spot spotRef = searchModel.getGraph().vertexRef();
+		try
+		{
+			List< Triple< BranchSpotTree, Double, Double > > motifsSortedByDistance = new ArrayList<>();
+			if ( searchModel.equals( lineageMotif.getModel() ) && Arrays.stream( scaleFactors ).anyMatch( scaleFactor -> scaleFactor == 1 ) )
+				motifsSortedByDistance.add( Triple.of( lineageMotif, 0d, 1d ) );
+			for ( Triple< Integer, Double, Double > entry : sortedMotifIds )
+			{
+				int motifLength = ( int ) ( lineageMotif.getDuration() / entry.getRight() );
+				motifsSortedByDistance.add( Triple.of( createCandidateMotif( entry.getLeft(), motifLength, spotRef, searchModel ),
+						entry.getMiddle(), entry.getRight() ) );
+			}
+			motifsSortedByDistance.forEach( motif -> logger.debug( "motif: {}, distance: {}, scale factor: {}", motif.getLeft(),
+					motif.getMiddle(), motif.getRight() ) );
+			return getMotifsSortedByGraphDepth( motifsSortedByDistance, Triple::getLeft,
+					new BranchGraphAncestryIndex( searchModel.getBranchGraph() ) );
+		}
+		finally
+		{
+			searchModel.getGraph().releaseRef( spotRef );
+		}
+	}
+
+	/**
+	 * Gets the scale factors from {@code min} to {@code max} (both inclusive) with the given step size.
+	 *
+	 * @param min the smallest scale factor
+	 * @param max the largest scale factor
+	 * @param step the difference between consecutive scale factors
+	 * @return the scale factors in increasing order
+	 * @throws IllegalArgumentException if {@code min} is not positive, {@code max} is smaller than {@code min} or {@code step} is not
+	 * positive
+	 */
+	public static double[] getScaleFactors( final double min, final double max, final double step )
+	{
+		if ( min <= 0 || max < min || step <= 0 )
+			throw new IllegalArgumentException( "Invalid range of scale factors: min=" + min + ", max=" + max + ", step=" + step );
+		// NB: tolerance for rounding errors, such that max is included, if it is a multiple of the step size away from min
+		int numberOfSteps = ( int ) Math.floor( ( max - min ) / step + 1e-9 );
+		double[] scaleFactors = new double[ numberOfSteps + 1 ];
+		for ( int i = 0; i <= numberOfSteps; i++ )
+			scaleFactors[ i ] = min + i * step;
+		return scaleFactors;
+	}
+
+	/**
+	 * Creates the candidate motifs from the given ids of their start spots and sorts them by their graph depth. The lineage motif itself is
+	 * added with distance 0, if it is part of the search model and the scale factor is 1.
+	 */
+	private static List< Pair< BranchSpotTree, Double > > getMotifsSortedByGraphDepth( final BranchSpotTree lineageMotif,
+			final List< Pair< Integer, Double > > sortedMotifIds, final double scaleFactor, final Model searchModel,
+			final BranchGraphAncestryIndex ancestryIndex )
+	{
+		Spot spotRef = searchModel.getGraph().vertexRef();
+		try
+		{
+			int motifLength = ( int ) ( lineageMotif.getDuration() / scaleFactor );
 			List< Pair< BranchSpotTree, Double > > motifsSortedByDistance = new ArrayList<>();
-			List< Pair< Integer, Double > > sortedMotifIds = getSortedMotifIds( candidates, refPool );
 			logger.debug( "lineage motif: {}, length: {}", lineageMotif, motifLength );
-			int addedMotifs = 0;
 			if ( searchModel.equals( lineageMotif.getModel() ) && scaleFactor == 1 ) // add the selected motif itself in case of scale equals 1
 				motifsSortedByDistance.add( Pair.of( lineageMotif, 0d ) );
 			for ( Pair< Integer, Double > entry : sortedMotifIds )
-			{
-				Spot spot = refPool.getObject( entry.getLeft(), spotRef );
-				double distance = entry.getRight();
-				BranchSpot branchSpot = searchModel.getBranchGraph().getBranchVertex( spot, searchModel.getBranchGraph().vertexRef() );
-
-				// Only proceed if this is not the motif itself
-				if ( !lineageMotif.getBranchSpot().equals( branchSpot ) )
-				{
-					int startTimepoint = spot.getTimepoint();
-					int endTimepoint = startTimepoint + motifLength - 1;
-					BranchSpotTree motif = new BranchSpotTree( branchSpot, startTimepoint, endTimepoint, searchModel );
-					motifsSortedByDistance.add( Pair.of( motif, distance ) );
-					addedMotifs++;
-				}
-				if ( addedMotifs >= maxNumberOfMotifs )
-					break;
-			}
+				motifsSortedByDistance.add( Pair.of( createCandidateMotif( entry.getLeft(), motifLength, spotRef, searchModel ),
+						entry.getRight() ) );
 			motifsSortedByDistance.forEach( motifDistancePair -> logger.debug( "motif: {}, distance: {}", motifDistancePair.getLeft(),
 					motifDistancePair.getRight() ) );
-			return getMotifsSortedByGraphDepth( motifsSortedByDistance );
+			return getMotifsSortedByGraphDepth( motifsSortedByDistance, Pair::getLeft, ancestryIndex );
 		}
 		finally
 		{
 			searchModel.getGraph().releaseRef( spotRef );
-			searchModel.getBranchGraph().releaseRef( branchRef );
 		}
 	}
 
-	private static List< Pair< BranchSpotTree, Double > > getMotifsSortedByGraphDepth( final List< Pair< BranchSpotTree, Double > > motifs )
+	private static BranchSpotTree createCandidateMotif( final int spotId, final int motifLength, final Spot spotRef,
+			final Model searchModel )
 	{
-		Map< Pair< BranchSpotTree, Double >, Integer > depthMap = new HashMap<>();
-		motifs.forEach( pair -> depthMap.put( pair, pair.getKey().getGraphDepth() ) );
-		return motifs.stream().sorted( Comparator.comparingInt( depthMap::get ) ).collect( Collectors.toList() );
+		Spot spot = searchModel.getGraph().vertices().getRefPool().getObject( spotId, spotRef );
+		BranchSpot branchSpot = searchModel.getBranchGraph().getBranchVertex( spot, searchModel.getBranchGraph().vertexRef() );
+		int startTimepoint = spot.getTimepoint();
+		int endTimepoint = startTimepoint + motifLength - 1;
+		return new BranchSpotTree( branchSpot, startTimepoint, endTimepoint, searchModel );
 	}
 
-	private static List< Pair< Integer, Double > > getSortedMotifIds( final RefDoubleMap< Spot > candidates, final RefPool< Spot > refPool )
+	/**
+	 * Sorts the given motifs by the depth of their branch spots in the branch graph. All motifs are expected to be part of the model of the
+	 * given index. The depths are looked up in the index instead of traversing the ancestors of each motif.
+	 */
+	private static < T > List< T > getMotifsSortedByGraphDepth( final List< T > motifs, final Function< T, BranchSpotTree > motifGetter,
+			final BranchGraphAncestryIndex ancestryIndex )
 	{
-		Map< Integer, Double > idsAndDistances = candidates.keySet().stream()
-				.collect( Collectors.toMap( refPool::getId, candidates::get ) );
-
-		return idsAndDistances.entrySet().stream()
-				.map( e -> Pair.of( e.getKey(), e.getValue() ) )
-				.sorted( Comparator.comparingDouble( Pair::getValue ) )
-				.collect( Collectors.toList() );
+		Map< T, Integer > depthMap = new HashMap<>();
+		motifs.forEach( motif -> depthMap.put( motif, ancestryIndex.getDepth( motifGetter.apply( motif ).getBranchSpot() ) ) );
+		return motifs.stream().sorted( Comparator.comparingInt( depthMap::get ) ).collect( Collectors.toList() );
 	}
 
 	/**
@@ -334,50 +533,82 @@ public class LineageMotifsUtils
 	 */
 	public static void tagLineageMotifs( final Model model, final String tagSetName,
 			final List< Pair< BranchSpotTree, Double > > lineageMotifs, final Color color1, final Color color2 )
+	{
+		tagLineageMotifs( model, tagSetName, lineageMotifs, color1, color2, null, null );
+	}
+
+	/**
+	 * Like {@link #tagLineageMotifs(Model, String, List, Color, Color)}, but reports the progress of tagging to the given
+	 * {@link StatusService} and stops tagging, if the given {@link Cancelable} is canceled.
+	 * <br>
+	 * The spots and links to be tagged are collected under the read lock of the model graph. They are then tagged in chunks of
+	 * {@link BulkTagAssignment#DEFAULT_CHUNK_SIZE}, such that the write lock is only held for one chunk at a time and views of the model remain
+	 * responsive, cf. {@link BulkTagAssignment#applyInChunks(String, java.util.Collection, int, StatusService, Cancelable)}. The tagging can be undone
+	 * in a single step.
+	 *
+	 * @param model The {@link Model} containing the graph data and tag sets.
+	 * @param tagSetName The name to be assigned to the new tag set.
+	 * @param lineageMotifs A {@link List} of {@link BranchSpotTree} objects representing the lineage motifs to tag.
+	 * @param color1 The {@link Color} to be used for the first motif (most similar).
+	 * @param color2 The {@link Color} to be used for the last motif (least similar).
+	 * @param statusService The {@link StatusService} to report the progress to. May be {@code null}.
+	 * @param cancelable The {@link Cancelable} to check for cancellation. May be {@code null}.
+	 */
+	public static void tagLineageMotifs( final Model model, final String tagSetName,
+			final List< Pair< BranchSpotTree, Double > > lineageMotifs, final Color color1, final Color color2,
+			final StatusService statusService, final Cancelable cancelable )
+	{
+		tagLineageMotifs( model, tagSetName, lineageMotifs, null, color1, color2, statusService, cancelable );
+	}
+
+	/**
+	 * Like {@link #tagLineageMotifs(Model, String, List, Color, Color, StatusService, Cancelable)}, but adds the scale factor, at which each
+	 * motif has been found, to the name of its tag, if {@code scaleFactors} is not {@code null}.
+	 */
+	private static void tagLineageMotifs( final Model model, final String tagSetName,
+			final List< Pair< BranchSpotTree, Double > > lineageMotifs, final List< Double > scaleFactors, final Color color1,
+			final Color color2, final StatusService statusService, final Cancelable cancelable )
 	{
 		final int count = lineageMotifs.size();
 		final List< Color > colors = ColorGenerator.interpolateColors( color1, color2, count );
-		final ReentrantReadWriteLock.WriteLock lock = model.getGraph().getLock().writeLock();
+		List< IndexedMotif > indexedMotifs = new ArrayList<>();
+		for ( int i = 0; i < count; i++ )
+		{
+			indexedMotifs.add( new IndexedMotif( lineageMotifs.get( i ), i ) );
+		}
+		indexedMotifs.sort( Comparator.comparingDouble( indexedMotif -> indexedMotif.motifAndDistance.getValue() ) );
+		Map< Integer, Integer > originalToNewIndexMap = new HashMap<>();
+		for ( int newIndex = 0; newIndex < indexedMotifs.size(); newIndex++ )
+		{
+			IndexedMotif indexMotif = indexedMotifs.get( newIndex );
+			originalToNewIndexMap.put( indexMotif.originalIndex, newIndex );
+		}
+
+		final List< Map.Entry< String, Integer > > tagsAndColors;
+		final BulkTagAssignment tagAssignment = new BulkTagAssignment( model, count );
+		final ReentrantReadWriteLock.ReadLock lock = model.getGraph().getLock().readLock();
 		lock.lock();
 		try
 		{
-			List< IndexedMotif > indexedMotifs = new ArrayList<>();
-			for ( int i = 0; i < count; i++ )
-			{
-				indexedMotifs.add( new IndexedMotif( lineageMotifs.get( i ), i ) );
-			}
-			indexedMotifs.sort( Comparator.comparingDouble( indexedMotif -> indexedMotif.motifAndDistance.getValue() ) );
 			AtomicInteger colorIndex = new AtomicInteger( 0 );
-			final List< Map.Entry< String, Integer > > tagsAndColors =
-					indexedMotifs.stream()
-							.map( indexedMotif -> Pair.of(
-									TAG_NAME + indexedMotif.motifAndDistance.getKey().getStartSpotName() + " (distance: "
-											+ String.format( "%.2f", indexedMotif.motifAndDistance.getValue() ) + ")",
-									colors.get( colorIndex.getAndIncrement() ).getRGB() ) )
-							.collect( Collectors.toList() );
-			TagSetStructure.TagSet tagSet = TagSetUtils.addNewTagSetToModel( model, tagSetName, tagsAndColors );
-
-			Map< Integer, Integer > originalToNewIndexMap = new HashMap<>();
-
-			for ( int newIndex = 0; newIndex < indexedMotifs.size(); newIndex++ )
-			{
-				IndexedMotif indexMotif = indexedMotifs.get( newIndex );
-				originalToNewIndexMap.put( indexMotif.originalIndex, newIndex );
-			}
-
-			AtomicInteger tagIndex = new AtomicInteger( 0 );
-			lineageMotifs.forEach( motif -> {
-				TagSetStructure.Tag tag = tagSet.getTags().get( originalToNewIndexMap.get( tagIndex.getAndIncrement() ) );
-				BranchSpotTree lineageMotif = motif.getLeft();
-				tagSpotsAndLinksWithinTimeInterval( lineageMotif, lineageMotif.getStartTimepoint(), lineageMotif.getEndTimepoint(), tagSet,
-						tag );
-			} );
-			model.setUndoPoint();
+			tagsAndColors = indexedMotifs.stream()
+					.map( indexedMotif -> Pair.of(
+							TAG_NAME + indexedMotif.motifAndDistance.getKey().getStartSpotName() + " (distance: "
+									+ String.format( "%.2f", indexedMotif.motifAndDistance.getValue() )
+									+ ( scaleFactors == null ? ""
+											: ", scaled by " + String.format( "%.2f",
+													1 / scaleFactors.get( indexedMotif.originalIndex ) ) )
+									+ ")",
+							colors.get( colorIndex.getAndIncrement() ).getRGB() ) )
+					.collect( Collectors.toList() );
+			for ( int i = 0; i < count; i++ )
+				collectSpotsAndLinksWithinTimeInterval( lineageMotifs.get( i ).getLeft(), originalToNewIndexMap.get( i ), tagAssignment );
 		}
 		finally
 		{
 			lock.unlock();
 		}
+		tagAssignment.applyInChunks( tagSetName, tagsAndColors, BulkTagAssignment.DEFAULT_CHUNK_SIZE, statusService, cancelable );
 		logger.info( "Tagged {} lineage motifs", count );
 	}
 
@@ -394,28 +625,131 @@ public class LineageMotifsUtils
 	 *                      representing a similar motif and a {@link Double} value denoting its similarity score
 	 * @param color1 the {@link ColorRGB} specifying the first color for color interpolation to generate motif tags
 	 * @param color2 the {@link ColorRGB} specifying the second color for color interpolation to generate motif tags
+	 * @param statusService the {@link StatusService} to report the progress of tagging to. May be {@code null}.
+	 * @param cancelable the {@link Cancelable} to check for cancellation of tagging. May be {@code null}.
 	 */
 	public static void tagMotifs( final Model model, final BranchSpotTree originalMotif,
 			final List< Pair< BranchSpotTree, Double > > similarMotifs, final ColorRGB color1, final ColorRGB color2,
-			final double scaleFactor )
+			final double scaleFactor, final StatusService statusService, final Cancelable cancelable )
+	{
+		String tagSetName = getTagSetName( originalMotif.getStartSpotName(), originalMotif, scaleFactor );
+		LineageMotifsUtils.tagLineageMotifs( model, tagSetName, similarMotifs, new Color( color1.getARGB() ),
+				new Color( color2.getARGB() ), statusService, cancelable );
+		Notification.showSuccess( "Finding similar lineage motifs finished.", "New tag set added: " + tagSetName );
+	}
+
+	/**
+	 * Tags similar lineage motifs found over a set of scale factors, cf.
+	 * {@link #getMostSimilarMotifs(BranchSpotTree, int, SimilarityMeasure, double[], boolean, Model)}.
+	 * <br>
+	 * Like {@link #tagMotifs(Model, BranchSpotTree, List, ColorRGB, ColorRGB, double, StatusService, Cancelable)}, but the name of the tag of each
+	 * similar motif contains the scale factor, at which it has been found, and the name of the tag set contains the range of the scale factors.
+	 *
+	 * @param model the {@link Model} containing the graph data and tag sets
+	 * @param originalMotif the {@link BranchSpotTree} representing the reference lineage motif
+	 * @param similarMotifs a {@link List} of triples where each triple consists of a {@link BranchSpotTree} representing a similar motif,
+	 *                      a {@link Double} value denoting its similarity score and the scale factor, at which it has been found
+	 * @param color1 the {@link ColorRGB} specifying the first color for color interpolation to generate motif tags
+	 * @param color2 the {@link ColorRGB} specifying the second color for color interpolation to generate motif tags
+	 * @param scaleFactors the scale factors, which have been applied to the similarity measure
+	 * @param statusService the {@link StatusService} to report the progress of tagging to. May be {@code null}.
+	 * @param cancelable the {@link Cancelable} to check for cancellation of tagging. May be {@code null}.
+	 */
+	public static void tagMotifs( final Model model, final BranchSpotTree originalMotif,
+			final List< Triple< BranchSpotTree, Double, Double > > similarMotifs, final ColorRGB color1, final ColorRGB color2,
+			final double[] scaleFactors, final StatusService statusService, final Cancelable cancelable )
 	{
-		String tagSetName;
 		int numberOfDivisions = originalMotif.getNumberOfDivisions();
-		String lineageMotifName = originalMotif.getStartSpotName();
 		String optionalPlural = numberOfDivisions == 1 ? "" : "s";
-		String optionalScale = scaleFactor == 1 ? "" : ", scaled by " + 1 / scaleFactor;
-		tagSetName = TAG_SET_NAME + lineageMotifName + " (" + numberOfDivisions + " division" + optionalPlural + optionalScale + ")";
-		LineageMotifsUtils.tagLineageMotifs( model, tagSetName, similarMotifs, new Color( color1.getARGB() ),
-				new Color( color2.getARGB() ) );
+		double minScale = 1 / Arrays.stream( scaleFactors ).max().orElse( 1 );
+		double maxScale = 1 / Arrays.stream( scaleFactors ).min().orElse( 1 );
+		String tagSetName = TAG_SET_NAME + originalMotif.getStartSpotName() + " (" + numberOfDivisions + " division" + optionalPlural
+				+ ", scaled by " + minScale + " to " + maxScale + ")";
+		List< Pair< BranchSpotTree, Double > > motifsAndDistances = similarMotifs.stream()
+				.map( motif -> Pair.of( motif.getLeft(), motif.getMiddle() ) ).collect( Collectors.toList() );
+		List< Double > bestScaleFactors = similarMotifs.stream().map( Triple::getRight ).collect( Collectors.toList() );
+		tagLineageMotifs( model, tagSetName, motifsAndDistances, bestScaleFactors, new Color( color1.getARGB() ),
+				new Color( color2.getARGB() ), statusService, cancelable );
+		Notification.showSuccess( "Finding similar lineage motifs finished.", "New tag set added: " + tagSetName );
+	}
+
+	/**
+	 * Tags the similar lineage motifs of each motif of a library of lineage motifs.
+	 * <br>
+	 * If {@code combined} is {@code false}, a tag set is added for each motif of the library like in
+	 * {@link #tagMotifs(Model, BranchSpotTree, List, ColorRGB, ColorRGB, double, StatusService, Cancelable)}, named by the given name of the motif.
+	 * Otherwise, a single tag set named {@code tagSetName} is added, which contains one tag per motif of the library named by the given name of
+	 * the motif. The colors of these tags are interpolated between {@code color1} and {@code color2}. Spots and links, which are part of similar
+	 * motifs of multiple library motifs, are tagged with the tag of the last of these library motifs.
+	 *
+	 * @param model the {@link Model} containing the graph data and tag sets
+	 * @param tagSetName the name of the combined tag set. Ignored, if {@code combined} is {@code false}
+	 * @param motifNames the names of the motifs of the library
+	 * @param originalMotifs the {@link BranchSpotTree}s representing the motifs of the library
+	 * @param similarMotifs for each motif of the library a {@link List} of pairs where each pair consists of a {@link BranchSpotTree}
+	 *                      representing a similar motif and a {@link Double} value denoting its similarity score
+	 * @param color1 the {@link ColorRGB} specifying the first color for color interpolation to generate motif tags
+	 * @param color2 the {@link ColorRGB} specifying the second color for color interpolation to generate motif tags
+	 * @param scaleFactor the scaling factor, which has been applied to the similarity measure
+	 * @param combined whether to add a single tag set for all motifs of the library or one tag set per motif
+	 * @param statusService the {@link StatusService} to report the progress of tagging to. May be {@code null}.
+	 * @param cancelable the {@link Cancelable} to check for cancellation of tagging. May be {@code null}.
+	 */
+	public static void tagMotifLibrary( final Model model, final String tagSetName, final List< String > motifNames,
+			final List< BranchSpotTree > originalMotifs, final List< List< Pair< BranchSpotTree, Double > > > similarMotifs,
+			final ColorRGB color1, final ColorRGB color2, final double scaleFactor, final boolean combined, final StatusService statusService,
+			final Cancelable cancelable )
+	{
+		if ( !combined )
+		{
+			for ( int i = 0; i < originalMotifs.size() && ( cancelable == null || !cancelable.isCanceled() ); i++ )
+				LineageMotifsUtils.tagLineageMotifs( model, getTagSetName( motifNames.get( i ), originalMotifs.get( i ), scaleFactor ),
+						similarMotifs.get( i ), new Color( color1.getARGB() ), new Color( color2.getARGB() ), statusService, cancelable );
+			Notification.showSuccess( "Finding similar lineage motifs finished.",
+					"New tag sets added for " + originalMotifs.size() + " lineage motifs." );
+			return;
+		}
+		final List< Color > colors =
+				ColorGenerator.interpolateColors( new Color( color1.getARGB() ), new Color( color2.getARGB() ), motifNames.size() );
+		final List< Map.Entry< String, Integer > > tagsAndColors = new ArrayList<>();
+		for ( int i = 0; i < motifNames.size(); i++ )
+			tagsAndColors.add( Pair.of( motifNames.get( i ), colors.get( i ).getRGB() ) );
+		final BulkTagAssignment tagAssignment = new BulkTagAssignment( model, motifNames.size() );
+		final ReentrantReadWriteLock.ReadLock lock = model.getGraph().getLock().readLock();
+		lock.lock();
+		try
+		{
+			for ( int i = 0; i < similarMotifs.size(); i++ )
+				for ( Pair< BranchSpotTree, Double > motif : similarMotifs.get( i ) )
+					collectSpotsAndLinksWithinTimeInterval( motif.getLeft(), i, tagAssignment );
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		tagAssignment.applyInChunks( tagSetName, tagsAndColors, BulkTagAssignment.DEFAULT_CHUNK_SIZE, statusService, cancelable );
+		logger.info( "Tagged similar lineage motifs of {} library motifs", motifNames.size() );
 		Notification.showSuccess( "Finding similar lineage motifs finished.", "New tag set added: " + tagSetName );
 	}
 
-	private static void tagSpotsAndLinksWithinTimeInterval( final BranchSpotTree lineageMotif, final int startTimepoint,
-			final int endTimepoint, final TagSetStructure.TagSet tagSet, final TagSetStructure.Tag tag )
+	static String getTagSetName( final String lineageMotifName, final BranchSpotTree originalMotif, final double scaleFactor )
+	{
+		int numberOfDivisions = originalMotif.getNumberOfDivisions();
+		String optionalPlural = numberOfDivisions == 1 ? "" : "s";
+		String optionalScale = scaleFactor == 1 ? "" : ", scaled by " + 1 / scaleFactor;
+		return TAG_SET_NAME + lineageMotifName + " (" + numberOfDivisions + " division" + optionalPlural + optionalScale + ")";
+	}
+
+	/**
+	 * Collects the spots of the given lineage motif and the links between them for the tag with the given index. Requires the read lock of
+	 * the model graph.
+	 */
+	private static void collectSpotsAndLinksWithinTimeInterval( final BranchSpotTree lineageMotif, final int tagIndex,
+			final BulkTagAssignment tagAssignment )
 	{
 		Model model = lineageMotif.getModel();
-		DepthFirstIterator< BranchSpot, BranchLink > depthFirstIterator = new DepthFirstIterator<>( model.getBranchGraph() );
-		depthFirstIterator.reset( lineageMotif.getBranchSpot() );
+		int startTimepoint = lineageMotif.getStartTimepoint();
+		int endTimepoint = lineageMotif.getEndTimepoint();
 		DepthFirstIteration.forRoot( model.getBranchGraph(), lineageMotif.getBranchSpot() ).forEach(
 				iterationStep -> {
 					BranchSpot branchSpot = iterationStep.node();
@@ -425,9 +759,9 @@ public class LineageMotifsUtils
 						Spot spot = spotIterator.next();
 						if ( spot.getTimepoint() < startTimepoint || spot.getTimepoint() > endTimepoint )
 							continue; // skip spots outside the time range
-						TagSetUtils.tagSpot( model, tagSet, tag, spot );
+						tagAssignment.addSpot( tagIndex, spot );
 						if ( spot.getTimepoint() < endTimepoint )
-							TagSetUtils.tagLinks( model, tagSet, tag, spot.outgoingEdges() );
+							tagAssignment.addLinks( tagIndex, spot.outgoingEdges() );
 					}
 					model.getBranchGraph().releaseIterator( spotIterator );
 				} );
@@ -445,27 +779,4 @@ public class LineageMotifsUtils
 			this.originalIndex = originalIndex;
 		}
 	}
-
-	private static class MotifContext
-	{
-		private final BranchSpotTree lineageMotif;
-
-		private final SimilarityMeasure similarityMeasure;
-
-		private final double scaleFactor;
-
-		private final int motifLength;
-
-		private final int timepointsUntilFirstDivision;
-
-		private MotifContext( final BranchSpotTree lineageMotif, final SimilarityMeasure similarityMeasure, final double scaleFactor,
-				final int motifLength, final int timepointsUntilFirstDivision )
-		{
-			this.lineageMotif = lineageMotif;
-			this.similarityMeasure = similarityMeasure;
-			this.scaleFactor = scaleFactor;
-			this.motifLength = motifLength;
-			this.timepointsUntilFirstDivision = timepointsUntilFirstDivision;
-		}
-	}
 }
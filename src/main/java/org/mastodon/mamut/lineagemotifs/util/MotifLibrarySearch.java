@@ -0,0 +1,217 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.apache.commons.lang3.tuple.Pair;
+import org.mastodon.RefPool;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.util.BoundedTopK;
+import org.mastodon.util.TreeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the candidate motifs most similar to each lineage motif of a library of lineage motifs in a single pass over the search model.
+ * <br>
+ * Searching the motifs of a library one by one iterates the search model and creates the candidate subtrees once per motif. This search
+ * collects the {@link CandidateAnchors} only once and evaluates all motifs per anchor in parallel, cf. {@link ParallelMotifSearch}.
+ * Motifs with the same {@link CandidateWindow} share the candidate subtree, which is moved along each branch with a
+ * {@link SlidingCroppedTree}.
+ * <br>
+ * The results are identical to searching each motif with {@link LineageMotifsUtils#getMostSimilarMotifIdsBySpotIteration} or
+ * {@link LineageMotifsUtils#getMostSimilarMotifIdsByBranchSpotIteration} without fingerprint filter, respectively.
+ */
+class MotifLibrarySearch
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private final Model searchModel;
+
+	private final List< BranchSpotTree > lineageMotifs;
+
+	private final double scaleFactor;
+
+	private final boolean isSpotIteration;
+
+	/**
+	 * Creates a new search for the given lineage motifs.
+	 *
+	 * @param lineageMotifs the lineage motifs to search for
+	 * @param scaleFactor a scaling factor (i.e. in time) to apply to the similarity measure
+	 * @param isSpotIteration whether to use spot iteration or branch spot iteration
+	 * @param searchModel the {@link Model} to search for similar lineage motifs
+	 */
+	MotifLibrarySearch( final List< BranchSpotTree > lineageMotifs, final double scaleFactor, final boolean isSpotIteration,
+			final Model searchModel )
+	{
+		this.searchModel = searchModel;
+		this.lineageMotifs = lineageMotifs;
+		this.scaleFactor = scaleFactor;
+		this.isSpotIteration = isSpotIteration;
+	}
+
+	/**
+	 * Finds the candidate motifs, which are most similar to each of the lineage motifs.
+	 *
+	 * @param similarityMeasure the {@link SimilarityMeasure} to use for calculating the similarity
+	 * @param maxNumberOfMotifs the maximum number of candidate motifs to return per lineage motif
+	 * @return a {@link List} with an entry for each lineage motif in the order of the lineage motifs. Each entry is a {@link List} of the ids
+	 * of the spots representing the most similar candidate motifs and their respective distance to the lineage motif, sorted by increasing
+	 * distance.
+	 */
+	List< List< Pair< Integer, Double > > > findMostSimilar( final SimilarityMeasure similarityMeasure, final int maxNumberOfMotifs )
+	{
+		StopWatch stopWatch = StopWatch.createStarted();
+		CandidateAnchors anchors = CandidateAnchors.of( searchModel, isSpotIteration );
+		Map< CandidateWindow, List< Integer > > groups = getMotifGroups();
+		List< CandidateWindow > windows = new ArrayList<>( groups.keySet() );
+		List< List< Integer > > motifIndices = new ArrayList<>( groups.values() );
+		int maxTimepoint = TreeUtils.getMaxTimepoint( searchModel );
+		BranchGraphSnapshot snapshot = new BranchGraphSnapshot( searchModel.getBranchGraph() );
+		int[] ownBranchSpotIds = getOwnBranchSpotIds();
+		List< BoundedTopK > topKs = new ArrayList<>( lineageMotifs.size() );
+		for ( int i = 0; i < lineageMotifs.size(); i++ )
+			topKs.add( new BoundedTopK( Math.max( 0, maxNumberOfMotifs ) ) );
+		AtomicInteger prunedCandidates = new AtomicInteger();
+
+		TaskExecutor taskExecutor = Parallelization.getTaskExecutor();
+		int numberOfTasks = Math.min( anchors.size(), taskExecutor.suggestNumberOfTasks() * 4 );
+		List< int[] > blocks = new ArrayList<>();
+		for ( int task = 0; task < numberOfTasks; task++ )
+			blocks.add( new int[] { ( int ) ( ( long ) anchors.size() * task / numberOfTasks ),
+					( int ) ( ( long ) anchors.size() * ( task + 1 ) / numberOfTasks ) } );
+		taskExecutor.forEach( blocks, block -> {
+			List< SlidingCroppedTree > slidingTrees = new ArrayList<>( windows.size() );
+			for ( int g = 0; g < windows.size(); g++ )
+				slidingTrees.add( new SlidingCroppedTree( snapshot ) );
+			for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+			{
+				int branchSpotId = anchors.getBranchSpotId( i );
+				int anchorTimepoint = anchors.getTimepoint( i );
+				for ( int g = 0; g < windows.size(); g++ )
+				{
+					CandidateWindow window = windows.get( g );
+					if ( !window.fits( anchorTimepoint, maxTimepoint ) )
+						continue;
+					Tree< Double > candidateMotif = slidingTrees.get( g ).moveTo( branchSpotId, anchorTimepoint + window.getStartOffset(),
+							anchorTimepoint + window.getEndOffset() );
+					for ( int m : motifIndices.get( g ) )
+					{
+						if ( ownBranchSpotIds[ m ] == branchSpotId )
+							continue;
+						BranchSpotTree lineageMotif = lineageMotifs.get( m );
+						BoundedTopK topK = topKs.get( m );
+						double lowerBound = similarityMeasure.computeLowerBound( lineageMotif, candidateMotif, scaleFactor );
+						if ( lowerBound > topK.getThreshold() + ParallelMotifSearch.PRUNING_TOLERANCE )
+						{
+							prunedCandidates.incrementAndGet();
+							continue;
+						}
+						topK.offer( i, similarityMeasure.compute( lineageMotif, candidateMotif, scaleFactor ) );
+					}
+				}
+			}
+		} );
+
+		List< List< Pair< Integer, Double > > > mostSimilar = new ArrayList<>( lineageMotifs.size() );
+		for ( int m = 0; m < lineageMotifs.size(); m++ )
+			mostSimilar.add( getSpotIdsAndDistances( anchors, topKs.get( m ),
+					CandidateWindow.of( lineageMotifs.get( m ), scaleFactor, isSpotIteration ) ) );
+		stopWatch.stop();
+		logger.debug(
+				"Searched {} lineage motifs in {} groups at {} candidate anchors in {} tasks in {} ms. Skipped {} candidates by their lower bound.",
+				lineageMotifs.size(), windows.size(), anchors.size(), numberOfTasks, stopWatch.getTime(), prunedCandidates.get() );
+		return mostSimilar;
+	}
+
+	private List< Pair< Integer, Double > > getSpotIdsAndDistances( final CandidateAnchors anchors, final BoundedTopK topK,
+			final CandidateWindow window )
+	{
+		int[] indices = topK.getSortedIds();
+		double[] distances = topK.getSortedScores();
+		List< Pair< Integer, Double > > spotIdsAndDistances = new ArrayList<>( indices.length );
+		BranchSpot branchRef = searchModel.getBranchGraph().vertexRef();
+		try
+		{
+			for ( int i = 0; i < indices.length; i++ )
+			{
+				int spotId = anchors.getStartSpotId( indices[ i ], window, branchRef );
+				if ( spotId >= 0 )
+					spotIdsAndDistances.add( Pair.of( spotId, distances[ i ] ) );
+			}
+		}
+		finally
+		{
+			searchModel.getBranchGraph().releaseRef( branchRef );
+		}
+		return spotIdsAndDistances;
+	}
+
+	/**
+	 * Groups the indices of the lineage motifs by the time interval of their candidates relative to the anchors.
+	 */
+	private Map< CandidateWindow, List< Integer > > getMotifGroups()
+	{
+		Map< CandidateWindow, List< Integer > > groups = new LinkedHashMap<>();
+		for ( int m = 0; m < lineageMotifs.size(); m++ )
+			groups.computeIfAbsent( CandidateWindow.of( lineageMotifs.get( m ), scaleFactor, isSpotIteration ), key -> new ArrayList<>() )
+					.add( m );
+		return groups;
+	}
+
+	/**
+	 * Gets the ids of the root branch spots of the lineage motifs, if they are part of the search model, or -1 otherwise.
+	 */
+	private int[] getOwnBranchSpotIds()
+	{
+		RefPool< BranchSpot > branchSpotPool = searchModel.getBranchGraph().vertices().getRefPool();
+		int[] ids = new int[ lineageMotifs.size() ];
+		for ( int m = 0; m < lineageMotifs.size(); m++ )
+		{
+			BranchSpotTree lineageMotif = lineageMotifs.get( m );
+			ids[ m ] = lineageMotif.getModel() == searchModel ? branchSpotPool.getId( lineageMotif.getBranchSpot() ) : -1;
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,240 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.apache.commons.lang3.tuple.Triple;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.util.BoundedTopK;
+import org.mastodon.util.TreeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the candidate motifs most similar to a lineage motif over a set of scale factors in a single pass over the search model.
+ * <br>
+ * Sweeping the scale factors by repeated searches iterates the search model once per scale factor. This search collects the
+ * {@link CandidateAnchors} only once and evaluates all scale factors per anchor. Scale factors with the same {@link CandidateWindow}
+ * share the candidate subtree, which is moved along each branch with a {@link SlidingCroppedTree}. Per anchor, the scale factors are
+ * evaluated in the order of increasing lower bounds of their distance. A scale factor is skipped, if its lower bound already exceeds the
+ * best distance of the anchor found so far or the distances of the most similar candidates found so far. Thus, most scale factors of an
+ * anchor usually only cost the computation of their lower bound.
+ * <br>
+ * Each anchor contributes at most one candidate motif, i.e. the one with the scale factor of the smallest distance. In case of equal
+ * distances, the scale factor given first is used. For a single scale factor, the results are identical to the results of
+ * {@link LineageMotifsUtils#getMostSimilarMotifIdsBySpotIteration} or {@link LineageMotifsUtils#getMostSimilarMotifIdsByBranchSpotIteration}
+ * without fingerprint filter, respectively.
+ */
+class MultiScaleMotifSearch
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private final Model searchModel;
+
+	private final BranchSpotTree lineageMotif;
+
+	private final double[] scaleFactors;
+
+	private final boolean isSpotIteration;
+
+	/**
+	 * Creates a new search for the given lineage motif.
+	 *
+	 * @param lineageMotif the lineage motif to search for
+	 * @param scaleFactors the scaling factors (i.e. in time) to apply to the similarity measure
+	 * @param isSpotIteration whether to use spot iteration or branch spot iteration
+	 * @param searchModel the {@link Model} to search for similar lineage motifs
+	 */
+	MultiScaleMotifSearch( final BranchSpotTree lineageMotif, final double[] scaleFactors, final boolean isSpotIteration,
+			final Model searchModel )
+	{
+		if ( scaleFactors.length == 0 )
+			throw new IllegalArgumentException( "At least one scale factor is required." );
+		this.searchModel = searchModel;
+		this.lineageMotif = lineageMotif;
+		this.scaleFactors = scaleFactors;
+		this.isSpotIteration = isSpotIteration;
+	}
+
+	/**
+	 * Finds the candidate motifs, which are most similar to the lineage motif at any of the scale factors.
+	 *
+	 * @param similarityMeasure the {@link SimilarityMeasure} to use for calculating the similarity
+	 * @param maxNumberOfMotifs the maximum number of candidate motifs to return
+	 * @return a {@link List} of the ids of the spots representing the most similar candidate motifs, their respective distance to the lineage
+	 * motif and the scale factor, at which this distance has been found, sorted by increasing distance
+	 */
+	List< Triple< Integer, Double, Double > > findMostSimilar( final SimilarityMeasure similarityMeasure, final int maxNumberOfMotifs )
+	{
+		StopWatch stopWatch = StopWatch.createStarted();
+		CandidateAnchors anchors = CandidateAnchors.of( searchModel, isSpotIteration );
+		List< CandidateWindow > windows = new ArrayList<>();
+		int[] windowIndices = getWindowIndices( windows );
+		int maxTimepoint = TreeUtils.getMaxTimepoint( searchModel );
+		BranchGraphSnapshot snapshot = new BranchGraphSnapshot( searchModel.getBranchGraph() );
+		int ownBranchSpotId = lineageMotif.getModel() == searchModel
+				? searchModel.getBranchGraph().vertices().getRefPool().getId( lineageMotif.getBranchSpot() )
+				: -1;
+		BoundedTopK topK = new BoundedTopK( Math.max( 0, maxNumberOfMotifs ) );
+		// NB: each anchor is evaluated by exactly one task, which is the only one writing its best scale
+		int[] bestScales = new int[ anchors.size() ];
+		AtomicInteger evaluatedScales = new AtomicInteger();
+		AtomicInteger prunedScales = new AtomicInteger();
+
+		TaskExecutor taskExecutor = Parallelization.getTaskExecutor();
+		int numberOfTasks = Math.min( anchors.size(), taskExecutor.suggestNumberOfTasks() * 4 );
+		List< int[] > blocks = new ArrayList<>();
+		for ( int task = 0; task < numberOfTasks; task++ )
+			blocks.add( new int[] { ( int ) ( ( long ) anchors.size() * task / numberOfTasks ),
+					( int ) ( ( long ) anchors.size() * ( task + 1 ) / numberOfTasks ) } );
+		taskExecutor.forEach( blocks, block -> {
+			List< SlidingCroppedTree > slidingTrees = new ArrayList<>( windows.size() );
+			List< Tree< Double > > candidateMotifs = new ArrayList<>( windows.size() );
+			for ( int w = 0; w < windows.size(); w++ )
+			{
+				slidingTrees.add( new SlidingCroppedTree( snapshot ) );
+				candidateMotifs.add( null );
+			}
+			double[] lowerBounds = new double[ scaleFactors.length ];
+			for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+			{
+				int branchSpotId = anchors.getBranchSpotId( i );
+				if ( branchSpotId == ownBranchSpotId )
+					continue;
+				int anchorTimepoint = anchors.getTimepoint( i );
+				for ( int w = 0; w < windows.size(); w++ )
+				{
+					CandidateWindow window = windows.get( w );
+					candidateMotifs.set( w, window.fits( anchorTimepoint, maxTimepoint )
+							? slidingTrees.get( w ).moveTo( branchSpotId, anchorTimepoint + window.getStartOffset(),
+									anchorTimepoint + window.getEndOffset() )
+							: null );
+				}
+				for ( int s = 0; s < scaleFactors.length; s++ )
+				{
+					Tree< Double > candidateMotif = candidateMotifs.get( windowIndices[ s ] );
+					lowerBounds[ s ] = candidateMotif == null ? Double.POSITIVE_INFINITY
+							: similarityMeasure.computeLowerBound( lineageMotif, candidateMotif, scaleFactors[ s ] );
+				}
+				double bestDistance = Double.POSITIVE_INFINITY;
+				int bestScale = -1;
+				for ( int s : getIndicesSortedByValue( lowerBounds ) )
+				{
+					double lowerBound = lowerBounds[ s ];
+					if ( lowerBound == Double.POSITIVE_INFINITY )
+						break;
+					if ( lowerBound > bestDistance || lowerBound > topK.getThreshold() + ParallelMotifSearch.PRUNING_TOLERANCE )
+					{
+						prunedScales.incrementAndGet();
+						continue;
+					}
+					evaluatedScales.incrementAndGet();
+					double distance = similarityMeasure.compute( lineageMotif, candidateMotifs.get( windowIndices[ s ] ), scaleFactors[ s ] );
+					if ( distance < bestDistance || ( distance == bestDistance && s < bestScale ) )
+					{
+						bestDistance = distance;
+						bestScale = s;
+					}
+				}
+				if ( bestScale < 0 )
+					continue;
+				bestScales[ i ] = bestScale;
+				topK.offer( i, bestDistance );
+			}
+		} );
+
+		List< Triple< Integer, Double, Double > > mostSimilar = getSpotIdsDistancesAndScales( anchors, topK, bestScales, windows,
+				windowIndices );
+		stopWatch.stop();
+		logger.debug(
+				"Searched {} scale factors in {} windows at {} candidate anchors in {} tasks in {} ms. Computed {} distances, skipped {} by their lower bound.",
+				scaleFactors.length, windows.size(), anchors.size(), numberOfTasks, stopWatch.getTime(), evaluatedScales.get(),
+				prunedScales.get() );
+		return mostSimilar;
+	}
+
+	private List< Triple< Integer, Double, Double > > getSpotIdsDistancesAndScales( final CandidateAnchors anchors, final BoundedTopK topK,
+			final int[] bestScales, final List< CandidateWindow > windows, final int[] windowIndices )
+	{
+		int[] indices = topK.getSortedIds();
+		double[] distances = topK.getSortedScores();
+		List< Triple< Integer, Double, Double > > spotIdsDistancesAndScales = new ArrayList<>( indices.length );
+		BranchSpot branchRef = searchModel.getBranchGraph().vertexRef();
+		try
+		{
+			for ( int i = 0; i < indices.length; i++ )
+			{
+				int scale = bestScales[ indices[ i ] ];
+				int spotId = anchors.getStartSpotId( indices[ i ], windows.get( windowIndices[ scale ] ), branchRef );
+				if ( spotId >= 0 )
+					spotIdsDistancesAndScales.add( Triple.of( spotId, distances[ i ], scaleFactors[ scale ] ) );
+			}
+		}
+		finally
+		{
+			searchModel.getBranchGraph().releaseRef( branchRef );
+		}
+		return spotIdsDistancesAndScales;
+	}
+
+	/**
+	 * Collects the distinct windows of the scale factors into the given list and returns the index of the window of each scale factor.
+	 */
+	private int[] getWindowIndices( final List< CandidateWindow > windows )
+	{
+		Map< CandidateWindow, Integer > windowIndices = new LinkedHashMap<>();
+		int[] indices = new int[ scaleFactors.length ];
+		for ( int s = 0; s < scaleFactors.length; s++ )
+			indices[ s ] = windowIndices.computeIfAbsent( CandidateWindow.of( lineageMotif, scaleFactors[ s ], isSpotIteration ),
+					window -> windowIndices.size() );
+		windows.addAll( windowIndices.keySet() );
+		return indices;
+	}
+
+	private static int[] getIndicesSortedByValue( final double[] values )
+	{
+		return IntStream.range( 0, values.length ).boxed().sorted( ( i1, i2 ) -> Double.compare( values[ i1 ], values[ i2 ] ) )
+				.mapToInt( Integer::intValue ).toArray();
+	}
+}
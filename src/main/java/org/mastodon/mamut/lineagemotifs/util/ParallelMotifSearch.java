@@ -0,0 +1,178 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.apache.commons.lang3.tuple.Pair;
+import org.mastodon.RefPool;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.util.BoundedTopK;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the candidate motifs most similar to a lineage motif in parallel.
+ * <br>
+ * The search works in two phases:
+ * <ol>
+ *     <li>The candidate motifs are collected on the calling thread by {@link #addCandidate(Spot, BranchSpot, int, int)}, i.e. the ids of
+ *     their start spots and root branch spots together with their time intervals.</li>
+ *     <li>{@link #findMostSimilar(BranchSpotTree, SimilarityMeasure, double, int)} takes a {@link BranchGraphSnapshot} of the search
+ *     model and evaluates the candidates on the {@link Parallelization} executor. Each task processes a contiguous block of candidates and creates
+ *     the cropped subtrees of its candidates from the snapshot, such that the graph is not accessed concurrently. Each task uses its own
+ *     {@link SlidingCroppedTree}, which is updated incrementally for consecutive candidates on the same branch, as added by the spot
+ *     iteration.</li>
+ * </ol>
+ */
+class ParallelMotifSearch
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/**
+	 * Absolute tolerance for comparing lower bounds with distances to account for different rounding errors of their computations.
+	 */
+	static final double PRUNING_TOLERANCE = 1e-9;
+
+	private final Model searchModel;
+
+	private final RefPool< Spot > spotPool;
+
+	private final RefPool< BranchSpot > branchSpotPool;
+
+	private final List< Candidate > candidates = new ArrayList<>();
+
+	ParallelMotifSearch( final Model searchModel )
+	{
+		this.searchModel = searchModel;
+		this.spotPool = searchModel.getGraph().vertices().getRefPool();
+		this.branchSpotPool = searchModel.getBranchGraph().vertices().getRefPool();
+	}
+
+	/**
+	 * Adds a candidate motif to this search.
+	 *
+	 * @param spot the spot, which represents the candidate motif in the result
+	 * @param branchSpot the root branch spot of the candidate motif
+	 * @param startTimepoint the start timepoint of the candidate motif (inclusive)
+	 * @param endTimepoint the end timepoint of the candidate motif (inclusive)
+	 */
+	void addCandidate( final Spot spot, final BranchSpot branchSpot, final int startTimepoint, final int endTimepoint )
+	{
+		candidates.add( new Candidate( spotPool.getId( spot ), branchSpotPool.getId( branchSpot ), startTimepoint, endTimepoint ) );
+	}
+
+	/**
+	 * Finds the candidate motifs, which are most similar to the given lineage motif.
+	 * <br>
+	 * The best candidates found so far are kept in a {@link BoundedTopK}. Before computing the similarity of a candidate, its
+	 * {@link SimilarityMeasure#computeLowerBound(Tree, Tree, Double) lower bound} is compared to the distance of the current k-th best
+	 * candidate. Candidates that cannot enter the top k are dropped without computing the full similarity.
+	 *
+	 * @param lineageMotif the lineage motif
+	 * @param similarityMeasure the {@link SimilarityMeasure} to use for calculating the similarity
+	 * @param scaleFactor a scaling factor (i.e. in time) to apply to the similarity measure
+	 * @param maxNumberOfMotifs the maximum number of candidate motifs to return
+	 * @return a {@link List} of the ids of the spots representing the most similar candidate motifs and their respective distance to the
+	 * lineage motif, sorted by increasing distance. Candidates with equal distance are sorted in the order they were added.
+	 */
+	List< Pair< Integer, Double > > findMostSimilar( final BranchSpotTree lineageMotif, final SimilarityMeasure similarityMeasure,
+			final double scaleFactor, final int maxNumberOfMotifs )
+	{
+		StopWatch stopWatch = StopWatch.createStarted();
+		BranchGraphSnapshot snapshot = new BranchGraphSnapshot( searchModel.getBranchGraph() );
+		BoundedTopK topK = new BoundedTopK( Math.max( 0, maxNumberOfMotifs ) );
+		AtomicInteger prunedCandidates = new AtomicInteger();
+
+		TaskExecutor taskExecutor = Parallelization.getTaskExecutor();
+		int numberOfTasks = Math.min( candidates.size(), taskExecutor.suggestNumberOfTasks() * 4 );
+		List< int[] > blocks = new ArrayList<>();
+		for ( int task = 0; task < numberOfTasks; task++ )
+			blocks.add( new int[] { ( int ) ( ( long ) candidates.size() * task / numberOfTasks ),
+					( int ) ( ( long ) candidates.size() * ( task + 1 ) / numberOfTasks ) } );
+		taskExecutor.forEach( blocks, block -> {
+			SlidingCroppedTree slidingTree = new SlidingCroppedTree( snapshot );
+			for ( int i = block[ 0 ]; i < block[ 1 ]; i++ )
+			{
+				Candidate candidate = candidates.get( i );
+				Tree< Double > candidateMotif =
+						slidingTree.moveTo( candidate.branchSpotId, candidate.startTimepoint, candidate.endTimepoint );
+				// NB: ties are resolved by the candidate index, thus only candidates with a lower bound above the threshold are dropped
+				double lowerBound = similarityMeasure.computeLowerBound( lineageMotif, candidateMotif, scaleFactor );
+				if ( lowerBound > topK.getThreshold() + PRUNING_TOLERANCE )
+				{
+					prunedCandidates.incrementAndGet();
+					continue;
+				}
+				topK.offer( i, similarityMeasure.compute( lineageMotif, candidateMotif, scaleFactor ) );
+			}
+		} );
+
+		int[] indices = topK.getSortedIds();
+		double[] distances = topK.getSortedScores();
+		List< Pair< Integer, Double > > mostSimilar = new ArrayList<>( indices.length );
+		for ( int i = 0; i < indices.length; i++ )
+			mostSimilar.add( Pair.of( candidates.get( indices[ i ] ).spotId, distances[ i ] ) );
+		stopWatch.stop();
+		logger.debug( "Found {} most similar of {} candidate motifs in {} tasks in {} ms. Skipped {} candidates by their lower bound.",
+				mostSimilar.size(), candidates.size(), numberOfTasks, stopWatch.getTime(), prunedCandidates.get() );
+		return mostSimilar;
+	}
+
+	private static class Candidate
+	{
+		private final int spotId;
+
+		private final int branchSpotId;
+
+		private final int startTimepoint;
+
+		private final int endTimepoint;
+
+		private Candidate( final int spotId, final int branchSpotId, final int startTimepoint, final int endTimepoint )
+		{
+			this.spotId = spotId;
+			this.branchSpotId = branchSpotId;
+			this.startTimepoint = startTimepoint;
+			this.endTimepoint = endTimepoint;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import java.io.File;
+
+/**
+ * A lineage motif found in a Mastodon project by a {@link CrossProjectMotifSearch}.
+ * <br>
+ * The match does not hold a reference to the model of the project, such that the model can be released after the search.
+ */
+public class ProjectMotifMatch
+{
+	private final File projectFile;
+
+	private final int spotId;
+
+	private final String spotLabel;
+
+	private final int startTimepoint;
+
+	private final int endTimepoint;
+
+	private final double distance;
+
+	ProjectMotifMatch( final File projectFile, final int spotId, final String spotLabel, final int startTimepoint, final int endTimepoint,
+			final double distance )
+	{
+		this.projectFile = projectFile;
+		this.spotId = spotId;
+		this.spotLabel = spotLabel;
+		this.startTimepoint = startTimepoint;
+		this.endTimepoint = endTimepoint;
+		this.distance = distance;
+	}
+
+	/**
+	 * Gets the file of the project, in which the motif has been found.
+	 */
+	public File getProjectFile()
+	{
+		return projectFile;
+	}
+
+	/**
+	 * Gets the id of the spot starting the motif in the model graph of the project.
+	 */
+	int getSpotId()
+	{
+		return spotId;
+	}
+
+	/**
+	 * Gets the label of the spot starting the motif.
+	 */
+	public String getSpotLabel()
+	{
+		return spotLabel;
+	}
+
+	public int getStartTimepoint()
+	{
+		return startTimepoint;
+	}
+
+	public int getEndTimepoint()
+	{
+		return endTimepoint;
+	}
+
+	/**
+	 * Gets the distance of the motif to the searched lineage motif.
+	 */
+	public double getDistance()
+	{
+		return distance;
+	}
+
+	@Override
+	public String toString()
+	{
+		return projectFile.getName() + ": " + spotLabel + " [" + startTimepoint + ", " + endTimepoint + "], distance: " + distance;
+	}
+}
@@ -0,0 +1,172 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+
+/**
+ * A subtree of a {@link BranchGraphSnapshot} cropped to a time interval, which can be moved forward in time incrementally.
+ * <br>
+ * Consecutive candidates of the spot iteration motif search start at neighbouring spots on the same branch and share almost all of their
+ * cropped subtree. Moving the time interval of such a tree forward only changes the attribute of the root, since it is the only node
+ * overlapping the start of the interval, and of the nodes reaching the end of the interval ("open" nodes). Open nodes, which end before
+ * the end of the new interval, are closed and their children are added. The costs of moving the interval are thus proportional to the
+ * number of changed nodes instead of the size of the subtree.
+ * <br>
+ * The tree returned by {@link #moveTo(int, int, int)} is modified by subsequent calls of this method. It has the same structure and
+ * attributes as a {@link BranchSpotTree} created with the same parameters. This class is not thread-safe.
+ */
+class SlidingCroppedTree
+{
+	private final BranchGraphSnapshot snapshot;
+
+	private Node root;
+
+	private int startTimepoint;
+
+	private int endTimepoint;
+
+	private List< Node > openNodes = new ArrayList<>();
+
+	private List< Node > remainingOpenNodes = new ArrayList<>();
+
+	SlidingCroppedTree( final BranchGraphSnapshot snapshot )
+	{
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Moves this tree to the subtree starting at the branch spot with the given id cropped to the given time interval.
+	 * <br>
+	 * If the branch spot is the same as in the previous call and the interval has not moved backwards, the tree is updated incrementally.
+	 * Otherwise, it is rebuilt.
+	 *
+	 * @param branchSpotId the id of the root branch spot of the subtree
+	 * @param startTimepoint the start timepoint of the subtree (inclusive)
+	 * @param endTimepoint the end timepoint of the subtree (inclusive)
+	 * @return the cropped subtree
+	 * @throws IllegalArgumentException if the branch spot does not overlap with the given time interval
+	 */
+	Tree< Double > moveTo( final int branchSpotId, final int startTimepoint, final int endTimepoint )
+	{
+		if ( snapshot.getFirstTimepoint( branchSpotId ) > endTimepoint )
+			throw new IllegalArgumentException( "The first timepoint of the given branchSpot " + snapshot.getFirstTimepoint( branchSpotId )
+					+ " is greater than the given endTimepoint (" + endTimepoint + "). This is not allowed." );
+		if ( snapshot.getLastTimepoint( branchSpotId ) < startTimepoint )
+			throw new IllegalArgumentException( "The end timepoint of the given branchSpot (" + snapshot.getLastTimepoint( branchSpotId )
+					+ ") is less than the startTimepoint of this BranchSpotTree (" + startTimepoint + "). This is not allowed." );
+		boolean incremental = root != null && root.branchSpotId == branchSpotId && startTimepoint >= this.startTimepoint
+				&& endTimepoint >= this.endTimepoint;
+		this.startTimepoint = startTimepoint;
+		this.endTimepoint = endTimepoint;
+		if ( incremental )
+			slide();
+		else
+		{
+			openNodes.clear();
+			root = createNode( branchSpotId );
+		}
+		return root;
+	}
+
+	private void slide()
+	{
+		// NB: the root is the only node that may start before the start timepoint
+		root.attribute = getCroppedDuration( root.branchSpotId );
+		List< Node > nodes = openNodes;
+		openNodes = remainingOpenNodes;
+		for ( Node node : nodes )
+		{
+			node.attribute = getCroppedDuration( node.branchSpotId );
+			if ( snapshot.getLastTimepoint( node.branchSpotId ) >= endTimepoint )
+				openNodes.add( node );
+			else
+				addChildren( node );
+		}
+		nodes.clear();
+		remainingOpenNodes = nodes;
+	}
+
+	private Node createNode( final int branchSpotId )
+	{
+		Node node = new Node( branchSpotId, getCroppedDuration( branchSpotId ) );
+		// NB: the children of an open node start after the end timepoint and are added, when the node is closed
+		if ( snapshot.getLastTimepoint( branchSpotId ) >= endTimepoint )
+			openNodes.add( node );
+		else
+			addChildren( node );
+		return node;
+	}
+
+	private void addChildren( final Node node )
+	{
+		for ( int childId : snapshot.getChildren( node.branchSpotId ) )
+			if ( snapshot.getFirstTimepoint( childId ) <= endTimepoint )
+				node.children.add( createNode( childId ) );
+	}
+
+	private double getCroppedDuration( final int branchSpotId )
+	{
+		int start = Math.max( startTimepoint, snapshot.getFirstTimepoint( branchSpotId ) );
+		int end = Math.min( endTimepoint, snapshot.getLastTimepoint( branchSpotId ) );
+		return end - start + 1;
+	}
+
+	private static class Node implements Tree< Double >
+	{
+		private final int branchSpotId;
+
+		private double attribute;
+
+		private final List< Tree< Double > > children = new ArrayList<>();
+
+		private Node( final int branchSpotId, final double attribute )
+		{
+			this.branchSpotId = branchSpotId;
+			this.attribute = attribute;
+		}
+
+		@Override
+		public Collection< Tree< Double > > getChildren()
+		{
+			return children;
+		}
+
+		@Override
+		public Double getAttribute()
+		{
+			return attribute;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the {@code k} entries with the smallest scores out of a stream of entries, each consisting of an {@code int} id and a {@code double}
+ * score. Entries with equal scores are ordered by their id.
+ * <br>
+ * The entries are stored in a binary max-heap of primitive arrays, thus the memory consumption is in O(k) independent of the number of
+ * offered entries and no boxing takes place.
+ * <br>
+ * {@link #getThreshold()} returns the score of the current k-th best entry, which can be used to skip the computation of the score of
+ * entries that cannot enter the top k anyway. This class is thread-safe.
+ */
+public class BoundedTopK
+{
+	private final int[] ids;
+
+	private final double[] scores;
+
+	private int size = 0;
+
+	private volatile double threshold = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Creates a new heap, which keeps the given number of entries.
+	 * @param k the maximum number of entries to keep
+	 */
+	public BoundedTopK( final int k )
+	{
+		if ( k < 0 )
+			throw new IllegalArgumentException( "The number of entries to keep must not be negative, but is " + k + "." );
+		this.ids = new int[ k ];
+		this.scores = new double[ k ];
+	}
+
+	/**
+	 * Gets the score of the k-th best entry, if there are already k entries, or {@link Double#POSITIVE_INFINITY} otherwise.
+	 * <br>
+	 * An entry with a score greater than this threshold cannot enter the top k.
+	 *
+	 * @return the threshold
+	 */
+	public double getThreshold()
+	{
+		return threshold;
+	}
+
+	/**
+	 * Offers the given entry. The entry is kept, if there are less than k entries or if it is better than the current k-th best entry.
+	 *
+	 * @param id the id of the entry
+	 * @param score the score of the entry, smaller is better
+	 * @return {@code true}, if the entry has been kept, {@code false} otherwise
+	 */
+	public synchronized boolean offer( final int id, final double score )
+	{
+		if ( ids.length == 0 )
+			return false;
+		if ( size < ids.length )
+		{
+			ids[ size ] = id;
+			scores[ size ] = score;
+			siftUp( size++ );
+		}
+		else
+		{
+			if ( !isWorse( 0, id, score ) )
+				return false;
+			ids[ 0 ] = id;
+			scores[ 0 ] = score;
+			siftDown( 0 );
+		}
+		if ( size == ids.length )
+			threshold = scores[ 0 ];
+		return true;
+	}
+
+	/**
+	 * Gets the number of entries kept.
+	 *
+	 * @return the number of entries
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Gets the ids of the entries kept, sorted by increasing score.
+	 *
+	 * @return the sorted ids
+	 */
+	public synchronized int[] getSortedIds()
+	{
+		int[] sortedIds = Arrays.copyOf( ids, size );
+		sort( sortedIds, Arrays.copyOf( scores, size ) );
+		return sortedIds;
+	}
+
+	/**
+	 * Gets the scores of the entries kept, sorted increasingly, i.e. in the same order as {@link #getSortedIds()}.
+	 *
+	 * @return the sorted scores
+	 */
+	public synchronized double[] getSortedScores()
+	{
+		double[] sortedScores = Arrays.copyOf( scores, size );
+		sort( Arrays.copyOf( ids, size ), sortedScores );
+		return sortedScores;
+	}
+
+	/**
+	 * Sorts the given copy of the heap by increasing score and id, by repeatedly moving the worst entry behind the remaining heap.
+	 */
+	private static void sort( final int[] ids, final double[] scores )
+	{
+		for ( int last = ids.length - 1; last > 0; last-- )
+		{
+			swap( ids, scores, 0, last );
+			siftDown( ids, scores, last, 0 );
+		}
+	}
+
+	/**
+	 * Returns {@code true}, if the entry at the given heap position is worse than the given entry.
+	 */
+	private boolean isWorse( final int position, final int id, final double score )
+	{
+		return isWorse( ids, scores, position, id, score );
+	}
+
+	private static boolean isWorse( final int[] ids, final double[] scores, final int position, final int id, final double score )
+	{
+		int comparison = Double.compare( scores[ position ], score );
+		return comparison > 0 || ( comparison == 0 && ids[ position ] > id );
+	}
+
+	private void siftUp( int position )
+	{
+		while ( position > 0 )
+		{
+			int parent = ( position - 1 ) / 2;
+			if ( !isWorse( position, ids[ parent ], scores[ parent ] ) )
+				return;
+			swap( ids, scores, position, parent );
+			position = parent;
+		}
+	}
+
+	private void siftDown( final int position )
+	{
+		siftDown( ids, scores, size, position );
+	}
+
+	private static void siftDown( final int[] ids, final double[] scores, final int size, int position )
+	{
+		while ( true )
+		{
+			int worst = position;
+			for ( int child = 2 * position + 1; child <= 2 * position + 2 && child < size; child++ )
+				if ( isWorse( ids, scores, child, ids[ worst ], scores[ worst ] ) )
+					worst = child;
+			if ( worst == position )
+				return;
+			swap( ids, scores, position, worst );
+			position = worst;
+		}
+	}
+
+	private static void swap( final int[] ids, final double[] scores, final int a, final int b )
+	{
+		int id = ids[ a ];
+		ids[ a ] = ids[ b ];
+		ids[ b ] = id;
+		double score = scores[ a ];
+		scores[ a ] = scores[ b ];
+		scores[ b ] = score;
+	}
+}
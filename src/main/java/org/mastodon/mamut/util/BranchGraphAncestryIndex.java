@@ -0,0 +1,631 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.util;
+
+import java.util.Arrays;
+
+import org.mastodon.RefPool;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.mamut.model.branch.BranchLink;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+
+/**
+ * Index over the {@link BranchSpot}s of a {@link ModelBranchGraph} that answers depth, ancestor and lowest common ancestor queries in
+ * constant time, instead of requiring a traversal of the branch graph per query.
+ * <br>
+ * The index consists of
+ * <ul>
+ *     <li>the depth, the parent and the subtree size of each branch spot,</li>
+ *     <li>a nested interval per subtree, such that subtree membership is an interval test, cf. {@link #getSubtreeStart(BranchSpot)} and
+ *     {@link #getSubtreeEnd(BranchSpot)}, and</li>
+ *     <li>an Euler tour of each tree together with a sparse table over the depths along the tour for lowest common ancestor queries.
+ *     The tour is built on the first lowest common ancestor query, since the sparse table requires {@code O(n log n)} memory.</li>
+ * </ul>
+ * The index implements {@link GraphListener}. The owner of the index, e.g. a controller that keeps the index over several edits of the
+ * model, registers it as a listener of the branch graph and removes it again, when the index is no longer needed. Adding or removing a
+ * leaf, i.e. an isolated branch spot or a link to a branch spot without children, updates the depths, the subtree sizes and the subtree
+ * intervals locally. Intervals are labelled with gaps, such that a new leaf fits into the interval of its parent without relabelling the
+ * other branch spots. Additions only discard the Euler tour, which is rebuilt with the next lowest common ancestor query. Removals keep it,
+ * since a removed leaf never is the branch spot of minimal depth between two remaining branch spots of the tour. Any other change, e.g.
+ * linking two subtrees or a rebuild of the branch graph, invalidates the whole index, which is then lazily rebuilt with the next query.
+ * An index, which is not registered, represents the state of the branch graph at the time of its construction.
+ * <br>
+ * Queries access the branch graph, if the index needs to be rebuilt. Callers should therefore hold the read lock of the model graph.
+ */
+public class BranchGraphAncestryIndex implements GraphListener< BranchSpot, BranchLink >
+{
+	private static final int NOT_INDEXED = -1;
+
+	private static final int NO_PARENT = -1;
+
+	// NB: distance between consecutive labels after a rebuild. Each leaf added below a branch spot takes a third of its free labels.
+	private static final long LABEL_GAP = 1L << 24;
+
+	private final ModelBranchGraph branchGraph;
+
+	private final RefPool< BranchSpot > refPool;
+
+	private volatile Structure structure;
+
+	/**
+	 * Builds a new index for the given branch graph.
+	 * <br>
+	 * The branch graph is expected to be up-to-date.
+	 *
+	 * @param branchGraph the branch graph
+	 */
+	public BranchGraphAncestryIndex( final ModelBranchGraph branchGraph )
+	{
+		this.branchGraph = branchGraph;
+		this.refPool = branchGraph.vertices().getRefPool();
+		this.structure = new Structure( branchGraph );
+	}
+
+	/**
+	 * Gets the depth of the given branch spot, i.e. the number of its ancestors in the branch graph. Roots have depth 0.
+	 *
+	 * @param branchSpot the branch spot
+	 * @return the depth of the branch spot
+	 * @throws IllegalArgumentException if the branch spot is not part of this index
+	 */
+	public int getDepth( final BranchSpot branchSpot )
+	{
+		Structure current = getStructure();
+		return current.depths[ current.checkIndexed( refPool.getId( branchSpot ) ) ];
+	}
+
+	/**
+	 * Checks, if {@code ancestor} is an ancestor of {@code descendant}, i.e. if {@code descendant} is part of the subtree starting at
+	 * {@code ancestor}. Each branch spot is an ancestor of itself.
+	 *
+	 * @param ancestor the potential ancestor
+	 * @param descendant the potential descendant
+	 * @return {@code true}, if {@code ancestor} is an ancestor of {@code descendant}, {@code false} otherwise
+	 * @throws IllegalArgumentException if one of the branch spots is not part of this index
+	 */
+	public boolean isAncestor( final BranchSpot ancestor, final BranchSpot descendant )
+	{
+		Structure current = getStructure();
+		return current.isAncestor( current.checkIndexed( refPool.getId( ancestor ) ),
+				current.checkIndexed( refPool.getId( descendant ) ) );
+	}
+
+	/**
+	 * Gets the start of the subtree interval of the given branch spot.
+	 * <br>
+	 * The subtree interval of a branch spot contains the subtree intervals of all its descendants and is disjoint from the subtree
+	 * intervals of all other branch spots, which are neither its ancestors nor its descendants. Thus, a branch spot {@code d} is part of
+	 * the subtree starting at a branch spot {@code a}, iff {@code getSubtreeStart( a ) <= getSubtreeStart( d )} and
+	 * {@code getSubtreeEnd( d ) <= getSubtreeEnd( a )}. The bounds are only comparable to bounds, which have been obtained from this index
+	 * without a change of the branch graph in between.
+	 *
+	 * @param branchSpot the branch spot
+	 * @return the start of the subtree interval (inclusive)
+	 * @throws IllegalArgumentException if the branch spot is not part of this index
+	 */
+	public long getSubtreeStart( final BranchSpot branchSpot )
+	{
+		Structure current = getStructure();
+		return current.subtreeStarts[ current.checkIndexed( refPool.getId( branchSpot ) ) ];
+	}
+
+	/**
+	 * Gets the end of the subtree interval of the given branch spot, cf. {@link #getSubtreeStart(BranchSpot)}.
+	 *
+	 * @param branchSpot the branch spot
+	 * @return the end of the subtree interval (inclusive)
+	 * @throws IllegalArgumentException if the branch spot is not part of this index
+	 */
+	public long getSubtreeEnd( final BranchSpot branchSpot )
+	{
+		Structure current = getStructure();
+		return current.subtreeEnds[ current.checkIndexed( refPool.getId( branchSpot ) ) ];
+	}
+
+	/**
+	 * Gets the number of branch spots in the subtree starting at the given branch spot, including the branch spot itself.
+	 *
+	 * @param branchSpot the branch spot
+	 * @return the size of the subtree
+	 * @throws IllegalArgumentException if the branch spot is not part of this index
+	 */
+	public int getSubtreeSize( final BranchSpot branchSpot )
+	{
+		Structure current = getStructure();
+		return current.subtreeSizes[ current.checkIndexed( refPool.getId( branchSpot ) ) ];
+	}
+
+	/**
+	 * Gets the lowest common ancestor of the two given branch spots, i.e. the deepest branch spot, which is an ancestor of both.
+	 *
+	 * @param branchSpot1 the first branch spot
+	 * @param branchSpot2 the second branch spot
+	 * @param ref a reference object that is used to return the lowest common ancestor
+	 * @return the lowest common ancestor or {@code null}, if the branch spots are part of different trees
+	 * @throws IllegalArgumentException if one of the branch spots is not part of this index
+	 */
+	public BranchSpot getLowestCommonAncestor( final BranchSpot branchSpot1, final BranchSpot branchSpot2, final BranchSpot ref )
+	{
+		Structure current = getStructure();
+		int id1 = current.checkIndexed( refPool.getId( branchSpot1 ) );
+		int id2 = current.checkIndexed( refPool.getId( branchSpot2 ) );
+		if ( current.rootIds[ id1 ] != current.rootIds[ id2 ] )
+			return null;
+		int lowestCommonAncestorId;
+		// NB: the interval test also covers leaves, which have been added after the Euler tour has been built
+		if ( current.isAncestor( id1, id2 ) )
+			lowestCommonAncestorId = id1;
+		else if ( current.isAncestor( id2, id1 ) )
+			lowestCommonAncestorId = id2;
+		else
+			lowestCommonAncestorId = getEulerTour( current ).getLowestCommonAncestorId( id1, id2 );
+		return refPool.getObject( lowestCommonAncestorId, ref );
+	}
+
+	@Override
+	public synchronized void graphRebuilt()
+	{
+		structure = null;
+	}
+
+	@Override
+	public synchronized void vertexAdded( final BranchSpot vertex )
+	{
+		Structure current = structure;
+		if ( current != null && !current.addRoot( refPool.getId( vertex ) ) )
+			structure = null;
+	}
+
+	@Override
+	public synchronized void vertexRemoved( final BranchSpot vertex )
+	{
+		Structure current = structure;
+		if ( current != null && !current.removeRoot( refPool.getId( vertex ) ) )
+			structure = null;
+	}
+
+	@Override
+	public synchronized void edgeAdded( final BranchLink edge )
+	{
+		Structure current = structure;
+		if ( current == null )
+			return;
+		BranchSpot ref = branchGraph.vertexRef();
+		try
+		{
+			int sourceId = refPool.getId( edge.getSource( ref ) );
+			int targetId = refPool.getId( edge.getTarget( ref ) );
+			if ( !current.attachLeaf( sourceId, targetId ) )
+				structure = null;
+		}
+		finally
+		{
+			branchGraph.releaseRef( ref );
+		}
+	}
+
+	@Override
+	public synchronized void edgeRemoved( final BranchLink edge )
+	{
+		Structure current = structure;
+		if ( current == null )
+			return;
+		BranchSpot ref = branchGraph.vertexRef();
+		try
+		{
+			int sourceId = refPool.getId( edge.getSource( ref ) );
+			int targetId = refPool.getId( edge.getTarget( ref ) );
+			if ( !current.detachLeaf( sourceId, targetId ) )
+				structure = null;
+		}
+		finally
+		{
+			branchGraph.releaseRef( ref );
+		}
+	}
+
+	private Structure getStructure()
+	{
+		Structure current = structure;
+		if ( current != null )
+			return current;
+		synchronized ( this )
+		{
+			if ( structure == null )
+				structure = new Structure( branchGraph );
+			return structure;
+		}
+	}
+
+	private EulerTour getEulerTour( final Structure current )
+	{
+		EulerTour eulerTour = current.eulerTour;
+		if ( eulerTour != null )
+			return eulerTour;
+		synchronized ( this )
+		{
+			if ( current.eulerTour == null )
+				current.eulerTour = new EulerTour( branchGraph );
+			return current.eulerTour;
+		}
+	}
+
+	/**
+	 * Gets the ids of the children of each branch spot, indexed by the ids of the branch spots in the {@link RefPool} of the branch graph.
+	 * Links of a branch spot to itself are ignored.
+	 */
+	private static int[][] getChildren( final ModelBranchGraph branchGraph )
+	{
+		RefPool< BranchSpot > refPool = branchGraph.vertices().getRefPool();
+		int size = 0;
+		for ( BranchSpot branchSpot : branchGraph.vertices() )
+			size = Math.max( size, refPool.getId( branchSpot ) + 1 );
+		int[][] children = new int[ size ][];
+		BranchSpot ref = branchGraph.vertexRef();
+		try
+		{
+			for ( BranchSpot branchSpot : branchGraph.vertices() )
+			{
+				int id = refPool.getId( branchSpot );
+				int[] childIds = new int[ branchSpot.outgoingEdges().size() ];
+				int numberOfChildren = 0;
+				for ( BranchLink branchLink : branchSpot.outgoingEdges() )
+				{
+					int childId = refPool.getId( branchLink.getTarget( ref ) );
+					if ( childId != id )
+						childIds[ numberOfChildren++ ] = childId;
+				}
+				children[ id ] = numberOfChildren == childIds.length ? childIds : Arrays.copyOf( childIds, numberOfChildren );
+			}
+		}
+		finally
+		{
+			branchGraph.releaseRef( ref );
+		}
+		return children;
+	}
+
+	/**
+	 * Gets the ids of the branch spots without incoming links.
+	 */
+	private static int[] getRootIds( final ModelBranchGraph branchGraph )
+	{
+		RefPool< BranchSpot > refPool = branchGraph.vertices().getRefPool();
+		int[] rootIds = new int[ branchGraph.vertices().size() ];
+		int numberOfRoots = 0;
+		for ( BranchSpot branchSpot : branchGraph.vertices() )
+			if ( branchSpot.incomingEdges().isEmpty() )
+				rootIds[ numberOfRoots++ ] = refPool.getId( branchSpot );
+		return Arrays.copyOf( rootIds, numberOfRoots );
+	}
+
+	/**
+	 * The arrays of the index, indexed by the ids of the branch spots in the {@link RefPool} of the branch graph. The arrays are updated in
+	 * place for leaf additions and removals.
+	 */
+	private static class Structure
+	{
+		private int[] depths;
+
+		private int[] parentIds;
+
+		private int[] rootIds;
+
+		private int[] subtreeSizes;
+
+		private long[] subtreeStarts;
+
+		private long[] subtreeEnds;
+
+		// NB: the largest label used by the descendants of each branch spot, or its subtree start, if it has none
+		private long[] lastDescendantLabels;
+
+		private long nextLabel;
+
+		private volatile EulerTour eulerTour;
+
+		private Structure( final ModelBranchGraph branchGraph )
+		{
+			int[][] children = getChildren( branchGraph );
+			int size = children.length;
+			depths = new int[ size ];
+			Arrays.fill( depths, NOT_INDEXED );
+			parentIds = new int[ size ];
+			rootIds = new int[ size ];
+			subtreeSizes = new int[ size ];
+			subtreeStarts = new long[ size ];
+			subtreeEnds = new long[ size ];
+			lastDescendantLabels = new long[ size ];
+			nextLabel = 0;
+
+			int[] stack = new int[ size ];
+			int[] nextChild = new int[ size ];
+			for ( int rootId : getRootIds( branchGraph ) )
+			{
+				int top = 0;
+				stack[ top ] = rootId;
+				nextChild[ top ] = 0;
+				enter( rootId, NO_PARENT, rootId );
+				while ( top >= 0 )
+				{
+					int id = stack[ top ];
+					if ( nextChild[ top ] < children[ id ].length )
+					{
+						int childId = children[ id ][ nextChild[ top ]++ ];
+						if ( depths[ childId ] != NOT_INDEXED )
+							continue; // already visited via another parent
+						enter( childId, id, rootId );
+						stack[ ++top ] = childId;
+						nextChild[ top ] = 0;
+					}
+					else
+					{
+						lastDescendantLabels[ id ] = nextLabel - LABEL_GAP;
+						subtreeEnds[ id ] = nextLabel;
+						nextLabel += LABEL_GAP;
+						if ( parentIds[ id ] != NO_PARENT )
+							subtreeSizes[ parentIds[ id ] ] += subtreeSizes[ id ];
+						top--;
+					}
+				}
+			}
+		}
+
+		private void enter( final int id, final int parentId, final int rootId )
+		{
+			depths[ id ] = parentId == NO_PARENT ? 0 : depths[ parentId ] + 1;
+			parentIds[ id ] = parentId;
+			rootIds[ id ] = rootId;
+			subtreeSizes[ id ] = 1;
+			subtreeStarts[ id ] = nextLabel;
+			nextLabel += LABEL_GAP;
+		}
+
+		private int checkIndexed( final int id )
+		{
+			if ( !isIndexed( id ) )
+				throw new IllegalArgumentException( "Branch spot with id " + id + " is not part of the index." );
+			return id;
+		}
+
+		private boolean isIndexed( final int id )
+		{
+			return id >= 0 && id < depths.length && depths[ id ] != NOT_INDEXED;
+		}
+
+		private boolean isAncestor( final int ancestorId, final int descendantId )
+		{
+			return subtreeStarts[ ancestorId ] <= subtreeStarts[ descendantId ] && subtreeEnds[ descendantId ] <= subtreeEnds[ ancestorId ];
+		}
+
+		private boolean isIsolated( final int id )
+		{
+			return parentIds[ id ] == NO_PARENT && subtreeSizes[ id ] == 1;
+		}
+
+		/**
+		 * Adds the branch spot with the given id as a new tree without links, i.e. as a root without children.
+		 *
+		 * @return {@code false}, if the id is already part of the index
+		 */
+		private boolean addRoot( final int id )
+		{
+			ensureCapacity( id + 1 );
+			if ( depths[ id ] != NOT_INDEXED )
+				return false;
+			depths[ id ] = 0;
+			makeRoot( id );
+			eulerTour = null;
+			return true;
+		}
+
+		/**
+		 * Removes the branch spot with the given id, which must be a root without children.
+		 *
+		 * @return {@code false}, if the branch spot has a parent or children
+		 */
+		private boolean removeRoot( final int id )
+		{
+			if ( !isIndexed( id ) || !isIsolated( id ) )
+				return false;
+			depths[ id ] = NOT_INDEXED;
+			return true;
+		}
+
+		/**
+		 * Adds the branch spot with the id {@code targetId}, which must be a root without children, as a leaf of the branch spot with the
+		 * id {@code sourceId}. Its subtree interval is placed behind the subtree intervals of the other descendants of the source.
+		 *
+		 * @return {@code false}, if the target has a parent or children, or if the subtree interval of the source is exhausted
+		 */
+		private boolean attachLeaf( final int sourceId, final int targetId )
+		{
+			if ( sourceId == targetId )
+				return isIndexed( sourceId );
+			if ( !isIndexed( sourceId ) || !isIndexed( targetId ) || !isIsolated( targetId ) )
+				return false;
+			long free = ( subtreeEnds[ sourceId ] - lastDescendantLabels[ sourceId ] ) / 3;
+			if ( free < 1 )
+				return false;
+			subtreeStarts[ targetId ] = lastDescendantLabels[ sourceId ] + free;
+			subtreeEnds[ targetId ] = subtreeStarts[ targetId ] + free;
+			lastDescendantLabels[ targetId ] = subtreeStarts[ targetId ];
+			lastDescendantLabels[ sourceId ] = subtreeEnds[ targetId ];
+			depths[ targetId ] = depths[ sourceId ] + 1;
+			parentIds[ targetId ] = sourceId;
+			rootIds[ targetId ] = rootIds[ sourceId ];
+			for ( int id = sourceId; id != NO_PARENT; id = parentIds[ id ] )
+				subtreeSizes[ id ]++;
+			eulerTour = null;
+			return true;
+		}
+
+		/**
+		 * Removes the link between the branch spot with the id {@code sourceId} and its leaf with the id {@code targetId}. The leaf becomes
+		 * a root without children. Its former subtree interval remains unused.
+		 *
+		 * @return {@code false}, if the target is not a leaf of the source
+		 */
+		private boolean detachLeaf( final int sourceId, final int targetId )
+		{
+			if ( sourceId == targetId )
+				return isIndexed( sourceId );
+			if ( !isIndexed( sourceId ) || !isIndexed( targetId ) || parentIds[ targetId ] != sourceId || subtreeSizes[ targetId ] != 1 )
+				return false;
+			for ( int id = sourceId; id != NO_PARENT; id = parentIds[ id ] )
+				subtreeSizes[ id ]--;
+			depths[ targetId ] = 0;
+			makeRoot( targetId );
+			return true;
+		}
+
+		private void makeRoot( final int id )
+		{
+			parentIds[ id ] = NO_PARENT;
+			rootIds[ id ] = id;
+			subtreeSizes[ id ] = 1;
+			subtreeStarts[ id ] = nextLabel;
+			lastDescendantLabels[ id ] = nextLabel;
+			subtreeEnds[ id ] = nextLabel + LABEL_GAP;
+			nextLabel += 2 * LABEL_GAP;
+		}
+
+		private void ensureCapacity( final int size )
+		{
+			if ( size <= depths.length )
+				return;
+			int capacity = Math.max( size, 2 * depths.length );
+			int oldCapacity = depths.length;
+			depths = Arrays.copyOf( depths, capacity );
+			Arrays.fill( depths, oldCapacity, capacity, NOT_INDEXED );
+			parentIds = Arrays.copyOf( parentIds, capacity );
+			rootIds = Arrays.copyOf( rootIds, capacity );
+			subtreeSizes = Arrays.copyOf( subtreeSizes, capacity );
+			subtreeStarts = Arrays.copyOf( subtreeStarts, capacity );
+			subtreeEnds = Arrays.copyOf( subtreeEnds, capacity );
+			lastDescendantLabels = Arrays.copyOf( lastDescendantLabels, capacity );
+		}
+	}
+
+	/**
+	 * An Euler tour of each tree of the branch graph together with a sparse table over the depths along the tours. The depths are stored
+	 * per position of the tour, such that the tour remains valid, if leaves are removed from the branch graph and their ids are reused.
+	 */
+	private static class EulerTour
+	{
+		private final int[] firstPositions;
+
+		private final int[] tour;
+
+		private final int[] tourDepths;
+
+		// NB: sparseTable[ k ][ i ] is the position of minimal depth within the tour positions [ i, i + 2^k )
+		private final int[][] sparseTable;
+
+		private EulerTour( final ModelBranchGraph branchGraph )
+		{
+			int[][] children = getChildren( branchGraph );
+			int size = children.length;
+			firstPositions = new int[ size ];
+			// NB: each branch spot is added to the tour once, when it is entered, and once more per return from one of its children
+			int[] fullTour = new int[ 2 * size ];
+			int[] fullTourDepths = new int[ 2 * size ];
+			boolean[] visited = new boolean[ size ];
+			int[] stack = new int[ size ];
+			int[] nextChild = new int[ size ];
+			int length = 0;
+			for ( int rootId : getRootIds( branchGraph ) )
+			{
+				int top = 0;
+				stack[ top ] = rootId;
+				nextChild[ top ] = 0;
+				visited[ rootId ] = true;
+				firstPositions[ rootId ] = length;
+				fullTour[ length ] = rootId;
+				fullTourDepths[ length++ ] = top;
+				while ( top >= 0 )
+				{
+					int id = stack[ top ];
+					if ( nextChild[ top ] < children[ id ].length )
+					{
+						int childId = children[ id ][ nextChild[ top ]++ ];
+						if ( visited[ childId ] )
+							continue; // already visited via another parent
+						visited[ childId ] = true;
+						stack[ ++top ] = childId;
+						nextChild[ top ] = 0;
+						firstPositions[ childId ] = length;
+						fullTour[ length ] = childId;
+						fullTourDepths[ length++ ] = top;
+					}
+					else
+					{
+						top--;
+						if ( top >= 0 )
+						{
+							fullTour[ length ] = stack[ top ];
+							fullTourDepths[ length++ ] = top;
+						}
+					}
+				}
+			}
+			tour = Arrays.copyOf( fullTour, length );
+			tourDepths = Arrays.copyOf( fullTourDepths, length );
+
+			int levels = 32 - Integer.numberOfLeadingZeros( Math.max( 1, length ) );
+			sparseTable = new int[ levels ][];
+			sparseTable[ 0 ] = new int[ length ];
+			for ( int i = 0; i < length; i++ )
+				sparseTable[ 0 ][ i ] = i;
+			for ( int level = 1; level < levels; level++ )
+			{
+				int half = 1 << ( level - 1 );
+				int[] previous = sparseTable[ level - 1 ];
+				int[] current = new int[ length - ( 1 << level ) + 1 ];
+				for ( int i = 0; i < current.length; i++ )
+					current[ i ] = minDepthPosition( previous[ i ], previous[ i + half ] );
+				sparseTable[ level ] = current;
+			}
+		}
+
+		private int getLowestCommonAncestorId( final int id1, final int id2 )
+		{
+			int from = Math.min( firstPositions[ id1 ], firstPositions[ id2 ] );
+			int to = Math.max( firstPositions[ id1 ], firstPositions[ id2 ] );
+			int level = 31 - Integer.numberOfLeadingZeros( to - from + 1 );
+			return tour[ minDepthPosition( sparseTable[ level ][ from ], sparseTable[ level ][ to - ( 1 << level ) + 1 ] ) ];
+		}
+
+		private int minDepthPosition( final int position1, final int position2 )
+		{
+			return tourDepths[ position1 ] <= tourDepths[ position2 ] ? position1 : position2;
+		}
+	}
+}
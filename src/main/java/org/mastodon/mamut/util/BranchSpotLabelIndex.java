@@ -0,0 +1,94 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.mastodon.RefPool;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.branch.BranchSpot;
+
+/**
+ * Index that maps the first label of each {@link BranchSpot} in a {@link Model} to the {@link BranchSpot} itself.
+ * <br>
+ * The index is built once by iterating over all branch spots of the branch graph of the given model. Lookups are then constant time instead of requiring a search over all branch spots.
+ * <br>
+ * If multiple branch spots share the same first label, the first branch spot encountered during the iteration is stored, i.e. the one that would be found by a linear search.
+ * <br>
+ * The index represents the state of the branch graph at the time of its construction. It needs to be rebuilt, if the branch graph changes.
+ */
+public class BranchSpotLabelIndex
+{
+	private static final int NO_ENTRY = -1;
+
+	private final RefPool< BranchSpot > refPool;
+
+	private final Map< String, Integer > labelToId;
+
+	/**
+	 * Builds a new index for the branch graph of the given {@link Model}.
+	 * <br>
+	 * The branch graph of the model is expected to be up-to-date.
+	 *
+	 * @param model the model
+	 */
+	public BranchSpotLabelIndex( final Model model )
+	{
+		this.refPool = model.getBranchGraph().vertices().getRefPool();
+		this.labelToId = new HashMap<>();
+		for ( BranchSpot branchSpot : model.getBranchGraph().vertices() )
+			labelToId.putIfAbsent( branchSpot.getFirstLabel(), refPool.getId( branchSpot ) );
+	}
+
+	/**
+	 * Gets the {@link BranchSpot} with the given first label.
+	 *
+	 * @param label the first label of the branch spot
+	 * @param ref a reference object that is used to return the branch spot
+	 * @return the branch spot or {@code null}, if no branch spot with the given label exists
+	 */
+	public BranchSpot getBranchSpot( final String label, final BranchSpot ref )
+	{
+		int id = labelToId.getOrDefault( label, NO_ENTRY );
+		if ( id == NO_ENTRY )
+			return null;
+		return refPool.getObject( id, ref );
+	}
+
+	/**
+	 * Gets the number of distinct labels in this index.
+	 *
+	 * @return the number of distinct labels
+	 */
+	public int size()
+	{
+		return labelToId.size();
+	}
+}
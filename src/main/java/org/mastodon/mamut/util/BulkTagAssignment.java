@@ -0,0 +1,422 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefList;
+import org.mastodon.graph.GraphChangeListener;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.tag.ObjTagMap;
+import org.mastodon.model.tag.TagSetStructure;
+import org.mastodon.util.TagSetUtils;
+import org.scijava.Cancelable;
+import org.scijava.app.StatusService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects tag assignments for the spots and links of a {@link Model} and writes them to a new tag set in a single pass.
+ * <br>
+ * Assignments are collected by the index of the tag they should receive. Collecting does not modify the model and only requires read access to the graph.
+ * <br>
+ * {@link #apply(String, Collection)} then creates the tag set (or {@link #apply(TagSetStructure.TagSet)} uses an existing one) and writes all collected tag values under a single acquisition of the write lock of the model graph and sets a single undo point afterwards.
+ * This is considerably faster than setting the tags spot by spot, since the tag maps of the tag set are only looked up once.
+ * <br>
+ * {@link #applyInChunks(String, Collection, int, StatusService, Cancelable)} writes the collected tag values in chunks of bounded size instead
+ * and releases the write lock between the chunks, such that views of the model are not blocked for the whole operation. It stops writing,
+ * if the model graph is edited between the chunks.
+ * <br>
+ * If a spot or link is assigned to multiple tags, the last assignment wins.
+ */
+public class BulkTagAssignment
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/**
+	 * The default number of tag values written per acquisition of the write lock by
+	 * {@link #applyInChunks(String, Collection, int, StatusService, Cancelable)}.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	private final Model model;
+
+	private final List< RefList< Spot > > spotsPerTag;
+
+	private final List< RefList< Link > > linksPerTag;
+
+	/**
+	 * Creates a new, empty tag assignment.
+	 *
+	 * @param model the model, to which the tags are to be applied
+	 * @param numberOfTags the number of tags of the tag set that is to be created
+	 */
+	public BulkTagAssignment( final Model model, final int numberOfTags )
+	{
+		this.model = model;
+		this.spotsPerTag = new ArrayList<>( numberOfTags );
+		this.linksPerTag = new ArrayList<>( numberOfTags );
+		for ( int i = 0; i < numberOfTags; i++ )
+		{
+			spotsPerTag.add( RefCollections.createRefList( model.getGraph().vertices() ) );
+			linksPerTag.add( RefCollections.createRefList( model.getGraph().edges() ) );
+		}
+	}
+
+	/**
+	 * Assigns the tag with the given index to the given spot.
+	 *
+	 * @param tagIndex the index of the tag
+	 * @param spot the spot
+	 */
+	public void addSpot( final int tagIndex, final Spot spot )
+	{
+		spotsPerTag.get( tagIndex ).add( spot );
+	}
+
+	/**
+	 * Assigns the tag with the given index to the given link.
+	 *
+	 * @param tagIndex the index of the tag
+	 * @param link the link
+	 */
+	public void addLink( final int tagIndex, final Link link )
+	{
+		linksPerTag.get( tagIndex ).add( link );
+	}
+
+	/**
+	 * Assigns the tag with the given index to the given links.
+	 *
+	 * @param tagIndex the index of the tag
+	 * @param links the links
+	 */
+	public void addLinks( final int tagIndex, final Collection< Link > links )
+	{
+		linksPerTag.get( tagIndex ).addAll( links );
+	}
+
+	/**
+	 * Assigns the tag with the given index to the given spot and to all its incoming links.
+	 *
+	 * @param tagIndex the index of the tag
+	 * @param spot the spot
+	 */
+	public void addSpotAndIncomingEdges( final int tagIndex, final Spot spot )
+	{
+		addSpot( tagIndex, spot );
+		addLinks( tagIndex, spot.incomingEdges() );
+	}
+
+	/**
+	 * Gets the number of tags, for which assignments can be collected.
+	 *
+	 * @return the number of tags
+	 */
+	public int getNumberOfTags()
+	{
+		return spotsPerTag.size();
+	}
+
+	/**
+	 * Gets the total number of collected spot and link assignments.
+	 *
+	 * @return the number of assignments
+	 */
+	public int size()
+	{
+		int size = 0;
+		for ( int i = 0; i < getNumberOfTags(); i++ )
+			size += spotsPerTag.get( i ).size() + linksPerTag.get( i ).size();
+		return size;
+	}
+
+	/**
+	 * Creates a new tag set with the given name, tags and colors in the model and writes all collected assignments to it.
+	 * <br>
+	 * The model graph is locked for writing once for the whole operation. A single undo point is set afterwards.
+	 *
+	 * @param tagSetName the name of the new tag set
+	 * @param tagsAndColors the labels and colors of the tags. The order corresponds to the tag indices used during collection.
+	 * @return the created tag set
+	 * @throws IllegalArgumentException if the number of given tags does not match the number of tags of this assignment
+	 */
+	public TagSetStructure.TagSet apply( final String tagSetName, final Collection< ? extends Map.Entry< String, Integer > > tagsAndColors )
+	{
+		checkNumberOfTags( tagsAndColors.size() );
+		final ReentrantReadWriteLock.WriteLock lock = model.getGraph().getLock().writeLock();
+		lock.lock();
+		try
+		{
+			TagSetStructure.TagSet tagSet = TagSetUtils.addNewTagSetToModel( model, tagSetName, tagsAndColors );
+			write( tagSet );
+			model.setUndoPoint();
+			return tagSet;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes all collected assignments to the given existing tag set of the model. Assignments of spots and links that are not collected remain unchanged.
+	 * <br>
+	 * The model graph is locked for writing once for the whole operation. A single undo point is set afterwards.
+	 *
+	 * @param tagSet the existing tag set. The order of its tags corresponds to the tag indices used during collection.
+	 * @throws IllegalArgumentException if the number of tags of the tag set does not match the number of tags of this assignment
+	 */
+	public void apply( final TagSetStructure.TagSet tagSet )
+	{
+		checkNumberOfTags( tagSet.getTags().size() );
+		final ReentrantReadWriteLock.WriteLock lock = model.getGraph().getLock().writeLock();
+		lock.lock();
+		try
+		{
+			write( tagSet );
+			model.setUndoPoint();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Creates a new tag set with the given name, tags and colors in the model and writes all collected assignments to it in chunks.
+	 * <br>
+	 * The model graph is locked for writing for at most {@code chunkSize} tag values at a time. Between the chunks, the lock is released, such
+	 * that views can render and other threads can access the model. An undo point is set before the tag set is created and after the last
+	 * chunk, also if the operation has been canceled, such that the tag set and all written tag values can be undone in one step.
+	 * <br>
+	 * Writing stops early, if {@code cancelable} is canceled, or if the model graph is edited between the chunks, i.e. if spots or links are
+	 * added or removed, the graph is rebuilt or a change of the graph is notified. In the latter case, the collected spots and links may not be
+	 * valid anymore and the edit would be recorded for undo between the written tag values. The tag values written until then are kept.
+	 * <br>
+	 * Note: an edit between two chunks, which sets its own undo point, is undone together with the tag set and the tag values written before
+	 * it. Edits, which do not notify a change of the model graph, e.g. assigning tags of other tag sets, are not detected.
+	 *
+	 * @param tagSetName the name of the new tag set
+	 * @param tagsAndColors the labels and colors of the tags. The order corresponds to the tag indices used during collection.
+	 * @param chunkSize the maximum number of tag values written per acquisition of the write lock
+	 * @param statusService the {@link StatusService} to report the progress to. May be {@code null}.
+	 * @param cancelable the {@link Cancelable} to check for cancellation between the chunks. May be {@code null}.
+	 * @return the created tag set
+	 * @throws IllegalArgumentException if the number of given tags does not match the number of tags of this assignment or if
+	 * {@code chunkSize} is not positive
+	 */
+	public TagSetStructure.TagSet applyInChunks( final String tagSetName,
+			final Collection< ? extends Map.Entry< String, Integer > > tagsAndColors, final int chunkSize, final StatusService statusService,
+			final Cancelable cancelable )
+	{
+		checkNumberOfTags( tagsAndColors.size() );
+		if ( chunkSize < 1 )
+			throw new IllegalArgumentException( "Chunk size must be positive, but is " + chunkSize + "." );
+		final ReentrantReadWriteLock.WriteLock lock = model.getGraph().getLock().writeLock();
+		TagSetStructure.TagSet tagSet;
+		final EditListener editListener = new EditListener();
+		lock.lock();
+		try
+		{
+			// NB: separates edits made before from the tag set and the tag values written here
+			model.setUndoPoint();
+			tagSet = TagSetUtils.addNewTagSetToModel( model, tagSetName, tagsAndColors );
+			model.getGraph().addGraphListener( editListener );
+			model.getGraph().addGraphChangeListener( editListener );
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		try
+		{
+			writeInChunks( tagSet, chunkSize, statusService, cancelable, editListener );
+		}
+		finally
+		{
+			model.getGraph().removeGraphListener( editListener );
+			model.getGraph().removeGraphChangeListener( editListener );
+			lock.lock();
+			try
+			{
+				model.setUndoPoint();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+			if ( statusService != null )
+				statusService.clearStatus();
+		}
+		return tagSet;
+	}
+
+	private void writeInChunks( final TagSetStructure.TagSet tagSet, final int chunkSize, final StatusService statusService,
+			final Cancelable cancelable, final EditListener editListener )
+	{
+		ObjTagMap< Spot, TagSetStructure.Tag > spotTags = model.getTagSetModel().getVertexTags().tags( tagSet );
+		ObjTagMap< Link, TagSetStructure.Tag > linkTags = model.getTagSetModel().getEdgeTags().tags( tagSet );
+		List< TagSetStructure.Tag > tags = tagSet.getTags();
+		final ReentrantReadWriteLock.WriteLock lock = model.getGraph().getLock().writeLock();
+		final Spot spotRef = model.getGraph().vertexRef();
+		final Link linkRef = model.getGraph().edgeRef();
+		final int total = size();
+		int written = 0;
+		try
+		{
+			// NB: the tag index, the position in the spots and links of this tag, continuing from the previous chunk
+			int tagIndex = 0;
+			int position = 0;
+			while ( tagIndex < tags.size() )
+			{
+				if ( cancelable != null && cancelable.isCanceled() )
+				{
+					logger.info( "Writing tags canceled after {} of {} tag values. Reason: {}", written, total, cancelable.getCancelReason() );
+					return;
+				}
+				lock.lock();
+				try
+				{
+					if ( editListener.edited )
+					{
+						logger.warn( "The model graph has been edited while writing tags. Stopped after {} of {} tag values.", written,
+								total );
+						return;
+					}
+					int chunkEnd = written + chunkSize;
+					while ( tagIndex < tags.size() && written < chunkEnd )
+					{
+						TagSetStructure.Tag tag = tags.get( tagIndex );
+						RefList< Spot > spots = spotsPerTag.get( tagIndex );
+						RefList< Link > links = linksPerTag.get( tagIndex );
+						int numberOfSpots = spots.size();
+						int numberOfValues = numberOfSpots + links.size();
+						for ( ; position < numberOfSpots && written < chunkEnd; position++, written++ )
+							spotTags.set( spots.get( position, spotRef ), tag );
+						for ( ; position >= numberOfSpots && position < numberOfValues && written < chunkEnd; position++, written++ )
+							linkTags.set( links.get( position - numberOfSpots, linkRef ), tag );
+						if ( position == numberOfValues )
+						{
+							tagIndex++;
+							position = 0;
+						}
+					}
+				}
+				finally
+				{
+					lock.unlock();
+				}
+				if ( statusService != null )
+					statusService.showProgress( written, total );
+			}
+		}
+		finally
+		{
+			model.getGraph().releaseRef( spotRef );
+			model.getGraph().releaseRef( linkRef );
+		}
+	}
+
+	private void checkNumberOfTags( final int numberOfTags )
+	{
+		if ( numberOfTags != getNumberOfTags() )
+			throw new IllegalArgumentException( "Number of tags (" + numberOfTags
+					+ ") does not match the number of tags of this assignment (" + getNumberOfTags() + ")." );
+	}
+
+	private void write( final TagSetStructure.TagSet tagSet )
+	{
+		ObjTagMap< Spot, TagSetStructure.Tag > spotTags = model.getTagSetModel().getVertexTags().tags( tagSet );
+		ObjTagMap< Link, TagSetStructure.Tag > linkTags = model.getTagSetModel().getEdgeTags().tags( tagSet );
+		List< TagSetStructure.Tag > tags = tagSet.getTags();
+		for ( int i = 0; i < tags.size(); i++ )
+		{
+			TagSetStructure.Tag tag = tags.get( i );
+			for ( Spot spot : spotsPerTag.get( i ) )
+				spotTags.set( spot, tag );
+			for ( Link link : linksPerTag.get( i ) )
+				linkTags.set( link, tag );
+		}
+	}
+
+	/**
+	 * Records, whether the model graph has been edited, since the collected references may not be valid anymore then and the edit would be
+	 * recorded for undo between the written tag values.
+	 */
+	private static class EditListener implements GraphListener< Spot, Link >, GraphChangeListener
+	{
+		private volatile boolean edited = false;
+
+		@Override
+		public void graphRebuilt()
+		{
+			edited = true;
+		}
+
+		@Override
+		public void vertexAdded( final Spot vertex )
+		{
+			edited = true;
+		}
+
+		@Override
+		public void vertexRemoved( final Spot vertex )
+		{
+			edited = true;
+		}
+
+		@Override
+		public void edgeAdded( final Link edge )
+		{
+			edited = true;
+		}
+
+		@Override
+		public void edgeRemoved( final Link edge )
+		{
+			edited = true;
+		}
+
+		@Override
+		public void graphChanged()
+		{
+			edited = true;
+		}
+	}
+}
@@ -37,6 +37,7 @@ import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.img.display.imagej.ImgToVirtualStack;
 import net.imglib2.type.numeric.real.FloatType;
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.Test;
 import org.mastodon.mamut.ProjectModel;
 import org.mastodon.mamut.TestUtils;
@@ -66,6 +67,7 @@ import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -115,6 +117,134 @@ class ClusterLineagesControllerTest
 		}
 	}
 
+	@Test
+	void testEvaluateNumberOfClustersBeforeCreateTagSet() throws SpimDataException, IOException
+	{
+		try (Context context = new Context())
+		{
+			File tempFile = TestUtils.getTempFileCopy( "src/test/resources/org/mastodon/mamut/clustering/model1.mastodon", "model",
+					".mastodon" );
+			ProjectModel projectModel = ProjectLoader.open( tempFile.getAbsolutePath(), context, false, true );
+			Model model = projectModel.getModel();
+
+			ClusterLineagesController controller = new ClusterLineagesController( projectModel );
+			controller.setInputParams( CropCriteria.TIMEPOINT, 100, 0, 1 );
+			controller.setComputeParams( SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE, ClusteringMethod.AVERAGE_LINKAGE, 3 );
+			controller.setShowDendrogram( false );
+			assertThrows( IllegalArgumentException.class, () -> controller.evaluateNumberOfClusters( 2, 3 ) );
+
+			controller.setInputParams( CropCriteria.TIMEPOINT, 0, 100, 1 );
+			assertNotNull( controller.evaluateNumberOfClusters( 2, 3 ) );
+			controller.createTagSet();
+
+			TagSetStructure.TagSet tagSet = model.getTagSetModel().getTagSetStructure().getTagSets().get( 0 );
+			Set< Integer > actualSpotsPerGroup = new HashSet<>();
+			for ( TagSetStructure.Tag tag : tagSet.getTags() )
+				actualSpotsPerGroup.add( model.getTagSetModel().getVertexTags().getTaggedWith( tag ).size() );
+			assertEquals( new HashSet<>( Arrays.asList( 5, 13, 12 ) ), actualSpotsPerGroup );
+		}
+	}
+
+	@Test
+	void testCreateTagSetWithTriangularDistances() throws SpimDataException, IOException
+	{
+		try (Context context = new Context())
+		{
+			File tempFile = TestUtils.getTempFileCopy( "src/test/resources/org/mastodon/mamut/clustering/model1.mastodon", "model",
+					".mastodon" );
+			ProjectModel projectModel = ProjectLoader.open( tempFile.getAbsolutePath(), context, false, true );
+			Model model = projectModel.getModel();
+
+			ClusterLineagesController controller = new ClusterLineagesController( projectModel );
+			controller.setInputParams( CropCriteria.TIMEPOINT, 0, 100, 1 );
+			controller.setComputeParams( SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE, ClusteringMethod.K_MEDOIDS, 3 );
+			controller.setShowDendrogram( false );
+			controller.createTagSet();
+			controller.setMinTreesForTriangularDistances( 0 );
+			controller.createTagSet();
+
+			List< TagSetStructure.TagSet > tagSets = model.getTagSetModel().getTagSetStructure().getTagSets();
+			assertEquals( 2, tagSets.size() );
+			Set< Integer > spotsPerGroupFromMatrix = new HashSet<>();
+			for ( TagSetStructure.Tag tag : tagSets.get( 0 ).getTags() )
+				spotsPerGroupFromMatrix.add( model.getTagSetModel().getVertexTags().getTaggedWith( tag ).size() );
+			Set< Integer > spotsPerGroupTriangular = new HashSet<>();
+			for ( TagSetStructure.Tag tag : tagSets.get( 1 ).getTags() )
+				spotsPerGroupTriangular.add( model.getTagSetModel().getVertexTags().getTaggedWith( tag ).size() );
+			assertEquals( 3, tagSets.get( 1 ).getTags().size() );
+			assertEquals( spotsPerGroupFromMatrix, spotsPerGroupTriangular );
+		}
+	}
+
+	@Test
+	void testAddLineagesToClustering() throws SpimDataException, IOException
+	{
+		try (Context context = new Context())
+		{
+			File tempFile = TestUtils.getTempFileCopy( "src/test/resources/org/mastodon/mamut/clustering/model1.mastodon", "model",
+					".mastodon" );
+			ProjectModel projectModel = ProjectLoader.open( tempFile.getAbsolutePath(), context, false, true );
+			Model model = projectModel.getModel();
+
+			ClusterLineagesController controller = new ClusterLineagesController( projectModel );
+			controller.setInputParams( CropCriteria.TIMEPOINT, 0, 100, 1 );
+			controller.setComputeParams( SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE, ClusteringMethod.AVERAGE_LINKAGE, 3 );
+			controller.setShowDendrogram( false );
+			String clusteringName = controller.createTagSet();
+			assertEquals( 0, controller.addLineagesToClustering( clusteringName ) );
+
+			// NB: a copy of the clustering, in which the lineages of the last group are not yet classified
+			TagSetStructure.TagSet clustering = model.getTagSetModel().getTagSetStructure().getTagSets().get( 0 );
+			List< TagSetStructure.Tag > tags = clustering.getTags();
+			String partialClusteringName = "Partial clustering";
+			List< Pair< String, Integer > > tagsAndColors = Arrays.asList( Pair.of( "A", 0xff0000 ), Pair.of( "B", 0x00ff00 ),
+					Pair.of( "C", 0x0000ff ) );
+			TagSetStructure.TagSet partialClustering = TagSetUtils.addNewTagSetToModel( model, partialClusteringName, tagsAndColors );
+			for ( int i = 0; i < 2; i++ )
+				for ( Spot spot : model.getTagSetModel().getVertexTags().getTaggedWith( tags.get( i ) ) )
+					TagSetUtils.tagSpot( model, partialClustering, partialClustering.getTags().get( i ), spot );
+			int classifiedSpots = model.getTagSetModel().getVertexTags().getTaggedWith( tags.get( 0 ) ).size()
+					+ model.getTagSetModel().getVertexTags().getTaggedWith( tags.get( 1 ) ).size();
+			int unclassifiedSpots = model.getTagSetModel().getVertexTags().getTaggedWith( tags.get( 2 ) ).size();
+
+			int addedLineages = controller.addLineagesToClustering( partialClusteringName );
+			int taggedSpots = 0;
+			for ( TagSetStructure.Tag tag : partialClustering.getTags() )
+				taggedSpots += model.getTagSetModel().getVertexTags().getTaggedWith( tag ).size();
+
+			assertTrue( addedLineages > 0 );
+			assertEquals( classifiedSpots + unclassifiedSpots, taggedSpots );
+			assertTrue( model.getTagSetModel().getVertexTags().getTaggedWith( partialClustering.getTags().get( 2 ) ).isEmpty() );
+			assertThrows( IllegalArgumentException.class, () -> controller.addLineagesToClustering( "Unknown tag set" ) );
+			// NB: invalid crop settings are rejected, before the existing tag set is evaluated
+			controller.setInputParams( CropCriteria.TIMEPOINT, 100, 0, 1 );
+			assertThrows( IllegalArgumentException.class, () -> controller.addLineagesToClustering( partialClusteringName ) );
+		}
+	}
+
+	@Test
+	void testAddLineagesToHdbscanClustering() throws SpimDataException, IOException
+	{
+		try (Context context = new Context())
+		{
+			File tempFile = TestUtils.getTempFileCopy( "src/test/resources/org/mastodon/mamut/clustering/model1.mastodon", "model",
+					".mastodon" );
+			ProjectModel projectModel = ProjectLoader.open( tempFile.getAbsolutePath(), context, false, true );
+			Model model = projectModel.getModel();
+
+			ClusterLineagesController controller = new ClusterLineagesController( projectModel );
+			controller.setInputParams( CropCriteria.TIMEPOINT, 0, 100, 1 );
+			controller.setComputeParams( SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE, ClusteringMethod.HDBSCAN, 0 );
+			controller.setMinClusterSize( 2 );
+			controller.setShowDendrogram( false );
+			String clusteringName = controller.createTagSet();
+
+			// NB: lineages classified as noise are tagged with the noise tag, thus they are not assigned to a class again
+			assertEquals( 1, model.getTagSetModel().getTagSetStructure().getTagSets().size() );
+			assertEquals( 0, controller.addLineagesToClustering( clusteringName ) );
+		}
+	}
+
 	@Test
 	void testCreateTagSetWithExternalProjects() throws IOException, SpimDataException
 	{
@@ -33,7 +33,10 @@ import org.junit.jupiter.api.Test;
 import java.util.NoSuchElementException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ClusteringMethodTest
 {
@@ -50,4 +53,21 @@ class ClusteringMethodTest
 		assertEquals( ClusteringMethod.AVERAGE_LINKAGE, ClusteringMethod.getByName( "Average linkage" ) );
 		assertThrows( NoSuchElementException.class, () -> ClusteringMethod.getByName( "foo" ) );
 	}
+
+	@Test
+	void testIsHierarchical()
+	{
+		assertTrue( ClusteringMethod.AVERAGE_LINKAGE.isHierarchical() );
+		assertFalse( ClusteringMethod.K_MEDOIDS.isHierarchical() );
+		assertFalse( ClusteringMethod.HDBSCAN.isHierarchical() );
+		assertNull( ClusteringMethod.HDBSCAN.getLinkageStrategy() );
+	}
+
+	@Test
+	void testUsesNumberOfClusters()
+	{
+		assertTrue( ClusteringMethod.COMPLETE_LINKAGE.usesNumberOfClusters() );
+		assertTrue( ClusteringMethod.K_MEDOIDS.usesNumberOfClusters() );
+		assertFalse( ClusteringMethod.HDBSCAN.usesNumberOfClusters() );
+	}
 }
@@ -29,11 +29,16 @@
 package org.mastodon.mamut.clustering.config;
 
 import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.treesimilarity.tree.SimpleTreeExamples;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SimilarityMeasureTest
 {
@@ -51,4 +56,22 @@ class SimilarityMeasureTest
 		assertThrows( NoSuchElementException.class, () -> SimilarityMeasure.getByName( "foo" ) );
 	}
 
+	@Test
+	void testComputeLowerBound()
+	{
+		List< Tree< Double > > trees = Arrays.asList( SimpleTreeExamples.tree1(), SimpleTreeExamples.tree2(), SimpleTreeExamples.tree3(),
+				SimpleTreeExamples.tree4(), SimpleTreeExamples.tree5(), SimpleTreeExamples.tree6(), SimpleTreeExamples.tree7(),
+				SimpleTreeExamples.nonBinaryTree(), SimpleTreeExamples.treeGuignardT1(), SimpleTreeExamples.treeGuignardT2() );
+		for ( SimilarityMeasure similarityMeasure : SimilarityMeasure.values() )
+			for ( double scale : new double[] { 1d, 0.5d, 2d } )
+				for ( Tree< Double > tree1 : trees )
+					for ( Tree< Double > tree2 : trees )
+					{
+						double lowerBound = similarityMeasure.computeLowerBound( tree1, tree2, scale );
+						double distance = similarityMeasure.compute( tree1, tree2, scale );
+						assertTrue( lowerBound >= 0 );
+						assertTrue( lowerBound <= distance + 1e-9,
+								similarityMeasure.getName() + ", scale " + scale + ": lower bound " + lowerBound + " > distance " + distance );
+					}
+	}
 }
@@ -65,6 +65,35 @@ class TreeDistancesTest
 		assertEquals( 20d / 6d, TreeDistances.averageDistance( tree1, tree2, defaultCosts, DEFAULT_SCALE ), 0d );
 	}
 
+	@Test
+	void testDistanceLowerBound()
+	{
+		Tree< Double > tree1 = SimpleTreeExamples.tree1();
+		Tree< Double > tree2 = SimpleTreeExamples.tree2();
+		Tree< Double > treeGuignardT1 = SimpleTreeExamples.treeGuignardT1();
+		Tree< Double > treeGuignardT2 = SimpleTreeExamples.treeGuignardT2();
+		assertEquals( 0d, TreeDistances.distanceLowerBound( null, null, defaultCosts, DEFAULT_SCALE ), 0d );
+		// NB: both trees have the same attribute sum, thus the lower bound is trivial for scale 1 (distance: 20)
+		assertEquals( 0d, TreeDistances.distanceLowerBound( tree1, tree2, defaultCosts, DEFAULT_SCALE ), 0d );
+		// NB: the lower bound equals the distance here
+		assertEquals( 30d, TreeDistances.distanceLowerBound( tree1, tree2, defaultCosts, 0.5d ), 0d );
+		assertEquals( 30d, ZhangUnorderedTreeEditDistance.distance( tree1, tree2, defaultCosts, 0.5d ), 0d );
+		// NB: the distance to an empty tree scales the attributes of the other tree
+		assertEquals( 30d, TreeDistances.distanceLowerBound( tree1, null, defaultCosts, 0.5d ), 0d );
+		assertEquals( 30d, ZhangUnorderedTreeEditDistance.distance( tree1, null, defaultCosts, 0.5d ), 0d );
+		assertEquals( 120d, TreeDistances.distanceLowerBound( null, tree2, defaultCosts, 2d ), 0d );
+		assertEquals( 120d, ZhangUnorderedTreeEditDistance.distance( null, tree2, defaultCosts, 2d ), 0d );
+		// NB: distance: 22
+		assertEquals( 16d, TreeDistances.distanceLowerBound( treeGuignardT1, treeGuignardT2, defaultCosts, DEFAULT_SCALE ), 0d );
+		// NB: 3 nodes vs. 9 nodes
+		assertEquals( 6d, TreeDistances.distanceLowerBound( tree1, treeGuignardT1, TreeDistances.LOCAL_NORMALIZED_COST_FUNCTION,
+				DEFAULT_SCALE ), 0d );
+		assertEquals( 6d / 12d, TreeDistances.averageDistanceLowerBound( tree1, treeGuignardT1,
+				TreeDistances.LOCAL_NORMALIZED_COST_FUNCTION, DEFAULT_SCALE ), 0d );
+		assertEquals( 6d / 12d, TreeDistances.normalizedDistanceLowerBound( tree1, treeGuignardT1,
+				TreeDistances.LOCAL_NORMALIZED_COST_FUNCTION, DEFAULT_SCALE ), 0d );
+	}
+
 	/**
 	 * @see <a href="https://www.science.org/doi/suppl/10.1126/science.aar5663/suppl_file/aar5663_guignard_sm.pdf">Guignard et al. (2020) Fig. S23</a>
 	 */
@@ -0,0 +1,101 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.config.ClusteringMethod;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterNumberEvaluationTest
+{
+
+	private static double[][] threeGroups()
+	{
+		double[] positions = { 0, 1, 3, 6, 30, 32, 35, 39, 70, 73, 77, 82 };
+		int n = positions.length;
+		double[][] distances = new double[ n ][ n ];
+		for ( int i = 0; i < n; i++ )
+			for ( int j = 0; j < n; j++ )
+				distances[ i ][ j ] = Math.abs( positions[ i ] - positions[ j ] );
+		return distances;
+	}
+
+	@Test
+	void testEvaluateHierarchical()
+	{
+		ClusterNumberEvaluation evaluation = ClusterNumberEvaluation.evaluate( threeGroups(), ClusteringMethod.AVERAGE_LINKAGE, 2, 6 );
+
+		assertArrayEquals( new int[] { 2, 3, 4, 5, 6 }, evaluation.getClusterNumbers() );
+		assertEquals( 3, evaluation.getRecommendedClusterNumber() );
+		assertEquals( 3, evaluation.getGapClusterNumber() );
+		assertEquals( 1d, evaluation.getStability( 3 ), 0d );
+		assertTrue( evaluation.getSilhouette( 3 ) > evaluation.getSilhouette( 2 ) );
+		assertTrue( evaluation.getSilhouette( 3 ) > evaluation.getSilhouette( 4 ) );
+	}
+
+	@Test
+	void testEvaluateKMedoids()
+	{
+		ClusterNumberEvaluation evaluation = ClusterNumberEvaluation.evaluate( threeGroups(), ClusteringMethod.K_MEDOIDS, 2, 5 );
+
+		assertEquals( 3, evaluation.getRecommendedClusterNumber() );
+		assertEquals( 1d, evaluation.getStability( 3 ), 0d );
+	}
+
+	@Test
+	void testEvaluateInvalidParameters()
+	{
+		double[][] distances = threeGroups();
+		assertThrows( IllegalArgumentException.class, () -> ClusterNumberEvaluation.evaluate( distances, ClusteringMethod.HDBSCAN, 2, 5 ) );
+		assertThrows( IllegalArgumentException.class,
+				() -> ClusterNumberEvaluation.evaluate( distances, ClusteringMethod.AVERAGE_LINKAGE, 1, 5 ) );
+		assertThrows( IllegalArgumentException.class,
+				() -> ClusterNumberEvaluation.evaluate( distances, ClusteringMethod.AVERAGE_LINKAGE, 2, 12 ) );
+	}
+
+	@Test
+	void testSilhouette()
+	{
+		double[][] distances = { { 0, 1, 4 }, { 1, 0, 3 }, { 4, 3, 0 } };
+		// NB: object 0: a = 1, b = 4, object 1: a = 1, b = 3, object 2 is a singleton
+		double expected = ( ( 4d - 1d ) / 4d + ( 3d - 1d ) / 3d ) / 3d;
+		assertEquals( expected, ClusterNumberEvaluation.silhouette( distances, new int[] { 0, 0, 1 }, 2 ), 1e-12 );
+	}
+
+	@Test
+	void testAdjustedRandIndex()
+	{
+		assertEquals( 1d, ClusterNumberEvaluation.adjustedRandIndex( new int[] { 0, 0, 1, 1 }, new int[] { 1, 1, 0, 0 } ), 0d );
+		assertEquals( -0.5d, ClusterNumberEvaluation.adjustedRandIndex( new int[] { 0, 0, 1, 1 }, new int[] { 0, 1, 0, 1 } ), 1e-12 );
+	}
+}
@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.ClusterData;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FasterPamTest
+{
+
+	@Test
+	void testCluster()
+	{
+		double[][] distances = ClusterData.example1.getValue();
+		FasterPam fasterPam = new FasterPam( DistanceFunction.of( distances ), distances.length, 3 );
+		int[] labels = fasterPam.cluster();
+
+		// NB: the optimal medoids have been determined by brute force
+		Set< Integer > medoids = new HashSet<>();
+		Arrays.stream( fasterPam.getMedoids() ).forEach( medoids::add );
+		assertEquals( new HashSet<>( Arrays.asList( 1, 3, 4 ) ), medoids );
+		assertEquals( 127d, fasterPam.getLoss(), 0d );
+		assertArrayEquals( new int[] { 2, 0, 1, 1, 2, 2, 0, 0, 1, 1 }, relabelByMedoid( labels, fasterPam.getMedoids() ) );
+	}
+
+	/**
+	 * Maps the labels to the index of the medoid within the sorted medoids, such that the result does not depend on the order of the medoids.
+	 */
+	private static int[] relabelByMedoid( final int[] labels, final int[] medoids )
+	{
+		int[] sortedMedoids = medoids.clone();
+		Arrays.sort( sortedMedoids );
+		return Arrays.stream( labels ).map( label -> Arrays.binarySearch( sortedMedoids, medoids[ label ] ) ).toArray();
+	}
+
+	@Test
+	void testClusterIdenticalObjects()
+	{
+		double[][] distances = ClusterData.example2.getValue();
+		FasterPam fasterPam = new FasterPam( DistanceFunction.of( distances ), distances.length, 3 );
+		int[] labels = fasterPam.cluster();
+
+		assertEquals( 0d, fasterPam.getLoss(), 0d );
+		assertEquals( labels[ 1 ], labels[ 2 ] );
+		assertEquals( labels[ 3 ], labels[ 4 ] );
+		assertEquals( 3, Arrays.stream( labels ).distinct().count() );
+	}
+
+	@Test
+	void testClusterLazyDistances()
+	{
+		double[] positions = { 0, 1, 2, 10, 11, 12, 20, 21, 22 };
+		FasterPam fasterPam = new FasterPam( ( i, j ) -> Math.abs( positions[ i ] - positions[ j ] ), positions.length, 3 );
+		int[] labels = fasterPam.cluster();
+
+		assertEquals( 6d, fasterPam.getLoss(), 0d );
+		for ( int i = 0; i < positions.length; i++ )
+			assertEquals( labels[ i - i % 3 ], labels[ i ] );
+		assertEquals( 3, Arrays.stream( labels ).distinct().count() );
+	}
+
+	@Test
+	void testClusterSingleCluster()
+	{
+		double[][] distances = ClusterData.distances3;
+		FasterPam fasterPam = new FasterPam( DistanceFunction.of( distances ), distances.length, 1 );
+
+		assertArrayEquals( new int[ distances.length ], fasterPam.cluster() );
+		assertArrayEquals( new int[] { 1 }, fasterPam.getMedoids() );
+	}
+
+	@Test
+	void testInvalidNumberOfClusters()
+	{
+		DistanceFunction distances = DistanceFunction.of( ClusterData.distances3 );
+		assertThrows( IllegalArgumentException.class, () -> new FasterPam( distances, 6, 0 ) );
+		assertThrows( IllegalArgumentException.class, () -> new FasterPam( distances, 6, 7 ) );
+	}
+}
@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HdbscanTest
+{
+
+	@Test
+	void testCluster()
+	{
+		double[] positions = { 0, 1, 2, 3, 4, 100, 101, 102, 103, 104, 1000 };
+		int[] labels = new Hdbscan( ( i, j ) -> Math.abs( positions[ i ] - positions[ j ] ), positions.length, 3 ).cluster();
+
+		for ( int i = 1; i < 5; i++ )
+			assertArrayEquals( new int[] { labels[ 0 ], labels[ 5 ] }, new int[] { labels[ i ], labels[ 5 + i ] } );
+		assertNotEquals( Hdbscan.NOISE, labels[ 0 ] );
+		assertNotEquals( Hdbscan.NOISE, labels[ 5 ] );
+		assertNotEquals( labels[ 0 ], labels[ 5 ] );
+		assertArrayEquals( new int[] { 0, 1 }, Arrays.stream( labels ).filter( label -> label != Hdbscan.NOISE ).distinct().sorted().toArray() );
+		assertArrayEquals( new int[] { Hdbscan.NOISE }, new int[] { labels[ 10 ] } );
+	}
+
+	@Test
+	void testClusterNoStructure()
+	{
+		int[] labels = new Hdbscan( ( i, j ) -> i == j ? 0 : 1, 6, 2 ).cluster();
+
+		int[] expected = new int[ 6 ];
+		Arrays.fill( expected, Hdbscan.NOISE );
+		assertArrayEquals( expected, labels );
+	}
+
+	@Test
+	void testClusterTooFewObjects()
+	{
+		assertArrayEquals( new int[] { Hdbscan.NOISE, Hdbscan.NOISE }, new Hdbscan( ( i, j ) -> 1, 2, 3 ).cluster() );
+	}
+
+	@Test
+	void testInvalidParameters()
+	{
+		assertThrows( IllegalArgumentException.class, () -> new Hdbscan( ( i, j ) -> 1, 5, 1 ) );
+		assertThrows( IllegalArgumentException.class, () -> new Hdbscan( ( i, j ) -> 1, 5, 2, 0 ) );
+	}
+}
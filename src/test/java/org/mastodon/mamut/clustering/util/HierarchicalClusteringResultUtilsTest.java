@@ -89,6 +89,25 @@ class HierarchicalClusteringResultUtilsTest
 		assertNotNull( hierarchicalClusteringResult.getRootCluster() );
 	}
 
+	@Test
+	void testGetClusterLabels()
+	{
+		double[][] distances = ClusterData.example1.getValue();
+		Cluster root = HierarchicalClusteringUtils.performClustering( distances, new AverageLinkageUPGMAStrategy() );
+		int[] labels =
+				HierarchicalClusteringUtils.getClusterLabels( root, HierarchicalClusteringUtils.sortClusters( root ), 3, distances.length );
+
+		// NB: same classes as in testGetClassificationByClassCountAverageLinkage(): {F}, {A, B, E, G, H}, {C, D, I, J}
+		assertEquals( labels[ 0 ], labels[ 1 ] );
+		assertEquals( labels[ 0 ], labels[ 4 ] );
+		assertEquals( labels[ 0 ], labels[ 6 ] );
+		assertEquals( labels[ 0 ], labels[ 7 ] );
+		assertEquals( labels[ 2 ], labels[ 3 ] );
+		assertEquals( labels[ 2 ], labels[ 8 ] );
+		assertEquals( labels[ 2 ], labels[ 9 ] );
+		assertEquals( 3, new HashSet<>( Arrays.asList( labels[ 0 ], labels[ 2 ], labels[ 5 ] ) ).size() );
+	}
+
 	@Test
 	void testGetClassificationByClassCountAverageLinkage()
 	{
@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.config.ClusteringMethod;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IncrementalClusteringUtilsTest
+{
+
+	@Test
+	void testGetNearestClass()
+	{
+		// NB: class 0 contains one near and one far object, class 1 contains two objects at medium distance
+		double[] distances = { 1, 10, 4, 5 };
+		int[] classLabels = { 0, 0, 1, 1 };
+
+		assertEquals( 0, IncrementalClusteringUtils.getNearestClass( distances, classLabels, 2, ClusteringMethod.SINGLE_LINKAGE ) );
+		assertEquals( 1, IncrementalClusteringUtils.getNearestClass( distances, classLabels, 2, ClusteringMethod.COMPLETE_LINKAGE ) );
+		assertEquals( 1, IncrementalClusteringUtils.getNearestClass( distances, classLabels, 2, ClusteringMethod.AVERAGE_LINKAGE ) );
+		assertEquals( 1, IncrementalClusteringUtils.getNearestClass( distances, classLabels, 3, ClusteringMethod.K_MEDOIDS ) );
+		assertEquals( 0, IncrementalClusteringUtils.getNearestClass( distances, classLabels, 2, ClusteringMethod.HDBSCAN ) );
+	}
+
+	@Test
+	void testGetNearestClassNoClass()
+	{
+		assertEquals( IncrementalClusteringUtils.NO_CLASS,
+				IncrementalClusteringUtils.getNearestClass( new double[ 0 ], new int[ 0 ], 2, ClusteringMethod.AVERAGE_LINKAGE ) );
+	}
+}
@@ -0,0 +1,114 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.ClusterData;
+import org.mastodon.mamut.clustering.config.ClusteringMethod;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionClusteringUtilsTest
+{
+
+	@Test
+	void testGetKMedoidsClustering()
+	{
+		HierarchicalClusteringResult< String > result = PartitionClusteringUtils.getClustering( ClusterData.example2.getKey(),
+				ClusterData.example2.getValue(), ClusteringMethod.K_MEDOIDS, 3, 2 );
+
+		Set< String > class1 = new HashSet<>( Collections.singletonList( "A" ) );
+		Set< String > class2 = new HashSet<>( Arrays.asList( "B", "C" ) );
+		Set< String > class3 = new HashSet<>( Arrays.asList( "D", "E" ) );
+		assertEquals( new HashSet<>( Arrays.asList( class1, class2, class3 ) ), result.getClusteredObjects() );
+		assertEquals( 5, result.getObjectCount() );
+		assertEquals( 3, result.getRootCluster().getChildren().size() );
+		assertEquals( 5, result.getRootCluster().countLeafs() );
+		assertEquals( 5, result.getClusterNodesToObjects().size() );
+		assertEquals( 2d, result.getMedian(), 0d );
+		for ( HierarchicalClusteringResult.Group< String > group : result.getGroups() )
+			assertEquals( 0d, group.getCluster().getDistanceValue(), 0d );
+		assertEquals( 3d, result.getRootCluster().getDistanceValue(), 0d );
+		assertEquals( 1.5d, result.getCutoff(), 0d );
+	}
+
+	@Test
+	void testGetHdbscanClustering()
+	{
+		double[] positions = { 0, 1, 2, 3, 4, 100, 101, 102, 103, 104, 1000 };
+		String[] names = Arrays.stream( positions ).mapToObj( position -> "P" + ( int ) position ).toArray( String[]::new );
+		HierarchicalClusteringResult< String > result = PartitionClusteringUtils.getHdbscanClustering( names,
+				( i, j ) -> Math.abs( positions[ i ] - positions[ j ] ), Double.NaN, 3 );
+
+		Set< String > class1 = new HashSet<>( Arrays.asList( "P0", "P1", "P2", "P3", "P4" ) );
+		Set< String > class2 = new HashSet<>( Arrays.asList( "P100", "P101", "P102", "P103", "P104" ) );
+		assertEquals( new HashSet<>( Arrays.asList( class1, class2 ) ), result.getClusteredObjects() );
+		// NB: the noise object is not part of any group, but it is part of the dendrogram
+		assertEquals( 10, result.getObjectCount() );
+		assertEquals( 3, result.getRootCluster().getChildren().size() );
+		assertEquals( 11, result.getClusterNodesToObjects().size() );
+		assertTrue( Double.isNaN( result.getMedian() ) );
+		// NB: the representatives are P1 and P101, which have the smallest core distances, the noise object P1000 has distance 999 to P1
+		for ( HierarchicalClusteringResult.Group< String > group : result.getGroups() )
+			assertEquals( 3d, group.getCluster().getDistanceValue(), 0d );
+		assertEquals( 999d, result.getRootCluster().getDistanceValue(), 0d );
+		assertEquals( 501d, result.getCutoff(), 0d );
+	}
+
+	@Test
+	void testGetClusteringWithDistanceFunction()
+	{
+		String[] names = ClusterData.example2.getKey();
+		double[][] distances = ClusterData.example2.getValue();
+		HierarchicalClusteringResult< String > expected =
+				PartitionClusteringUtils.getClustering( names, distances, ClusteringMethod.K_MEDOIDS, 3, 2 );
+		HierarchicalClusteringResult< String > result = PartitionClusteringUtils.getClustering( names,
+				( i, j ) -> distances[ i ][ j ], Double.NaN, ClusteringMethod.K_MEDOIDS, 3, 2 );
+
+		assertEquals( expected.getClusteredObjects(), result.getClusteredObjects() );
+		assertEquals( expected.getRootCluster().getDistanceValue(), result.getRootCluster().getDistanceValue(), 0d );
+		assertTrue( Double.isNaN( result.getMedian() ) );
+	}
+
+	@Test
+	void testGetClusteringHierarchicalMethod()
+	{
+		String[] names = ClusterData.example2.getKey();
+		double[][] distances = ClusterData.example2.getValue();
+		assertThrows( IllegalArgumentException.class,
+				() -> PartitionClusteringUtils.getClustering( names, distances, ClusteringMethod.AVERAGE_LINKAGE, 3, 2 ) );
+	}
+}
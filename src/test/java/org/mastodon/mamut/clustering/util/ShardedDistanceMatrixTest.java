@@ -0,0 +1,179 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.SimpleTreeExamples;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedDistanceMatrixTest
+{
+
+	@TempDir
+	File tempDir;
+
+	private static List< Tree< Double > > getTrees()
+	{
+		return Arrays.asList( SimpleTreeExamples.tree1(), SimpleTreeExamples.tree2(), SimpleTreeExamples.tree3(), SimpleTreeExamples.tree4(),
+				SimpleTreeExamples.tree5(), SimpleTreeExamples.tree6(), SimpleTreeExamples.tree7() );
+	}
+
+	@Test
+	void testGetShardBoundaries()
+	{
+		// NB: 10 trees have 45 pairs, rows contain 9, 8, 7, ... , 1, 0 pairs
+		assertArrayEquals( new int[] { 0, 3, 10 }, ShardedDistanceMatrix.getShardBoundaries( 10, 2 ) );
+		assertArrayEquals( new int[] { 0, 2, 4, 10 }, ShardedDistanceMatrix.getShardBoundaries( 10, 3 ) );
+		assertArrayEquals( new int[] { 0, 10 }, ShardedDistanceMatrix.getShardBoundaries( 10, 1 ) );
+		// NB: 3 trees have 3 pairs, thus at most 2 non-empty row blocks
+		assertArrayEquals( new int[] { 0, 1, 3 }, ShardedDistanceMatrix.getShardBoundaries( 3, 5 ) );
+		assertArrayEquals( new int[] { 0 }, ShardedDistanceMatrix.getShardBoundaries( 1, 2 ) );
+		assertArrayEquals( new int[] { 0 }, ShardedDistanceMatrix.getShardBoundaries( 0, 2 ) );
+	}
+
+	@Test
+	void testCountPairs()
+	{
+		assertEquals( 45, ShardedDistanceMatrix.countPairs( 10, 0, 10 ) );
+		assertEquals( 17, ShardedDistanceMatrix.countPairs( 10, 0, 2 ) );
+		assertEquals( 0, ShardedDistanceMatrix.countPairs( 10, 9, 10 ) );
+	}
+
+	@Test
+	void testWriteAndReadTrees() throws IOException
+	{
+		List< Tree< Double > > trees = getTrees();
+		File file = new File( tempDir, "trees.bin" );
+		DistanceMatrixShardWorker.writeTrees( trees, file );
+		List< Tree< Double > > readTrees = DistanceMatrixShardWorker.readTrees( file );
+
+		assertEquals( trees.size(), readTrees.size() );
+		for ( int i = 0; i < trees.size(); i++ )
+			assertEquals( 0d, SimilarityMeasure.ZHANG_DISTANCE.compute( trees.get( i ), readTrees.get( i ), 1d ) );
+	}
+
+	@Test
+	void testWriteAndReadShard() throws IOException
+	{
+		List< Tree< Double > > trees = getTrees();
+		double[][] expected = HierarchicalClusteringUtils.getDistanceMatrix( trees, SimilarityMeasure.ZHANG_DISTANCE );
+		double[][] distances = new double[ trees.size() ][ trees.size() ];
+		int[] boundaries = ShardedDistanceMatrix.getShardBoundaries( trees.size(), 3 );
+		for ( int shard = 0; shard < boundaries.length - 1; shard++ )
+		{
+			double[][] rows = DistanceMatrixShardWorker.computeRows( trees, SimilarityMeasure.ZHANG_DISTANCE, boundaries[ shard ],
+					boundaries[ shard + 1 ] );
+			File shardFile = new File( tempDir, "shard-" + shard + ".bin" );
+			DistanceMatrixShardWorker.writeShard( rows, boundaries[ shard ], trees.size(), shardFile );
+			DistanceMatrixShardWorker.readShard( shardFile, distances );
+		}
+		for ( int i = 0; i < trees.size(); i++ )
+			assertArrayEquals( expected[ i ], distances[ i ], 0d );
+		double[][] wrongSize = new double[ trees.size() + 1 ][ trees.size() + 1 ];
+		assertThrows( IOException.class, () -> DistanceMatrixShardWorker.readShard( new File( tempDir, "shard-0.bin" ), wrongSize ) );
+	}
+
+	@Test
+	void testGetDistanceMatrix()
+	{
+		List< Tree< Double > > trees = getTrees();
+		double[][] expected = HierarchicalClusteringUtils.getDistanceMatrix( trees, SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE );
+		double[][] distances =
+				new ShardedDistanceMatrix( 2 ).getDistanceMatrix( trees, SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE );
+
+		assertEquals( trees.size(), distances.length );
+		for ( int i = 0; i < trees.size(); i++ )
+			assertArrayEquals( expected[ i ], distances[ i ], 0d );
+	}
+
+	@Test
+	void testGetDistanceMatrixEmpty()
+	{
+		assertEquals( 0, new ShardedDistanceMatrix( 2 ).getDistanceMatrix( Collections.emptyList(), SimilarityMeasure.ZHANG_DISTANCE ).length );
+	}
+
+	@Test
+	void testGetDistanceMatrixFailingWorker()
+	{
+		ShardedDistanceMatrix shardedDistanceMatrix = new ShardedDistanceMatrix( 2, 2, Collections.emptyList() );
+		shardedDistanceMatrix.setClassPath( tempDir.getAbsolutePath() );
+		List< Tree< Double > > trees = getTrees();
+		assertThrows( IllegalStateException.class, () -> shardedDistanceMatrix.getDistanceMatrix( trees, SimilarityMeasure.ZHANG_DISTANCE ) );
+	}
+
+	@Test
+	void testWorkerProcessesDestroyAll() throws IOException
+	{
+		ShardedDistanceMatrix.WorkerProcesses workers = new ShardedDistanceMatrix.WorkerProcesses();
+		ProcessBuilder processBuilder = new ProcessBuilder( Paths.get( System.getProperty( "java.home" ), "bin", "java" ).toString(), "-cp",
+				System.getProperty( "java.class.path" ), SleepingWorker.class.getName() );
+		Process process = workers.start( processBuilder );
+		assertTrue( process.isAlive() );
+		assertEquals( 1, workers.size() );
+
+		workers.destroyAll();
+		assertFalse( process.isAlive() );
+		assertEquals( 0, workers.size() );
+		assertThrows( IllegalStateException.class, () -> workers.start( processBuilder ) );
+	}
+
+	@Test
+	void testInvalidArguments()
+	{
+		assertThrows( IllegalArgumentException.class, () -> new ShardedDistanceMatrix( 0 ) );
+		List< String > noArguments = Collections.emptyList();
+		assertThrows( IllegalArgumentException.class, () -> new ShardedDistanceMatrix( 2, 0, noArguments ) );
+	}
+
+	/**
+	 * Stands in for a worker process that does not terminate by itself.
+	 */
+	static class SleepingWorker
+	{
+		public static void main( final String[] args ) throws InterruptedException
+		{
+			Thread.sleep( 60_000 );
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.clustering.util;
+
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.ClusterData;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TriangularDistanceCacheTest
+{
+
+	@Test
+	void testGetDistance()
+	{
+		double[][] distances = ClusterData.example1.getValue();
+		TriangularDistanceCache cache = new TriangularDistanceCache( distances.length, DistanceFunction.of( distances ) );
+
+		assertEquals( distances.length, cache.size() );
+		for ( int i = 0; i < distances.length; i++ )
+			for ( int j = 0; j < distances.length; j++ )
+				assertEquals( distances[ i ][ j ], cache.getDistance( i, j ), 0d );
+	}
+
+	@Test
+	void testEachPairComputedOnce()
+	{
+		double[][] distances = ClusterData.example1.getValue();
+		int n = distances.length;
+		Map< Integer, AtomicInteger > counts = new ConcurrentHashMap<>();
+		DistanceFunction countingDistances = ( i, j ) -> {
+			counts.computeIfAbsent( Math.min( i, j ) * n + Math.max( i, j ), key -> new AtomicInteger() ).incrementAndGet();
+			return distances[ i ][ j ];
+		};
+		TriangularDistanceCache cache = new TriangularDistanceCache( n, countingDistances );
+		assertEquals( n * ( n - 1 ) / 2, counts.size() );
+		counts.values().forEach( count -> assertEquals( 1, count.get() ) );
+
+		// NB: both clustering methods request each distance several times, but only from the cache
+		FasterPam fasterPam = new FasterPam( cache, n, 3 );
+		FasterPam fasterPamFromMatrix = new FasterPam( DistanceFunction.of( distances ), n, 3 );
+		assertArrayEquals( fasterPamFromMatrix.cluster(), fasterPam.cluster() );
+		assertArrayEquals( new Hdbscan( DistanceFunction.of( distances ), n, 2 ).cluster(), new Hdbscan( cache, n, 2 ).cluster() );
+		counts.values().forEach( count -> assertEquals( 1, count.get() ) );
+	}
+}
@@ -0,0 +1,181 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.branch.fingerprint;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mastodon.feature.FeatureProjection;
+import org.mastodon.mamut.feature.AbstractFeatureTest;
+import org.mastodon.mamut.feature.FeatureComputerTestUtils;
+import org.mastodon.mamut.feature.FeatureSerializerTestUtils;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+import org.scijava.Context;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BranchFingerprintFeatureTest extends AbstractFeatureTest< BranchSpot >
+{
+	private Model model;
+
+	private BranchSpot branchSpotA;
+
+	private BranchSpot branchSpotB;
+
+	private BranchSpot branchSpotD;
+
+	private BranchFingerprintFeature feature;
+
+	/**
+	 * <pre>
+	 *                  branchSpotA (timepoints 0-9)
+	 * 	       ┌──────────────┴─────────────┐
+	 * 	       │                            │
+	 * 	 branchSpotB (10-12)          branchSpotC (10-16)
+	 * 	 ┌─────┴──────┐              ┌──────┴───────┐
+	 * 	 │            │              │              │
+	 * 	 D (13-20)    E (13-20)      F (17-35)      G (17-20)
+	 * 	                             ┌──────┴───────┐
+	 * 	                             │              │
+	 * 	                             H (36-40)      I (36-40)
+	 * </pre>
+	 */
+	@BeforeEach
+	void setUp()
+	{
+		model = new Model();
+		ModelGraph graph = model.getGraph();
+		Spot a = addBranch( graph, null, 0, 9 );
+		Spot b = addBranch( graph, a, 10, 12 );
+		Spot c = addBranch( graph, a, 10, 16 );
+		Spot d = addBranch( graph, b, 13, 20 );
+		addBranch( graph, b, 13, 20 );
+		Spot f = addBranch( graph, c, 17, 35 );
+		addBranch( graph, c, 17, 20 );
+		addBranch( graph, f, 36, 40 );
+		addBranch( graph, f, 36, 40 );
+		ModelBranchGraph branchGraph = model.getBranchGraph();
+		branchGraph.graphRebuilt();
+		branchSpotA = branchGraph.getBranchVertex( a, branchGraph.vertexRef() );
+		branchSpotB = branchGraph.getBranchVertex( b, branchGraph.vertexRef() );
+		branchSpotD = branchGraph.getBranchVertex( d, branchGraph.vertexRef() );
+		try (Context context = new Context())
+		{
+			feature = ( BranchFingerprintFeature ) FeatureComputerTestUtils.getFeature( context, model,
+					BranchFingerprintFeature.BRANCH_FINGERPRINT_FEATURE_SPEC );
+		}
+	}
+
+	/**
+	 * Adds a branch from the given start to the given end timepoint and links it to the given parent spot, if not {@code null}.
+	 *
+	 * @return the last spot of the branch
+	 */
+	private static Spot addBranch( final ModelGraph graph, final Spot parent, final int start, final int end )
+	{
+		Spot first = graph.addVertex().init( start, new double[ 3 ], 0 );
+		if ( parent != null )
+			graph.addEdge( parent, first );
+		if ( start == end )
+			return first;
+		Spot last = graph.addVertex().init( end, new double[ 3 ], 0 );
+		graph.addEdge( first, last );
+		return last;
+	}
+
+	@Test
+	@Override
+	public void testFeatureComputation()
+	{
+		FeatureProjection< BranchSpot > depth = getProjection( feature, BranchFingerprintFeature.DEPTH_PROJECTION_SPEC );
+		FeatureProjection< BranchSpot > leaves = getProjection( feature, BranchFingerprintFeature.LEAVES_PROJECTION_SPEC );
+		FeatureProjection< BranchSpot > duration = getProjection( feature, BranchFingerprintFeature.DURATION_PROJECTION_SPEC );
+
+		assertEquals( 4, depth.value( branchSpotA ), 0 );
+		assertEquals( 2, depth.value( branchSpotB ), 0 );
+		assertEquals( 1, depth.value( branchSpotD ), 0 );
+
+		assertEquals( 5, leaves.value( branchSpotA ), 0 );
+		assertEquals( 2, leaves.value( branchSpotB ), 0 );
+		assertEquals( 1, leaves.value( branchSpotD ), 0 );
+
+		assertEquals( 10 + 3 + 7 + 8 + 8 + 19 + 4 + 5 + 5, duration.value( branchSpotA ), 0 );
+		assertEquals( 3 + 8 + 8, duration.value( branchSpotB ), 0 );
+		assertEquals( 8, duration.value( branchSpotD ), 0 );
+
+		// divisions of B at timepoint 12, C at timepoint 16 and F at timepoint 35, i.e. 3, 7 and 26 timepoints after the division of A
+		assertArrayEquals( new int[] { 2, 0, 1, 0, 0, 0, 0, 0, 0, 0 }, feature.getDivisionHistogram( branchSpotA ) );
+		assertArrayEquals( new int[ BranchFingerprintFeature.NUMBER_OF_BINS ], feature.getDivisionHistogram( branchSpotB ) );
+		assertArrayEquals( new int[ BranchFingerprintFeature.NUMBER_OF_BINS ], feature.getDivisionHistogram( branchSpotD ) );
+		assertEquals( 1, getProjection( feature, BranchFingerprintFeature.DIVISIONS_PROJECTION_SPECS.get( 2 ) ).value( branchSpotA ), 0 );
+	}
+
+	@Test
+	@Override
+	public void testFeatureSerialization() throws IOException
+	{
+		BranchFingerprintFeature featureReloaded;
+		try (Context context = new Context())
+		{
+			featureReloaded = ( BranchFingerprintFeature ) FeatureSerializerTestUtils.saveAndReload( context, model, feature );
+		}
+		// check that the feature has correct values after saving and reloading
+		assertTrue( FeatureSerializerTestUtils.checkFeatureProjectionEquality( feature, featureReloaded,
+				Arrays.asList( branchSpotA, branchSpotB, branchSpotD ) ) );
+	}
+
+	@Test
+	@Override
+	public void testFeatureInvalidate()
+	{
+		// test, if features are set before invalidation
+		assertTrue( feature.valueIsSet( branchSpotA ) );
+
+		// invalidate feature
+		feature.invalidate( branchSpotA );
+
+		// test, if features are -1 (i.e. default value) after invalidation
+		assertFalse( feature.valueIsSet( branchSpotA ) );
+		assertEquals( -1, getProjection( feature, BranchFingerprintFeature.DEPTH_PROJECTION_SPEC ).value( branchSpotA ), 0d );
+		assertEquals( -1, getProjection( feature, BranchFingerprintFeature.DIVISIONS_PROJECTION_SPECS.get( 0 ) ).value( branchSpotA ),
+				0d );
+		assertNull( feature.getDivisionHistogram( branchSpotA ) );
+		assertTrue( feature.valueIsSet( branchSpotB ) );
+	}
+}
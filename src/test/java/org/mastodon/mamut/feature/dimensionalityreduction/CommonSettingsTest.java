@@ -30,6 +30,7 @@ package org.mastodon.mamut.feature.dimensionalityreduction;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -69,4 +70,26 @@ class CommonSettingsTest
 		commonSettings.setStandardizeFeatures( false );
 		assertFalse( commonSettings.isStandardizeFeatures() );
 	}
+
+	@Test
+	void setLandmarks()
+	{
+		assertEquals( CommonSettings.DEFAULT_USE_LANDMARKS, commonSettings.isUseLandmarks() );
+		assertEquals( CommonSettings.DEFAULT_NUMBER_OF_LANDMARKS, commonSettings.getNumberOfLandmarks() );
+		commonSettings.setUseLandmarks( true );
+		commonSettings.setNumberOfLandmarks( 500 );
+		assertTrue( commonSettings.isUseLandmarks() );
+		assertEquals( 500, commonSettings.getNumberOfLandmarks() );
+	}
+
+	@Test
+	void setReduceWithPca()
+	{
+		assertEquals( CommonSettings.DEFAULT_REDUCE_WITH_PCA, commonSettings.isReduceWithPca() );
+		assertEquals( CommonSettings.DEFAULT_NUMBER_OF_PRINCIPAL_COMPONENTS, commonSettings.getNumberOfPrincipalComponents() );
+		commonSettings.setReduceWithPca( true );
+		commonSettings.setNumberOfPrincipalComponents( 10 );
+		assertTrue( commonSettings.isReduceWithPca() );
+		assertEquals( 10, commonSettings.getNumberOfPrincipalComponents() );
+	}
 }
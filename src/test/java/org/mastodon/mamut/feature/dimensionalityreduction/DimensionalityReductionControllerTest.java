@@ -38,6 +38,7 @@ import org.mastodon.mamut.feature.dimensionalityreduction.tsne.TSneSettings;
 import org.mastodon.mamut.feature.dimensionalityreduction.umap.UmapSettings;
 import org.mastodon.mamut.feature.dimensionalityreduction.util.InputDimension;
 import org.mastodon.mamut.feature.spot.dimensionalityreduction.umap.SpotUmapFeature;
+import org.mastodon.mamut.feature.spot.dimensionalityreduction.umap.SpotUmapFeatureComputer;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.ModelGraph;
@@ -52,10 +53,19 @@ import org.scijava.prefs.PrefService;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -217,6 +227,123 @@ class DimensionalityReductionControllerTest
 		}
 	}
 
+	@Test
+	void testTransformMode()
+	{
+		ExampleGraph2 graph2 = new ExampleGraph2();
+		FeatureModel featureModel = graph2.getModel().getFeatureModel();
+		DefaultFeatureRangeCalculatorTest.TestDoubleFeature testDoubleFeature = new DefaultFeatureRangeCalculatorTest.TestDoubleFeature(
+				new DoublePropertyMap<>( graph2.getModel().getGraph().vertices().getRefPool(), Double.NaN ) );
+		featureModel.declareFeature( testDoubleFeature );
+		testDoubleFeature.doubleValues.set( graph2.spot1, 10 );
+		testDoubleFeature.doubleValues.set( graph2.spot2, 15 );
+		testDoubleFeature.doubleValues.set( graph2.spot3, 20 );
+		testDoubleFeature.doubleValues.set( graph2.spot6, 35 );
+		testDoubleFeature.doubleValues.set( graph2.spot7, 40 );
+		testDoubleFeature.doubleValues.set( graph2.spot8, 45 );
+		testDoubleFeature.doubleValues.set( graph2.spot10, 50 );
+
+		try (Context context = new Context())
+		{
+			DimensionalityReductionController umapController = new DimensionalityReductionController( graph2.getModel(), context );
+			umapController.getUmapSettings().setNumberOfNeighbors( 5 );
+			umapController.setTransformMode( true );
+			Supplier< List< InputDimension< Spot > > > inputDimensionsSupplier =
+					() -> InputDimension.getListFromFeatureModel( featureModel, Spot.class, Link.class );
+			umapController.computeFeature( inputDimensionsSupplier );
+			Feature< Spot > spotUmapFeature = Cast.unchecked( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+			FeatureProjection< Spot > projection0 = spotUmapFeature.projections().iterator().next();
+			double spot1Value = projection0.value( graph2.spot1 );
+			assertFalse( Double.isNaN( spot1Value ) );
+			assertTrue( Double.isNaN( projection0.value( graph2.spot11 ) ) );
+
+			testDoubleFeature.doubleValues.set( graph2.spot11, 55 );
+			umapController.computeFeature( inputDimensionsSupplier );
+			spotUmapFeature = Cast.unchecked( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+			projection0 = spotUmapFeature.projections().iterator().next();
+			assertEquals( spot1Value, projection0.value( graph2.spot1 ) );
+			assertFalse( Double.isNaN( projection0.value( graph2.spot11 ) ) );
+		}
+	}
+
+	@Test
+	void testRestoreIdenticalComputation()
+	{
+		ExampleGraph2 graph2 = new ExampleGraph2();
+		FeatureModel featureModel = graph2.getModel().getFeatureModel();
+		DefaultFeatureRangeCalculatorTest.TestDoubleFeature testDoubleFeature = new DefaultFeatureRangeCalculatorTest.TestDoubleFeature(
+				new DoublePropertyMap<>( graph2.getModel().getGraph().vertices().getRefPool(), Double.NaN ) );
+		featureModel.declareFeature( testDoubleFeature );
+		Spot[] spots = { graph2.spot1, graph2.spot2, graph2.spot3, graph2.spot6, graph2.spot7, graph2.spot8, graph2.spot10 };
+		for ( int i = 0; i < spots.length; i++ )
+			testDoubleFeature.doubleValues.set( spots[ i ], 10d + 5 * i );
+
+		try (Context context = new Context())
+		{
+			DimensionalityReductionController umapController = new DimensionalityReductionController( graph2.getModel(), context );
+			umapController.getUmapSettings().setNumberOfNeighbors( 5 );
+			Supplier< List< InputDimension< Spot > > > inputDimensionsSupplier =
+					() -> InputDimension.getListFromFeatureModel( featureModel, Spot.class, Link.class );
+			umapController.computeFeature( inputDimensionsSupplier );
+			SpotUmapFeature computedFeature = Cast.unchecked( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+			assertNotNull( computedFeature.getResultKey() );
+
+			// an identical computation restores the outputs
+			umapController.computeFeature( inputDimensionsSupplier );
+			assertSame( computedFeature, featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+
+			// changed settings lead to a new computation
+			umapController.getUmapSettings().setNumberOfNeighbors( 4 );
+			umapController.computeFeature( inputDimensionsSupplier );
+			SpotUmapFeature changedSettingsFeature = Cast.unchecked( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+			assertNotSame( computedFeature, changedSettingsFeature );
+			assertNotEquals( computedFeature.getResultKey(), changedSettingsFeature.getResultKey() );
+
+			// changed input values lead to a new computation
+			testDoubleFeature.doubleValues.set( spots[ 0 ], 100 );
+			umapController.computeFeature( inputDimensionsSupplier );
+			SpotUmapFeature changedDataFeature = Cast.unchecked( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+			assertNotSame( changedSettingsFeature, changedDataFeature );
+
+			// invalidated outputs lead to a new computation
+			changedDataFeature.invalidate( spots[ 1 ] );
+			umapController.computeFeature( inputDimensionsSupplier );
+			SpotUmapFeature recomputedFeature = Cast.unchecked( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+			assertNotSame( changedDataFeature, recomputedFeature );
+			assertEquals( changedDataFeature.getResultKey(), recomputedFeature.getResultKey() );
+			assertTrue( recomputedFeature.valueIsSet( spots[ 1 ] ) );
+		}
+	}
+
+	@Test
+	void testLandmarks()
+	{
+		ExampleGraph2 graph2 = new ExampleGraph2();
+		FeatureModel featureModel = graph2.getModel().getFeatureModel();
+		DefaultFeatureRangeCalculatorTest.TestDoubleFeature testDoubleFeature = new DefaultFeatureRangeCalculatorTest.TestDoubleFeature(
+				new DoublePropertyMap<>( graph2.getModel().getGraph().vertices().getRefPool(), Double.NaN ) );
+		featureModel.declareFeature( testDoubleFeature );
+		Spot[] spots = { graph2.spot1, graph2.spot2, graph2.spot3, graph2.spot4, graph2.spot5, graph2.spot6, graph2.spot7, graph2.spot8,
+				graph2.spot9, graph2.spot10, graph2.spot11, graph2.spot12, graph2.spot13 };
+		for ( int i = 0; i < spots.length; i++ )
+			testDoubleFeature.doubleValues.set( spots[ i ], 5d * i );
+
+		try (Context context = new Context())
+		{
+			DimensionalityReductionController umapController = new DimensionalityReductionController( graph2.getModel(), context );
+			umapController.getUmapSettings().setNumberOfNeighbors( 5 );
+			umapController.getCommonSettings().setUseLandmarks( true );
+			umapController.getCommonSettings().setNumberOfLandmarks( 9 );
+			Supplier< List< InputDimension< Spot > > > inputDimensionsSupplier =
+					() -> InputDimension.getListFromFeatureModel( featureModel, Spot.class, Link.class );
+			umapController.computeFeature( inputDimensionsSupplier );
+			Feature< Spot > spotUmapFeature = Cast.unchecked( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+			for ( FeatureProjection< Spot > projection : spotUmapFeature.projections() )
+				for ( Spot spot : spots )
+					assertFalse( Double.isNaN( projection.value( spot ) ) );
+		}
+	}
+
 	@Test
 	void testMultipleIncomingEdges()
 	{
@@ -245,4 +372,153 @@ class DimensionalityReductionControllerTest
 		}
 	}
 
+	@Test
+	void testGraphEditedDuringComputation()
+	{
+		ExampleGraph2 graph2 = new ExampleGraph2();
+		Model model = graph2.getModel();
+		ModelGraph graph = model.getGraph();
+		FeatureModel featureModel = model.getFeatureModel();
+		DefaultFeatureRangeCalculatorTest.TestDoubleFeature testDoubleFeature = new DefaultFeatureRangeCalculatorTest.TestDoubleFeature(
+				new DoublePropertyMap<>( graph.vertices().getRefPool(), Double.NaN ) );
+		featureModel.declareFeature( testDoubleFeature );
+		Spot[] spots = { graph2.spot1, graph2.spot2, graph2.spot3, graph2.spot6, graph2.spot7, graph2.spot8, graph2.spot10 };
+		for ( int i = 0; i < spots.length; i++ )
+			testDoubleFeature.doubleValues.set( spots[ i ], 10d + 5 * i );
+
+		// removes a spot and adds a new one, which may take the place of the removed one in the pool, while the algorithm is fitted
+		Spot[] addedSpot = new Spot[ 1 ];
+		EditingExecutor editingExecutor = new EditingExecutor( graph.getLock(), () -> {
+			graph.remove( graph2.spot10 );
+			addedSpot[ 0 ] = graph.addVertex().init( 0, new double[] { 1, 2, 3 }, 1 );
+		} );
+
+		try (Context context = new Context())
+		{
+			SpotUmapFeatureComputer computer = new SpotUmapFeatureComputer( model, context );
+			computer.setExecutor( editingExecutor );
+			UmapSettings umapSettings = new UmapSettings();
+			umapSettings.setNumberOfNeighbors( 5 );
+			computer.computeFeature( new CommonSettings(), umapSettings,
+					InputDimension.getListFromFeatureModel( featureModel, Spot.class, Link.class ), graph );
+			Feature< Spot > spotUmapFeature = Cast.unchecked( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+			FeatureProjection< Spot > projection0 = spotUmapFeature.projections().iterator().next();
+			assertFalse( Double.isNaN( projection0.value( graph2.spot1 ) ) );
+			assertTrue( Double.isNaN( projection0.value( addedSpot[ 0 ] ) ) );
+		}
+	}
+
+	@Test
+	void testCancel()
+	{
+		ExampleGraph2 graph2 = new ExampleGraph2();
+		Model model = graph2.getModel();
+		FeatureModel featureModel = model.getFeatureModel();
+		try (Context context = new Context())
+		{
+			DimensionalityReductionController controller = new DimensionalityReductionController( model, context );
+			assertFalse( controller.isRunning() );
+			// canceling without a running computation has no effect
+			controller.cancel();
+
+			SpotUmapFeatureComputer computer = new SpotUmapFeatureComputer( model, context );
+			computer.cancel( "test" );
+			List< InputDimension< Spot > > inputDimensions = InputDimension.getListFromFeatureModel( featureModel, Spot.class, Link.class );
+			assertThrows( CancellationException.class,
+					() -> computer.computeFeature( new CommonSettings(), new UmapSettings(), inputDimensions, model.getGraph() ) );
+			assertNull( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+		}
+	}
+
+	@Test
+	void testCancelBeforeComputerIsPrepared()
+	{
+		ExampleGraph2 graph2 = new ExampleGraph2();
+		Model model = graph2.getModel();
+		FeatureModel featureModel = model.getFeatureModel();
+		DefaultFeatureRangeCalculatorTest.TestDoubleFeature testDoubleFeature = new DefaultFeatureRangeCalculatorTest.TestDoubleFeature(
+				new DoublePropertyMap<>( model.getGraph().vertices().getRefPool(), Double.NaN ) );
+		featureModel.declareFeature( testDoubleFeature );
+		Spot[] spots = { graph2.spot1, graph2.spot2, graph2.spot3, graph2.spot6, graph2.spot7, graph2.spot8, graph2.spot10 };
+		for ( int i = 0; i < spots.length; i++ )
+			testDoubleFeature.doubleValues.set( spots[ i ], 10d + 5 * i );
+		try (Context context = new Context())
+		{
+			DimensionalityReductionController controller = new DimensionalityReductionController( model, context );
+			controller.getUmapSettings().setNumberOfNeighbors( 5 );
+			// NB: the input dimensions are supplied while the computation is running, but before the computer is prepared
+			Supplier< List< InputDimension< Spot > > > cancelingSupplier = () -> {
+				controller.cancel();
+				return InputDimension.getListFromFeatureModel( featureModel, Spot.class, Link.class );
+			};
+			assertThrows( CancellationException.class, () -> controller.computeFeature( cancelingSupplier ) );
+			assertFalse( controller.isRunning() );
+			assertNull( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+
+			// the cancellation does not affect the next computation
+			controller.computeFeature( () -> InputDimension.getListFromFeatureModel( featureModel, Spot.class, Link.class ) );
+			assertNotNull( featureModel.getFeature( SpotUmapFeature.GENERIC_SPEC ) );
+		}
+	}
+
+	/**
+	 * Executes each task in the calling thread, after executing the given edit under the write lock of the graph.
+	 */
+	private static class EditingExecutor extends AbstractExecutorService
+	{
+		private final ReentrantReadWriteLock lock;
+
+		private final Runnable edit;
+
+		private EditingExecutor( final ReentrantReadWriteLock lock, final Runnable edit )
+		{
+			this.lock = lock;
+			this.edit = edit;
+		}
+
+		@Override
+		public void execute( final Runnable command )
+		{
+			lock.writeLock().lock();
+			try
+			{
+				edit.run();
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+			command.run();
+		}
+
+		@Override
+		public void shutdown()
+		{
+			// NB: nothing to shut down
+		}
+
+		@Override
+		public List< Runnable > shutdownNow()
+		{
+			return Collections.emptyList();
+		}
+
+		@Override
+		public boolean isShutdown()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean isTerminated()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean awaitTermination( final long timeout, final TimeUnit unit )
+		{
+			return true;
+		}
+	}
 }
@@ -0,0 +1,183 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.tsne;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.apache.commons.math3.transform.TransformType;
+import org.junit.jupiter.api.Test;
+
+class FftRepulsionTest
+{
+	@Test
+	void testRepulsiveForces2d()
+	{
+		assertRepulsiveForces( 2, 1000, 10 );
+	}
+
+	@Test
+	void testRepulsiveForces3d()
+	{
+		assertRepulsiveForces( 3, 500, 5 );
+	}
+
+	@Test
+	void testRepulsiveForces1d()
+	{
+		assertRepulsiveForces( 1, 500, 20 );
+	}
+
+	@Test
+	void testTransform()
+	{
+		int length = 8;
+		double[][] values = new double[ 2 ][ length * length ];
+		Random random = new Random( 1 );
+		for ( int i = 0; i < values[ 0 ].length; i++ )
+			values[ 0 ][ i ] = random.nextDouble();
+		double[] original = values[ 0 ].clone();
+		FftRepulsion.transform( values, length, 2, TransformType.FORWARD, length );
+		double sum = 0;
+		for ( double value : original )
+			sum += value;
+		assertEquals( sum, values[ 0 ][ 0 ], 1e-12 );
+		FftRepulsion.transform( values, length, 2, TransformType.INVERSE, length );
+		assertArrayEquals( original, values[ 0 ], 1e-12 );
+		assertArrayEquals( new double[ length * length ], values[ 1 ], 1e-12 );
+	}
+
+	@Test
+	void testTransformWithBound()
+	{
+		int length = 8;
+		int bound = 3;
+		double[][] values = new double[ 2 ][ length * length * length ];
+		Random random = new Random( 1 );
+		for ( int x = 0; x < bound; x++ )
+			for ( int y = 0; y < bound; y++ )
+				for ( int z = 0; z < bound; z++ )
+				{
+					values[ 0 ][ x + length * ( y + length * z ) ] = random.nextDouble();
+					values[ 1 ][ x + length * ( y + length * z ) ] = random.nextDouble();
+				}
+		double[][] expected = { values[ 0 ].clone(), values[ 1 ].clone() };
+		FftRepulsion.transform( expected, length, 3, TransformType.FORWARD, length );
+		FftRepulsion.transform( values, length, 3, TransformType.FORWARD, bound );
+		assertArrayEquals( expected[ 0 ], values[ 0 ], 1e-12 );
+		assertArrayEquals( expected[ 1 ], values[ 1 ], 1e-12 );
+		FftRepulsion.transform( expected, length, 3, TransformType.INVERSE, length );
+		FftRepulsion.transform( values, length, 3, TransformType.INVERSE, bound );
+		for ( int x = 0; x < bound; x++ )
+			for ( int y = 0; y < bound; y++ )
+				for ( int z = 0; z < bound; z++ )
+				{
+					int index = x + length * ( y + length * z );
+					assertEquals( expected[ 0 ][ index ], values[ 0 ][ index ], 1e-12 );
+					assertEquals( expected[ 1 ][ index ], values[ 1 ][ index ], 1e-12 );
+				}
+	}
+
+	@Test
+	void testLagrangeWeights()
+	{
+		double[] weights = new double[ FftRepulsion.INTERPOLATION_POINTS ];
+		FftRepulsion.getLagrangeWeights( 0.5, weights, 0 );
+		assertArrayEquals( new double[] { 0, 1, 0 }, weights, 1e-12 );
+		FftRepulsion.getLagrangeWeights( 0.3, weights, 0 );
+		assertEquals( 1, weights[ 0 ] + weights[ 1 ] + weights[ 2 ], 1e-12 );
+	}
+
+	@Test
+	void testNumberOfBoxes()
+	{
+		assertEquals( 10, FftRepulsion.getNumberOfBoxes( 1, 2 ) );
+		// 30 boxes need a transform of length 256, which fits 42 boxes
+		assertEquals( 42, FftRepulsion.getNumberOfBoxes( 30, 2 ) );
+		assertEquals( 170, FftRepulsion.getNumberOfBoxes( 1000, 2 ) );
+		assertEquals( 5, FftRepulsion.getNumberOfBoxes( 1, 3 ) );
+		assertEquals( 21, FftRepulsion.getNumberOfBoxes( 15, 3 ) );
+	}
+
+	@Test
+	void testInvalidDimensions()
+	{
+		assertThrows( IllegalArgumentException.class, () -> new FftRepulsion( 0 ) );
+		assertThrows( IllegalArgumentException.class, () -> new FftRepulsion( 4 ) );
+	}
+
+	private static void assertRepulsiveForces( final int dimensions, final int numberOfPoints, final double spread )
+	{
+		Random random = new Random( 42 );
+		double[][] embedding = new double[ numberOfPoints ][ dimensions ];
+		for ( double[] point : embedding )
+			for ( int d = 0; d < dimensions; d++ )
+				point[ d ] = random.nextGaussian() * spread / 4;
+
+		double[][] expectedForces = new double[ numberOfPoints ][ dimensions ];
+		double expectedNormalization = 0;
+		for ( int i = 0; i < numberOfPoints; i++ )
+			for ( int j = 0; j < numberOfPoints; j++ )
+			{
+				if ( i == j )
+					continue;
+				double squaredDistance = 0;
+				for ( int d = 0; d < dimensions; d++ )
+					squaredDistance += ( embedding[ i ][ d ] - embedding[ j ][ d ] ) * ( embedding[ i ][ d ] - embedding[ j ][ d ] );
+				double q = 1 / ( 1 + squaredDistance );
+				expectedNormalization += q;
+				for ( int d = 0; d < dimensions; d++ )
+					expectedForces[ i ][ d ] += q * q * ( embedding[ i ][ d ] - embedding[ j ][ d ] );
+			}
+		for ( double[] force : expectedForces )
+			for ( int d = 0; d < dimensions; d++ )
+				force[ d ] /= expectedNormalization;
+
+		double[][] exactForces = new double[ numberOfPoints ][ dimensions ];
+		assertEquals( expectedNormalization, FftRepulsion.computeExactRepulsiveForces( embedding, exactForces ), 1e-9 * expectedNormalization );
+		for ( int i = 0; i < numberOfPoints; i++ )
+			assertArrayEquals( expectedForces[ i ], exactForces[ i ], 1e-12 );
+
+		double[][] forces = new double[ numberOfPoints ][ dimensions ];
+		double normalization = new FftRepulsion( dimensions ).computeRepulsiveForces( embedding, forces );
+		assertEquals( expectedNormalization, normalization, 1e-3 * expectedNormalization );
+		double squaredError = 0;
+		double squaredNorm = 0;
+		for ( int i = 0; i < numberOfPoints; i++ )
+			for ( int d = 0; d < dimensions; d++ )
+			{
+				squaredError += ( forces[ i ][ d ] - expectedForces[ i ][ d ] ) * ( forces[ i ][ d ] - expectedForces[ i ][ d ] );
+				squaredNorm += expectedForces[ i ][ d ] * expectedForces[ i ][ d ];
+			}
+		assertEquals( 0, Math.sqrt( squaredError / squaredNorm ), 1e-2 );
+	}
+}
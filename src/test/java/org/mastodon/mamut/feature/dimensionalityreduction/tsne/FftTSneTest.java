@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.tsne;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.feature.dimensionalityreduction.RandomDataTools;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborDescent;
+import org.mastodon.mamut.feature.dimensionalityreduction.util.NearestNeighborGraph;
+
+class FftTSneTest
+{
+	private static final int NUMBER_OF_CLUSTER_1 = 50;
+
+	private static final int NUMBER_OF_CLUSTER_2 = 100;
+
+	@Test
+	void testClustersAreSeparated()
+	{
+		double[][] embedding = FftTSne.fit( getGraph(), 2, 10, 500, FftTSne.DEFAULT_SEED );
+		assertEquals( NUMBER_OF_CLUSTER_1 + NUMBER_OF_CLUSTER_2, embedding.length );
+		assertEquals( 2, embedding[ 0 ].length );
+		double[] center1 = getCenter( embedding, 0, NUMBER_OF_CLUSTER_1 );
+		double[] center2 = getCenter( embedding, NUMBER_OF_CLUSTER_1, embedding.length );
+		double separation = distance( center1, center2 );
+		// each point is closer to the center of its own cluster than to the center of the other cluster
+		for ( int i = 0; i < embedding.length; i++ )
+		{
+			boolean inCluster1 = i < NUMBER_OF_CLUSTER_1;
+			double ownDistance = distance( embedding[ i ], inCluster1 ? center1 : center2 );
+			double otherDistance = distance( embedding[ i ], inCluster1 ? center2 : center1 );
+			assertTrue( ownDistance < otherDistance, "Point " + i + " is not closer to its own cluster." );
+		}
+		assertTrue( separation > 1 );
+	}
+
+	@Test
+	void testDeterministic()
+	{
+		NearestNeighborGraph graph = getGraph();
+		double[][] embedding1 = FftTSne.fit( graph, 3, 10, 300, FftTSne.DEFAULT_SEED );
+		double[][] embedding2 = FftTSne.fit( graph, 3, 10, 300, FftTSne.DEFAULT_SEED );
+		assertArrayEquals( embedding1, embedding2 );
+	}
+
+	@Test
+	void testInvalidArguments()
+	{
+		NearestNeighborGraph graph = getGraph();
+		assertThrows( IllegalArgumentException.class, () -> FftTSne.fit( graph, 4, 10, 300, FftTSne.DEFAULT_SEED ) );
+		assertThrows( IllegalArgumentException.class, () -> FftTSne.fit( graph, 2, 30, 300, FftTSne.DEFAULT_SEED ) );
+	}
+
+	@Test
+	void testInterrupted()
+	{
+		NearestNeighborGraph graph = getGraph();
+		Thread.currentThread().interrupt();
+		try
+		{
+			assertThrows( CancellationException.class, () -> FftTSne.fit( graph, 2, 10, 300, FftTSne.DEFAULT_SEED ) );
+		}
+		finally
+		{
+			Thread.interrupted();
+		}
+	}
+
+	private static NearestNeighborGraph getGraph()
+	{
+		double[][] data = RandomDataTools.generateSampleData( NUMBER_OF_CLUSTER_1, NUMBER_OF_CLUSTER_2 );
+		return NearestNeighborDescent.build( data, 30, NearestNeighborDescent.DEFAULT_SEED );
+	}
+
+	private static double[] getCenter( final double[][] embedding, final int from, final int to )
+	{
+		double[] center = new double[ embedding[ 0 ].length ];
+		for ( int i = from; i < to; i++ )
+			for ( int d = 0; d < center.length; d++ )
+				center[ d ] += embedding[ i ][ d ] / ( to - from );
+		return center;
+	}
+
+	private static double distance( final double[] a, final double[] b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.length; d++ )
+			sum += ( a[ d ] - b[ d ] ) * ( a[ d ] - b[ d ] );
+		return Math.sqrt( sum );
+	}
+}
@@ -71,6 +71,22 @@ class TSneSettingsTest
 		assertEquals( 20, tSneSettings.getMaxIterations() );
 	}
 
+	@Test
+	void testUseFft()
+	{
+		assertEquals( TSneSettings.DEFAULT_USE_FFT, tSneSettings.isUseFft() );
+		tSneSettings.setUseFft( true );
+		assertTrue( tSneSettings.isUseFft() );
+		assertTrue( new TSneSettings( 10, 20, true ).isUseFft() );
+		assertFalse( new TSneSettings( 10, 20 ).isUseFft() );
+	}
+
+	@Test
+	void testToString()
+	{
+		assertEquals( "TSneSettings{perplexity=10, maxIterations=20, useFft=true}", new TSneSettings( 10, 20, true ).toString() );
+	}
+
 	@Test
 	void testIsValidPerplexity()
 	{
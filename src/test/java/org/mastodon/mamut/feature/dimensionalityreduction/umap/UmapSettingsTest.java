@@ -68,4 +68,12 @@ class UmapSettingsTest
 		umapSettings.setMinimumDistance( 0.5 );
 		assertEquals( 0.5, umapSettings.getMinimumDistance() );
 	}
+
+	@Test
+	void testReproducible()
+	{
+		assertEquals( UmapSettings.DEFAULT_REPRODUCIBLE, umapSettings.isReproducible() );
+		umapSettings.setReproducible( false );
+		assertFalse( umapSettings.isReproducible() );
+	}
 }
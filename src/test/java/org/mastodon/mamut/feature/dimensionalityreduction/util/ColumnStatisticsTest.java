@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnStatisticsTest
+{
+	@Test
+	void testAdd()
+	{
+		ColumnStatistics statistics = new ColumnStatistics( 2 );
+		statistics.add( new double[] { 1, 2 } );
+		statistics.add( new double[] { 2, 2 } );
+		statistics.add( new double[] { 3, 2 } );
+		statistics.add( new double[] { 4, 2 } );
+		statistics.add( new double[] { 5, 2 } );
+		assertEquals( 5, statistics.getCount() );
+		assertArrayEquals( new double[] { 3, 2 }, statistics.getMeans() );
+		assertArrayEquals( new double[] { 1.5811388300841898, 0 }, statistics.getStandardDeviations(), 1e-15 );
+	}
+
+	@Test
+	void testSingleRow()
+	{
+		ColumnStatistics statistics = new ColumnStatistics( 3 );
+		statistics.add( new double[] { 1, 2, 3 } );
+		assertArrayEquals( new double[] { 1, 2, 3 }, statistics.getMeans() );
+		assertArrayEquals( new double[] { 0, 0, 0 }, statistics.getStandardDeviations() );
+	}
+
+	@Test
+	void testMerge()
+	{
+		double[][] rows = getRandomRows( 1000, 4 );
+		ColumnStatistics all = new ColumnStatistics( 4 );
+		ColumnStatistics first = new ColumnStatistics( 4 );
+		ColumnStatistics second = new ColumnStatistics( 4 );
+		ColumnStatistics merged = new ColumnStatistics( 4 );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			all.add( rows[ i ] );
+			( i < 300 ? first : second ).add( rows[ i ] );
+		}
+		merged.merge( first );
+		merged.merge( new ColumnStatistics( 4 ) );
+		merged.merge( second );
+		assertEquals( all.getCount(), merged.getCount() );
+		assertArrayEquals( all.getMeans(), merged.getMeans(), 1e-9 );
+		assertArrayEquals( all.getStandardDeviations(), merged.getStandardDeviations(), 1e-9 );
+	}
+
+	@Test
+	void testOf()
+	{
+		// more rows than one block, with a large offset, which makes the naive sum of squares inaccurate
+		double[][] rows = getRandomRows( 10_000, 3 );
+		for ( double[] row : rows )
+			row[ 2 ] += 1e9;
+		ColumnStatistics statistics = ColumnStatistics.of( rows );
+
+		double[] means = new double[ 3 ];
+		for ( double[] row : rows )
+			for ( int j = 0; j < 3; j++ )
+				means[ j ] += row[ j ] / rows.length;
+		double[] standardDeviations = new double[ 3 ];
+		for ( double[] row : rows )
+			for ( int j = 0; j < 3; j++ )
+				standardDeviations[ j ] += ( row[ j ] - means[ j ] ) * ( row[ j ] - means[ j ] ) / ( rows.length - 1 );
+		for ( int j = 0; j < 3; j++ )
+			standardDeviations[ j ] = Math.sqrt( standardDeviations[ j ] );
+
+		assertEquals( rows.length, statistics.getCount() );
+		assertArrayEquals( means, statistics.getMeans(), 1e-6 );
+		assertArrayEquals( standardDeviations, statistics.getStandardDeviations(), 1e-6 );
+		assertEquals( 1, statistics.getStandardDeviations()[ 2 ], 0.05 );
+	}
+
+	private static double[][] getRandomRows( final int numberOfRows, final int numberOfColumns )
+	{
+		Random random = new Random( 1 );
+		double[][] rows = new double[ numberOfRows ][ numberOfColumns ];
+		for ( double[] row : rows )
+			for ( int j = 0; j < numberOfColumns; j++ )
+				row[ j ] = random.nextGaussian() + j;
+		return rows;
+	}
+}
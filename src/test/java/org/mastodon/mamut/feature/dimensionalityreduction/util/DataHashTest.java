@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataHashTest
+{
+	@Test
+	void testEqualData()
+	{
+		DataHash hash = new DataHash( new double[][] { { 1, 2, 3 }, { 4, 5, 6 } } );
+		DataHash equalHash = new DataHash( new double[][] { { 1, 2, 3 }, { 4, 5, 6 } } );
+		assertEquals( hash, equalHash );
+		assertEquals( hash.hashCode(), equalHash.hashCode() );
+		assertEquals( hash.toString(), equalHash.toString() );
+	}
+
+	@Test
+	void testDifferentData()
+	{
+		DataHash hash = new DataHash( new double[][] { { 1, 2, 3 }, { 4, 5, 6 } } );
+		assertNotEquals( hash, new DataHash( new double[][] { { 1, 2, 3 }, { 4, 5, 7 } } ) );
+		assertNotEquals( hash, new DataHash( new double[][] { { 4, 5, 6 }, { 1, 2, 3 } } ) );
+		assertNotEquals( hash, new DataHash( new double[][] { { 1, 2 }, { 3, 4 }, { 5, 6 } } ) );
+		assertNotEquals( hash.toString(), new DataHash( new double[][] { { 1, 2, 3 }, { 4, 5, 7 } } ).toString() );
+	}
+
+	@Test
+	void testToString()
+	{
+		assertTrue( new DataHash( new double[][] { { 1, 2, 3 }, { 4, 5, 6 } } ).toString().matches( "2x3-[0-9a-f]{32}" ) );
+		assertTrue( new DataHash( new double[ 0 ][] ).toString().matches( "0x0-[0-9a-f]{32}" ) );
+	}
+}
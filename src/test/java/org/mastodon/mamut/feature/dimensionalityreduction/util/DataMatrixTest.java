@@ -0,0 +1,72 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class DataMatrixTest
+{
+	@Test
+	void testFillRows()
+	{
+		DataMatrix dataMatrix = new DataMatrix( 3, 2 );
+		double[] row0 = dataMatrix.nextRow();
+		row0[ 0 ] = 1;
+		row0[ 1 ] = 2;
+		assertEquals( 0, dataMatrix.commitRow() );
+		double[] rejectedRow = dataMatrix.nextRow();
+		rejectedRow[ 0 ] = Double.NaN;
+		double[] row1 = dataMatrix.nextRow();
+		assertSame( rejectedRow, row1 );
+		row1[ 0 ] = 3;
+		row1[ 1 ] = 4;
+		assertEquals( 1, dataMatrix.commitRow() );
+
+		double[][] expected = { { 1, 2 }, { 3, 4 } };
+		assertEquals( 2, dataMatrix.getNumberOfRows() );
+		assertEquals( 2, dataMatrix.getNumberOfColumns() );
+		assertArrayEquals( expected, dataMatrix.getRows() );
+		assertSame( row0, dataMatrix.getRows()[ 0 ] );
+	}
+
+	@Test
+	void testMaximumNumberOfRows()
+	{
+		DataMatrix dataMatrix = new DataMatrix( 1, 2 );
+		dataMatrix.nextRow();
+		dataMatrix.commitRow();
+		assertEquals( 1, dataMatrix.getRows().length );
+		assertThrows( IllegalStateException.class, dataMatrix::nextRow );
+	}
+}
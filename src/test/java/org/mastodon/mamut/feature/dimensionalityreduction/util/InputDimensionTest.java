@@ -28,12 +28,16 @@
  */
 package org.mastodon.mamut.feature.dimensionalityreduction.util;
 
+import net.imglib2.parallel.Parallelization;
 import org.junit.jupiter.api.Test;
+import org.mastodon.RefPool;
 import org.mastodon.feature.FeatureModel;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
 import org.mastodon.mamut.model.Spot;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -51,4 +55,54 @@ class InputDimensionTest
 		assertNotNull( inputDimensions );
 		assertFalse( inputDimensions.isEmpty() ); // NB: we do not test for specific content, as this is defined by the core and may change.
 	}
+
+	@Test
+	void testGetValueConcurrently()
+	{
+		Model model = new Model();
+		ModelGraph graph = model.getGraph();
+		Spot previous = graph.vertexRef();
+		Spot spot = graph.vertexRef();
+		for ( int i = 0; i < 10_000; i++ )
+		{
+			graph.addVertex( spot ).init( i / 10, new double[] { i, 2d * i, i % 13 }, 1 + i % 7 );
+			// NB: chains of 10 spots, such that the edge dimensions are averaged over incoming links
+			if ( i % 10 != 0 )
+				graph.addEdge( previous, spot ).init();
+			previous.refTo( spot );
+		}
+		graph.releaseRef( previous );
+		graph.releaseRef( spot );
+		List< InputDimension< Spot > > inputDimensions =
+				InputDimension.getListFromFeatureModel( model.getFeatureModel(), Spot.class, Link.class );
+		RefPool< Spot > refPool = graph.vertices().getRefPool();
+
+		double[][] expected = Parallelization.runSingleThreaded( () -> getValues( refPool, inputDimensions, graph.vertices().size() ) );
+		double[][] actual = Parallelization.runMultiThreaded( () -> getValues( refPool, inputDimensions, graph.vertices().size() ) );
+		for ( int i = 0; i < expected.length; i++ )
+			assertArrayEquals( expected[ i ], actual[ i ] );
+	}
+
+	/**
+	 * Reads the values of all vertices in parallel blocks, each with its own vertex reference, like the output feature computers do.
+	 */
+	private static double[][] getValues( final RefPool< Spot > refPool, final List< InputDimension< Spot > > inputDimensions,
+			final int numberOfVertices )
+	{
+		double[][] values = new double[ numberOfVertices ][ inputDimensions.size() ];
+		List< int[] > blocks = new ArrayList<>();
+		for ( int from = 0; from < numberOfVertices; from += 100 )
+			blocks.add( new int[] { from, Math.min( numberOfVertices, from + 100 ) } );
+		Parallelization.getTaskExecutor().forEach( blocks, block -> {
+			Spot ref = refPool.createRef();
+			for ( int id = block[ 0 ]; id < block[ 1 ]; id++ )
+			{
+				Spot vertex = refPool.getObject( id, ref );
+				for ( int j = 0; j < inputDimensions.size(); j++ )
+					values[ id ][ j ] = inputDimensions.get( j ).getValue( vertex );
+			}
+			refPool.releaseRef( ref );
+		} );
+		return values;
+	}
 }
@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LandmarkSamplingTest
+{
+	@Test
+	void testStratifiedSample()
+	{
+		// 3 strata of sizes 100, 300 and 600
+		int[] strata = new int[ 1000 ];
+		for ( int i = 0; i < strata.length; i++ )
+			strata[ i ] = i < 100 ? -1 : ( i < 400 ? 5 : 2 );
+		int[] sample = LandmarkSampling.stratifiedSample( strata, 100, 42 );
+		assertEquals( 100, sample.length );
+		int[] counts = new int[ 3 ];
+		for ( int i = 0; i < sample.length; i++ )
+		{
+			if ( i > 0 )
+				assertTrue( sample[ i ] > sample[ i - 1 ] );
+			int stratum = strata[ sample[ i ] ];
+			counts[ stratum == -1 ? 0 : ( stratum == 5 ? 1 : 2 ) ]++;
+		}
+		assertEquals( 10, counts[ 0 ], 1 );
+		assertEquals( 30, counts[ 1 ], 1 );
+		assertEquals( 60, counts[ 2 ], 1 );
+		assertArrayEquals( sample, LandmarkSampling.stratifiedSample( strata, 100, 42 ) );
+	}
+
+	@Test
+	void testSampleSizeNotSmallerThanNumberOfRows()
+	{
+		int[] strata = { 3, 1, 2 };
+		assertArrayEquals( new int[] { 0, 1, 2 }, LandmarkSampling.stratifiedSample( strata, 3, 0 ) );
+		assertArrayEquals( new int[] { 0, 1, 2 }, LandmarkSampling.stratifiedSample( strata, 5, 0 ) );
+	}
+
+	@Test
+	void testInvalidSampleSize()
+	{
+		assertThrows( IllegalArgumentException.class, () -> LandmarkSampling.stratifiedSample( new int[] { 1, 2 }, 0, 0 ) );
+	}
+}
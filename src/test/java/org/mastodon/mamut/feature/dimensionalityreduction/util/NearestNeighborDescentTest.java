@@ -0,0 +1,154 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.parallel.Parallelization;
+
+import org.junit.jupiter.api.Test;
+
+class NearestNeighborDescentTest
+{
+	@Test
+	void testExact()
+	{
+		double[][] data = { { 0, 0 }, { 1, 0 }, { 3, 0 }, { 0, 4 } };
+		NearestNeighborGraph graph = NearestNeighborDescent.build( data, 2, 0 );
+		assertEquals( 4, graph.size() );
+		assertEquals( 2, graph.getNumberOfNeighbors() );
+		assertEquals( 1, graph.getNeighbor( 0, 0 ) );
+		assertEquals( 2, graph.getNeighbor( 0, 1 ) );
+		assertEquals( 1, graph.getDistance( 0, 0 ), 0d );
+		assertEquals( 3, graph.getDistance( 0, 1 ), 0d );
+		assertEquals( 0, graph.getNeighbor( 3, 0 ) );
+		assertEquals( 1, graph.getNeighbor( 3, 1 ) );
+		assertEquals( 4, graph.getDistance( 3, 0 ), 0d );
+		assertEquals( Math.sqrt( 17 ), graph.getDistance( 3, 1 ), 0d );
+	}
+
+	@Test
+	void testApproximate()
+	{
+		int numberOfNeighbors = 10;
+		double[][] data = randomData( NearestNeighborDescent.BRUTE_FORCE_THRESHOLD + 1000, 5, 1 );
+		NearestNeighborGraph graph = NearestNeighborDescent.build( data, numberOfNeighbors, 0 );
+		int found = 0;
+		for ( int point = 0; point < data.length; point++ )
+		{
+			double[] exactDistances = new double[ data.length - 1 ];
+			int i = 0;
+			for ( int other = 0; other < data.length; other++ )
+				if ( other != point )
+					exactDistances[ i++ ] = distance( data[ point ], data[ other ] );
+			Arrays.sort( exactDistances );
+			for ( int rank = 0; rank < numberOfNeighbors; rank++ )
+			{
+				assertNotEquals( point, graph.getNeighbor( point, rank ) );
+				assertEquals( distance( data[ point ], data[ graph.getNeighbor( point, rank ) ] ), graph.getDistance( point, rank ), 1e-12 );
+				if ( rank > 0 )
+					assertTrue( graph.getDistance( point, rank - 1 ) <= graph.getDistance( point, rank ) );
+				if ( graph.getDistance( point, rank ) <= exactDistances[ numberOfNeighbors - 1 ] )
+					found++;
+			}
+		}
+		double recall = ( double ) found / ( data.length * numberOfNeighbors );
+		assertTrue( recall > 0.9, "Recall: " + recall );
+	}
+
+	@Test
+	void testReproducible()
+	{
+		double[][] data = randomData( NearestNeighborDescent.BRUTE_FORCE_THRESHOLD + 500, 3, 2 );
+		NearestNeighborGraph graph1 = NearestNeighborDescent.build( data, 5, 7 );
+		NearestNeighborGraph graph2 = NearestNeighborDescent.build( data, 5, 7 );
+		for ( int point = 0; point < data.length; point++ )
+			for ( int rank = 0; rank < 5; rank++ )
+				assertEquals( graph1.getNeighbor( point, rank ), graph2.getNeighbor( point, rank ) );
+	}
+
+	@Test
+	void testIndependentOfNumberOfThreads()
+	{
+		double[][] data = randomData( NearestNeighborDescent.BRUTE_FORCE_THRESHOLD + 500, 3, 3 );
+		NearestNeighborGraph singleThreaded = Parallelization.runSingleThreaded( () -> NearestNeighborDescent.build( data, 6, 7 ) );
+		NearestNeighborGraph multiThreaded = Parallelization.runMultiThreaded( () -> NearestNeighborDescent.build( data, 6, 7 ) );
+		for ( int point = 0; point < data.length; point++ )
+			for ( int rank = 0; rank < 6; rank++ )
+				assertEquals( singleThreaded.getNeighbor( point, rank ), multiThreaded.getNeighbor( point, rank ) );
+	}
+
+	@Test
+	void testInvalidNumberOfNeighbors()
+	{
+		double[][] data = { { 0 }, { 1 }, { 2 } };
+		assertThrows( IllegalArgumentException.class, () -> NearestNeighborDescent.build( data, 0, 0 ) );
+		assertThrows( IllegalArgumentException.class, () -> NearestNeighborDescent.build( data, 3, 0 ) );
+	}
+
+	@Test
+	void testWithNumberOfNeighbors()
+	{
+		double[][] data = { { 0 }, { 1 }, { 3 }, { 6 } };
+		NearestNeighborGraph graph = NearestNeighborDescent.build( data, 3, 0 );
+		NearestNeighborGraph truncated = graph.withNumberOfNeighbors( 1 );
+		assertEquals( 1, truncated.getNumberOfNeighbors() );
+		for ( int point = 0; point < data.length; point++ )
+		{
+			assertEquals( graph.getNeighbor( point, 0 ), truncated.getNeighbor( point, 0 ) );
+			assertEquals( graph.getDistance( point, 0 ), truncated.getDistance( point, 0 ), 0d );
+		}
+		assertEquals( graph, graph.withNumberOfNeighbors( 3 ) );
+		assertThrows( IllegalArgumentException.class, () -> graph.withNumberOfNeighbors( 4 ) );
+	}
+
+	static double[][] randomData( final int rows, final int columns, final long seed )
+	{
+		Random random = new Random( seed );
+		double[][] data = new double[ rows ][ columns ];
+		for ( double[] row : data )
+			for ( int i = 0; i < columns; i++ )
+				row[ i ] = random.nextDouble();
+		return data;
+	}
+
+	private static double distance( final double[] a, final double[] b )
+	{
+		double sum = 0;
+		for ( int i = 0; i < a.length; i++ )
+			sum += ( a[ i ] - b[ i ] ) * ( a[ i ] - b[ i ] );
+		return Math.sqrt( sum );
+	}
+}
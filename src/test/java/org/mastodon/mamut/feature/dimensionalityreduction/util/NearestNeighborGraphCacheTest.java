@@ -0,0 +1,75 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class NearestNeighborGraphCacheTest
+{
+	@Test
+	void testGetGraph()
+	{
+		NearestNeighborGraphCache cache = new NearestNeighborGraphCache();
+		double[][] data = NearestNeighborDescentTest.randomData( 100, 3, 1 );
+		NearestNeighborGraph graph = cache.getGraph( data, 10 );
+		assertSame( graph, cache.getGraph( data, 10 ) );
+
+		NearestNeighborGraph smallerGraph = cache.getGraph( data, 5 );
+		assertEquals( 5, smallerGraph.getNumberOfNeighbors() );
+		assertEquals( graph.getNeighbor( 0, 4 ), smallerGraph.getNeighbor( 0, 4 ) );
+
+		NearestNeighborGraph largerGraph = cache.getGraph( data, 15 );
+		assertEquals( 15, largerGraph.getNumberOfNeighbors() );
+		assertSame( largerGraph, cache.getGraph( data, 15 ) );
+	}
+
+	@Test
+	void testChangedData()
+	{
+		NearestNeighborGraphCache cache = new NearestNeighborGraphCache();
+		double[][] data = NearestNeighborDescentTest.randomData( 100, 3, 1 );
+		NearestNeighborGraph graph = cache.getGraph( data, 10 );
+		data[ 50 ][ 1 ] += 1;
+		assertNotSame( graph, cache.getGraph( data, 10 ) );
+	}
+
+	@Test
+	void testClear()
+	{
+		NearestNeighborGraphCache cache = new NearestNeighborGraphCache();
+		double[][] data = NearestNeighborDescentTest.randomData( 100, 3, 1 );
+		NearestNeighborGraph graph = cache.getGraph( data, 10 );
+		cache.clear();
+		assertNotSame( graph, cache.getGraph( data, 10 ) );
+	}
+}
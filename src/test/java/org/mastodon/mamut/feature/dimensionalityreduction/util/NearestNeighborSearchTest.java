@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class NearestNeighborSearchTest
+{
+	@Test
+	void testExactSearch()
+	{
+		double[][] data = { { 0, 0 }, { 1, 0 }, { 3, 0 }, { 0, 4 } };
+		NearestNeighborSearch search = new NearestNeighborSearch( data );
+		int[] neighbors = new int[ 2 ];
+		double[] distances = new double[ 2 ];
+		search.search( new double[] { 2.9, 0 }, neighbors, distances );
+		assertArrayEquals( new int[] { 2, 1 }, neighbors );
+		assertEquals( 0.1, distances[ 0 ], 1e-12 );
+		assertEquals( 1.9, distances[ 1 ], 1e-12 );
+		assertThrows( IllegalArgumentException.class, () -> search.search( new double[] { 0, 0 }, new int[ 5 ], new double[ 5 ] ) );
+	}
+
+	@Test
+	void testGraphSearch()
+	{
+		int numberOfNeighbors = 10;
+		double[][] data = NearestNeighborDescentTest.randomData( 5000, 4, 1 );
+		NearestNeighborGraph graph = NearestNeighborDescent.build( data, 15, 0 );
+		NearestNeighborSearch exactSearch = new NearestNeighborSearch( data );
+		NearestNeighborSearch graphSearch = new NearestNeighborSearch( data, graph );
+		double[][] queries = NearestNeighborDescentTest.randomData( 200, 4, 2 );
+		int[] exactNeighbors = new int[ numberOfNeighbors ];
+		double[] exactDistances = new double[ numberOfNeighbors ];
+		int[] neighbors = new int[ numberOfNeighbors ];
+		double[] distances = new double[ numberOfNeighbors ];
+		int found = 0;
+		for ( double[] query : queries )
+		{
+			exactSearch.search( query, exactNeighbors, exactDistances );
+			graphSearch.search( query, neighbors, distances );
+			for ( int rank = 0; rank < numberOfNeighbors; rank++ )
+				if ( distances[ rank ] <= exactDistances[ numberOfNeighbors - 1 ] )
+					found++;
+		}
+		double recall = ( double ) found / ( queries.length * numberOfNeighbors );
+		assertTrue( recall > 0.95, "Recall: " + recall );
+	}
+
+	@Test
+	void testGraphOfDifferentSize()
+	{
+		double[][] data = { { 0 }, { 1 }, { 2 } };
+		NearestNeighborGraph graph = NearestNeighborDescent.build( new double[][] { { 0 }, { 1 } }, 1, 0 );
+		assertThrows( IllegalArgumentException.class, () -> new NearestNeighborSearch( data, graph ) );
+	}
+}
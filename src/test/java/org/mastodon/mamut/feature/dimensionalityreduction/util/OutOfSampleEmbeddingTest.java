@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class OutOfSampleEmbeddingTest
+{
+	@Test
+	void testFitCurveParameters()
+	{
+		// NB: reference values of umap-learn
+		double[] parameters = OutOfSampleEmbedding.fitCurveParameters( 0.1, 1 );
+		assertEquals( 1.577, parameters[ 0 ], 1e-3 );
+		assertEquals( 0.895, parameters[ 1 ], 1e-3 );
+		parameters = OutOfSampleEmbedding.fitCurveParameters( 0.5, 1 );
+		assertEquals( 0.583, parameters[ 0 ], 1e-3 );
+		assertEquals( 1.334, parameters[ 1 ], 1e-3 );
+	}
+
+	@Test
+	void testGetWeights()
+	{
+		double[] weights = OutOfSampleEmbedding.getWeights( new double[] { 1, 1.5, 2, 3, 4 } );
+		assertEquals( 1d, weights[ 0 ] );
+		assertEquals( Math.log( 5 ) / Math.log( 2 ), Arrays.stream( weights ).sum(), 1e-4 );
+		for ( int i = 1; i < weights.length; i++ )
+			assertTrue( weights[ i ] < weights[ i - 1 ] );
+	}
+
+	@Test
+	void testTransform()
+	{
+		// two clusters in the data, which are embedded at x=0 and x=100
+		double[][] trainingData = new double[ 40 ][];
+		double[][] embedding = new double[ 40 ][];
+		for ( int i = 0; i < 40; i++ )
+		{
+			boolean firstCluster = i < 20;
+			trainingData[ i ] = new double[] { ( firstCluster ? 0 : 10 ) + i % 20 * 0.01, i % 20 * 0.01 };
+			embedding[ i ] = new double[] { ( firstCluster ? 0 : 100 ) + i % 20 * 0.1, i % 20 * 0.1 };
+		}
+		OutOfSampleEmbedding outOfSampleEmbedding = OutOfSampleEmbedding.forUmap( trainingData, embedding, 5, 0.1 );
+		double[][] result = outOfSampleEmbedding.transform( new double[][] { { 0.05, 0.05 }, { 10.05, 0.05 } } );
+		assertEquals( 2, result.length );
+		assertEquals( 2, result[ 0 ].length );
+		assertTrue( Math.abs( result[ 0 ][ 0 ] ) < 10, "x: " + result[ 0 ][ 0 ] );
+		assertTrue( Math.abs( result[ 1 ][ 0 ] - 100 ) < 10, "x: " + result[ 1 ][ 0 ] );
+		assertArrayEquals( result[ 1 ], outOfSampleEmbedding.transform( new double[] { 10.05, 0.05 } ) );
+	}
+
+	@Test
+	void testInvalidArguments()
+	{
+		double[][] trainingData = { { 0 }, { 1 } };
+		assertThrows( IllegalArgumentException.class, () -> new OutOfSampleEmbedding( trainingData, new double[][] { { 0 } }, 1, 1, 1 ) );
+		assertThrows( IllegalArgumentException.class, () -> new OutOfSampleEmbedding( trainingData, trainingData, 3, 1, 1 ) );
+		assertThrows( IllegalArgumentException.class, () -> new OutOfSampleEmbedding( trainingData, trainingData, 0, 1, 1 ) );
+	}
+}
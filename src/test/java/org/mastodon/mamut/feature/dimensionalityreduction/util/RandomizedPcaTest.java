@@ -0,0 +1,180 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature.dimensionalityreduction.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.junit.jupiter.api.Test;
+
+class RandomizedPcaTest
+{
+	@Test
+	void testFit()
+	{
+		int rows = 10_000;
+		int columns = 30;
+		double[][] data = lowRankData( rows, columns, 1 );
+		PrincipalComponents pca = RandomizedPca.fit( data, 3, RandomizedPca.DEFAULT_SEED );
+		assertEquals( 3, pca.getNumberOfComponents() );
+
+		// compare with the eigen decomposition of the covariance matrix
+		double[] means = new double[ columns ];
+		for ( double[] row : data )
+			for ( int j = 0; j < columns; j++ )
+				means[ j ] += row[ j ] / rows;
+		double[][] covariance = new double[ columns ][ columns ];
+		for ( double[] row : data )
+			for ( int i = 0; i < columns; i++ )
+				for ( int j = 0; j < columns; j++ )
+					covariance[ i ][ j ] += ( row[ i ] - means[ i ] ) * ( row[ j ] - means[ j ] ) / ( rows - 1 );
+		EigenDecomposition exact = new EigenDecomposition( new Array2DRowRealMatrix( covariance ) );
+		double[] eigenvalues = exact.getRealEigenvalues().clone();
+		Arrays.sort( eigenvalues );
+		for ( int component = 0; component < 3; component++ )
+		{
+			double expectedVariance = eigenvalues[ columns - 1 - component ];
+			assertEquals( expectedVariance, pca.getExplainedVariance( component ), expectedVariance * 1e-8 );
+			double[] vector = pca.getComponent( component );
+			double norm = 0;
+			double[] product = new double[ columns ];
+			for ( int i = 0; i < columns; i++ )
+			{
+				norm += vector[ i ] * vector[ i ];
+				for ( int j = 0; j < columns; j++ )
+					product[ i ] += covariance[ i ][ j ] * vector[ j ];
+			}
+			assertEquals( 1, norm, 1e-10 );
+			for ( int i = 0; i < columns; i++ )
+				assertEquals( expectedVariance * vector[ i ], product[ i ], expectedVariance * 1e-6 );
+		}
+	}
+
+	@Test
+	void testTransform()
+	{
+		double[][] data = lowRankData( 1000, 5, 2 );
+		PrincipalComponents pca = RandomizedPca.fit( data, 2, 0 );
+		double[][] projection = pca.transform( data );
+		double[] means = new double[ 2 ];
+		double[] variances = new double[ 2 ];
+		for ( double[] row : projection )
+			for ( int i = 0; i < 2; i++ )
+				means[ i ] += row[ i ] / data.length;
+		for ( double[] row : projection )
+			for ( int i = 0; i < 2; i++ )
+				variances[ i ] += ( row[ i ] - means[ i ] ) * ( row[ i ] - means[ i ] ) / ( data.length - 1 );
+		for ( int i = 0; i < 2; i++ )
+		{
+			assertEquals( 0, means[ i ], 1e-9 );
+			assertEquals( pca.getExplainedVariance( i ), variances[ i ], 1e-9 * variances[ i ] );
+		}
+		assertArrayEquals( projection[ 7 ], pca.transform( data[ 7 ] ), 0d );
+	}
+
+	@Test
+	void testDeterministicAndSignNormalized()
+	{
+		double[][] data = lowRankData( 5000, 20, 3 );
+		PrincipalComponents pca1 = RandomizedPca.fit( data, 4, 5 );
+		PrincipalComponents pca2 = RandomizedPca.fit( data, 4, 5 );
+		PrincipalComponents pca3 = RandomizedPca.fit( data, 4, 6 );
+		for ( int component = 0; component < 4; component++ )
+			assertArrayEquals( pca1.getComponent( component ), pca2.getComponent( component ), 0d );
+		// the leading 3 components are well separated from the noise, so they do not depend on the seed
+		for ( int component = 0; component < 3; component++ )
+			assertArrayEquals( pca1.getComponent( component ), pca3.getComponent( component ), 1e-6 );
+	}
+
+	@Test
+	void testRankDeficientData()
+	{
+		// the third column is the sum of the first two, the fourth column is constant
+		double[][] data = new double[ 100 ][];
+		Random random = new Random( 4 );
+		for ( int i = 0; i < data.length; i++ )
+		{
+			double x = random.nextGaussian();
+			double y = random.nextGaussian();
+			data[ i ] = new double[] { x, y, x + y, 1 };
+		}
+		PrincipalComponents pca = RandomizedPca.fit( data, 4, 0 );
+		assertEquals( 0, pca.getExplainedVariance( 2 ), 1e-10 );
+		assertEquals( 0, pca.getExplainedVariance( 3 ), 1e-10 );
+		for ( int i = 0; i < 4; i++ )
+			for ( int j = 0; j < 4; j++ )
+			{
+				double dot = 0;
+				for ( int k = 0; k < 4; k++ )
+					dot += pca.getComponent( i )[ k ] * pca.getComponent( j )[ k ];
+				assertEquals( i == j ? 1 : 0, dot, 1e-9 );
+			}
+	}
+
+	@Test
+	void testInvalidArguments()
+	{
+		double[][] data = { { 1, 2 }, { 3, 4 } };
+		assertThrows( IllegalArgumentException.class, () -> RandomizedPca.fit( new double[ 0 ][], 1, 0 ) );
+		assertThrows( IllegalArgumentException.class, () -> RandomizedPca.fit( data, 0, 0 ) );
+		assertThrows( IllegalArgumentException.class, () -> RandomizedPca.fit( data, 3, 0 ) );
+	}
+
+	/**
+	 * Creates data, which mainly varies along 3 random directions with decreasing variance, plus some noise and an offset.
+	 */
+	private static double[][] lowRankData( final int rows, final int columns, final long seed )
+	{
+		Random random = new Random( seed );
+		double[][] directions = new double[ 3 ][ columns ];
+		for ( double[] direction : directions )
+			for ( int j = 0; j < columns; j++ )
+				direction[ j ] = random.nextGaussian();
+		double[] scales = { 10, 3, 1 };
+		double[][] data = new double[ rows ][ columns ];
+		for ( double[] row : data )
+		{
+			for ( int d = 0; d < directions.length; d++ )
+			{
+				double value = scales[ d ] * random.nextGaussian();
+				for ( int j = 0; j < columns; j++ )
+					row[ j ] += value * directions[ d ][ j ];
+			}
+			for ( int j = 0; j < columns; j++ )
+				row[ j ] += 0.1 * random.nextGaussian() + 5;
+		}
+		return data;
+	}
+}
@@ -135,4 +135,26 @@ class StandardScalerTest
 		StandardScaler.standardizeColumns( array );
 		assertArrayEquals( expected, array );
 	}
+
+	@Test
+	void standardizeRows_withParametersOfOtherData()
+	{
+		double[][] array = {
+				{ 1, 2 },
+				{ 2, 2 },
+				{ 3, 2 },
+				{ 4, 2 },
+				{ 5, 2 }
+		};
+		double[] means = new double[ 2 ];
+		double[] standardDeviations = new double[ 2 ];
+		StandardScaler.standardizeColumns( array, means, standardDeviations );
+		assertArrayEquals( new double[] { 3, 2 }, means );
+		assertArrayEquals( new double[] { 1.5811388300841898, 0 }, standardDeviations, 1e-15 );
+
+		double[][] rows = { { 3, 2 }, { 5, 7 } };
+		double[][] expected = { { 0, 0 }, { 1.2649110640673518, 0 } };
+		StandardScaler.standardizeRows( rows, means, standardDeviations );
+		assertArrayEquals( expected, rows );
+	}
 }
@@ -50,6 +50,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.function.Supplier;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -111,6 +112,9 @@ class SpotUmapFeatureTest extends AbstractFeatureTest< Spot >
 		// check that the feature has correct values after saving and reloading
 		assertTrue( FeatureSerializerTestUtils.checkFeatureProjectionEquality( spotUmapFeature, spotUmapFeatureReloaded,
 				Collections.singleton( graph2.spot13 ) ) );
+		// check that the key of the computation is saved and reloaded
+		assertNotNull( spotUmapFeatureReloaded.getResultKey() );
+		assertEquals( spotUmapFeature.getResultKey(), spotUmapFeatureReloaded.getResultKey() );
 	}
 
 	@Test
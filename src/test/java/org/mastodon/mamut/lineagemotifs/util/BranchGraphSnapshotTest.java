@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+
+class BranchGraphSnapshotTest
+{
+	private Model model;
+
+	private BranchSpot root;
+
+	private BranchSpot child;
+
+	/**
+	 * <pre>
+	 *           root (timepoints 0 - 19)
+	 *        ┌─────┴──────┐
+	 *      child        child2
+	 *   (20 - 29)      (20 - 49)
+	 * </pre>
+	 */
+	@BeforeEach
+	void setUp()
+	{
+		model = new Model();
+		ModelGraph graph = model.getGraph();
+		Spot spot1 = graph.addVertex().init( 0, new double[ 3 ], 0 );
+		Spot spot2 = graph.addVertex().init( 19, new double[ 3 ], 0 );
+		Spot spot3 = graph.addVertex().init( 20, new double[ 3 ], 0 );
+		Spot spot4 = graph.addVertex().init( 29, new double[ 3 ], 0 );
+		Spot spot5 = graph.addVertex().init( 20, new double[ 3 ], 0 );
+		Spot spot6 = graph.addVertex().init( 49, new double[ 3 ], 0 );
+		graph.addEdge( spot1, spot2 );
+		graph.addEdge( spot2, spot3 );
+		graph.addEdge( spot2, spot5 );
+		graph.addEdge( spot3, spot4 );
+		graph.addEdge( spot5, spot6 );
+		ModelBranchGraph branchGraph = model.getBranchGraph();
+		branchGraph.graphRebuilt();
+		root = branchGraph.getBranchVertex( spot1, branchGraph.vertexRef() );
+		child = branchGraph.getBranchVertex( spot3, branchGraph.vertexRef() );
+	}
+
+	@Test
+	void testGetCroppedTree()
+	{
+		BranchGraphSnapshot snapshot = new BranchGraphSnapshot( model.getBranchGraph() );
+		int rootId = model.getBranchGraph().vertices().getRefPool().getId( root );
+
+		assertCroppedTree( snapshot, rootId, 0, 60, 20d, 10d, 30d );
+		assertCroppedTree( snapshot, rootId, 5, 25, 15d, 6d, 6d );
+		assertCroppedTree( snapshot, rootId, 0, 10, 11d );
+	}
+
+	@Test
+	void testGetCroppedTreeInvalidInterval()
+	{
+		BranchGraphSnapshot snapshot = new BranchGraphSnapshot( model.getBranchGraph() );
+		int childId = model.getBranchGraph().vertices().getRefPool().getId( child );
+
+		assertThrows( IllegalArgumentException.class, () -> snapshot.getCroppedTree( childId, 0, 10 ) );
+		assertThrows( IllegalArgumentException.class, () -> snapshot.getCroppedTree( childId, 30, 40 ) );
+	}
+
+	private void assertCroppedTree( final BranchGraphSnapshot snapshot, final int rootId, final int start, final int end,
+			final double rootAttribute, final double... childAttributes )
+	{
+		Tree< Double > croppedTree = snapshot.getCroppedTree( rootId, start, end );
+		assertEquals( rootAttribute, croppedTree.getAttribute(), 0d );
+		List< Double > attributes = croppedTree.getChildren().stream().map( Tree::getAttribute ).sorted().collect( Collectors.toList() );
+		assertEquals( childAttributes.length, attributes.size() );
+		for ( int i = 0; i < childAttributes.length; i++ )
+			assertEquals( childAttributes[ i ], attributes.get( i ), 0d );
+
+		BranchSpotTree branchSpotTree = new BranchSpotTree( root, start, end, model );
+		assertEquals( 0d, SimilarityMeasure.ZHANG_DISTANCE.compute( branchSpotTree, croppedTree, 1d ), 0d );
+	}
+}
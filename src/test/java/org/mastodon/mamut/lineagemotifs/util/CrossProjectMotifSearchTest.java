@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.TestUtils;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+
+class CrossProjectMotifSearchTest
+{
+	private static final String PROJECT = "src/test/resources/org/mastodon/mamut/lineagemotifs/util/lineage_motifs.mastodon";
+
+	private static final String MOTIF = "src/test/resources/org/mastodon/mamut/lineagemotifs/util/motif.graphml";
+
+	@Test
+	void testSearch() throws IOException
+	{
+		File project1 = TestUtils.getTempFileCopy( PROJECT, "model1", ".mastodon" );
+		File project2 = TestUtils.getTempFileCopy( PROJECT, "model2", ".mastodon" );
+		BranchSpotTree lineageMotif = GraphMLMotifReader.readMotif( new File( MOTIF ) );
+		SimilarityMeasure similarityMeasure = SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE;
+
+		List< Double > singleProjectDistances = LineageMotifsUtils.getMostSimilarMotifs( lineageMotif, 3, similarityMeasure, 1d, false,
+				CrossProjectMotifSearch.loadModel( project1 ) ).stream().map( Pair::getRight ).sorted().collect( Collectors.toList() );
+		assertEquals( 3, singleProjectDistances.size() );
+
+		// NB: a memory budget of 1 byte forces the projects to be searched one after another
+		for ( long memoryBudget : new long[] { 1L, Long.MAX_VALUE } )
+		{
+			List< ProjectMotifMatch > matches =
+					new CrossProjectMotifSearch( Arrays.asList( project1, project2 ), memoryBudget ).search( lineageMotif, 6,
+							similarityMeasure, 1d, false );
+			assertEquals( 6, matches.size() );
+			for ( int i = 0; i < matches.size(); i++ )
+				assertEquals( singleProjectDistances.get( i / 2 ), matches.get( i ).getDistance(), 0d );
+			assertTrue( matches.stream().anyMatch( match -> match.getProjectFile().equals( project1 ) ) );
+			assertTrue( matches.stream().anyMatch( match -> match.getProjectFile().equals( project2 ) ) );
+		}
+	}
+
+	@Test
+	void testSearchWithFailingProject() throws IOException
+	{
+		File project = TestUtils.getTempFileCopy( PROJECT, "model", ".mastodon" );
+		File missingProject = new File( project.getParentFile(), "missing-" + project.getName() );
+		BranchSpotTree lineageMotif = GraphMLMotifReader.readMotif( new File( MOTIF ) );
+
+		CrossProjectMotifSearch search = new CrossProjectMotifSearch( Arrays.asList( project, missingProject ) );
+		List< ProjectMotifMatch > matches = search.search( lineageMotif, 3, SimilarityMeasure.NORMALIZED_ZHANG_DIFFERENCE, 1d, false );
+		assertEquals( 3, matches.size() );
+		assertTrue( matches.stream().allMatch( match -> match.getProjectFile().equals( project ) ) );
+		assertEquals( 1, search.getFailingProjects().size() );
+		assertTrue( search.getFailingProjects().containsKey( missingProject ) );
+	}
+
+	@Test
+	void testGetUncompressedModelSize() throws IOException
+	{
+		// NB: sum of the uncompressed sizes of model.raw and tags.raw in the project file
+		assertEquals( 75174 + 10839, CrossProjectMotifSearch.getUncompressedModelSize( new File( PROJECT ) ) );
+	}
+}
@@ -0,0 +1,141 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.model.Spot;
+
+class GraphMLMotifReaderTest
+{
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			+ "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">"
+			+ "<key id=\"key0\" for=\"node\" attr.name=\"frame\" attr.type=\"int\"/>"
+			+ "<graph edgedefault=\"directed\">";
+
+	private static final String FOOTER = "</graph></graphml>";
+
+	@Test
+	void testReadMotif() throws IOException
+	{
+		BranchSpotTree motif =
+				GraphMLMotifReader.readMotif( new File( "src/test/resources/org/mastodon/mamut/lineagemotifs/util/motif.graphml" ) );
+		assertEquals( 42, motif.getModel().getGraph().vertices().size() );
+		assertEquals( 41, motif.getModel().getGraph().edges().size() );
+		assertEquals( 4, motif.getStartTimepoint() );
+		assertEquals( 19, motif.getEndTimepoint() );
+		assertEquals( 16, motif.getDuration() );
+		assertEquals( 3, motif.getNumberOfDivisions() );
+		assertEquals( "181", motif.getStartSpotName() );
+	}
+
+	@Test
+	void testReadMotif_KeysForAllElements() throws IOException
+	{
+		BranchSpotTree motif = GraphMLMotifReader
+				.readMotif( new File( "src/test/resources/org/mastodon/mamut/lineagemotifs/util/motif_key_for_all.graphml" ) );
+		assertEquals( 4, motif.getModel().getGraph().vertices().size() );
+		assertEquals( 3, motif.getModel().getGraph().edges().size() );
+		assertEquals( 5, motif.getStartTimepoint() );
+		assertEquals( 7, motif.getEndTimepoint() );
+		assertEquals( 3, motif.getDuration() );
+		assertEquals( 1, motif.getNumberOfDivisions() );
+		assertEquals( "root", motif.getStartSpotName() );
+		// NB: the data of the graph and the edges must not overwrite the attributes of the nodes
+		Set< String > labels = new HashSet<>();
+		for ( Spot spot : motif.getModel().getGraph().vertices() )
+		{
+			labels.add( spot.getLabel() );
+			if ( spot.getLabel().equals( "left child" ) )
+				assertEquals( 12d, spot.getDoublePosition( 0 ) );
+		}
+		assertEquals( new HashSet<>( Arrays.asList( "root", "left", "right", "left child" ) ), labels );
+	}
+
+	@Test
+	void testReadMotif_WithoutLabels() throws IOException
+	{
+		File file = writeTempFile( HEADER
+				+ "<node id=\"a\"><data key=\"key0\">2</data></node>"
+				+ "<node id=\"b\"><data key=\"key0\">3</data></node>"
+				+ "<node id=\"c\"><data key=\"key0\">3</data></node>"
+				+ "<edge source=\"a\" target=\"b\"/><edge source=\"a\" target=\"c\"/>"
+				+ FOOTER );
+		BranchSpotTree motif = GraphMLMotifReader.readMotif( file );
+		assertEquals( 2, motif.getStartTimepoint() );
+		assertEquals( 3, motif.getEndTimepoint() );
+		assertEquals( 1, motif.getNumberOfDivisions() );
+		assertEquals( "a", motif.getStartSpotName() );
+	}
+
+	@Test
+	void testReadMotif_MultipleRoots() throws IOException
+	{
+		File file = writeTempFile( HEADER
+				+ "<node id=\"a\"><data key=\"key0\">2</data></node>"
+				+ "<node id=\"b\"><data key=\"key0\">3</data></node>"
+				+ FOOTER );
+		assertThrows( InvalidLineageMotifException.class, () -> GraphMLMotifReader.readMotif( file ) );
+	}
+
+	@Test
+	void testReadMotif_NoSpots() throws IOException
+	{
+		File file = writeTempFile( HEADER + FOOTER );
+		assertThrows( InvalidLineageMotifException.class, () -> GraphMLMotifReader.readMotif( file ) );
+	}
+
+	@Test
+	void testReadMotif_InvalidFile() throws IOException
+	{
+		File file = writeTempFile( HEADER + "<node id=\"a\"><data key=\"key0\">not a number</data></node>" + FOOTER );
+		assertThrows( IOException.class, () -> GraphMLMotifReader.readMotif( file ) );
+		File truncatedFile = writeTempFile( HEADER + "<node id=\"a\">" );
+		assertThrows( IOException.class, () -> GraphMLMotifReader.readMotif( truncatedFile ) );
+	}
+
+	private static File writeTempFile( final String content ) throws IOException
+	{
+		File file = Files.createTempFile( "motif", ".graphml" ).toFile();
+		file.deleteOnExit();
+		Files.write( file.toPath(), content.getBytes( StandardCharsets.UTF_8 ) );
+		return file;
+	}
+}
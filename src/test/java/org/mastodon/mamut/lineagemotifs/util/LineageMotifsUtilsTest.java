@@ -93,6 +93,16 @@ class LineageMotifsUtilsTest
 		assertEquals( 2, division );
 	}
 
+	@Test
+	void testGetDivisionDifference()
+	{
+		int[] histogram1 = { 2, 0, 1, 4 };
+		int[] histogram2 = { 1, 2, 1, 0 };
+		assertEquals( 0, LineageMotifsUtils.getDivisionDifference( histogram1, histogram2, 0 ) );
+		assertEquals( 3, LineageMotifsUtils.getDivisionDifference( histogram1, histogram2, 3 ) );
+		assertEquals( 7, LineageMotifsUtils.getDivisionDifference( histogram1, histogram2, 4 ) );
+	}
+
 	@Test
 	void testGetSelectedMotif()
 	{
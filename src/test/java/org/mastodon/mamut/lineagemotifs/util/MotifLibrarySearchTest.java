@@ -0,0 +1,130 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+
+class MotifLibrarySearchTest
+{
+	private static final int[][] LINEAGES = { { 10, 10, 10 }, { 10, 12, 8 }, { 5, 20, 20 }, { 12, 10, 10 }, { 10, 3, 25 },
+			{ 20, 5, 5 }, { 9, 11, 10 }, { 10, 10, 11 } };
+
+	@Test
+	void testFindMostSimilarSpotIteration()
+	{
+		assertSameAsSingleSearches( true, 1d );
+		assertSameAsSingleSearches( true, 0.5d );
+	}
+
+	@Test
+	void testFindMostSimilarBranchSpotIteration()
+	{
+		assertSameAsSingleSearches( false, 1d );
+		assertSameAsSingleSearches( false, 0.5d );
+	}
+
+	private static void assertSameAsSingleSearches( final boolean isSpotIteration, final double scaleFactor )
+	{
+		Model model = new Model();
+		List< Spot > roots = new ArrayList<>();
+		for ( int[] durations : LINEAGES )
+			roots.add( addLineage( model.getGraph(), durations[ 0 ], durations[ 1 ], durations[ 2 ] ) );
+		ModelBranchGraph branchGraph = model.getBranchGraph();
+		branchGraph.graphRebuilt();
+
+		// NB: the first two motifs have the same length and thus share their candidates
+		List< BranchSpotTree > lineageMotifs = Arrays.asList(
+				new BranchSpotTree( branchGraph.getBranchVertex( roots.get( 0 ), branchGraph.vertexRef() ), 0, 20, model ),
+				new BranchSpotTree( branchGraph.getBranchVertex( roots.get( 3 ), branchGraph.vertexRef() ), 0, 20, model ),
+				new BranchSpotTree( branchGraph.getBranchVertex( roots.get( 2 ), branchGraph.vertexRef() ), 2, 15, model ) );
+		for ( SimilarityMeasure similarityMeasure : SimilarityMeasure.values() )
+		{
+			List< List< Pair< Integer, Double > > > mostSimilar =
+					new MotifLibrarySearch( lineageMotifs, scaleFactor, isSpotIteration, model ).findMostSimilar( similarityMeasure, 5 );
+			assertEquals( lineageMotifs.size(), mostSimilar.size() );
+			for ( int i = 0; i < lineageMotifs.size(); i++ )
+			{
+				List< Pair< Integer, Double > > expected;
+				if ( isSpotIteration )
+				{
+					BranchSpot branchRef = branchGraph.vertexRef();
+					expected = LineageMotifsUtils.getMostSimilarMotifIdsBySpotIteration( lineageMotifs.get( i ), 5, similarityMeasure,
+							branchRef, scaleFactor, model );
+					branchGraph.releaseRef( branchRef );
+				}
+				else
+					expected = LineageMotifsUtils.getMostSimilarMotifIdsByBranchSpotIteration( lineageMotifs.get( i ), 5,
+							similarityMeasure, scaleFactor, LineageMotifsUtils.NO_FINGERPRINT_FILTER, model );
+				assertEquals( expected, mostSimilar.get( i ), similarityMeasure.getName() );
+			}
+		}
+	}
+
+	/**
+	 * Adds a lineage consisting of a root branch with the given duration, which divides into two branches with the given durations.
+	 */
+	private static Spot addLineage( final ModelGraph graph, final int rootDuration, final int child1Duration, final int child2Duration )
+	{
+		Spot root = graph.addVertex().init( 0, new double[ 3 ], 1 );
+		Spot rootEnd = addBranch( graph, root, rootDuration );
+		Spot child1 = graph.addVertex().init( rootDuration, new double[ 3 ], 1 );
+		Spot child2 = graph.addVertex().init( rootDuration, new double[ 3 ], 1 );
+		graph.addEdge( rootEnd, child1 );
+		graph.addEdge( rootEnd, child2 );
+		addBranch( graph, child1, child1Duration );
+		addBranch( graph, child2, child2Duration );
+		return root;
+	}
+
+	private static Spot addBranch( final ModelGraph graph, final Spot first, final int duration )
+	{
+		Spot previous = first;
+		for ( int i = 1; i < duration; i++ )
+		{
+			Spot spot = graph.addVertex().init( first.getTimepoint() + i, new double[ 3 ], 1 );
+			graph.addEdge( previous, spot );
+			previous = spot;
+		}
+		return previous;
+	}
+}
@@ -0,0 +1,193 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+
+class MultiScaleMotifSearchTest
+{
+	private static final int[][] LINEAGES = { { 10, 10, 10 }, { 10, 12, 8 }, { 5, 20, 20 }, { 12, 10, 10 }, { 10, 3, 25 },
+			{ 20, 5, 5 }, { 9, 11, 10 }, { 10, 10, 11 }, { 8, 8, 8 }, { 13, 13, 13 } };
+
+	private static final double[] SCALE_FACTORS = { 0.8, 1d, 1.25 };
+
+	@Test
+	void testFindMostSimilarSingleScale()
+	{
+		assertSingleScaleSameAsSingleSearch( true );
+		assertSingleScaleSameAsSingleSearch( false );
+	}
+
+	@Test
+	void testFindMostSimilarMultipleScales()
+	{
+		assertBestOfSingleSearches( true );
+		assertBestOfSingleSearches( false );
+	}
+
+	@Test
+	void testNoScaleFactors()
+	{
+		Model model = new Model();
+		BranchSpotTree lineageMotif = createLineageMotif( model );
+		assertThrows( IllegalArgumentException.class, () -> new MultiScaleMotifSearch( lineageMotif, new double[ 0 ], true, model ) );
+	}
+
+	private static void assertSingleScaleSameAsSingleSearch( final boolean isSpotIteration )
+	{
+		Model model = new Model();
+		BranchSpotTree lineageMotif = createLineageMotif( model );
+		for ( SimilarityMeasure similarityMeasure : SimilarityMeasure.values() )
+		{
+			List< Pair< Integer, Double > > expected = getSingleSearchResult( lineageMotif, similarityMeasure, 1d, isSpotIteration, model );
+			List< Triple< Integer, Double, Double > > mostSimilar =
+					new MultiScaleMotifSearch( lineageMotif, new double[] { 1d }, isSpotIteration, model ).findMostSimilar( similarityMeasure,
+							5 );
+			assertEquals( expected.stream().map( pair -> Triple.of( pair.getLeft(), pair.getRight(), 1d ) ).collect( Collectors.toList() ),
+					mostSimilar, similarityMeasure.getName() );
+		}
+	}
+
+	private static void assertBestOfSingleSearches( final boolean isSpotIteration )
+	{
+		Model model = new Model();
+		BranchSpotTree lineageMotif = createLineageMotif( model );
+		for ( SimilarityMeasure similarityMeasure : SimilarityMeasure.values() )
+		{
+			double expectedBestDistance = Double.POSITIVE_INFINITY;
+			for ( double scaleFactor : SCALE_FACTORS )
+			{
+				List< Pair< Integer, Double > > singleSearchResult =
+						getSingleSearchResult( lineageMotif, similarityMeasure, scaleFactor, isSpotIteration, model );
+				if ( !singleSearchResult.isEmpty() )
+					expectedBestDistance = Math.min( expectedBestDistance, singleSearchResult.get( 0 ).getRight() );
+			}
+			List< Triple< Integer, Double, Double > > mostSimilar =
+					new MultiScaleMotifSearch( lineageMotif, SCALE_FACTORS, isSpotIteration, model ).findMostSimilar( similarityMeasure, 5 );
+			assertEquals( 5, mostSimilar.size() );
+			assertEquals( expectedBestDistance, mostSimilar.get( 0 ).getMiddle(), 0d, similarityMeasure.getName() );
+			for ( int i = 1; i < mostSimilar.size(); i++ )
+				assertTrue( mostSimilar.get( i - 1 ).getMiddle() <= mostSimilar.get( i ).getMiddle() );
+			for ( Triple< Integer, Double, Double > entry : mostSimilar )
+				assertTrue( Arrays.stream( SCALE_FACTORS ).anyMatch( scaleFactor -> scaleFactor == entry.getRight() ) );
+		}
+	}
+
+	@Test
+	void testGetScaleFactors()
+	{
+		assertArrayEquals( new double[] { 0.8, 0.9, 1d, 1.1, 1.2 }, LineageMotifsUtils.getScaleFactors( 0.8, 1.2, 0.1 ) );
+		assertArrayEquals( new double[] { 1d }, LineageMotifsUtils.getScaleFactors( 1d, 1d, 0.1 ) );
+		assertArrayEquals( new double[] { 1d, 1.5 }, LineageMotifsUtils.getScaleFactors( 1d, 1.9, 0.5 ) );
+		assertThrows( IllegalArgumentException.class, () -> LineageMotifsUtils.getScaleFactors( 0d, 1d, 0.1 ) );
+		assertThrows( IllegalArgumentException.class, () -> LineageMotifsUtils.getScaleFactors( 1d, 0.5, 0.1 ) );
+		assertThrows( IllegalArgumentException.class, () -> LineageMotifsUtils.getScaleFactors( 1d, 2d, 0d ) );
+	}
+
+	private static void assertArrayEquals( final double[] expected, final double[] actual )
+	{
+		assertEquals( expected.length, actual.length );
+		for ( int i = 0; i < expected.length; i++ )
+			assertEquals( expected[ i ], actual[ i ], 1e-9 );
+	}
+
+	private static List< Pair< Integer, Double > > getSingleSearchResult( final BranchSpotTree lineageMotif,
+			final SimilarityMeasure similarityMeasure, final double scaleFactor, final boolean isSpotIteration, final Model model )
+	{
+		if ( !isSpotIteration )
+			return LineageMotifsUtils.getMostSimilarMotifIdsByBranchSpotIteration( lineageMotif, 5, similarityMeasure, scaleFactor,
+					LineageMotifsUtils.NO_FINGERPRINT_FILTER, model );
+		BranchSpot branchRef = model.getBranchGraph().vertexRef();
+		try
+		{
+			return LineageMotifsUtils.getMostSimilarMotifIdsBySpotIteration( lineageMotif, 5, similarityMeasure, branchRef, scaleFactor,
+					model );
+		}
+		finally
+		{
+			model.getBranchGraph().releaseRef( branchRef );
+		}
+	}
+
+	private static BranchSpotTree createLineageMotif( final Model model )
+	{
+		List< Spot > roots = new ArrayList<>();
+		for ( int[] durations : LINEAGES )
+			roots.add( addLineage( model.getGraph(), durations[ 0 ], durations[ 1 ], durations[ 2 ] ) );
+		ModelBranchGraph branchGraph = model.getBranchGraph();
+		branchGraph.graphRebuilt();
+		return new BranchSpotTree( branchGraph.getBranchVertex( roots.get( 0 ), branchGraph.vertexRef() ), 0, 20, model );
+	}
+
+	/**
+	 * Adds a lineage consisting of a root branch with the given duration, which divides into two branches with the given durations.
+	 */
+	private static Spot addLineage( final ModelGraph graph, final int rootDuration, final int child1Duration, final int child2Duration )
+	{
+		Spot root = graph.addVertex().init( 0, new double[ 3 ], 1 );
+		Spot rootEnd = addBranch( graph, root, rootDuration );
+		Spot child1 = graph.addVertex().init( rootDuration, new double[ 3 ], 1 );
+		Spot child2 = graph.addVertex().init( rootDuration, new double[ 3 ], 1 );
+		graph.addEdge( rootEnd, child1 );
+		graph.addEdge( rootEnd, child2 );
+		addBranch( graph, child1, child1Duration );
+		addBranch( graph, child2, child2Duration );
+		return root;
+	}
+
+	private static Spot addBranch( final ModelGraph graph, final Spot first, final int duration )
+	{
+		Spot previous = first;
+		for ( int i = 1; i < duration; i++ )
+		{
+			Spot spot = graph.addVertex().init( first.getTimepoint() + i, new double[ 3 ], 1 );
+			graph.addEdge( previous, spot );
+			previous = spot;
+		}
+		return previous;
+	}
+}
@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+import org.mastodon.RefPool;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+
+class ParallelMotifSearchTest
+{
+	private static final int[][] LINEAGES = { { 10, 10, 10 }, { 10, 12, 8 }, { 5, 20, 20 }, { 12, 10, 10 }, { 10, 3, 25 },
+			{ 20, 5, 5 }, { 9, 11, 10 }, { 10, 10, 11 } };
+
+	@Test
+	void testFindMostSimilar()
+	{
+		Model model = new Model();
+		List< Spot > roots = new ArrayList<>();
+		for ( int[] durations : LINEAGES )
+			roots.add( addLineage( model.getGraph(), durations[ 0 ], durations[ 1 ], durations[ 2 ] ) );
+		ModelBranchGraph branchGraph = model.getBranchGraph();
+		branchGraph.graphRebuilt();
+		RefPool< Spot > spotPool = model.getGraph().vertices().getRefPool();
+
+		BranchSpotTree lineageMotif = new BranchSpotTree( branchGraph.getBranchVertex( roots.get( 0 ), branchGraph.vertexRef() ), 0, 20,
+				model );
+		for ( SimilarityMeasure similarityMeasure : SimilarityMeasure.values() )
+		{
+			ParallelMotifSearch search = new ParallelMotifSearch( model );
+			List< Pair< Integer, Double > > expected = new ArrayList<>();
+			for ( int i = 1; i < roots.size(); i++ )
+			{
+				BranchSpot branchSpot = branchGraph.getBranchVertex( roots.get( i ), branchGraph.vertexRef() );
+				search.addCandidate( roots.get( i ), branchSpot, 0, 20 );
+				BranchSpotTree candidate = new BranchSpotTree( branchSpot, 0, 20, model );
+				expected.add( Pair.of( spotPool.getId( roots.get( i ) ), similarityMeasure.compute( lineageMotif, candidate, 1d ) ) );
+			}
+			expected.sort( Comparator.comparingDouble( Pair::getValue ) );
+
+			List< Pair< Integer, Double > > mostSimilar = search.findMostSimilar( lineageMotif, similarityMeasure, 1d, 3 );
+			assertEquals( 3, mostSimilar.size() );
+			for ( int i = 0; i < 3; i++ )
+				assertEquals( expected.get( i ).getValue(), mostSimilar.get( i ).getValue(), 0d, similarityMeasure.getName() );
+		}
+	}
+
+	/**
+	 * Adds a lineage consisting of a root branch with the given duration, which divides into two branches with the given durations.
+	 */
+	private static Spot addLineage( final ModelGraph graph, final int rootDuration, final int child1Duration, final int child2Duration )
+	{
+		Spot root = graph.addVertex().init( 0, new double[ 3 ], 1 );
+		Spot rootEnd = addBranch( graph, root, rootDuration );
+		Spot child1 = graph.addVertex().init( rootDuration, new double[ 3 ], 1 );
+		Spot child2 = graph.addVertex().init( rootDuration, new double[ 3 ], 1 );
+		graph.addEdge( rootEnd, child1 );
+		graph.addEdge( rootEnd, child2 );
+		addBranch( graph, child1, child1Duration );
+		addBranch( graph, child2, child2Duration );
+		return root;
+	}
+
+	private static Spot addBranch( final ModelGraph graph, final Spot first, final int duration )
+	{
+		Spot previous = first;
+		for ( int i = 1; i < duration; i++ )
+		{
+			Spot spot = graph.addVertex().init( first.getTimepoint() + i, new double[ 3 ], 1 );
+			graph.addEdge( previous, spot );
+			previous = spot;
+		}
+		return previous;
+	}
+}
@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.lineagemotifs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.clustering.config.SimilarityMeasure;
+import org.mastodon.mamut.clustering.treesimilarity.tree.BranchSpotTree;
+import org.mastodon.mamut.clustering.treesimilarity.tree.Tree;
+import org.mastodon.mamut.clustering.treesimilarity.tree.TreeUtils;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+
+class SlidingCroppedTreeTest
+{
+	private Model model;
+
+	private BranchSpot root;
+
+	private BranchSpot child;
+
+	/**
+	 * <pre>
+	 *                root (timepoints 0 - 19)
+	 *             ┌─────┴──────┐
+	 *           child        child2
+	 *        (20 - 29)      (20 - 49)
+	 *      ┌─────┴─────┐
+	 *  grandchild  grandchild2
+	 *  (30 - 34)    (30 - 59)
+	 * </pre>
+	 */
+	@BeforeEach
+	void setUp()
+	{
+		model = new Model();
+		ModelGraph graph = model.getGraph();
+		Spot spot1 = graph.addVertex().init( 0, new double[ 3 ], 0 );
+		Spot spot2 = graph.addVertex().init( 19, new double[ 3 ], 0 );
+		Spot spot3 = graph.addVertex().init( 20, new double[ 3 ], 0 );
+		Spot spot4 = graph.addVertex().init( 29, new double[ 3 ], 0 );
+		Spot spot5 = graph.addVertex().init( 20, new double[ 3 ], 0 );
+		Spot spot6 = graph.addVertex().init( 49, new double[ 3 ], 0 );
+		Spot spot7 = graph.addVertex().init( 30, new double[ 3 ], 0 );
+		Spot spot8 = graph.addVertex().init( 34, new double[ 3 ], 0 );
+		Spot spot9 = graph.addVertex().init( 30, new double[ 3 ], 0 );
+		Spot spot10 = graph.addVertex().init( 59, new double[ 3 ], 0 );
+		graph.addEdge( spot1, spot2 );
+		graph.addEdge( spot2, spot3 );
+		graph.addEdge( spot2, spot5 );
+		graph.addEdge( spot3, spot4 );
+		graph.addEdge( spot5, spot6 );
+		graph.addEdge( spot4, spot7 );
+		graph.addEdge( spot4, spot9 );
+		graph.addEdge( spot7, spot8 );
+		graph.addEdge( spot9, spot10 );
+		ModelBranchGraph branchGraph = model.getBranchGraph();
+		branchGraph.graphRebuilt();
+		root = branchGraph.getBranchVertex( spot1, branchGraph.vertexRef() );
+		child = branchGraph.getBranchVertex( spot3, branchGraph.vertexRef() );
+	}
+
+	@Test
+	void testMoveToSlidingWindow()
+	{
+		SlidingCroppedTree slidingTree = new SlidingCroppedTree( new BranchGraphSnapshot( model.getBranchGraph() ) );
+		int rootId = model.getBranchGraph().vertices().getRefPool().getId( root );
+		for ( int motifLength : new int[] { 1, 10, 25, 50 } )
+			for ( int start = 0; start < 20; start++ )
+				assertSameTree( new BranchSpotTree( root, start, start + motifLength, model ),
+						slidingTree.moveTo( rootId, start, start + motifLength ) );
+	}
+
+	@Test
+	void testMoveToWithGapsAndBackwards()
+	{
+		SlidingCroppedTree slidingTree = new SlidingCroppedTree( new BranchGraphSnapshot( model.getBranchGraph() ) );
+		int rootId = model.getBranchGraph().vertices().getRefPool().getId( root );
+		int childId = model.getBranchGraph().vertices().getRefPool().getId( child );
+
+		assertSameTree( new BranchSpotTree( root, 0, 15, model ), slidingTree.moveTo( rootId, 0, 15 ) );
+		assertSameTree( new BranchSpotTree( root, 7, 40, model ), slidingTree.moveTo( rootId, 7, 40 ) );
+		assertSameTree( new BranchSpotTree( root, 2, 25, model ), slidingTree.moveTo( rootId, 2, 25 ) );
+		assertSameTree( new BranchSpotTree( child, 22, 31, model ), slidingTree.moveTo( childId, 22, 31 ) );
+		assertSameTree( new BranchSpotTree( root, 19, 60, model ), slidingTree.moveTo( rootId, 19, 60 ) );
+	}
+
+	@Test
+	void testMoveToBranchEndingAtIntervalEnd()
+	{
+		SlidingCroppedTree slidingTree = new SlidingCroppedTree( new BranchGraphSnapshot( model.getBranchGraph() ) );
+		int rootId = model.getBranchGraph().vertices().getRefPool().getId( root );
+
+		// NB: the root ends exactly at the end of the interval, its children are added, when the interval slides forward
+		Tree< Double > tree = slidingTree.moveTo( rootId, 0, 19 );
+		assertEquals( 1, TreeUtils.size( tree ) );
+		assertSameTree( new BranchSpotTree( root, 0, 19, model ), tree );
+		tree = slidingTree.moveTo( rootId, 1, 20 );
+		assertEquals( 3, TreeUtils.size( tree ) );
+		assertSameTree( new BranchSpotTree( root, 1, 20, model ), tree );
+
+		// NB: the same for a child, which ends exactly at the end of the interval
+		tree = slidingTree.moveTo( rootId, 10, 29 );
+		assertEquals( 3, TreeUtils.size( tree ) );
+		assertSameTree( new BranchSpotTree( root, 10, 29, model ), tree );
+		tree = slidingTree.moveTo( rootId, 11, 30 );
+		assertEquals( 5, TreeUtils.size( tree ) );
+		assertSameTree( new BranchSpotTree( root, 11, 30, model ), tree );
+	}
+
+	@Test
+	void testMoveToInvalidInterval()
+	{
+		SlidingCroppedTree slidingTree = new SlidingCroppedTree( new BranchGraphSnapshot( model.getBranchGraph() ) );
+		int childId = model.getBranchGraph().vertices().getRefPool().getId( child );
+
+		assertThrows( IllegalArgumentException.class, () -> slidingTree.moveTo( childId, 0, 10 ) );
+		assertThrows( IllegalArgumentException.class, () -> slidingTree.moveTo( childId, 30, 40 ) );
+	}
+
+	private static void assertSameTree( final Tree< Double > expected, final Tree< Double > actual )
+	{
+		assertEquals( TreeUtils.size( expected ), TreeUtils.size( actual ) );
+		assertEquals( 0d, SimilarityMeasure.ZHANG_DISTANCE.compute( expected, actual, 1d ), 0d );
+	}
+}
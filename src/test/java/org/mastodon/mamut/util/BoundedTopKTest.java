@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedTopKTest
+{
+	@Test
+	void testOffer()
+	{
+		BoundedTopK topK = new BoundedTopK( 3 );
+		assertEquals( Double.POSITIVE_INFINITY, topK.getThreshold() );
+		assertTrue( topK.offer( 0, 5d ) );
+		assertTrue( topK.offer( 1, 3d ) );
+		assertEquals( Double.POSITIVE_INFINITY, topK.getThreshold() );
+		assertTrue( topK.offer( 2, 4d ) );
+		assertEquals( 5d, topK.getThreshold() );
+		assertFalse( topK.offer( 3, 6d ) );
+		assertTrue( topK.offer( 4, 1d ) );
+		assertEquals( 4d, topK.getThreshold() );
+		// NB: equal scores are ordered by id
+		assertFalse( topK.offer( 5, 4d ) );
+		assertTrue( topK.offer( 1, 4d ) );
+
+		assertEquals( 3, topK.size() );
+		assertArrayEquals( new int[] { 4, 1, 1 }, topK.getSortedIds() );
+		assertArrayEquals( new double[] { 1d, 3d, 4d }, topK.getSortedScores() );
+	}
+
+	@Test
+	void testRandomOffers()
+	{
+		Random random = new Random( 42 );
+		List< Integer > ids = new ArrayList<>();
+		IntStream.range( 0, 1000 ).forEach( ids::add );
+		Collections.shuffle( ids, random );
+		double[] scores = new double[ 1000 ];
+		for ( int i = 0; i < scores.length; i++ )
+			scores[ i ] = random.nextInt( 100 );
+
+		BoundedTopK topK = new BoundedTopK( 10 );
+		ids.forEach( id -> topK.offer( id, scores[ id ] ) );
+
+		int[] expected = IntStream.range( 0, 1000 ).boxed()
+				.sorted( ( a, b ) -> scores[ a ] != scores[ b ] ? Double.compare( scores[ a ], scores[ b ] ) : Integer.compare( a, b ) )
+				.limit( 10 ).mapToInt( Integer::intValue ).toArray();
+		assertArrayEquals( expected, topK.getSortedIds() );
+		assertArrayEquals( IntStream.of( expected ).mapToDouble( id -> scores[ id ] ).toArray(), topK.getSortedScores() );
+		assertEquals( scores[ expected[ 9 ] ], topK.getThreshold() );
+	}
+
+	@Test
+	void testPartiallyFilled()
+	{
+		BoundedTopK topK = new BoundedTopK( 10 );
+		topK.offer( 7, 2d );
+		topK.offer( 3, 0.5d );
+		topK.offer( 5, 2d );
+		topK.offer( 1, 1d );
+
+		assertArrayEquals( new int[] { 3, 1, 5, 7 }, topK.getSortedIds() );
+		assertArrayEquals( new double[] { 0.5d, 1d, 2d, 2d }, topK.getSortedScores() );
+		// NB: sorting works on copies, thus the heap stays intact
+		assertTrue( topK.offer( 0, 0d ) );
+		assertArrayEquals( new int[] { 0, 3, 1, 5, 7 }, topK.getSortedIds() );
+	}
+
+	@Test
+	void testEmpty()
+	{
+		BoundedTopK topK = new BoundedTopK( 0 );
+		assertFalse( topK.offer( 0, 1d ) );
+		assertEquals( 0, topK.getSortedIds().length );
+		assertThrows( IllegalArgumentException.class, () -> new BoundedTopK( -1 ) );
+	}
+}
@@ -0,0 +1,183 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.feature.branch.exampleGraph.ExampleGraph2;
+import org.mastodon.mamut.feature.branch.exampleGraph.ExampleGraph4;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchSpot;
+
+class BranchGraphAncestryIndexTest
+{
+
+	@Test
+	void testGetDepth()
+	{
+		ExampleGraph2 exampleGraph2 = new ExampleGraph2();
+		BranchGraphAncestryIndex index = new BranchGraphAncestryIndex( exampleGraph2.getModel().getBranchGraph() );
+
+		assertEquals( 0, index.getDepth( exampleGraph2.branchSpotA ) );
+		assertEquals( 1, index.getDepth( exampleGraph2.branchSpotB ) );
+		assertEquals( 1, index.getDepth( exampleGraph2.branchSpotC ) );
+		assertEquals( 2, index.getDepth( exampleGraph2.branchSpotD ) );
+		assertEquals( 2, index.getDepth( exampleGraph2.branchSpotE ) );
+	}
+
+	@Test
+	void testIsAncestorAndSubtreeSize()
+	{
+		ExampleGraph2 exampleGraph2 = new ExampleGraph2();
+		BranchGraphAncestryIndex index = new BranchGraphAncestryIndex( exampleGraph2.getModel().getBranchGraph() );
+
+		assertTrue( index.isAncestor( exampleGraph2.branchSpotA, exampleGraph2.branchSpotD ) );
+		assertTrue( index.isAncestor( exampleGraph2.branchSpotB, exampleGraph2.branchSpotE ) );
+		assertTrue( index.isAncestor( exampleGraph2.branchSpotC, exampleGraph2.branchSpotC ) );
+		assertFalse( index.isAncestor( exampleGraph2.branchSpotD, exampleGraph2.branchSpotB ) );
+		assertFalse( index.isAncestor( exampleGraph2.branchSpotC, exampleGraph2.branchSpotD ) );
+		assertEquals( 5, index.getSubtreeSize( exampleGraph2.branchSpotA ) );
+		assertEquals( 3, index.getSubtreeSize( exampleGraph2.branchSpotB ) );
+		assertEquals( 1, index.getSubtreeSize( exampleGraph2.branchSpotE ) );
+	}
+
+	@Test
+	void testSubtreeInterval()
+	{
+		ExampleGraph2 exampleGraph2 = new ExampleGraph2();
+		BranchGraphAncestryIndex index = new BranchGraphAncestryIndex( exampleGraph2.getModel().getBranchGraph() );
+
+		assertTrue( isInInterval( index, exampleGraph2.branchSpotA, exampleGraph2.branchSpotD ) );
+		assertTrue( isInInterval( index, exampleGraph2.branchSpotB, exampleGraph2.branchSpotE ) );
+		assertFalse( isInInterval( index, exampleGraph2.branchSpotC, exampleGraph2.branchSpotD ) );
+		assertFalse( isInInterval( index, exampleGraph2.branchSpotD, exampleGraph2.branchSpotE ) );
+		assertTrue( index.getSubtreeStart( exampleGraph2.branchSpotB ) < index.getSubtreeEnd( exampleGraph2.branchSpotB ) );
+	}
+
+	@Test
+	void testGetLowestCommonAncestor()
+	{
+		ExampleGraph2 exampleGraph2 = new ExampleGraph2();
+		BranchGraphAncestryIndex index = new BranchGraphAncestryIndex( exampleGraph2.getModel().getBranchGraph() );
+		BranchSpot ref = exampleGraph2.getModel().getBranchGraph().vertexRef();
+
+		assertEquals( exampleGraph2.branchSpotB,
+				index.getLowestCommonAncestor( exampleGraph2.branchSpotD, exampleGraph2.branchSpotE, ref ) );
+		assertEquals( exampleGraph2.branchSpotA,
+				index.getLowestCommonAncestor( exampleGraph2.branchSpotD, exampleGraph2.branchSpotC, ref ) );
+		assertEquals( exampleGraph2.branchSpotB,
+				index.getLowestCommonAncestor( exampleGraph2.branchSpotB, exampleGraph2.branchSpotE, ref ) );
+		assertEquals( exampleGraph2.branchSpotC,
+				index.getLowestCommonAncestor( exampleGraph2.branchSpotC, exampleGraph2.branchSpotC, ref ) );
+	}
+
+	@Test
+	void testDifferentTrees()
+	{
+		ExampleGraph4 exampleGraph4 = new ExampleGraph4();
+		BranchGraphAncestryIndex index = new BranchGraphAncestryIndex( exampleGraph4.getModel().getBranchGraph() );
+		BranchSpot ref = exampleGraph4.getModel().getBranchGraph().vertexRef();
+
+		assertEquals( 1, index.getDepth( exampleGraph4.branchSpotF ) );
+		assertFalse( index.isAncestor( exampleGraph4.branchSpotA, exampleGraph4.branchSpotF ) );
+		assertNull( index.getLowestCommonAncestor( exampleGraph4.branchSpotB, exampleGraph4.branchSpotF, ref ) );
+		assertEquals( exampleGraph4.branchSpotD,
+				index.getLowestCommonAncestor( exampleGraph4.branchSpotE, exampleGraph4.branchSpotF, ref ) );
+	}
+
+	@Test
+	void testRemoveAndAddLeaf()
+	{
+		ExampleGraph4 exampleGraph4 = new ExampleGraph4();
+		BranchGraphAncestryIndex index = new BranchGraphAncestryIndex( exampleGraph4.getModel().getBranchGraph() );
+		BranchSpot ref = exampleGraph4.getModel().getBranchGraph().vertexRef();
+		assertEquals( exampleGraph4.branchSpotA,
+				index.getLowestCommonAncestor( exampleGraph4.branchSpotB, exampleGraph4.branchSpotC, ref ) );
+
+		// NB: the branch graph itself is not changed, thus the results show that the index is updated locally instead of being rebuilt
+		index.edgeRemoved( exampleGraph4.branchLink1 );
+		index.vertexRemoved( exampleGraph4.branchSpotC );
+		assertEquals( 2, index.getSubtreeSize( exampleGraph4.branchSpotA ) );
+		assertEquals( 1, index.getDepth( exampleGraph4.branchSpotB ) );
+		assertThrows( IllegalArgumentException.class, () -> index.getDepth( exampleGraph4.branchSpotC ) );
+		assertEquals( exampleGraph4.branchSpotD,
+				index.getLowestCommonAncestor( exampleGraph4.branchSpotE, exampleGraph4.branchSpotF, ref ) );
+
+		index.vertexAdded( exampleGraph4.branchSpotC );
+		assertEquals( 0, index.getDepth( exampleGraph4.branchSpotC ) );
+		assertNull( index.getLowestCommonAncestor( exampleGraph4.branchSpotB, exampleGraph4.branchSpotC, ref ) );
+
+		index.edgeAdded( exampleGraph4.branchLink1 );
+		assertEquals( 3, index.getSubtreeSize( exampleGraph4.branchSpotA ) );
+		assertEquals( 1, index.getDepth( exampleGraph4.branchSpotC ) );
+		assertTrue( index.isAncestor( exampleGraph4.branchSpotA, exampleGraph4.branchSpotC ) );
+		assertFalse( index.isAncestor( exampleGraph4.branchSpotB, exampleGraph4.branchSpotC ) );
+		assertTrue( isInInterval( index, exampleGraph4.branchSpotA, exampleGraph4.branchSpotC ) );
+		assertFalse( isInInterval( index, exampleGraph4.branchSpotB, exampleGraph4.branchSpotC ) );
+		assertEquals( exampleGraph4.branchSpotA,
+				index.getLowestCommonAncestor( exampleGraph4.branchSpotB, exampleGraph4.branchSpotC, ref ) );
+	}
+
+	@Test
+	void testRebuildAfterChange()
+	{
+		ExampleGraph4 exampleGraph4 = new ExampleGraph4();
+		Model model = exampleGraph4.getModel();
+		BranchGraphAncestryIndex index = new BranchGraphAncestryIndex( model.getBranchGraph() );
+		assertEquals( 3, index.getSubtreeSize( exampleGraph4.branchSpotA ) );
+
+		// divide spot 2 and update the branch graph
+		Spot spot8 = model.getGraph().addVertex().init( 3, new double[] { 1, 2, 3 }, 1 );
+		Spot spot9 = model.getGraph().addVertex().init( 3, new double[] { 2, 3, 4 }, 1 );
+		model.getGraph().addEdge( exampleGraph4.spot2, spot8 ).init();
+		model.getGraph().addEdge( exampleGraph4.spot2, spot9 ).init();
+		model.getBranchGraph().graphRebuilt();
+		index.graphRebuilt();
+
+		BranchSpot branchSpot0 = model.getBranchGraph().getBranchVertex( exampleGraph4.spot0, model.getBranchGraph().vertexRef() );
+		BranchSpot branchSpot8 = model.getBranchGraph().getBranchVertex( spot8, model.getBranchGraph().vertexRef() );
+		BranchSpot branchSpot9 = model.getBranchGraph().getBranchVertex( spot9, model.getBranchGraph().vertexRef() );
+		assertEquals( 5, index.getSubtreeSize( branchSpot0 ) );
+		assertEquals( 2, index.getDepth( branchSpot8 ) );
+		assertEquals( 2, index.getDepth( branchSpot9 ) );
+		assertTrue( index.isAncestor( branchSpot0, branchSpot8 ) );
+	}
+
+	private static boolean isInInterval( final BranchGraphAncestryIndex index, final BranchSpot ancestor, final BranchSpot descendant )
+	{
+		return index.getSubtreeStart( ancestor ) <= index.getSubtreeStart( descendant )
+				&& index.getSubtreeEnd( descendant ) <= index.getSubtreeEnd( ancestor );
+	}
+}
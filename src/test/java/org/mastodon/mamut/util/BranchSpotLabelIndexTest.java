@@ -0,0 +1,56 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.feature.branch.exampleGraph.ExampleGraph4;
+import org.mastodon.mamut.model.branch.BranchSpot;
+
+class BranchSpotLabelIndexTest
+{
+
+	@Test
+	void testGetBranchSpot()
+	{
+		ExampleGraph4 exampleGraph4 = new ExampleGraph4();
+		BranchSpotLabelIndex index = new BranchSpotLabelIndex( exampleGraph4.getModel() );
+		BranchSpot ref = exampleGraph4.getModel().getBranchGraph().vertexRef();
+
+		assertEquals( 6, index.size() );
+		assertEquals( exampleGraph4.branchSpotA, index.getBranchSpot( "0", ref ) );
+		assertEquals( exampleGraph4.branchSpotC, index.getBranchSpot( "3", ref ) );
+		assertEquals( exampleGraph4.branchSpotD, index.getBranchSpot( "4", ref ) );
+		assertEquals( exampleGraph4.branchSpotF, index.getBranchSpot( "7", ref ) );
+		assertNull( index.getBranchSpot( "1", ref ) );
+		assertNull( index.getBranchSpot( "unknown", ref ) );
+	}
+}
@@ -0,0 +1,193 @@
+/*-
+ * #%L
+ * mastodon-deep-lineage
+ * %%
+ * Copyright (C) 2022 - 2026 Stefan Hahmann
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+import org.mastodon.mamut.feature.CancelableImpl;
+import org.mastodon.mamut.feature.branch.exampleGraph.ExampleGraph4;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.model.tag.ObjTagMap;
+import org.mastodon.model.tag.TagSetStructure;
+import org.scijava.Cancelable;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Spot;
+
+class BulkTagAssignmentTest
+{
+
+	@Test
+	void testApply()
+	{
+		ExampleGraph4 exampleGraph4 = new ExampleGraph4();
+		Model model = exampleGraph4.getModel();
+		BulkTagAssignment tagAssignment = new BulkTagAssignment( model, 2 );
+		tagAssignment.addSpot( 0, exampleGraph4.spot0 );
+		tagAssignment.addSpotAndIncomingEdges( 0, exampleGraph4.spot1 );
+		tagAssignment.addSpotAndIncomingEdges( 1, exampleGraph4.spot6 );
+		tagAssignment.addLink( 1, exampleGraph4.link3 );
+		assertEquals( 5, tagAssignment.size() );
+
+		List< Pair< String, Integer > > tagsAndColors = Arrays.asList( Pair.of( "tag0", 0xff0000 ), Pair.of( "tag1", 0x00ff00 ) );
+		TagSetStructure.TagSet tagSet = tagAssignment.apply( "Test", tagsAndColors );
+		TagSetStructure.Tag tag0 = tagSet.getTags().get( 0 );
+		TagSetStructure.Tag tag1 = tagSet.getTags().get( 1 );
+		ObjTagMap< Spot, TagSetStructure.Tag > spotTags = model.getTagSetModel().getVertexTags().tags( tagSet );
+		ObjTagMap< Link, TagSetStructure.Tag > linkTags = model.getTagSetModel().getEdgeTags().tags( tagSet );
+
+		assertEquals( "Test", tagSet.getName() );
+		assertEquals( "tag0", tag0.label() );
+		assertEquals( "tag1", tag1.label() );
+		assertEquals( tag0, spotTags.get( exampleGraph4.spot0 ) );
+		assertEquals( tag0, spotTags.get( exampleGraph4.spot1 ) );
+		assertEquals( tag0, linkTags.get( exampleGraph4.link0 ) );
+		assertEquals( tag1, spotTags.get( exampleGraph4.spot6 ) );
+		assertEquals( tag1, linkTags.get( exampleGraph4.link4 ) );
+		assertEquals( tag1, linkTags.get( exampleGraph4.link3 ) );
+		assertNull( spotTags.get( exampleGraph4.spot2 ) );
+		assertNull( linkTags.get( exampleGraph4.link1 ) );
+	}
+
+	@Test
+	void testApplyWrongNumberOfTags()
+	{
+		ExampleGraph4 exampleGraph4 = new ExampleGraph4();
+		BulkTagAssignment tagAssignment = new BulkTagAssignment( exampleGraph4.getModel(), 2 );
+		List< Pair< String, Integer > > tagsAndColors = Collections.singletonList( Pair.of( "tag0", 0xff0000 ) );
+		assertThrows( IllegalArgumentException.class, () -> tagAssignment.apply( "Test", tagsAndColors ) );
+	}
+
+	@Test
+	void testApplyInChunks()
+	{
+		ExampleGraph4 exampleGraph4 = new ExampleGraph4();
+		Model model = exampleGraph4.getModel();
+		BulkTagAssignment tagAssignment = new BulkTagAssignment( model, 3 );
+		tagAssignment.addSpot( 0, exampleGraph4.spot0 );
+		tagAssignment.addSpotAndIncomingEdges( 0, exampleGraph4.spot1 );
+		tagAssignment.addSpotAndIncomingEdges( 2, exampleGraph4.spot6 );
+		tagAssignment.addLink( 2, exampleGraph4.link3 );
+		tagAssignment.addSpot( 2, exampleGraph4.spot1 );
+
+		List< Pair< String, Integer > > tagsAndColors =
+				Arrays.asList( Pair.of( "tag0", 0xff0000 ), Pair.of( "tag1", 0x00ff00 ), Pair.of( "tag2", 0x0000ff ) );
+		TagSetStructure.TagSet tagSet = tagAssignment.applyInChunks( "Test", tagsAndColors, 2, null, null );
+		TagSetStructure.Tag tag0 = tagSet.getTags().get( 0 );
+		TagSetStructure.Tag tag2 = tagSet.getTags().get( 2 );
+		ObjTagMap< Spot, TagSetStructure.Tag > spotTags = model.getTagSetModel().getVertexTags().tags( tagSet );
+		ObjTagMap< Link, TagSetStructure.Tag > linkTags = model.getTagSetModel().getEdgeTags().tags( tagSet );
+
+		assertEquals( "Test", tagSet.getName() );
+		assertEquals( 3, tagSet.getTags().size() );
+		assertEquals( tag0, spotTags.get( exampleGraph4.spot0 ) );
+		assertEquals( tag2, spotTags.get( exampleGraph4.spot1 ) );
+		assertEquals( tag0, linkTags.get( exampleGraph4.link0 ) );
+		assertEquals( tag2, spotTags.get( exampleGraph4.spot6 ) );
+		assertEquals( tag2, linkTags.get( exampleGraph4.link4 ) );
+		assertEquals( tag2, linkTags.get( exampleGraph4.link3 ) );
+		assertNull( spotTags.get( exampleGraph4.spot2 ) );
+		assertNull( linkTags.get( exampleGraph4.link1 ) );
+	}
+
+	@Test
+	void testApplyInChunksCanceled()
+	{
+		ExampleGraph4 exampleGraph4 = new ExampleGraph4();
+		Model model = exampleGraph4.getModel();
+		BulkTagAssignment tagAssignment = new BulkTagAssignment( model, 1 );
+		tagAssignment.addSpot( 0, exampleGraph4.spot0 );
+		CancelableImpl cancelable = new CancelableImpl();
+		cancelable.cancel( "test" );
+
+		List< Pair< String, Integer > > tagsAndColors = Collections.singletonList( Pair.of( "tag0", 0xff0000 ) );
+		TagSetStructure.TagSet tagSet = tagAssignment.applyInChunks( "Test", tagsAndColors, 1, null, cancelable );
+
+		assertEquals( 1, model.getTagSetModel().getTagSetStructure().getTagSets().size() );
+		assertNull( model.getTagSetModel().getVertexTags().tags( tagSet ).get( exampleGraph4.spot0 ) );
+	}
+
+	@Test
+	void testApplyInChunksStopsOnEdit()
+	{
+		ExampleGraph4 exampleGraph4 = new ExampleGraph4();
+		Model model = exampleGraph4.getModel();
+		BulkTagAssignment tagAssignment = new BulkTagAssignment( model, 1 );
+		tagAssignment.addSpot( 0, exampleGraph4.spot0 );
+		tagAssignment.addSpot( 0, exampleGraph4.spot1 );
+		// NB: adds a spot between the first and the second chunk
+		Cancelable editingCancelable = new Cancelable()
+		{
+			private int calls = 0;
+
+			@Override
+			public boolean isCanceled()
+			{
+				if ( ++calls == 2 )
+					model.getGraph().addVertex().init( 0, new double[] { 1, 2, 3 }, 1 );
+				return false;
+			}
+
+			@Override
+			public void cancel( final String reason )
+			{
+				// not needed
+			}
+
+			@Override
+			public String getCancelReason()
+			{
+				return null;
+			}
+		};
+
+		List< Pair< String, Integer > > tagsAndColors = Collections.singletonList( Pair.of( "tag0", 0xff0000 ) );
+		TagSetStructure.TagSet tagSet = tagAssignment.applyInChunks( "Test", tagsAndColors, 1, null, editingCancelable );
+		ObjTagMap< Spot, TagSetStructure.Tag > spotTags = model.getTagSetModel().getVertexTags().tags( tagSet );
+
+		assertEquals( tagSet.getTags().get( 0 ), spotTags.get( exampleGraph4.spot0 ) );
+		assertNull( spotTags.get( exampleGraph4.spot1 ) );
+	}
+
+	@Test
+	void testApplyInChunksInvalidChunkSize()
+	{
+		ExampleGraph4 exampleGraph4 = new ExampleGraph4();
+		BulkTagAssignment tagAssignment = new BulkTagAssignment( exampleGraph4.getModel(), 1 );
+		List< Pair< String, Integer > > tagsAndColors = Collections.singletonList( Pair.of( "tag0", 0xff0000 ) );
+		assertThrows( IllegalArgumentException.class, () -> tagAssignment.applyInChunks( "Test", tagsAndColors, 0, null, null ) );
+	}
+}